@@ -0,0 +1,29 @@
+package com.ontometrics.integrations.configuration;
+
+import com.ontometrics.integrations.events.Issue;
+
+import java.net.URL;
+import java.util.Date;
+
+/**
+ * {@link IssueTracker} which provides changes of all issues as a single paged stream of activities, so that
+ * changes can be retrieved without requesting each issue found in the feed.
+ */
+public interface ActivityStreamIssueTracker extends IssueTracker {
+
+    /**
+     * @param since the activities after this date are requested, may be null
+     * @param skip number of activities to skip
+     * @param top maximum number of activities in the page
+     * @return url of the page of activities ordered by their time
+     */
+    URL getActivitiesUrl(Date since, int skip, int top);
+
+    /**
+     * @param issue the issue
+     * @param since the activities after this date are requested, may be null
+     * @return url of all activities of the issue after the date, ordered by their time
+     */
+    URL getIssueActivitiesUrl(Issue issue, Date since);
+
+}
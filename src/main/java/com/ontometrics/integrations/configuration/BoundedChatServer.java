@@ -0,0 +1,51 @@
+package com.ontometrics.integrations.configuration;
+
+import com.ontometrics.integrations.events.Issue;
+import com.ontometrics.integrations.events.IssueEditSession;
+
+import java.util.List;
+import java.util.concurrent.Semaphore;
+
+/**
+ * {@link ChatServer} which limits the number of messages posted by the wrapped server at the same time,
+ * callers wait for a free permit
+ */
+public class BoundedChatServer implements ChatServer {
+
+    private final ChatServer chatServer;
+    private final Semaphore permits;
+
+    /**
+     * @param chatServer server which posts messages
+     * @param maxConcurrentPosts maximum number of messages posted at the same time
+     */
+    public BoundedChatServer(ChatServer chatServer, int maxConcurrentPosts) {
+        this.chatServer = chatServer;
+        this.permits = new Semaphore(maxConcurrentPosts, true);
+    }
+
+    @Override
+    public void postIssueCreation(Issue issue) {
+        permits.acquireUninterruptibly();
+        try {
+            chatServer.postIssueCreation(issue);
+        } finally {
+            permits.release();
+        }
+    }
+
+    @Override
+    public void post(IssueEditSession issueEditSession) {
+        permits.acquireUninterruptibly();
+        try {
+            chatServer.post(issueEditSession);
+        } finally {
+            permits.release();
+        }
+    }
+
+    @Override
+    public List<String> getUsers() {
+        return chatServer.getUsers();
+    }
+}
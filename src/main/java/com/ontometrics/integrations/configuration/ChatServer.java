@@ -3,6 +3,8 @@ package com.ontometrics.integrations.configuration;
 import com.ontometrics.integrations.events.Issue;
 import com.ontometrics.integrations.events.IssueEditSession;
 
+import java.util.List;
+
 /**
  * <p>
  * Provides a means of interfacing to the Chat Server that is going to be
@@ -38,5 +40,5 @@ public interface ChatServer {
      *
      * @return the usernames that are known members right now
      */
-//    List<String> getUsers();
+    List<String> getUsers();
 }
@@ -1,9 +1,11 @@
 package com.ontometrics.integrations.configuration;
 
+import com.ontometrics.integrations.events.Issue;
 import com.ontometrics.integrations.events.ProcessEvent;
 import com.ontometrics.util.DateBuilder;
 import org.apache.commons.configuration.ConfigurationException;
 import org.apache.commons.configuration.PropertiesConfiguration;
+import org.mapdb.BTreeKeySerializer;
 import org.mapdb.BTreeMap;
 import org.mapdb.DB;
 import org.mapdb.DBMaker;
@@ -11,7 +13,13 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.File;
+import java.util.Collection;
 import java.util.Date;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 
 /**
  * EventProcessorConfiguration.java
@@ -24,12 +32,34 @@ public class EventProcessorConfiguration {
     private static final EventProcessorConfiguration instance = new EventProcessorConfiguration();
 
     private static final String LAST_EVENT_DATE = "last.event.date";
+    /**
+     * Legacy collection keyed by {@link Issue#toString()}, migrated to {@link #ISSUE_CHANGE_DATES} on startup
+     */
     public static final String EVENT_CHANGE_DATES = "eventChangeDates";
+    public static final String ISSUE_CHANGE_DATES = "issueChangeDates";
+    public static final String PROJECT_PREFIX_IDS = "projectPrefixIds";
+    public static final String SLACK_USER_IDS = "slackUserIds";
+    public static final String SLACK_THREADS = "slackThreads";
     public static final String PROP_ISSUE_HISTORY_WINDOW = "PROP.ISSUE_HISTORY_WINDOW";
 
     private PropertiesConfiguration lastEventConfiguration;
     private DB db;
-    private BTreeMap<String, Long> eventChangeDatesCollection;
+    private static final Pattern LEGACY_ISSUE_KEY = Pattern.compile("^Issue\\{id=(-?\\d+), prefix='([^']*)'");
+
+    private BTreeMap<Long, Long> eventChangeDatesCollection;
+    private BTreeMap<String, Integer> projectPrefixIdsCollection;
+    /**
+     * In-memory copy of {@link #projectPrefixIdsCollection}, so resolving the key of an issue does not touch the database
+     */
+    private Map<String, Integer> projectPrefixIds;
+    /**
+     * YouTrack logins resolved to Slack user IDs by {@link SlackUserDirectory}
+     */
+    private Map<String, String> slackUserIdsCollection;
+    /**
+     * Threads of messages about issues started by {@link SlackThreads}
+     */
+    private Map<String, String> slackThreadsCollection;
 
     //being used in tests to override value from properties
     private Integer issueHistoryWindowInMinutes;
@@ -46,6 +76,11 @@ public class EventProcessorConfiguration {
             lastEventConfiguration = new PropertiesConfiguration(file);
             db = DBMaker.newFileDB(new File(dataDir, "app_db")).closeOnJvmShutdown().make();
             eventChangeDatesCollection = getEventChangeDatesCollection();
+            projectPrefixIdsCollection = db.getTreeMap(PROJECT_PREFIX_IDS);
+            projectPrefixIds = new ConcurrentHashMap<>(projectPrefixIdsCollection);
+            slackUserIdsCollection = db.getHashMap(SLACK_USER_IDS);
+            slackThreadsCollection = db.getHashMap(SLACK_THREADS);
+            migrateLegacyEventChangeDates();
             logDatabase();
             logger.info("Initialized EventProcessorConfiguration");
         } catch (ConfigurationException e) {
@@ -55,10 +90,15 @@ public class EventProcessorConfiguration {
 
     private void logDatabase() {
         StringBuilder builder = new StringBuilder("Last Event Change keyset:\n");
-        for (String key: eventChangeDatesCollection.keySet()) {
-            Long value = eventChangeDatesCollection.get(key);
-            builder.append("Issue Key: ").append(key).append(", Last Change: ").append(value).append(". ")
-                    .append(new Date(value)).append("\n");
+        Map<Integer, String> prefixes = new HashMap<>();
+        for (Map.Entry<String, Integer> prefixId : projectPrefixIds.entrySet()) {
+            prefixes.put(prefixId.getValue(), prefixId.getKey());
+        }
+        for (Map.Entry<Long, Long> entry : eventChangeDatesCollection.entrySet()) {
+            long key = entry.getKey();
+            Long value = entry.getValue();
+            builder.append("Issue Key: ").append(prefixes.get(prefixIdOf(key))).append('-').append(issueNumberOf(key))
+                    .append(", Last Change: ").append(value).append(". ").append(new Date(value)).append("\n");
         }
         logger.info(builder.toString());
     }
@@ -71,37 +111,201 @@ public class EventProcessorConfiguration {
      * @return last event processed (issue) or null if not available
      */
     public Date loadLastProcessedDate() {
-        Long lastEventDate = lastEventConfiguration.getLong(LAST_EVENT_DATE, null);
+        return loadLastProcessedDate(null);
+    }
+
+    /**
+     * @param shard name of the feed shard polled independently, null for the global feed
+     * @return last event processed in the shard, last event of the global feed if the shard has not been polled yet,
+     * or null if not available
+     */
+    public synchronized Date loadLastProcessedDate(String shard) {
+        Long lastEventDate = null;
+        if (shard != null) {
+            lastEventDate = lastEventConfiguration.getLong(lastEventDateKey(shard), null);
+        }
+        if (lastEventDate == null) {
+            lastEventDate = lastEventConfiguration.getLong(LAST_EVENT_DATE, null);
+        }
         if (lastEventDate != null && lastEventDate > 0) {
             return new Date(lastEventDate);
         }
         return null;
     }
 
+    private static String lastEventDateKey(String shard) {
+        return shard == null ? LAST_EVENT_DATE : LAST_EVENT_DATE + "." + shard;
+    }
+
     /**
      * Saves last processed event change date to database
      * @param event event
      * @param date processed event change date
      */
     public void saveEventChangeDate(ProcessEvent event, Date date) {
-        eventChangeDatesCollection.put(event.getIssue().toString(), date.getTime());
+        Issue issue = event.getIssue();
+        eventChangeDatesCollection.put(issueKey(registerProjectPrefix(issue.getPrefix()), issue.getId()), date.getTime());
         db.commit();
 
     }
 
-    private BTreeMap<String, Long> getEventChangeDatesCollection() {
-        return db.getTreeMap(EVENT_CHANGE_DATES);
+    /**
+     * Saves last processed change dates of the issues in a single transaction. Date of the issue is updated only if the
+     * passed one is after the stored one.
+     * @param changeDates processed change date by issue
+     */
+    public synchronized void saveEventChangeDates(Map<Issue, Date> changeDates) {
+        for (Map.Entry<Issue, Date> changeDate : changeDates.entrySet()) {
+            Issue issue = changeDate.getKey();
+            long key = issueKey(registerProjectPrefix(issue.getPrefix()), issue.getId());
+            Long current = eventChangeDatesCollection.get(key);
+            if (current == null || current < changeDate.getValue().getTime()) {
+                eventChangeDatesCollection.put(key, changeDate.getValue().getTime());
+            }
+        }
+        db.commit();
+    }
+
+    private BTreeMap<Long, Long> getEventChangeDatesCollection() {
+        return db.createTreeMap(ISSUE_CHANGE_DATES).keySerializer(BTreeKeySerializer.ZERO_OR_POSITIVE_LONG).makeOrGet();
     }
 
     public Date getEventChangeDate(ProcessEvent event) {
-        Long date = eventChangeDatesCollection.get(event.getIssue().toString());
+        return getEventChangeDate(event.getIssue());
+    }
+
+    /**
+     * @param issue issue
+     * @return date of the last processed change of the issue or null if not available
+     */
+    public Date getEventChangeDate(Issue issue) {
+        Integer prefixId = projectPrefixIds.get(normalizePrefix(issue.getPrefix()));
+        if (prefixId == null) {
+            //project has never been seen, so there is no date for any of its issues
+            return null;
+        }
+        Long date = eventChangeDatesCollection.get(issueKey(prefixId, issue.getId()));
         return date == null ? null : new Date(date);
     }
 
+    /**
+     * Packs project prefix id (upper 32 bits) and issue number (lower 32 bits) into the single key, which does not
+     * depend on the title or description of the issue
+     * @param prefixId id assigned to the project prefix by {@link #registerProjectPrefix(String)}
+     * @param issueNumber number of the issue inside the project
+     * @return key of the issue in {@link #ISSUE_CHANGE_DATES} collection
+     */
+    static long issueKey(int prefixId, int issueNumber) {
+        return ((long) prefixId << 32) | (issueNumber & 0xFFFFFFFFL);
+    }
+
+    static int prefixIdOf(long issueKey) {
+        return (int) (issueKey >>> 32);
+    }
+
+    static int issueNumberOf(long issueKey) {
+        return (int) issueKey;
+    }
+
+    /**
+     * @param prefix project prefix
+     * @return id of the prefix, assigning and persisting next available id if prefix is not known yet
+     */
+    private synchronized int registerProjectPrefix(String prefix) {
+        String key = normalizePrefix(prefix);
+        Integer prefixId = projectPrefixIds.get(key);
+        if (prefixId == null) {
+            prefixId = projectPrefixIds.size();
+            projectPrefixIds.put(key, prefixId);
+            projectPrefixIdsCollection.put(key, prefixId);
+        }
+        return prefixId;
+    }
+
+    private static String normalizePrefix(String prefix) {
+        return prefix == null ? "" : prefix;
+    }
+
+    /**
+     * Moves dates stored in the legacy {@link #EVENT_CHANGE_DATES} collection (keyed by {@link Issue#toString()}) into
+     * {@link #ISSUE_CHANGE_DATES}. Since the legacy key changed together with the issue title, the same issue may have
+     * several entries there, the latest date wins.
+     */
+    private void migrateLegacyEventChangeDates() {
+        if (!db.exists(EVENT_CHANGE_DATES)) {
+            return;
+        }
+        BTreeMap<String, Long> legacyCollection = db.getTreeMap(EVENT_CHANGE_DATES);
+        int migrated = 0;
+        for (Map.Entry<String, Long> entry : legacyCollection.entrySet()) {
+            Matcher matcher = LEGACY_ISSUE_KEY.matcher(entry.getKey());
+            if (!matcher.find()) {
+                logger.warn("Skipping event change date with unrecognized key {}", entry.getKey());
+                continue;
+            }
+            long key = issueKey(registerProjectPrefix(matcher.group(2)), Integer.parseInt(matcher.group(1)));
+            Long current = eventChangeDatesCollection.get(key);
+            if (current == null || current < entry.getValue()) {
+                eventChangeDatesCollection.put(key, entry.getValue());
+            }
+            migrated++;
+        }
+        db.delete(EVENT_CHANGE_DATES);
+        db.commit();
+        logger.info("Migrated {} event change dates from {} to {}", migrated, EVENT_CHANGE_DATES, ISSUE_CHANGE_DATES);
+    }
+
+    /**
+     * @return copy of the stored map of YouTrack logins to Slack user IDs
+     */
+    public synchronized Map<String, String> loadSlackUserIds() {
+        return new HashMap<>(slackUserIdsCollection);
+    }
+
+    /**
+     * Replaces the stored map of YouTrack logins to Slack user IDs
+     * @param slackUserIds YouTrack logins to Slack user IDs
+     */
+    public synchronized void saveSlackUserIds(Map<String, String> slackUserIds) {
+        slackUserIdsCollection.keySet().retainAll(slackUserIds.keySet());
+        slackUserIdsCollection.putAll(slackUserIds);
+        db.commit();
+    }
+
+    /**
+     * @return copy of the stored threads of messages about issues
+     */
+    public synchronized Map<String, String> loadSlackThreads() {
+        return new HashMap<>(slackThreadsCollection);
+    }
+
+    /**
+     * Saves the started threads and removes the forgotten ones with a single commit
+     * @param startedThreads timestamps of the first messages and times they were posted by channel and issue
+     * @param removedKeys channels and issues of the forgotten threads
+     */
+    public synchronized void saveSlackThreads(Map<String, String> startedThreads, Collection<String> removedKeys) {
+        slackThreadsCollection.putAll(startedThreads);
+        for (String key : removedKeys) {
+            slackThreadsCollection.remove(key);
+        }
+        db.commit();
+    }
+
     public void saveLastProcessedEventDate(Date lastProcessedEventDate) throws ConfigurationException {
-        Date currentLastProcessedDate = loadLastProcessedDate();
-        if (currentLastProcessedDate  == null || currentLastProcessedDate.before(lastProcessedEventDate)) {
-            lastEventConfiguration.setProperty(LAST_EVENT_DATE, lastProcessedEventDate.getTime());
+        saveLastProcessedEventDate(null, lastProcessedEventDate);
+    }
+
+    /**
+     * @param shard name of the feed shard polled independently, null for the global feed
+     * @param lastProcessedEventDate date of the last event processed in the shard
+     */
+    public synchronized void saveLastProcessedEventDate(String shard, Date lastProcessedEventDate)
+            throws ConfigurationException {
+        Date currentLastProcessedDate = loadLastProcessedDate(shard);
+        if (currentLastProcessedDate  == null || currentLastProcessedDate.before(lastProcessedEventDate)
+                || lastEventConfiguration.getProperty(lastEventDateKey(shard)) == null) {
+            lastEventConfiguration.setProperty(lastEventDateKey(shard), lastProcessedEventDate.getTime());
             lastEventConfiguration.save();
         }
     }
@@ -128,7 +332,7 @@ public class EventProcessorConfiguration {
         return new DateBuilder().addMinutes(-getIssueHistoryWindowInMinutes()).build();
     }
 
-    public void clearLastProcessEvent() throws ConfigurationException {
+    public synchronized void clearLastProcessEvent() throws ConfigurationException {
         lastEventConfiguration.clearProperty(LAST_EVENT_DATE);
         lastEventConfiguration.save();
     }
@@ -137,6 +341,10 @@ public class EventProcessorConfiguration {
         lastEventConfiguration.clear();
         lastEventConfiguration.save();
         eventChangeDatesCollection.clear();
+        projectPrefixIdsCollection.clear();
+        projectPrefixIds.clear();
+        slackUserIdsCollection.clear();
+        slackThreadsCollection.clear();
         db.commit();
     }
 
@@ -152,6 +360,9 @@ public class EventProcessorConfiguration {
      * Releases resource: closes database
      */
     public void dispose() {
+        if (db.isClosed()) {
+            return;
+        }
         logger.info("Disposing database");
         db.close();
     }
@@ -164,7 +375,10 @@ public class EventProcessorConfiguration {
         initialize();
     }
 
-    public void setIssueHistoryWindowInMinutes(int issueHistoryWindowInMinutes) {
+    /**
+     * @param issueHistoryWindowInMinutes overrides {@link #PROP_ISSUE_HISTORY_WINDOW} property, null to use the property
+     */
+    public void setIssueHistoryWindowInMinutes(Integer issueHistoryWindowInMinutes) {
         this.issueHistoryWindowInMinutes = issueHistoryWindowInMinutes;
     }
 }
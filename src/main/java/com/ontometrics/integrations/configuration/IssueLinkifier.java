@@ -0,0 +1,212 @@
+package com.ontometrics.integrations.configuration;
+
+import java.util.*;
+
+/**
+ * <p>
+ * Finds references to issues like "HA-123" in text of the messages, so they can be posted as links to the issues.
+ * </p>
+ * <p>
+ * Known project prefixes are compiled into an automaton (trie with a transition table), the text is scanned once:
+ * at the start of every word the automaton is walked over the word while it has transitions, and a prefix followed
+ * by "-" and the issue number is a reference. Word starts after "/" or "." are skipped, so issue urls are not linked
+ * again. The automaton is immutable and is rebuilt only when a new prefix is added, so scans do not lock.
+ * </p>
+ */
+public class IssueLinkifier {
+
+    /**
+     * Prefix characters: A-Z, a-z, 0-9 and "_"
+     */
+    private static final int ALPHABET = 26 + 26 + 10 + 1;
+    private static final String WORD_START_AFTER = "([{\"'*_~,;:!?#>";
+
+    private volatile Automaton automaton;
+
+    public IssueLinkifier(Collection<String> prefixes) {
+        automaton = new Automaton(new TreeSet<>(prefixes));
+    }
+
+    /**
+     * Adds the prefix, the automaton is rebuilt if the prefix is new
+     * @param prefix project prefix, ignored if null or has other characters than letters, digits and "_"
+     */
+    public void addPrefix(String prefix) {
+        if (prefix == null || automaton.prefixes.contains(prefix) || !isPrefix(prefix)) {
+            return;
+        }
+        synchronized (this) {
+            if (!automaton.prefixes.contains(prefix)) {
+                Set<String> prefixes = new TreeSet<>(automaton.prefixes);
+                prefixes.add(prefix);
+                automaton = new Automaton(prefixes);
+            }
+        }
+    }
+
+    public Set<String> getPrefixes() {
+        return Collections.unmodifiableSet(automaton.prefixes);
+    }
+
+    /**
+     * Finds the first reference in the range of the text
+     * @param text text
+     * @param start start of the range
+     * @param end end of the range, reference must end before it
+     * @param referenceEnd end of the found reference is stored in referenceEnd[0]
+     * @return start of the reference, -1 if there is no reference in the range
+     */
+    public int find(CharSequence text, int start, int end, int[] referenceEnd) {
+        Automaton automaton = this.automaton;
+        int i = start;
+        while (i < end) {
+            if (!isWordChar(text.charAt(i))) {
+                i++;
+                continue;
+            }
+            if (i == 0 || isWordStart(text.charAt(i - 1))) {
+                int state = 0;
+                int j = i;
+                while (j < end && state >= 0) {
+                    int next = automaton.next(state, text.charAt(j));
+                    if (next < 0) {
+                        break;
+                    }
+                    state = next;
+                    j++;
+                }
+                if (automaton.accepting[state] && j + 1 < end && text.charAt(j) == '-' && isDigit(text.charAt(j + 1))) {
+                    int k = j + 1;
+                    while (k < end && isDigit(text.charAt(k))) {
+                        k++;
+                    }
+                    if (k == end || !isWordChar(text.charAt(k))) {
+                        referenceEnd[0] = k;
+                        return i;
+                    }
+                }
+            }
+            //skip the rest of the word
+            while (i < end && isWordChar(text.charAt(i))) {
+                i++;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Appends the range of the text with references replaced by Slack links "&lt;issueUrl|PREFIX-123&gt;", the rest
+     * of the text is escaped by {@link MessageTemplate#appendEscaped(StringBuilder, CharSequence, int, int)}
+     * @param issueBaseUrl url which is followed by "PREFIX-123" in the issue url, text is not linked if it is null
+     * @return builder
+     */
+    public StringBuilder appendLinked(StringBuilder builder, CharSequence text, int start, int end,
+                                      String issueBaseUrl) {
+        if (issueBaseUrl != null) {
+            int[] referenceEnd = new int[1];
+            int reference;
+            while ((reference = find(text, start, end, referenceEnd)) >= 0) {
+                MessageTemplate.appendEscaped(builder, text, start, reference);
+                appendLink(builder, text, reference, referenceEnd[0], issueBaseUrl);
+                start = referenceEnd[0];
+            }
+        }
+        return MessageTemplate.appendEscaped(builder, text, start, end);
+    }
+
+    static StringBuilder appendLink(StringBuilder builder, CharSequence text, int start, int end, String issueBaseUrl) {
+        builder.append('<').append(issueBaseUrl).append(text, start, end).append('|');
+        return builder.append(text, start, end).append('>');
+    }
+
+    /**
+     * @param issueUrl url of an issue like "http://youtrack/issue/HA-1"
+     * @return the url without the issue id like "http://youtrack/issue/", null if issueUrl is null
+     */
+    public static String getIssueBaseUrl(String issueUrl) {
+        return issueUrl == null ? null : issueUrl.substring(0, issueUrl.lastIndexOf('/') + 1);
+    }
+
+    private static boolean isPrefix(String prefix) {
+        if (prefix.isEmpty()) {
+            return false;
+        }
+        for (int i = 0; i < prefix.length(); i++) {
+            if (index(prefix.charAt(i)) < 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean isWordStart(char previous) {
+        return Character.isWhitespace(previous) || WORD_START_AFTER.indexOf(previous) >= 0;
+    }
+
+    private static boolean isWordChar(char c) {
+        return Character.isLetterOrDigit(c) || c == '_';
+    }
+
+    private static boolean isDigit(char c) {
+        return c >= '0' && c <= '9';
+    }
+
+    /**
+     * @return index of the prefix character in the alphabet, -1 if it can not be in a prefix
+     */
+    private static int index(char c) {
+        if (c >= 'A' && c <= 'Z') {
+            return c - 'A';
+        }
+        if (c >= 'a' && c <= 'z') {
+            return 26 + c - 'a';
+        }
+        if (c >= '0' && c <= '9') {
+            return 52 + c - '0';
+        }
+        return c == '_' ? 62 : -1;
+    }
+
+    private static class Automaton {
+        private final Set<String> prefixes;
+        /**
+         * Next state of the state and the character is transitions[state * ALPHABET + index(character)], -1 if none
+         */
+        private final int[] transitions;
+        private final boolean[] accepting;
+
+        private Automaton(Set<String> prefixes) {
+            Set<String> valid = new TreeSet<>();
+            int states = 1;
+            for (String prefix : prefixes) {
+                if (prefix != null && isPrefix(prefix)) {
+                    valid.add(prefix);
+                    states += prefix.length();
+                }
+            }
+            this.prefixes = valid;
+            int[] transitions = new int[states * ALPHABET];
+            Arrays.fill(transitions, -1);
+            boolean[] accepting = new boolean[states];
+            int used = 1;
+            for (String prefix : valid) {
+                int state = 0;
+                for (int i = 0; i < prefix.length(); i++) {
+                    int transition = state * ALPHABET + index(prefix.charAt(i));
+                    if (transitions[transition] < 0) {
+                        transitions[transition] = used++;
+                    }
+                    state = transitions[transition];
+                }
+                accepting[state] = true;
+            }
+            this.transitions = Arrays.copyOf(transitions, used * ALPHABET);
+            this.accepting = Arrays.copyOf(accepting, used);
+        }
+
+        private int next(int state, char c) {
+            int index = index(c);
+            return index < 0 ? -1 : transitions[state * ALPHABET + index];
+        }
+    }
+}
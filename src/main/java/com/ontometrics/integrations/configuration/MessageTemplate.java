@@ -0,0 +1,143 @@
+package com.ontometrics.integrations.configuration;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * <p>
+ * Message layout compiled once into the list of segments: literal text and placeholders written as
+ * <code>{name}</code>, for example <code>*{creator}* created {issueLink}: {title}</code>.
+ * </p>
+ * <p>
+ * Rendering only appends segments to the passed {@link StringBuilder}, the layout is never parsed again.
+ * Values of placeholders are appended with characters <code>{</code> and <code>}</code> replaced by
+ * <code>[</code> and <code>]</code> (see {@link #appendEscaped(StringBuilder, CharSequence, int, int)}).
+ * </p>
+ *
+ * @param <T> class of the object placeholder values are taken from
+ */
+public class MessageTemplate<T> {
+
+    /**
+     * Appends value of the named placeholder taken from the source object
+     */
+    public interface Placeholder<T> {
+        void appendTo(StringBuilder builder, T source);
+    }
+
+    private final List<Segment<T>> segments;
+
+    private MessageTemplate(List<Segment<T>> segments) {
+        this.segments = segments;
+    }
+
+    /**
+     * @param layout layout with placeholders in the form <code>{name}</code>
+     * @param placeholders placeholders available to the layout by name
+     * @param <T> class of the object placeholder values are taken from
+     * @return compiled template
+     * @throws IllegalArgumentException if layout references unknown placeholder or has unclosed <code>{</code>
+     */
+    public static <T> MessageTemplate<T> compile(String layout, Map<String, Placeholder<T>> placeholders) {
+        List<Segment<T>> segments = new ArrayList<>();
+        int position = 0;
+        while (position < layout.length()) {
+            int open = layout.indexOf('{', position);
+            if (open < 0) {
+                segments.add(new LiteralSegment<T>(layout.substring(position)));
+                break;
+            }
+            int close = layout.indexOf('}', open);
+            if (close < 0) {
+                throw new IllegalArgumentException("Unclosed placeholder at " + open + " in template: " + layout);
+            }
+            if (open > position) {
+                segments.add(new LiteralSegment<T>(layout.substring(position, open)));
+            }
+            String name = layout.substring(open + 1, close);
+            Placeholder<T> placeholder = placeholders.get(name);
+            if (placeholder == null) {
+                throw new IllegalArgumentException("Unknown placeholder {" + name + "} in template: " + layout);
+            }
+            segments.add(new PlaceholderSegment<>(placeholder));
+            position = close + 1;
+        }
+        return new MessageTemplate<>(segments);
+    }
+
+    /**
+     * Appends rendered message to the builder
+     * @param source object the placeholder values are taken from
+     * @param builder builder to append message to
+     * @return builder, for chaining
+     */
+    public StringBuilder render(T source, StringBuilder builder) {
+        for (Segment<T> segment : segments) {
+            segment.appendTo(builder, source);
+        }
+        return builder;
+    }
+
+    /**
+     * Appends a part of value replacing <code>{}</code> with <code>[]</code> since Slack treats curly braces specially
+     * @param builder builder
+     * @param value value to append, nothing is appended if value is null
+     * @param start start index (inclusive)
+     * @param end end index (exclusive)
+     * @return builder, for chaining
+     */
+    public static StringBuilder appendEscaped(StringBuilder builder, CharSequence value, int start, int end) {
+        if (value == null) {
+            return builder;
+        }
+        for (int i = start; i < end; i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '{':
+                    builder.append('[');
+                    break;
+                case '}':
+                    builder.append(']');
+                    break;
+                default:
+                    builder.append(c);
+            }
+        }
+        return builder;
+    }
+
+    public static StringBuilder appendEscaped(StringBuilder builder, CharSequence value) {
+        return value == null ? builder : appendEscaped(builder, value, 0, value.length());
+    }
+
+    private interface Segment<T> {
+        void appendTo(StringBuilder builder, T source);
+    }
+
+    private static class LiteralSegment<T> implements Segment<T> {
+        private final String text;
+
+        private LiteralSegment(String text) {
+            this.text = text;
+        }
+
+        @Override
+        public void appendTo(StringBuilder builder, T source) {
+            builder.append(text);
+        }
+    }
+
+    private static class PlaceholderSegment<T> implements Segment<T> {
+        private final Placeholder<T> placeholder;
+
+        private PlaceholderSegment(Placeholder<T> placeholder) {
+            this.placeholder = placeholder;
+        }
+
+        @Override
+        public void appendTo(StringBuilder builder, T source) {
+            placeholder.appendTo(builder, source);
+        }
+    }
+}
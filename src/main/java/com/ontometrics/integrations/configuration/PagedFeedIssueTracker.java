@@ -0,0 +1,19 @@
+package com.ontometrics.integrations.configuration;
+
+import java.net.URL;
+import java.util.Date;
+
+/**
+ * {@link IssueTracker} whose feed can be limited to a time window, so events pushed out of the latest feed by
+ * the cap of its items can be read with more requests.
+ */
+public interface PagedFeedIssueTracker extends IssueTracker {
+
+    /**
+     * @param since the issues updated after this date are requested
+     * @param before the issues updated before this date (inclusive) are requested
+     * @return url of the feed of the issues updated in the window
+     */
+    URL getFeedUrl(Date since, Date before);
+
+}
@@ -1,20 +1,40 @@
 package com.ontometrics.integrations.configuration;
 
-import com.ontometrics.integrations.events.*;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.ontometrics.integrations.events.Issue;
+import com.ontometrics.integrations.events.IssueEditSession;
 import com.ontometrics.integrations.sources.ChannelMapper;
-import org.apache.commons.lang.StringUtils;
+import com.ontometrics.util.BadResponseException;
+import com.ontometrics.util.Clock;
+import com.ontometrics.util.JsonWriter;
 import org.slf4j.Logger;
 
 import javax.ws.rs.client.Client;
 import javax.ws.rs.client.ClientBuilder;
-import javax.ws.rs.client.Invocation;
+import javax.ws.rs.client.Entity;
 import javax.ws.rs.client.WebTarget;
+import javax.ws.rs.core.HttpHeaders;
 import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.Response;
+import java.io.IOException;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.util.Collections;
+import java.util.List;
 
 import static org.slf4j.LoggerFactory.getLogger;
 
 /**
+ * Posts messages to Slack with chat.postMessage. If {@link SlackThreads} are set, the first message about an issue in
+ * the channel starts a thread and later sessions of the issue are posted as replies to it.
+ *
+ * A message which Slack did not accept (response code other than 200, e.g. 429 when the rate limit is exceeded, or
+ * "ok":false) is logged and skipped for that channel. The post fails with {@link BadResponseException} only if no
+ * routed channel accepted the message, so it is posted again by the next poll without repeating it in the channels
+ * which already received it.
+ *
  * Created by Rob on 8/23/14.
  * Copyright (c) ontometrics, 2014 All Rights Reserved
  */
@@ -24,103 +44,323 @@ public class SlackInstance implements ChatServer {
     public static final String BASE_URL = "https://slack.com";
     public static final String API_PATH = "api";
     public static final String CHANNEL_POST_PATH = "chat.postMessage";
-    public static final String TOKEN_KEY = "token";
     public static final String TEXT_KEY = "text";
     public static final String CHANNEL_KEY = "channel";
+    public static final String ATTACHMENTS_KEY = "attachments";
+    public static final String THREAD_TS_KEY = "thread_ts";
+
+    private static final MediaType JSON_UTF8 = MediaType.valueOf("application/json; charset=utf-8");
+    private static final int MAX_REUSED_BUFFER_CAPACITY = 64 * 1024;
+    private static final JsonFactory JSON_FACTORY = new JsonFactory();
+
+    /**
+     * Payload buffer and writer are reused by the thread which posts the message
+     */
+    private static final ThreadLocal<PayloadBuffer> PAYLOAD_BUFFER = new ThreadLocal<PayloadBuffer>() {
+        @Override
+        protected PayloadBuffer initialValue() {
+            return new PayloadBuffer();
+        }
+    };
 
     private final ChannelMapper channelMapper;
+    private final SlackMessageRenderer messageRenderer;
+    private final String authToken;
+    /**
+     * Client is thread-safe and keeps connections to Slack between the posts
+     */
+    private final Client client;
+    private final WebTarget postMessageTarget;
+    private final URL postMessageUrl;
+    /**
+     * Null if Slack users are not listed
+     */
+    private final SlackUserDirectory userDirectory;
+    /**
+     * Null if messages are not threaded
+     */
+    private final SlackThreads threads;
 
     public SlackInstance(Builder builder) {
         channelMapper = builder.channelMapper;
+        userDirectory = builder.userDirectory;
+        threads = builder.threads;
+        messageRenderer = builder.messageRenderer;
+        authToken = builder.authToken;
+        client = ClientBuilder.newClient();
+        postMessageTarget = client.target(builder.baseUrl).path(API_PATH + "/" + CHANNEL_POST_PATH);
+        try {
+            postMessageUrl = postMessageTarget.getUri().toURL();
+        } catch (MalformedURLException e) {
+            throw new IllegalArgumentException("Invalid Slack server url: " + builder.baseUrl, e);
+        }
     }
 
     public static class Builder {
 
         private ChannelMapper channelMapper;
+        private SlackMessageRenderer messageRenderer = new SlackMessageRenderer.Builder().build();
+        private String baseUrl = BASE_URL;
+        private String authToken;
+        private SlackUserDirectory userDirectory;
+        private SlackThreads threads;
 
         public Builder channelMapper(ChannelMapper channelMapper){
             this.channelMapper = channelMapper;
             return this;
         }
 
+        public Builder messageRenderer(SlackMessageRenderer messageRenderer){
+            this.messageRenderer = messageRenderer;
+            return this;
+        }
+
+        /**
+         * @param baseUrl Slack server url, {@link #BASE_URL} by default
+         * @return this, for chaining
+         */
+        public Builder baseUrl(String baseUrl){
+            this.baseUrl = baseUrl;
+            return this;
+        }
+
+        /**
+         * @param authToken token sent in Authorization header, "PROP.SLACK_AUTH_TOKEN" property by default
+         * @return this, for chaining
+         */
+        public Builder authToken(String authToken){
+            this.authToken = authToken;
+            return this;
+        }
+
+        /**
+         * @param userDirectory directory of the members of the team returned by {@link #getUsers()}
+         * @return this, for chaining
+         */
+        public Builder userDirectory(SlackUserDirectory userDirectory){
+            this.userDirectory = userDirectory;
+            return this;
+        }
+
+        /**
+         * @param threads threads of the messages about issues, every message is posted to the channel if null (default)
+         * @return this, for chaining
+         */
+        public Builder threads(SlackThreads threads){
+            this.threads = threads;
+            return this;
+        }
+
         public SlackInstance build(){
+            if (authToken == null) {
+                authToken = ConfigurationFactory.get().getString("PROP.SLACK_AUTH_TOKEN");
+            }
             return new SlackInstance(this);
         }
     }
 
     @Override
     public void postIssueCreation(Issue issue) {
-        postToChannel(channelMapper.getChannel(issue), buildNewIssueMessage(issue));
+        RuntimeException failure = null;
+        int posted = 0;
+        for (String channel : channelMapper.getChannels(issue)) {
+            try {
+                startThread(channel, issue, postToChannel(channel, buildNewIssuePayload(channel, issue)));
+                posted++;
+            } catch (RuntimeException e) {
+                log.error("Failed to post creation of issue " + issue + " to channel " + channel, e);
+                failure = failure == null ? e : failure;
+            }
+        }
+        if (failure != null && posted == 0) {
+            throw failure;
+        }
     }
 
     @Override
     public void post(IssueEditSession issueEditSession){
-        String channel = channelMapper.getChannel(issueEditSession.getIssue());
-        postToChannel(channel, buildSessionMessage(issueEditSession));
-        
+        Issue issue = issueEditSession.getIssue();
+        RuntimeException failure = null;
+        int posted = 0;
+        for (String channel : channelMapper.getChannels(issueEditSession)) {
+            try {
+                String threadTs = threads == null ? null : threads.getThread(channel, issue, Clock.instance().currentTimeMillis());
+                String ts = postToChannel(channel, buildSessionPayload(channel, issueEditSession, threadTs));
+                if (threadTs == null) {
+                    startThread(channel, issue, ts);
+                }
+                posted++;
+            } catch (RuntimeException e) {
+                log.error("Failed to post session of issue " + issue + " to channel " + channel, e);
+                failure = failure == null ? e : failure;
+            }
+        }
+        if (failure != null && posted == 0) {
+            throw failure;
+        }
     }
 
-    private void postToChannel(String channel, String message) {
-        log.info("posting message {} to channel: {}.", message, channel);
-        Client client = ClientBuilder.newClient();
+    /**
+     * @return names of the members listed by the last refresh of the user directory, empty list if there is no directory
+     */
+    @Override
+    public List<String> getUsers() {
+        return userDirectory == null ? Collections.<String>emptyList() : userDirectory.getUserNames();
+    }
 
-        WebTarget slackApi = client.target(BASE_URL).path(String.format("%s/%s", API_PATH, CHANNEL_POST_PATH))
-                .queryParam(TOKEN_KEY, ConfigurationFactory.get().getString("PROP.SLACK_AUTH_TOKEN"))
-                .queryParam(TEXT_KEY, processMessage(message))
-                .queryParam(CHANNEL_KEY, "#" + channel);
+    /**
+     * Releases connections of the client
+     */
+    public void close() {
+        client.close();
+    }
 
-        Invocation.Builder invocationBuilder = slackApi.request(MediaType.APPLICATION_JSON);
-        Response response = invocationBuilder.get();
+    /**
+     * Posts the message as JSON body of POST request, token is passed in Authorization header so it does not
+     * appear in URLs (and logs of the proxies)
+     * @param channel channel
+     * @param payload JSON payload of chat.postMessage
+     * @return ts of the posted message, null if it is not known
+     * @throws BadResponseException if the message was not posted
+     */
+    private String postToChannel(String channel, String payload) {
+        log.info("posting message {} to channel: {}.", payload, channel);
 
-        log.info("response code: {} response: {}", response.getStatus(), response.readEntity(String.class));
+        Response response = postMessageTarget.request(MediaType.APPLICATION_JSON)
+                .header(HttpHeaders.AUTHORIZATION, "Bearer " + authToken)
+                .post(Entity.entity(payload, JSON_UTF8));
+        try {
+            String responseText = response.readEntity(String.class);
+            log.info("response code: {} response: {}", response.getStatus(), responseText);
+            if (response.getStatus() != 200) {
+                String retryAfter = response.getHeaderString("Retry-After");
+                throw new BadResponseException(CHANNEL_POST_PATH + " to " + channel + " responded with "
+                        + response.getStatus() + (retryAfter == null ? "" : ", retry after " + retryAfter + " s"),
+                        postMessageUrl, response.getStatus());
+            }
+            try {
+                return readTs(responseText);
+            } catch (IOException e) {
+                throw new BadResponseException(CHANNEL_POST_PATH + " to " + channel + " failed: " + e.getMessage(),
+                        postMessageUrl, response.getStatus());
+            }
+        } finally {
+            response.close();
+        }
 
     }
 
-    private String processMessage(String message) {
-        return StringUtils.replaceChars(message, "{}", "[]");
+    private void startThread(String channel, Issue issue, String ts) {
+        if (threads != null && ts != null) {
+            threads.startThread(channel, issue, ts, Clock.instance().currentTimeMillis());
+        }
     }
 
-    protected String buildSessionMessage(IssueEditSession session) {
-        StringBuilder s = new StringBuilder(String.format("*%s*", session.getUpdater()));
-        String action = session.getComment() != null && !session.getComment().isDeleted() ? "commented on " : "updated";
-        s.append(String.format(" %s %s: ", action, MessageFormatter.getIssueLink(session.getIssue())));
-        if (session.getIssue().getTitle()!=null) {
-            s.append(MessageFormatter.getTitleWithoutIssueID(session.getIssue()));
-        } else {
-            log.debug("title null on issue: {}", session.getIssue());
+    /**
+     * @param responseText response of chat.postMessage
+     * @return "ts" of the response, null if it is not in the response
+     * @throws IOException if the response is not a JSON object or the message was not posted ("ok" is not true)
+     */
+    static String readTs(String responseText) throws IOException {
+        String ts = null;
+        String error = null;
+        boolean ok = false;
+        try (JsonParser parser = JSON_FACTORY.createParser(responseText)) {
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                throw new IOException("response is not an object");
+            }
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String name = parser.getCurrentName();
+                JsonToken token = parser.nextToken();
+                if ("ok".equals(name)) {
+                    ok = token == JsonToken.VALUE_TRUE;
+                } else if ("ts".equals(name) && token == JsonToken.VALUE_STRING) {
+                    ts = parser.getText();
+                } else if ("error".equals(name) && token == JsonToken.VALUE_STRING) {
+                    error = parser.getText();
+                } else {
+                    parser.skipChildren();
+                }
+            }
         }
-        s.append(System.lineSeparator());
-        for (IssueEdit edit : session.getChanges()){
-            s.append(edit.toString()).append(System.lineSeparator());
+        if (!ok) {
+            throw new IOException("response is not ok: " + error);
         }
-        if (session.getComment() !=null && !session.getComment().isDeleted()) {
-            s.append(session.getComment().getText()).append(System.lineSeparator());
+        return ts;
+    }
+
+    protected String buildNewIssuePayload(String channel, Issue issue) {
+        PayloadBuffer buffer = PAYLOAD_BUFFER.get().reset();
+        try {
+            beginPayload(buffer.writer, channel).name(TEXT_KEY).value(buildNewIssueMessage(issue)).endObject();
+        } catch (IOException e) {
+            //StringBuilder does not throw IOException
+            throw new IllegalStateException(e);
         }
-        for (AttachmentEvent attachment : session.getAttachments()){
-            s.append("attached ").append(MessageFormatter.getNamedLink(attachment.getFileUrl(), attachment.getName()))
-                    .append(System.lineSeparator());
+        return buffer.toString();
+    }
+
+    protected String buildSessionPayload(String channel, IssueEditSession session) {
+        return buildSessionPayload(channel, session, null);
+    }
+
+    /**
+     * @param threadTs ts of the message which started the thread the session is replied to, null to post it to the
+     *                 channel
+     */
+    protected String buildSessionPayload(String channel, IssueEditSession session, String threadTs) {
+        PayloadBuffer buffer = PAYLOAD_BUFFER.get().reset();
+        try {
+            JsonWriter writer = beginPayload(buffer.writer, channel);
+            if (threadTs != null) {
+                writer.name(THREAD_TS_KEY).value(threadTs);
+            }
+            writer.name(TEXT_KEY).value(messageRenderer.renderSessionHeader(session));
+            if (messageRenderer.hasSessionDetails(session)) {
+                writer.name(ATTACHMENTS_KEY);
+                messageRenderer.writeSessionAttachments(writer, session);
+            }
+            writer.endObject();
+        } catch (IOException e) {
+            //StringBuilder does not throw IOException
+            throw new IllegalStateException(e);
         }
+        return buffer.toString();
+    }
 
-        return s.toString();
+    private static JsonWriter beginPayload(JsonWriter writer, String channel) throws IOException {
+        return writer.beginObject().name(CHANNEL_KEY).value("#" + channel);
+    }
+
+    protected String buildSessionMessage(IssueEditSession session) {
+        if (session.getIssue().getTitle() == null) {
+            log.debug("title null on issue: {}", session.getIssue());
+        }
+        return messageRenderer.renderSessionText(session);
     }
 
     public String buildNewIssueMessage(Issue newIssue){
-        return String.format("*%s* created %s: %s%s%s", newIssue.getCreator(), MessageFormatter.getIssueLink(newIssue), MessageFormatter.getTitleWithoutIssueID(newIssue), System.lineSeparator(), newIssue.getDescription());
+        return messageRenderer.renderNewIssueText(newIssue);
     }
 
-    private static class MessageFormatter {
-        static String getIssueLink(Issue issue){
-            return String.format("<%s|%s-%d>", issue.getLink(), issue.getPrefix(), issue.getId());
-        }
+    private static class PayloadBuffer {
+        private StringBuilder builder = new StringBuilder(1024);
+        private final JsonWriter writer = new JsonWriter(builder);
 
-        static String getNamedLink(String url, String text){
-            return String.format("<%s|%s>", url, text);
+        private PayloadBuffer reset() {
+            if (builder.capacity() > MAX_REUSED_BUFFER_CAPACITY) {
+                //do not keep the memory taken by one huge message
+                builder = new StringBuilder(1024);
+            }
+            builder.setLength(0);
+            writer.reset(builder);
+            return this;
         }
 
-        static String getTitleWithoutIssueID(Issue issue){
-            return issue.getTitle().substring(issue.getTitle().indexOf(":") + 2);
+        @Override
+        public String toString() {
+            return builder.toString();
         }
     }
 
 }
-
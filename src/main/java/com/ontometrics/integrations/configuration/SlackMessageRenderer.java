@@ -0,0 +1,494 @@
+package com.ontometrics.integrations.configuration;
+
+import com.ontometrics.integrations.events.*;
+import com.ontometrics.util.JsonWriter;
+
+import java.io.IOException;
+import java.net.URL;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * <p>
+ * Renders Slack messages about {@link com.ontometrics.integrations.events.Issue} creation and
+ * {@link com.ontometrics.integrations.events.IssueEditSession}s.
+ * </p>
+ * <p>
+ * Text of the message is rendered from {@link MessageTemplate}s. Details of the edit session (changed fields, comment,
+ * attachments) are written as Slack message attachment (JSON) with {@link #writeSessionAttachments(JsonWriter, IssueEditSession)}.
+ * Issue description and comment text are cut to the configured length and followed by the "see more" link to the issue,
+ * so size of the message does not depend on the size of the ticket. References to other issues like "HA-123" in
+ * descriptions, comments and field values are posted as links by {@link IssueLinkifier}. YouTrack wiki markup of
+ * descriptions and comments is converted to Slack formatting by {@link WikiMarkupConverter}. Creator, updater and
+ * assignee are mentioned if they are found in {@link SlackUserDirectory}.
+ * </p>
+ */
+public class SlackMessageRenderer {
+
+    public static final String DEFAULT_NEW_ISSUE_TEMPLATE = "*{creator}* created {issueLink}: {title}{newline}{description}";
+    public static final String DEFAULT_SESSION_TEMPLATE = "*{updater}* {action} {issueLink}: {title}{newline}";
+    public static final int DEFAULT_MAX_DESCRIPTION_LENGTH = 1000;
+    public static final int DEFAULT_MAX_COMMENT_LENGTH = 2000;
+    public static final String ASSIGNEE_FIELD = "Assignee";
+
+    private static final String ELLIPSIS = "\u2026";
+    private static final int MAX_REUSED_BUILDER_CAPACITY = 64 * 1024;
+
+    /**
+     * Builders are reused by the thread which renders the message
+     */
+    private static final ThreadLocal<StringBuilder> MESSAGE_BUILDER = new ThreadLocal<StringBuilder>() {
+        @Override
+        protected StringBuilder initialValue() {
+            return new StringBuilder(512);
+        }
+    };
+
+    private final MessageTemplate<Issue> newIssueTemplate;
+    private final MessageTemplate<IssueEditSession> sessionTemplate;
+    private final int maxDescriptionLength;
+    private final int maxCommentLength;
+    /**
+     * Null if references are not linked
+     */
+    private final IssueLinkifier linkifier;
+    private final boolean convertWikiMarkup;
+    /**
+     * Null if users are not mentioned
+     */
+    private final SlackUserDirectory userDirectory;
+
+    public SlackMessageRenderer(Builder builder) {
+        maxDescriptionLength = builder.maxDescriptionLength;
+        maxCommentLength = builder.maxCommentLength;
+        linkifier = builder.linkIssueReferences ? new IssueLinkifier(builder.issuePrefixes) : null;
+        convertWikiMarkup = builder.convertWikiMarkup;
+        userDirectory = builder.userDirectory;
+        newIssueTemplate = MessageTemplate.compile(builder.newIssueTemplate, createIssuePlaceholders());
+        sessionTemplate = MessageTemplate.compile(builder.sessionTemplate, createSessionPlaceholders());
+    }
+
+    public static class Builder {
+
+        private String newIssueTemplate = DEFAULT_NEW_ISSUE_TEMPLATE;
+        private String sessionTemplate = DEFAULT_SESSION_TEMPLATE;
+        private int maxDescriptionLength = DEFAULT_MAX_DESCRIPTION_LENGTH;
+        private int maxCommentLength = DEFAULT_MAX_COMMENT_LENGTH;
+        private boolean linkIssueReferences = true;
+        private Collection<String> issuePrefixes = Collections.emptySet();
+        private boolean convertWikiMarkup = true;
+        private SlackUserDirectory userDirectory;
+
+        /**
+         * @param newIssueTemplate layout of the issue creation message, placeholders: {creator}, {issueLink},
+         *                         {title}, {description}, {newline}
+         * @return this, for chaining
+         */
+        public Builder newIssueTemplate(String newIssueTemplate){
+            this.newIssueTemplate = newIssueTemplate;
+            return this;
+        }
+
+        /**
+         * @param sessionTemplate layout of the first line(s) of edit session message, placeholders: {updater},
+         *                        {action}, {issueLink}, {title}, {description}, {newline}
+         * @return this, for chaining
+         */
+        public Builder sessionTemplate(String sessionTemplate){
+            this.sessionTemplate = sessionTemplate;
+            return this;
+        }
+
+        /**
+         * @param maxDescriptionLength maximum number of characters of issue description, 0 or less for no limit
+         * @return this, for chaining
+         */
+        public Builder maxDescriptionLength(int maxDescriptionLength){
+            this.maxDescriptionLength = maxDescriptionLength;
+            return this;
+        }
+
+        /**
+         * @param maxCommentLength maximum number of characters of comment text, 0 or less for no limit
+         * @return this, for chaining
+         */
+        public Builder maxCommentLength(int maxCommentLength){
+            this.maxCommentLength = maxCommentLength;
+            return this;
+        }
+
+        /**
+         * @param linkIssueReferences true (default) to post references to issues as links
+         * @return this, for chaining
+         */
+        public Builder linkIssueReferences(boolean linkIssueReferences){
+            this.linkIssueReferences = linkIssueReferences;
+            return this;
+        }
+
+        /**
+         * @param issuePrefixes prefixes of the projects whose issue references are linked, prefixes of the rendered
+         *                      issues are added when they are rendered
+         * @return this, for chaining
+         */
+        public Builder issuePrefixes(Collection<String> issuePrefixes){
+            this.issuePrefixes = issuePrefixes;
+            return this;
+        }
+
+        /**
+         * @param convertWikiMarkup true (default) to convert wiki markup of descriptions and comments to Slack
+         *                          formatting
+         * @return this, for chaining
+         */
+        public Builder convertWikiMarkup(boolean convertWikiMarkup){
+            this.convertWikiMarkup = convertWikiMarkup;
+            return this;
+        }
+
+        /**
+         * @param userDirectory directory of Slack users, creator, updater and assignee are mentioned if they are
+         *                      found in it; names are posted as is if it is null (default)
+         * @return this, for chaining
+         */
+        public Builder userDirectory(SlackUserDirectory userDirectory){
+            this.userDirectory = userDirectory;
+            return this;
+        }
+
+        public SlackMessageRenderer build(){
+            return new SlackMessageRenderer(this);
+        }
+    }
+
+    /**
+     * @param newIssue created issue
+     * @return text of the message about issue creation
+     */
+    public String renderNewIssueText(Issue newIssue) {
+        addPrefix(newIssue);
+        return newIssueTemplate.render(newIssue, messageBuilder()).toString();
+    }
+
+    /**
+     * @param session edit session
+     * @return first line(s) of the message about the edit session
+     */
+    public String renderSessionHeader(IssueEditSession session) {
+        addPrefix(session.getIssue());
+        return sessionTemplate.render(session, messageBuilder()).toString();
+    }
+
+    /**
+     * @param session edit session
+     * @return whole message about the edit session as plain text, used where attachments can not be displayed
+     */
+    public String renderSessionText(IssueEditSession session) {
+        addPrefix(session.getIssue());
+        StringBuilder s = sessionTemplate.render(session, messageBuilder());
+        for (IssueEdit edit : session.getChanges()){
+            MessageTemplate.appendEscaped(s, edit.toString()).append(System.lineSeparator());
+        }
+        if (hasComment(session)) {
+            appendTruncated(s, session.getComment().getText(), maxCommentLength, session.getIssue().getLink())
+                    .append(System.lineSeparator());
+        }
+        for (AttachmentEvent attachment : session.getAttachments()){
+            s.append("attached ");
+            appendNamedLink(s, attachment.getFileUrl(), attachment.getName()).append(System.lineSeparator());
+        }
+        return s.toString();
+    }
+
+    /**
+     * Writes JSON array of Slack message attachments describing the session details: changed fields, comment and
+     * attached files
+     * @param writer writer
+     * @param session edit session
+     * @return false if session has no details and nothing has been written
+     * @throws IOException if writer failed
+     */
+    public boolean writeSessionAttachments(JsonWriter writer, IssueEditSession session) throws IOException {
+        if (!hasSessionDetails(session)) {
+            return false;
+        }
+        boolean hasComment = hasComment(session);
+        String issueBaseUrl = getIssueBaseUrl(session.getIssue());
+        writer.beginArray().beginObject();
+        writer.name("fallback").value(renderSessionText(session));
+        if (hasComment || !session.getAttachments().isEmpty()) {
+            writer.name("text").beginString();
+            if (hasComment) {
+                writeTruncated(writer, session.getComment().getText(), maxCommentLength, session.getIssue().getLink());
+            }
+            boolean firstLine = !hasComment;
+            for (AttachmentEvent attachment : session.getAttachments()) {
+                if (!firstLine) {
+                    writer.stringPart(System.lineSeparator());
+                }
+                firstLine = false;
+                writer.stringPart("attached ")
+                        .stringPart(appendNamedLink(messageBuilder(), attachment.getFileUrl(), attachment.getName()));
+            }
+            writer.endString();
+        }
+        if (!session.getChanges().isEmpty()) {
+            writer.name("fields").beginArray();
+            for (IssueEdit edit : session.getChanges()) {
+                writer.beginObject().name("title").value(edit.getField()).name("value").beginString();
+                boolean userField = ASSIGNEE_FIELD.equalsIgnoreCase(edit.getField());
+                if (edit.getPriorValue() != null && edit.getPriorValue().length() > 0) {
+                    writeValue(writer, edit.getPriorValue(), userField, issueBaseUrl).stringPart(" -> ");
+                }
+                writeValue(writer, edit.getCurrentValue(), userField, issueBaseUrl).endString().name("short").value(true).endObject();
+            }
+            writer.endArray();
+        }
+        writer.name("mrkdwn_in").beginArray().value("text").value("fields").endArray();
+        writer.endObject().endArray();
+        return true;
+    }
+
+    /**
+     * @param session edit session
+     * @return true if session has changed fields, comment or attachments to be written by
+     * {@link #writeSessionAttachments(JsonWriter, IssueEditSession)}
+     */
+    public boolean hasSessionDetails(IssueEditSession session) {
+        return !session.getChanges().isEmpty() || hasComment(session) || !session.getAttachments().isEmpty();
+    }
+
+    private static boolean hasComment(IssueEditSession session) {
+        return session.getComment() != null && !session.getComment().isDeleted();
+    }
+
+    /**
+     * @param text text
+     * @param maxLength maximum length, 0 or less for no limit
+     * @return number of leading characters of the text which should be displayed
+     */
+    static int truncatedLength(String text, int maxLength) {
+        if (maxLength <= 0 || text.length() <= maxLength) {
+            return text.length();
+        }
+        //do not split surrogate pair
+        return Character.isHighSurrogate(text.charAt(maxLength - 1)) ? maxLength - 1 : maxLength;
+    }
+
+    private StringBuilder appendTruncated(StringBuilder builder, String text, int maxLength, URL link) {
+        if (text == null) {
+            return builder;
+        }
+        int length = truncatedLength(text, maxLength);
+        appendMarkup(builder, text, length, new PlainText(link, true));
+        if (length < text.length()) {
+            builder.append(ELLIPSIS).append(' ');
+            appendNamedLink(builder, link == null ? null : link.toExternalForm(), "see more");
+        }
+        return builder;
+    }
+
+    private void writeTruncated(JsonWriter writer, String text, int maxLength, URL link) throws IOException {
+        if (text == null) {
+            return;
+        }
+        int length = truncatedLength(text, maxLength);
+        if (convertWikiMarkup) {
+            writer.stringPart(appendMarkup(messageBuilder(), text, length, new PlainText(link, false)));
+        } else {
+            writeLinked(writer, text, 0, length, IssueLinkifier.getIssueBaseUrl(link == null ? null : link.toExternalForm()));
+        }
+        if (length < text.length()) {
+            writer.stringPart(ELLIPSIS).stringPart(" ")
+                    .stringPart(appendNamedLink(messageBuilder(), link == null ? null : link.toExternalForm(), "see more"));
+        }
+    }
+
+    private StringBuilder appendMarkup(StringBuilder builder, String text, int length, PlainText plainText) {
+        if (convertWikiMarkup) {
+            return WikiMarkupConverter.convert(builder, text, 0, length, plainText);
+        }
+        plainText.append(builder, text, 0, length);
+        return builder;
+    }
+
+    private JsonWriter writeValue(JsonWriter writer, String value, boolean userField, String issueBaseUrl)
+            throws IOException {
+        String userId = userField && userDirectory != null ? userDirectory.getUserId(value) : null;
+        if (userId != null) {
+            return writer.stringPart("<@").stringPart(userId).stringPart(">");
+        }
+        return writeLinked(writer, value, issueBaseUrl);
+    }
+
+    /**
+     * Appends mention of the user if the user is found in the directory, the name otherwise
+     */
+    private StringBuilder appendUser(StringBuilder builder, String name) {
+        String userId = userDirectory == null ? null : userDirectory.getUserId(name);
+        if (userId != null) {
+            return builder.append("<@").append(userId).append('>');
+        }
+        return MessageTemplate.appendEscaped(builder, name);
+    }
+
+    private JsonWriter writeLinked(JsonWriter writer, String text, String issueBaseUrl) throws IOException {
+        return text == null ? writer : writeLinked(writer, text, 0, text.length(), issueBaseUrl);
+    }
+
+    private JsonWriter writeLinked(JsonWriter writer, String text, int start, int end, String issueBaseUrl)
+            throws IOException {
+        if (linkifier != null && issueBaseUrl != null) {
+            int[] referenceEnd = new int[1];
+            int reference;
+            while ((reference = linkifier.find(text, start, end, referenceEnd)) >= 0) {
+                writer.stringPart(text, start, reference)
+                        .stringPart(IssueLinkifier.appendLink(messageBuilder(), text, reference, referenceEnd[0], issueBaseUrl));
+                start = referenceEnd[0];
+            }
+        }
+        return writer.stringPart(text, start, end);
+    }
+
+    private void addPrefix(Issue issue) {
+        if (linkifier != null) {
+            linkifier.addPrefix(issue.getPrefix());
+        }
+    }
+
+    private static String getIssueBaseUrl(Issue issue) {
+        return IssueLinkifier.getIssueBaseUrl(issue.getLink() == null ? null : issue.getLink().toExternalForm());
+    }
+
+    /**
+     * Appends text which is not markup with references to issues linked
+     */
+    private class PlainText implements WikiMarkupConverter.TextAppender {
+        private final String issueBaseUrl;
+        /**
+         * False if text is written to JSON attachment, which is not escaped
+         */
+        private final boolean escape;
+
+        private PlainText(URL link, boolean escape) {
+            this.issueBaseUrl = IssueLinkifier.getIssueBaseUrl(link == null ? null : link.toExternalForm());
+            this.escape = escape;
+        }
+
+        @Override
+        public void append(StringBuilder builder, CharSequence text, int start, int end) {
+            if (linkifier != null && issueBaseUrl != null) {
+                int[] referenceEnd = new int[1];
+                int reference;
+                while ((reference = linkifier.find(text, start, end, referenceEnd)) >= 0) {
+                    appendText(builder, text, start, reference);
+                    IssueLinkifier.appendLink(builder, text, reference, referenceEnd[0], issueBaseUrl);
+                    start = referenceEnd[0];
+                }
+            }
+            appendText(builder, text, start, end);
+        }
+
+        private void appendText(StringBuilder builder, CharSequence text, int start, int end) {
+            if (escape) {
+                MessageTemplate.appendEscaped(builder, text, start, end);
+            } else {
+                builder.append(text, start, end);
+            }
+        }
+    }
+
+    private static StringBuilder messageBuilder() {
+        StringBuilder builder = MESSAGE_BUILDER.get();
+        if (builder.capacity() > MAX_REUSED_BUILDER_CAPACITY) {
+            //do not keep the memory taken by one huge message
+            MESSAGE_BUILDER.remove();
+            builder = MESSAGE_BUILDER.get();
+        }
+        builder.setLength(0);
+        return builder;
+    }
+
+    private Map<String, MessageTemplate.Placeholder<Issue>> createIssuePlaceholders() {
+        Map<String, MessageTemplate.Placeholder<Issue>> placeholders = new HashMap<>();
+        placeholders.put("creator", new MessageTemplate.Placeholder<Issue>() {
+            @Override
+            public void appendTo(StringBuilder builder, Issue issue) {
+                appendUser(builder, issue.getCreator());
+            }
+        });
+        placeholders.put("issueLink", new MessageTemplate.Placeholder<Issue>() {
+            @Override
+            public void appendTo(StringBuilder builder, Issue issue) {
+                appendIssueLink(builder, issue);
+            }
+        });
+        placeholders.put("title", new MessageTemplate.Placeholder<Issue>() {
+            @Override
+            public void appendTo(StringBuilder builder, Issue issue) {
+                appendTitleWithoutIssueID(builder, issue);
+            }
+        });
+        placeholders.put("description", new MessageTemplate.Placeholder<Issue>() {
+            @Override
+            public void appendTo(StringBuilder builder, Issue issue) {
+                appendTruncated(builder, issue.getDescription(), maxDescriptionLength, issue.getLink());
+            }
+        });
+        placeholders.put("newline", new MessageTemplate.Placeholder<Issue>() {
+            @Override
+            public void appendTo(StringBuilder builder, Issue issue) {
+                builder.append(System.lineSeparator());
+            }
+        });
+        return placeholders;
+    }
+
+    private Map<String, MessageTemplate.Placeholder<IssueEditSession>> createSessionPlaceholders() {
+        Map<String, MessageTemplate.Placeholder<IssueEditSession>> placeholders = new HashMap<>();
+        placeholders.put("updater", new MessageTemplate.Placeholder<IssueEditSession>() {
+            @Override
+            public void appendTo(StringBuilder builder, IssueEditSession session) {
+                appendUser(builder, session.getUpdater());
+            }
+        });
+        placeholders.put("action", new MessageTemplate.Placeholder<IssueEditSession>() {
+            @Override
+            public void appendTo(StringBuilder builder, IssueEditSession session) {
+                builder.append(hasComment(session) ? "commented on" : "updated");
+            }
+        });
+        for (final Map.Entry<String, MessageTemplate.Placeholder<Issue>> issuePlaceholder : createIssuePlaceholders().entrySet()) {
+            placeholders.put(issuePlaceholder.getKey(), new MessageTemplate.Placeholder<IssueEditSession>() {
+                @Override
+                public void appendTo(StringBuilder builder, IssueEditSession session) {
+                    issuePlaceholder.getValue().appendTo(builder, session.getIssue());
+                }
+            });
+        }
+        return placeholders;
+    }
+
+    static StringBuilder appendIssueLink(StringBuilder builder, Issue issue){
+        builder.append('<').append(issue.getLink()).append('|');
+        MessageTemplate.appendEscaped(builder, issue.getPrefix());
+        return builder.append('-').append(issue.getId()).append('>');
+    }
+
+    static StringBuilder appendNamedLink(StringBuilder builder, String url, String text){
+        builder.append('<');
+        MessageTemplate.appendEscaped(builder, url).append('|');
+        return MessageTemplate.appendEscaped(builder, text).append('>');
+    }
+
+    static StringBuilder appendTitleWithoutIssueID(StringBuilder builder, Issue issue){
+        String title = issue.getTitle();
+        if (title == null) {
+            return builder;
+        }
+        return MessageTemplate.appendEscaped(builder, title, Math.min(title.indexOf(":") + 2, title.length()), title.length());
+    }
+
+}
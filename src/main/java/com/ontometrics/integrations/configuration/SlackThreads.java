@@ -0,0 +1,188 @@
+package com.ontometrics.integrations.configuration;
+
+import com.ontometrics.integrations.events.Issue;
+import org.slf4j.Logger;
+
+import java.util.*;
+
+import static org.slf4j.LoggerFactory.getLogger;
+
+/**
+ * <p>
+ * Threads of Slack messages about issues: the first message about the issue in the channel starts the thread, later
+ * sessions of the issue posted within the window are replies to it, so busy issues do not flood the channel.
+ * </p>
+ * <p>
+ * Timestamp (ts) of the first message and the time it was posted are kept per channel and issue in the map, which is
+ * bounded: when it is full, the oldest thread is forgotten and the next message about that issue starts a new one.
+ * The map is persisted by {@link Store}, so replies continue the threads after restart: the started thread and the
+ * threads it pushed out are saved by one call.
+ * </p>
+ */
+public class SlackThreads {
+
+    public static final int DEFAULT_MAX_THREADS = 5000;
+    public static final long DEFAULT_WINDOW_MINUTES = 24 * 60;
+
+    private Logger log = getLogger(SlackThreads.class);
+
+    /**
+     * Persistent storage of the threads, values are "ts startedMillis"
+     */
+    public interface Store {
+        Map<String, String> load();
+
+        /**
+         * @param startedThreads threads to save
+         * @param removedKeys keys of the forgotten threads to remove
+         */
+        void save(Map<String, String> startedThreads, Collection<String> removedKeys);
+    }
+
+    private final long windowMillis;
+    private final int maxThreads;
+    private final Store store;
+    /**
+     * Threads by "channel\nPREFIX-123" in the order they were started
+     */
+    private final LinkedHashMap<String, ThreadStart> threads = new LinkedHashMap<>();
+
+    public SlackThreads(Builder builder) {
+        windowMillis = builder.windowMillis;
+        maxThreads = builder.maxThreads;
+        store = builder.store;
+        if (store != null) {
+            load(store.load());
+        }
+    }
+
+    public static class Builder {
+
+        private long windowMillis = DEFAULT_WINDOW_MINUTES * 60 * 1000;
+        private int maxThreads = DEFAULT_MAX_THREADS;
+        private Store store;
+
+        /**
+         * @param windowMillis sessions posted later than this after the first message start a new thread
+         * @return this, for chaining
+         */
+        public Builder windowMillis(long windowMillis){
+            this.windowMillis = windowMillis;
+            return this;
+        }
+
+        /**
+         * @param maxThreads maximum number of threads remembered
+         * @return this, for chaining
+         */
+        public Builder maxThreads(int maxThreads){
+            this.maxThreads = maxThreads;
+            return this;
+        }
+
+        /**
+         * @param store storage of the threads, not persisted if null
+         * @return this, for chaining
+         */
+        public Builder store(Store store){
+            this.store = store;
+            return this;
+        }
+
+        public SlackThreads build(){
+            return new SlackThreads(this);
+        }
+    }
+
+    /**
+     * @param channel channel
+     * @param issue issue
+     * @param now current time in milliseconds
+     * @return ts of the message which started the thread of the issue in the channel within the window, null if there
+     * is no such thread
+     */
+    public synchronized String getThread(String channel, Issue issue, long now) {
+        ThreadStart thread = threads.get(key(channel, issue));
+        return thread == null || now - thread.started > windowMillis ? null : thread.ts;
+    }
+
+    /**
+     * Remembers the message as the start of the thread of the issue in the channel, forgetting the oldest thread if
+     * there are too many
+     * @param channel channel
+     * @param issue issue
+     * @param ts timestamp of the posted message
+     * @param now time the message was posted in milliseconds
+     */
+    public synchronized void startThread(String channel, Issue issue, String ts, long now) {
+        String key = key(channel, issue);
+        //re-inserted, so the thread becomes the newest one
+        threads.remove(key);
+        threads.put(key, new ThreadStart(ts, now));
+        List<String> removed = removeOldest();
+        if (store != null) {
+            store.save(Collections.singletonMap(key, ts + ' ' + now), removed);
+        }
+    }
+
+    public synchronized int size() {
+        return threads.size();
+    }
+
+    private void load(Map<String, String> stored) {
+        List<Map.Entry<String, ThreadStart>> loaded = new ArrayList<>(stored.size());
+        for (Map.Entry<String, String> entry : stored.entrySet()) {
+            int space = entry.getValue().indexOf(' ');
+            try {
+                loaded.add(new AbstractMap.SimpleEntry<>(entry.getKey(), new ThreadStart(
+                        entry.getValue().substring(0, space), Long.parseLong(entry.getValue().substring(space + 1)))));
+            } catch (RuntimeException e) {
+                log.warn("Skipping thread {} with unrecognized value {}", entry.getKey(), entry.getValue());
+            }
+        }
+        //stored threads are ordered by the time they were started
+        Collections.sort(loaded, new Comparator<Map.Entry<String, ThreadStart>>() {
+            @Override
+            public int compare(Map.Entry<String, ThreadStart> o1, Map.Entry<String, ThreadStart> o2) {
+                return Long.compare(o1.getValue().started, o2.getValue().started);
+            }
+        });
+        for (Map.Entry<String, ThreadStart> entry : loaded) {
+            threads.put(entry.getKey(), entry.getValue());
+        }
+        List<String> removed = removeOldest();
+        if (!removed.isEmpty()) {
+            store.save(Collections.<String, String>emptyMap(), removed);
+        }
+    }
+
+    /**
+     * @return keys of the forgotten threads
+     */
+    private List<String> removeOldest() {
+        if (threads.size() <= maxThreads) {
+            return Collections.emptyList();
+        }
+        List<String> removed = new ArrayList<>(threads.size() - maxThreads);
+        Iterator<Map.Entry<String, ThreadStart>> iterator = threads.entrySet().iterator();
+        while (threads.size() > maxThreads) {
+            removed.add(iterator.next().getKey());
+            iterator.remove();
+        }
+        return removed;
+    }
+
+    private static String key(String channel, Issue issue) {
+        return channel + '\n' + issue.getPrefix() + '-' + issue.getId();
+    }
+
+    private static class ThreadStart {
+        private final String ts;
+        private final long started;
+
+        private ThreadStart(String ts, long started) {
+            this.ts = ts;
+            this.started = started;
+        }
+    }
+}
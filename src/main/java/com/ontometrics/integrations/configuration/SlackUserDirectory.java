@@ -0,0 +1,377 @@
+package com.ontometrics.integrations.configuration;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import org.slf4j.Logger;
+
+import javax.ws.rs.client.Client;
+import javax.ws.rs.client.ClientBuilder;
+import javax.ws.rs.client.WebTarget;
+import javax.ws.rs.core.HttpHeaders;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Response;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static org.slf4j.LoggerFactory.getLogger;
+
+/**
+ * <p>
+ * Directory of the members of Slack team, so YouTrack users can be mentioned in the messages.
+ * </p>
+ * <p>
+ * Members are listed with users.list (page by page) by {@link #refresh()}, which is called periodically in
+ * background, and are indexed by lower-cased Slack name, display name, real name and the name of the email. Names
+ * (logins or full names) of YouTrack users are resolved with a single hash lookup: first in the map of already
+ * resolved logins, which is persisted by {@link Store} so users are mentioned right after restart, then in the index.
+ * No Slack API calls are made while the messages are rendered.
+ * </p>
+ */
+public class SlackUserDirectory {
+
+    public static final String USERS_LIST_PATH = "users.list";
+    public static final int DEFAULT_PAGE_SIZE = 200;
+
+    private static final JsonFactory JSON_FACTORY = new JsonFactory();
+
+    private Logger log = getLogger(SlackUserDirectory.class);
+
+    /**
+     * Persistent storage of the map of YouTrack logins to Slack user IDs
+     */
+    public interface Store {
+        Map<String, String> load();
+
+        void save(Map<String, String> loginIds);
+    }
+
+    private final Client client;
+    private final WebTarget usersListTarget;
+    private final String authToken;
+    private final int pageSize;
+    private final Store store;
+    /**
+     * YouTrack login to Slack name or ID, configured explicitly
+     */
+    private final Map<String, String> mappings;
+
+    /**
+     * Lower-cased YouTrack login or name to Slack ID, persisted by the store
+     */
+    private final Map<String, String> loginIds;
+    private volatile boolean loginIdsChanged;
+    /**
+     * Lower-cased Slack names to Slack ID, replaced by every refresh
+     */
+    private volatile Map<String, String> nameIds = Collections.emptyMap();
+    private volatile List<String> userNames = Collections.emptyList();
+
+    public SlackUserDirectory(Builder builder) {
+        authToken = builder.authToken;
+        pageSize = builder.pageSize;
+        store = builder.store;
+        mappings = new HashMap<>(builder.mappings);
+        client = ClientBuilder.newClient();
+        usersListTarget = client.target(builder.baseUrl).path(SlackInstance.API_PATH + "/" + USERS_LIST_PATH);
+        loginIds = new ConcurrentHashMap<>(store == null ? Collections.<String, String>emptyMap() : store.load());
+    }
+
+    public static class Builder {
+
+        private String baseUrl = SlackInstance.BASE_URL;
+        private String authToken;
+        private int pageSize = DEFAULT_PAGE_SIZE;
+        private Store store;
+        private final Map<String, String> mappings = new HashMap<>();
+
+        /**
+         * @param baseUrl Slack server url, {@link SlackInstance#BASE_URL} by default
+         * @return this, for chaining
+         */
+        public Builder baseUrl(String baseUrl){
+            this.baseUrl = baseUrl;
+            return this;
+        }
+
+        /**
+         * @param authToken token with users:read scope, "PROP.SLACK_AUTH_TOKEN" property by default
+         * @return this, for chaining
+         */
+        public Builder authToken(String authToken){
+            this.authToken = authToken;
+            return this;
+        }
+
+        /**
+         * @param pageSize number of members requested by one users.list call
+         * @return this, for chaining
+         */
+        public Builder pageSize(int pageSize){
+            this.pageSize = pageSize;
+            return this;
+        }
+
+        /**
+         * @param store storage of resolved logins, not persisted if null
+         * @return this, for chaining
+         */
+        public Builder store(Store store){
+            this.store = store;
+            return this;
+        }
+
+        /**
+         * @param login YouTrack login or full name
+         * @param slackUser Slack name or ID of the user, used when the names differ
+         * @return this, for chaining
+         */
+        public Builder addMapping(String login, String slackUser){
+            mappings.put(key(login), slackUser.trim());
+            return this;
+        }
+
+        public SlackUserDirectory build(){
+            if (authToken == null) {
+                authToken = ConfigurationFactory.get().getString("PROP.SLACK_AUTH_TOKEN");
+            }
+            return new SlackUserDirectory(this);
+        }
+    }
+
+    /**
+     * @param login YouTrack login or full name of the user
+     * @return Slack ID of the user or null if the user is not known
+     */
+    public String getUserId(String login) {
+        if (login == null) {
+            return null;
+        }
+        String key = key(login);
+        String id = loginIds.get(key);
+        if (id == null) {
+            id = nameIds.get(key);
+            if (id != null) {
+                loginIds.put(key, id);
+                loginIdsChanged = true;
+            }
+        }
+        return id;
+    }
+
+    /**
+     * @return Slack names of the active members listed by the last refresh
+     */
+    public List<String> getUserNames() {
+        return userNames;
+    }
+
+    /**
+     * Lists all members of the team, replaces the index of the names and saves resolved logins. The directory is not
+     * changed if listing failed.
+     * @return true if the members were listed
+     */
+    public synchronized boolean refresh() {
+        Map<String, String> nameIds = new HashMap<>(this.nameIds.size() * 2 + 16);
+        Set<String> ids = new HashSet<>();
+        List<String> userNames = new ArrayList<>();
+        String cursor = null;
+        int pages = 0;
+        try {
+            do {
+                cursor = readPage(cursor, nameIds, ids, userNames);
+                pages++;
+            } while (cursor != null && !cursor.isEmpty());
+        } catch (IOException | RuntimeException e) {
+            log.error("Failed to list Slack users, page " + (pages + 1), e);
+            return false;
+        }
+        for (Map.Entry<String, String> mapping : mappings.entrySet()) {
+            String slackUser = mapping.getValue();
+            String id = ids.contains(slackUser) ? slackUser : nameIds.get(key(slackUser));
+            if (id != null) {
+                loginIds.put(mapping.getKey(), id);
+                loginIdsChanged = true;
+            } else {
+                log.warn("Slack user {} mapped to {} is not found", slackUser, mapping.getKey());
+            }
+        }
+        //users removed from the team are not mentioned anymore
+        for (Iterator<String> iterator = loginIds.values().iterator(); iterator.hasNext(); ) {
+            if (!ids.contains(iterator.next())) {
+                iterator.remove();
+                loginIdsChanged = true;
+            }
+        }
+        this.nameIds = nameIds;
+        this.userNames = Collections.unmodifiableList(userNames);
+        log.info("Listed {} Slack users in {} pages", userNames.size(), pages);
+        save();
+        return true;
+    }
+
+    /**
+     * Saves the logins resolved since the last save
+     */
+    public synchronized void save() {
+        if (store != null && loginIdsChanged) {
+            loginIdsChanged = false;
+            store.save(new HashMap<>(loginIds));
+        }
+    }
+
+    /**
+     * Releases connections of the client
+     */
+    public void close() {
+        client.close();
+    }
+
+    /**
+     * Reads one page of users.list
+     * @return cursor of the next page, null or empty if it was the last page
+     */
+    private String readPage(String cursor, Map<String, String> nameIds, Set<String> ids, List<String> userNames)
+            throws IOException {
+        WebTarget target = usersListTarget.queryParam("limit", pageSize);
+        if (cursor != null) {
+            target = target.queryParam("cursor", cursor);
+        }
+        Response response = target.request(MediaType.APPLICATION_JSON)
+                .header(HttpHeaders.AUTHORIZATION, "Bearer " + authToken)
+                .get();
+        try {
+            if (response.getStatus() != 200) {
+                throw new IOException("users.list responded with " + response.getStatus()
+                        + ", retry after: " + response.getHeaderString("Retry-After"));
+            }
+            try (InputStream is = response.readEntity(InputStream.class);
+                 JsonParser parser = JSON_FACTORY.createParser(is)) {
+                return parsePage(parser, nameIds, ids, userNames);
+            }
+        } finally {
+            response.close();
+        }
+    }
+
+    static String parsePage(JsonParser parser, Map<String, String> nameIds, Set<String> ids, List<String> userNames)
+            throws IOException {
+        if (parser.nextToken() != JsonToken.START_OBJECT) {
+            throw new IOException("users.list response is not an object");
+        }
+        boolean ok = false;
+        String error = null;
+        String nextCursor = null;
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String name = parser.getCurrentName();
+            JsonToken token = parser.nextToken();
+            switch (name) {
+                case "ok":
+                    ok = token == JsonToken.VALUE_TRUE;
+                    break;
+                case "error":
+                    error = text(parser, token);
+                    break;
+                case "members":
+                    if (token == JsonToken.START_ARRAY) {
+                        while (parser.nextToken() == JsonToken.START_OBJECT) {
+                            parseMember(parser, nameIds, ids, userNames);
+                        }
+                    }
+                    break;
+                case "response_metadata":
+                    if (token == JsonToken.START_OBJECT) {
+                        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                            boolean cursorField = "next_cursor".equals(parser.getCurrentName());
+                            JsonToken cursorToken = parser.nextToken();
+                            if (cursorField) {
+                                nextCursor = text(parser, cursorToken);
+                            } else {
+                                parser.skipChildren();
+                            }
+                        }
+                    }
+                    break;
+                default:
+                    parser.skipChildren();
+            }
+        }
+        if (!ok) {
+            throw new IOException("users.list failed: " + error);
+        }
+        return nextCursor;
+    }
+
+    private static void parseMember(JsonParser parser, Map<String, String> nameIds, Set<String> ids,
+                                    List<String> userNames) throws IOException {
+        String id = null, name = null, realName = null, displayName = null, email = null;
+        boolean active = true;
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.getCurrentName();
+            JsonToken token = parser.nextToken();
+            switch (field) {
+                case "id":
+                    id = text(parser, token);
+                    break;
+                case "name":
+                    name = text(parser, token);
+                    break;
+                case "real_name":
+                    realName = text(parser, token);
+                    break;
+                case "deleted":
+                case "is_bot":
+                    active &= token != JsonToken.VALUE_TRUE;
+                    break;
+                case "profile":
+                    if (token != JsonToken.START_OBJECT) {
+                        break;
+                    }
+                    while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                        String profileField = parser.getCurrentName();
+                        JsonToken profileToken = parser.nextToken();
+                        if ("display_name".equals(profileField)) {
+                            displayName = text(parser, profileToken);
+                        } else if ("real_name".equals(profileField) && realName == null) {
+                            realName = text(parser, profileToken);
+                        } else if ("email".equals(profileField)) {
+                            email = text(parser, profileToken);
+                        } else {
+                            parser.skipChildren();
+                        }
+                    }
+                    break;
+                default:
+                    parser.skipChildren();
+            }
+        }
+        if (id == null || !active) {
+            return;
+        }
+        ids.add(id);
+        if (name != null) {
+            userNames.add(name);
+        }
+        //Slack names are unique, other names do not replace the names of other users
+        putName(nameIds, name, id, true);
+        putName(nameIds, displayName, id, false);
+        putName(nameIds, realName, id, false);
+        putName(nameIds, email == null || email.indexOf('@') < 0 ? null : email.substring(0, email.indexOf('@')), id, false);
+    }
+
+    private static void putName(Map<String, String> nameIds, String name, String id, boolean replace) {
+        if (name != null && !name.isEmpty() && (replace || !nameIds.containsKey(key(name)))) {
+            nameIds.put(key(name), id);
+        }
+    }
+
+    private static String text(JsonParser parser, JsonToken token) throws IOException {
+        return token == JsonToken.VALUE_NULL ? null : parser.getText();
+    }
+
+    private static String key(String login) {
+        return login.trim().toLowerCase(Locale.ENGLISH);
+    }
+}
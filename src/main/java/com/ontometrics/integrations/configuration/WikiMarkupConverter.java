@@ -0,0 +1,274 @@
+package com.ontometrics.integrations.configuration;
+
+/**
+ * <p>
+ * Converts YouTrack wiki markup of descriptions and comments to Slack mrkdwn in one pass over the text, writing
+ * straight into the message builder:
+ * </p>
+ * <ul>
+ *     <li>{code}, {code lang=java} and {noformat} blocks - ``` blocks, their text is copied as is</li>
+ *     <li>{{text}} and {monospace}text{monospace} - `text`</li>
+ *     <li>{quote} blocks - lines quoted with "&gt; "</li>
+ *     <li>'''bold''' - *bold*, ''italic'' - _italic_ (*bold* and _italic_ are the same in both)</li>
+ *     <li>=Heading= ... ======Heading====== lines - *Heading*</li>
+ *     <li>"* item" and "# item" lines - bullets and numbered "1. item"</li>
+ *     <li>[http://url text] - &lt;http://url|text&gt;</li>
+ * </ul>
+ * <p>
+ * Markup is recognized by looking ahead at most to the end of the line, blocks left open (e.g. by truncation) are
+ * closed at the end of the text. Plain text between the markup is passed to {@link TextAppender}, which escapes it.
+ * </p>
+ */
+public final class WikiMarkupConverter {
+
+    /**
+     * Appends plain text of the range, escaping or linking it
+     */
+    public interface TextAppender {
+        void append(StringBuilder builder, CharSequence text, int start, int end);
+    }
+
+    private static final String CODE = "{code";
+    private static final String CODE_END = "{code}";
+    private static final String NOFORMAT = "{noformat}";
+    private static final String QUOTE = "{quote}";
+    private static final String MONOSPACE = "{monospace}";
+    private static final String CODE_BLOCK = "```";
+    private static final String BULLET = "\u2022 ";
+
+    private WikiMarkupConverter() {}
+
+    /**
+     * @param builder builder the mrkdwn is appended to
+     * @param text text with wiki markup
+     * @param start start of the range of the text to convert
+     * @param end end of the range
+     * @param plainText appender of the text which is not markup
+     * @return builder
+     */
+    public static StringBuilder convert(StringBuilder builder, CharSequence text, int start, int end,
+                                        TextAppender plainText) {
+        //end tag of the open code block, null if not in code block
+        String codeEnd = null;
+        boolean quote = false;
+        boolean monospace = false;
+        int listNumber = 0;
+        int i = start;
+        while (i < end) {
+            if (codeEnd != null) {
+                if (startsWith(text, i, end, codeEnd)) {
+                    if (builder.length() > 0 && builder.charAt(builder.length() - 1) != '\n') {
+                        builder.append('\n');
+                    }
+                    builder.append(CODE_BLOCK);
+                    i += codeEnd.length();
+                    codeEnd = null;
+                } else {
+                    builder.append(text.charAt(i++));
+                }
+                continue;
+            }
+
+            if (i == start || text.charAt(i - 1) == '\n') {
+                //line start
+                if (text.charAt(i) == '#' && i + 1 < end && text.charAt(i + 1) == ' ') {
+                    builder.append(++listNumber).append(". ");
+                    i += 2;
+                    continue;
+                }
+                listNumber = 0;
+                if (quote && !startsWith(text, i, end, QUOTE)) {
+                    builder.append("> ");
+                }
+                if (text.charAt(i) == '*' && i + 1 < end && text.charAt(i + 1) == ' ') {
+                    builder.append(BULLET);
+                    i += 2;
+                    continue;
+                }
+                if (text.charAt(i) == '=') {
+                    int headingEnd = appendHeading(builder, text, i, end, plainText);
+                    if (headingEnd > i) {
+                        i = headingEnd;
+                        continue;
+                    }
+                }
+            }
+
+            char c = text.charAt(i);
+            if (c == '{') {
+                if (startsWith(text, i, end, CODE) && i + CODE.length() < end
+                        && (text.charAt(i + CODE.length()) == '}' || text.charAt(i + CODE.length()) == ' ')) {
+                    codeEnd = CODE_END;
+                    i = beginCodeBlock(builder, text, i, end);
+                    continue;
+                }
+                if (startsWith(text, i, end, NOFORMAT)) {
+                    codeEnd = NOFORMAT;
+                    i = beginCodeBlock(builder, text, i, end);
+                    continue;
+                }
+                if (startsWith(text, i, end, QUOTE)) {
+                    quote = !quote;
+                    i = skipNewline(text, i + QUOTE.length(), end);
+                    continue;
+                }
+                if (startsWith(text, i, end, MONOSPACE)) {
+                    builder.append('`');
+                    monospace = !monospace;
+                    i += MONOSPACE.length();
+                    continue;
+                }
+                if (!monospace && i + 1 < end && text.charAt(i + 1) == '{') {
+                    builder.append('`');
+                    monospace = true;
+                    i += 2;
+                    continue;
+                }
+            } else if (c == '}' && monospace && i + 1 < end && text.charAt(i + 1) == '}') {
+                builder.append('`');
+                monospace = false;
+                i += 2;
+                continue;
+            } else if (c == '\'' && i + 1 < end && text.charAt(i + 1) == '\'') {
+                if (i + 2 < end && text.charAt(i + 2) == '\'') {
+                    builder.append('*');
+                    i += 3;
+                } else {
+                    builder.append('_');
+                    i += 2;
+                }
+                continue;
+            } else if (c == '[') {
+                int linkEnd = appendLink(builder, text, i, end, plainText);
+                if (linkEnd > i) {
+                    i = linkEnd;
+                    continue;
+                }
+            } else if (c == '\n') {
+                builder.append('\n');
+                i++;
+                continue;
+            }
+
+            //plain text up to the next character which may start markup
+            int plainEnd = i + 1;
+            while (plainEnd < end && !isMarkupChar(text.charAt(plainEnd))) {
+                plainEnd++;
+            }
+            if (monospace) {
+                builder.append(text, i, plainEnd);
+            } else {
+                plainText.append(builder, text, i, plainEnd);
+            }
+            i = plainEnd;
+        }
+        if (monospace) {
+            builder.append('`');
+        }
+        if (codeEnd != null) {
+            builder.append('\n').append(CODE_BLOCK);
+        }
+        return builder;
+    }
+
+    private static boolean isMarkupChar(char c) {
+        return c == '{' || c == '}' || c == '\'' || c == '[' || c == '\n';
+    }
+
+    /**
+     * Appends start of the code block for the tag at the position
+     * @return position after the tag and the line break following it
+     */
+    private static int beginCodeBlock(StringBuilder builder, CharSequence text, int i, int end) {
+        if (builder.length() > 0 && builder.charAt(builder.length() - 1) != '\n') {
+            builder.append('\n');
+        }
+        builder.append(CODE_BLOCK);
+        int tagEnd = i;
+        while (tagEnd < end && text.charAt(tagEnd) != '}' && text.charAt(tagEnd) != '\n') {
+            tagEnd++;
+        }
+        return skipNewline(text, tagEnd < end && text.charAt(tagEnd) == '}' ? tagEnd + 1 : tagEnd, end);
+    }
+
+    /**
+     * Appends "=Heading=" line at the position as bold text
+     * @return end of the heading (the line break is not included), the position if the line is not a heading
+     */
+    private static int appendHeading(StringBuilder builder, CharSequence text, int i, int end, TextAppender plainText) {
+        int level = 0;
+        while (i + level < end && text.charAt(i + level) == '=' && level <= 6) {
+            level++;
+        }
+        if (level > 6) {
+            return i;
+        }
+        int lineEnd = i + level;
+        while (lineEnd < end && text.charAt(lineEnd) != '\n') {
+            lineEnd++;
+        }
+        int titleStart = i + level, titleEnd = lineEnd;
+        while (titleEnd > titleStart && (text.charAt(titleEnd - 1) == '=' || Character.isWhitespace(text.charAt(titleEnd - 1)))) {
+            titleEnd--;
+        }
+        while (titleStart < titleEnd && Character.isWhitespace(text.charAt(titleStart))) {
+            titleStart++;
+        }
+        if (titleStart == titleEnd || lineEnd - titleEnd < level) {
+            //no title or not closed by the same number of "="
+            return i;
+        }
+        builder.append('*');
+        plainText.append(builder, text, titleStart, titleEnd);
+        builder.append('*');
+        return lineEnd;
+    }
+
+    /**
+     * Appends "[http://url text]" link at the position as Slack link
+     * @return end of the link, the position if there is no link
+     */
+    private static int appendLink(StringBuilder builder, CharSequence text, int i, int end, TextAppender plainText) {
+        int urlStart = i + 1;
+        if (!startsWith(text, urlStart, end, "http://") && !startsWith(text, urlStart, end, "https://")) {
+            return i;
+        }
+        int urlEnd = urlStart;
+        while (urlEnd < end && text.charAt(urlEnd) != ' ' && text.charAt(urlEnd) != ']' && text.charAt(urlEnd) != '\n') {
+            urlEnd++;
+        }
+        int linkEnd = urlEnd;
+        while (linkEnd < end && text.charAt(linkEnd) != ']' && text.charAt(linkEnd) != '\n') {
+            linkEnd++;
+        }
+        if (linkEnd == end || text.charAt(linkEnd) != ']') {
+            return i;
+        }
+        builder.append('<').append(text, urlStart, urlEnd);
+        if (linkEnd > urlEnd + 1) {
+            builder.append('|');
+            plainText.append(builder, text, urlEnd + 1, linkEnd);
+        }
+        builder.append('>');
+        return linkEnd + 1;
+    }
+
+    private static int skipNewline(CharSequence text, int i, int end) {
+        if (i < end && text.charAt(i) == '\r') {
+            i++;
+        }
+        return i < end && text.charAt(i) == '\n' ? i + 1 : i;
+    }
+
+    private static boolean startsWith(CharSequence text, int i, int end, String prefix) {
+        if (end - i < prefix.length()) {
+            return false;
+        }
+        for (int j = 0; j < prefix.length(); j++) {
+            if (text.charAt(i + j) != prefix.charAt(j)) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -1,10 +1,17 @@
 package com.ontometrics.integrations.configuration;
 
 import com.ontometrics.integrations.events.Issue;
+import com.ontometrics.integrations.sources.ActivityStreamParser;
 import org.slf4j.Logger;
 
+import java.io.UnsupportedEncodingException;
 import java.net.MalformedURLException;
 import java.net.URL;
+import java.net.URLEncoder;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.Locale;
+import java.util.TimeZone;
 
 import static org.slf4j.LoggerFactory.getLogger;
 
@@ -12,14 +19,16 @@ import static org.slf4j.LoggerFactory.getLogger;
  * Created by rob on 8/19/14.
  * Copyright (c) ontometrics, 2014 All Rights Reserved
  */
-public class YouTrackInstance implements IssueTracker {
+public class YouTrackInstance implements ActivityStreamIssueTracker, PagedFeedIssueTracker {
 
     private Logger log = getLogger(YouTrackInstance.class);
     private final String baseUrl;
     private final String issueBase;
+    private final String project;
 
     public YouTrackInstance(Builder builder) {
         baseUrl = builder.baseUrl;
+        project = builder.project;
         issueBase = getBaseUrl() + "/rest/issue/%s";
     }
 
@@ -30,12 +39,21 @@ public class YouTrackInstance implements IssueTracker {
     public static class Builder {
 
         private String baseUrl;
+        private String project;
 
         public Builder baseUrl(String baseUrl) {
             this.baseUrl = baseUrl;
             return this;
         }
 
+        /**
+         * @param project prefix of the project, the feed will contain only issues of this project
+         */
+        public Builder project(String project) {
+            this.project = project;
+            return this;
+        }
+
         public YouTrackInstance build(){
             return new YouTrackInstance(this);
             }
@@ -56,13 +74,34 @@ public class YouTrackInstance implements IssueTracker {
     public URL getFeedUrl() {
         URL url;
         try {
-            url = new URL(String.format("%s/_rss/issues", getBaseUrl()));
-        } catch (MalformedURLException e) {
+            url = project == null ? new URL(String.format("%s/_rss/issues", getBaseUrl()))
+                    : new URL(String.format("%s/_rss/issues?q=%s", getBaseUrl(),
+                    URLEncoder.encode("project: " + project, "UTF-8")));
+        } catch (MalformedURLException | UnsupportedEncodingException e) {
             throw new RuntimeException(e);
         }
         return url;
     }
 
+    /**
+     * The window is a query of the issues "updated" in it, dates are formatted in UTC
+     */
+    @Override
+    public URL getFeedUrl(Date since, Date before) {
+        SimpleDateFormat dateFormat = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss", Locale.ENGLISH);
+        dateFormat.setTimeZone(TimeZone.getTimeZone("UTC"));
+        StringBuilder query = new StringBuilder();
+        if (project != null) {
+            query.append("project: ").append(project).append(' ');
+        }
+        query.append("updated: ").append(dateFormat.format(since)).append(" .. ").append(dateFormat.format(before));
+        try {
+            return new URL(String.format("%s/_rss/issues?q=%s", getBaseUrl(), URLEncoder.encode(query.toString(), "UTF-8")));
+        } catch (MalformedURLException | UnsupportedEncodingException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
     @Override
     public URL getChangesUrl(Issue issue){
         URL url;
@@ -74,6 +113,38 @@ public class YouTrackInstance implements IssueTracker {
         return url;
     }
 
+    @Override
+    public URL getActivitiesUrl(Date since, int skip, int top) {
+        StringBuilder url = new StringBuilder(getBaseUrl().toString())
+                .append("/api/activities?categories=").append(ActivityStreamParser.CATEGORIES)
+                .append("&fields=").append(ActivityStreamParser.ACTIVITY_FIELDS)
+                .append("&$skip=").append(skip).append("&$top=").append(top);
+        if (since != null) {
+            url.append("&start=").append(since.getTime() + 1);
+        }
+        try {
+            return new URL(url.toString());
+        } catch (MalformedURLException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    @Override
+    public URL getIssueActivitiesUrl(Issue issue, Date since) {
+        StringBuilder url = new StringBuilder(getBaseUrl().toString())
+                .append("/api/issues/").append(issue.getPrefix()).append('-').append(issue.getId())
+                .append("/activities?categories=").append(ActivityStreamParser.CATEGORIES)
+                .append("&fields=").append(ActivityStreamParser.ACTIVITY_FIELDS);
+        if (since != null) {
+            url.append("&start=").append(since.getTime() + 1);
+        }
+        try {
+            return new URL(url.toString());
+        } catch (MalformedURLException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
     @Override
     public URL getAttachmentsUrl(Issue issue) {
         return buildIssueURL(issue, "%s/attachment");
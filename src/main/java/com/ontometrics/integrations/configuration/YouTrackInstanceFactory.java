@@ -6,8 +6,15 @@ public class YouTrackInstanceFactory {
     private static final String YT_FEED_URL = "http://ontometrics.com:8085";
 
     public static YouTrackInstance createYouTrackInstance(Configuration configuration) {
+        return createYouTrackInstance(configuration, null);
+    }
+
+    /**
+     * @param project prefix of the project whose feed is read, null for the feed of all projects
+     */
+    public static YouTrackInstance createYouTrackInstance(Configuration configuration, String project) {
         return new YouTrackInstance.Builder().baseUrl(
-                configuration.getString("PROP.YOUTRACK_URL", YT_FEED_URL)).build();
+                configuration.getString("PROP.YOUTRACK_URL", YT_FEED_URL)).project(project).build();
     }
 
 }
@@ -1,5 +1,7 @@
 package com.ontometrics.integrations.events;
 
+import com.ontometrics.util.Timestamps;
+
 import java.util.Date;
 
 /**
@@ -12,7 +14,7 @@ import java.util.Date;
 public class AttachmentEvent {
 
     private final String name;
-    private final Date created;
+    private final long created;
     private final String author;
     private final String fileUrl;
 
@@ -25,7 +27,7 @@ public class AttachmentEvent {
 
     public static class Builder {
 
-        private Date created;
+        private long created = Timestamps.NONE;
         private String fileUrl;
         private String name;
         private String author;
@@ -36,10 +38,18 @@ public class AttachmentEvent {
             }
 
         public Builder created(Date created){
-            this.created = created;
+            this.created = Timestamps.of(created);
             return this;
             }
 
+        /**
+         * @param created epoch milliseconds, {@link Timestamps#NONE} if not known
+         */
+        public Builder created(long created){
+            this.created = created;
+            return this;
+        }
+
         public Builder url(String fileUrl){
             this.fileUrl = fileUrl;
             return this;
@@ -59,7 +69,17 @@ public class AttachmentEvent {
         return name;
     }
 
+    /**
+     * @return new instance of the creation date, null if not known; {@link #getCreatedTime()} does not allocate
+     */
     public Date getCreated() {
+        return Timestamps.toDate(created);
+    }
+
+    /**
+     * @return creation date in epoch milliseconds, {@link Timestamps#NONE} if not known
+     */
+    public long getCreatedTime() {
         return created;
     }
 
@@ -75,7 +95,7 @@ public class AttachmentEvent {
     public String toString() {
         return "AttachmentEvent{" +
                 "name='" + name + '\'' +
-                ", created=" + created +
+                ", created=" + getCreated() +
                 ", author='" + author + '\'' +
                 ", fileUrl='" + fileUrl + '\'' +
                 '}';
@@ -1,5 +1,7 @@
 package com.ontometrics.integrations.events;
 
+import com.ontometrics.util.Timestamps;
+
 import java.util.Date;
 
 /**
@@ -9,7 +11,7 @@ import java.util.Date;
 public class Comment {
     private String id;
     private final String author;
-    private final Date created;
+    private final long created;
     private final String text;
     private boolean deleted;
 
@@ -24,7 +26,7 @@ public class Comment {
 
     public static class Builder {
         private String id;
-        private Date created;
+        private long created = Timestamps.NONE;
         private String author;
         private String text;
         private boolean deleted;
@@ -46,6 +48,14 @@ public class Comment {
         }
 
         public Builder created(Date created){
+            this.created = Timestamps.of(created);
+            return this;
+        }
+
+        /**
+         * @param created epoch milliseconds, {@link Timestamps#NONE} if not known
+         */
+        public Builder created(long created){
             this.created = created;
             return this;
         }
@@ -64,7 +74,17 @@ public class Comment {
         return author;
     }
 
+    /**
+     * @return new instance of the creation date, null if not known; {@link #getCreatedTime()} does not allocate
+     */
     public Date getCreated() {
+        return Timestamps.toDate(created);
+    }
+
+    /**
+     * @return creation date in epoch milliseconds, {@link Timestamps#NONE} if not known
+     */
+    public long getCreatedTime() {
         return created;
     }
 
@@ -102,6 +122,6 @@ public class Comment {
 
     @Override
     public String toString() {
-        return String.format("%s on %s: %s%s", author, created, text, System.lineSeparator());
+        return String.format("%s on %s: %s%s", author, getCreated(), text, System.lineSeparator());
     }
 }
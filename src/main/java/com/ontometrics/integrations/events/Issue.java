@@ -1,5 +1,7 @@
 package com.ontometrics.integrations.events;
 
+import com.ontometrics.util.Timestamps;
+
 import java.net.URL;
 import java.util.Date;
 
@@ -15,7 +17,7 @@ public class Issue {
     private final String description;
     private final URL link;
     private final String creator;
-    private final Date created;
+    private final long created;
 
     public Issue(Builder builder) {
         id = builder.id;
@@ -35,7 +37,7 @@ public class Issue {
         private String description;
         private URL link;
         private String creator;
-        private Date created;
+        private long created = Timestamps.NONE;
 
         public Builder id(int id){
             this.id = id;
@@ -53,10 +55,18 @@ public class Issue {
             }
 
         public Builder created(Date created){
-            this.created = created;
+            this.created = Timestamps.of(created);
             return this;
             }
 
+        /**
+         * @param created epoch milliseconds, {@link Timestamps#NONE} if not known
+         */
+        public Builder created(long created){
+            this.created = created;
+            return this;
+        }
+
         public Builder title(String title){
             this.title = title;
             return this;
@@ -89,7 +99,17 @@ public class Issue {
         return creator;
     }
 
+    /**
+     * @return new instance of the creation date, null if not known; {@link #getCreatedTime()} does not allocate
+     */
     public Date getCreated() {
+        return Timestamps.toDate(created);
+    }
+
+    /**
+     * @return creation date in epoch milliseconds, {@link Timestamps#NONE} if not known
+     */
+    public long getCreatedTime() {
         return created;
     }
 
@@ -132,7 +152,7 @@ public class Issue {
                 ", description='" + description + '\'' +
                 ", link=" + link +
                 ", creator='" + creator + '\'' +
-                ", created=" + created +
+                ", created=" + getCreated() +
                 '}';
     }
 }
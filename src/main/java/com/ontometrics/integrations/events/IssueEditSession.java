@@ -1,5 +1,7 @@
 package com.ontometrics.integrations.events;
 
+import com.ontometrics.util.Timestamps;
+
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Date;
@@ -24,7 +26,7 @@ public class IssueEditSession {
     private final String updater;
     private final List<IssueEdit> changes;
     private final Comment comment;
-    private final Date updated;
+    private final long updated;
     private final List<AttachmentEvent> attachments;
     private final List<IssueLink> links;
 
@@ -42,7 +44,7 @@ public class IssueEditSession {
 
         private Issue issue;
         private String updater;
-        private Date updated;
+        private long updated = Timestamps.NONE;
         private List<IssueEdit> changes = Collections.emptyList();
         private Comment comment;
         private List<AttachmentEvent> attachments = Collections.emptyList();
@@ -59,10 +61,18 @@ public class IssueEditSession {
             }
 
         public Builder updated(Date updated){
-            this.updated = updated;
+            this.updated = Timestamps.of(updated);
             return this;
             }
 
+        /**
+         * @param updated epoch milliseconds, {@link Timestamps#NONE} if not known
+         */
+        public Builder updated(long updated){
+            this.updated = updated;
+            return this;
+        }
+
         public Builder changes(List<IssueEdit> changes){
             this.changes = changes;
             return this;
@@ -98,7 +108,17 @@ public class IssueEditSession {
         return updater;
     }
 
+    /**
+     * @return new instance of the update date, null if not known; {@link #getUpdatedTime()} does not allocate
+     */
     public Date getUpdated() {
+        return Timestamps.toDate(updated);
+    }
+
+    /**
+     * @return update date in epoch milliseconds, {@link Timestamps#NONE} if not known
+     */
+    public long getUpdatedTime() {
         return updated;
     }
 
@@ -124,7 +144,7 @@ public class IssueEditSession {
     }
 
     public boolean isCreationEdit(){
-        return getIssue().getCreated()!=null && !getIssue().getCreator().isEmpty() && ((getUpdated().getTime()-getIssue().getCreated().getTime())/(1000*60*60) < 5);
+        return getIssue().getCreatedTime() != Timestamps.NONE && !getIssue().getCreator().isEmpty() && ((updated - getIssue().getCreatedTime())/(1000*60*60) < 5);
     }
 
     public boolean hasChanges(){
@@ -138,7 +158,7 @@ public class IssueEditSession {
 
         IssueEditSession that = (IssueEditSession) o;
 
-        return issue.equals(that.issue) && updated.equals(that.updated) && !(updater != null ? !updater.equals(that.updater) : that.updater != null);
+        return issue.equals(that.issue) && updated == that.updated && !(updater != null ? !updater.equals(that.updater) : that.updater != null);
 
     }
 
@@ -146,7 +166,7 @@ public class IssueEditSession {
     public int hashCode() {
         int result = issue.hashCode();
         result = 31 * result + (updater != null ? updater.hashCode() : 0);
-        result = 31 * result + updated.hashCode();
+        result = 31 * result + (int) (updated ^ (updated >>> 32));
         return result;
     }
 
@@ -0,0 +1,70 @@
+package com.ontometrics.integrations.events;
+
+import com.google.common.base.Objects;
+import com.google.common.collect.MapMaker;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Flyweight registry of {@link com.ontometrics.integrations.events.Issue} instances.
+ * <p>
+ * Parsing the feed and the change history of an issue produces many {@link Issue} objects describing the same
+ * issue with the same content. {@link #intern(Issue)} returns the already registered instance when its content is the
+ * same, so all the events reference one instance. When content differs (e.g. title has been edited) the new instance
+ * replaces the registered one.
+ * </p>
+ * Instances are referenced weakly, registry does not keep issues which are not used by any event.
+ */
+public class IssueRegistry {
+
+    private static final IssueRegistry instance = new IssueRegistry();
+
+    /**
+     * Issues by project prefix, then by issue number. There are only few projects, so the outer map stays small.
+     */
+    private final ConcurrentMap<String, ConcurrentMap<Integer, Issue>> issues = new ConcurrentHashMap<>();
+
+    public static IssueRegistry instance() {
+        return instance;
+    }
+
+    /**
+     * @param issue issue
+     * @return registered instance with the same content as issue, or issue itself if there is no such
+     */
+    public Issue intern(Issue issue) {
+        if (issue == null) {
+            return null;
+        }
+        ConcurrentMap<Integer, Issue> projectIssues = projectIssues(issue.getPrefix() == null ? "" : issue.getPrefix());
+        Issue registered = projectIssues.get(issue.getId());
+        if (registered != null && hasSameContent(registered, issue)) {
+            return registered;
+        }
+        projectIssues.put(issue.getId(), issue);
+        return issue;
+    }
+
+    private ConcurrentMap<Integer, Issue> projectIssues(String prefix) {
+        ConcurrentMap<Integer, Issue> projectIssues = issues.get(prefix);
+        if (projectIssues == null) {
+            ConcurrentMap<Integer, Issue> newProjectIssues = new MapMaker().weakValues().makeMap();
+            projectIssues = issues.putIfAbsent(prefix, newProjectIssues);
+            if (projectIssues == null) {
+                projectIssues = newProjectIssues;
+            }
+        }
+        return projectIssues;
+    }
+
+    private static boolean hasSameContent(Issue i1, Issue i2) {
+        return i1.getId() == i2.getId()
+                && Objects.equal(i1.getPrefix(), i2.getPrefix())
+                && Objects.equal(i1.getTitle(), i2.getTitle())
+                && Objects.equal(i1.getDescription(), i2.getDescription())
+                && Objects.equal(i1.getLink(), i2.getLink())
+                && Objects.equal(i1.getCreator(), i2.getCreator())
+                && i1.getCreatedTime() == i2.getCreatedTime();
+    }
+}
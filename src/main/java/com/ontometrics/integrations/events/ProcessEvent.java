@@ -1,10 +1,8 @@
 package com.ontometrics.integrations.events;
 
-import java.text.DateFormat;
-import java.text.SimpleDateFormat;
+import com.ontometrics.util.Timestamps;
+
 import java.util.Date;
-import java.util.Locale;
-import java.util.TimeZone;
 
 /**
  * <p>
@@ -33,16 +31,16 @@ public class ProcessEvent {
     private static final String KEY_FIELD_SEPARATOR = "::";
 
     private final Issue issue;
-    private Date publishDate;
+    private long publishTime;
 
     public ProcessEvent(Builder builder) {
         issue = builder.issue;
-        publishDate = builder.publishDate;
+        publishTime = builder.publishTime;
     }
 
     public static class Builder {
 
-        private Date publishDate;
+        private long publishTime = Timestamps.NONE;
         private Issue issue;
 
         public Builder issue(Issue issue){
@@ -51,10 +49,18 @@ public class ProcessEvent {
             }
 
         public Builder published(Date publishDate){
-            this.publishDate = publishDate;
+            this.publishTime = Timestamps.of(publishDate);
             return this;
             }
 
+        /**
+         * @param publishTime epoch milliseconds, {@link Timestamps#NONE} if not known
+         */
+        public Builder published(long publishTime){
+            this.publishTime = publishTime;
+            return this;
+        }
+
         public ProcessEvent build(){
             return new ProcessEvent(this);
         }
@@ -64,25 +70,33 @@ public class ProcessEvent {
         return issue;
     }
 
+    /**
+     * @return new instance of the publish date, null if not known; {@link #getPublishTime()} does not allocate
+     */
     public Date getPublishDate() {
-        return publishDate;
+        return Timestamps.toDate(publishTime);
+    }
+
+    /**
+     * @return publish date in epoch milliseconds, {@link Timestamps#NONE} if not known
+     */
+    public long getPublishTime() {
+        return publishTime;
     }
 
     public void setPublishDate(Date publishDate) {
-        this.publishDate = publishDate;
+        this.publishTime = Timestamps.of(publishDate);
     }
 
     /**
      * @return Unique key of the event: combination of issueID and publish Date
      */
     public String getKey() {
-        return (issue==null) ? "" : getIssue().getId() + KEY_FIELD_SEPARATOR + createDateFormat().format(publishDate);
-    }
-
-    private DateFormat createDateFormat() {
-        SimpleDateFormat dateFormat = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss", Locale.ENGLISH);
-        dateFormat.setTimeZone(TimeZone.getTimeZone("UTC"));
-        return dateFormat;
+        if (issue == null) {
+            return "";
+        }
+        StringBuilder key = new StringBuilder(32).append(getIssue().getId()).append(KEY_FIELD_SEPARATOR);
+        return Timestamps.appendDateTime(key, publishTime).toString();
     }
 
     @Override
@@ -0,0 +1,229 @@
+package com.ontometrics.integrations.jobs;
+
+import com.google.common.util.concurrent.RateLimiter;
+import com.ontometrics.integrations.configuration.ChatServer;
+import com.ontometrics.integrations.configuration.EventProcessorConfiguration;
+import com.ontometrics.integrations.events.Issue;
+import com.ontometrics.integrations.events.IssueEditSession;
+import com.ontometrics.integrations.sources.EditSessionsChunks;
+import com.ontometrics.integrations.sources.EditSessionsExtractor;
+import com.ontometrics.integrations.sources.StreamProviders;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * <p>
+ * Replays the changes of the issues updated in a time window, e.g. after an outage or for a new channel mapping,
+ * without touching the last processed date of the regular polls.
+ * </p>
+ * <p>
+ * Changes of an issue are requested only after the date of its last posted change, so sessions posted before are not
+ * repeated, and the dates are saved after each chunk. The next chunk is extracted while the current one is posted,
+ * and posts are paced to the configured rate. Progress and the estimated time left are logged after each chunk.
+ * </p>
+ */
+public class BackfillJob {
+    private static final Logger log = LoggerFactory.getLogger(BackfillJob.class);
+
+    public static final int DEFAULT_CHUNK_SIZE = 50;
+    public static final double DEFAULT_MESSAGES_PER_SECOND = 1;
+
+    private static final Comparator<IssueEditSession> CREATED_TIME_COMPARATOR = new Comparator<IssueEditSession>() {
+        @Override
+        public int compare(IssueEditSession s1, IssueEditSession s2) {
+            return Long.compare(s1.getUpdatedTime(), s2.getUpdatedTime());
+        }
+    };
+
+    private final List<EditSessionsExtractor> editSessionsExtractors;
+    private final ChatServer chatServer;
+    private final Date since;
+    private final Date before;
+    private final int chunkSize;
+    private final RateLimiter rateLimiter;
+
+    private final AtomicInteger totalIssues = new AtomicInteger();
+    private final AtomicInteger processedIssues = new AtomicInteger();
+    private final AtomicInteger postedSessions = new AtomicInteger();
+
+    public BackfillJob(Builder builder) {
+        if (builder.editSessionsExtractors.isEmpty() || builder.chatServer == null) {
+            throw new IllegalArgumentException("You must provide editSessionsExtractor and chatServer.");
+        }
+        if (builder.since == null || builder.before == null || !builder.since.before(builder.before)) {
+            throw new IllegalArgumentException("Invalid time window: " + builder.since + " - " + builder.before);
+        }
+        editSessionsExtractors = new ArrayList<>(builder.editSessionsExtractors);
+        chatServer = builder.chatServer;
+        since = builder.since;
+        before = builder.before;
+        chunkSize = builder.chunkSize;
+        rateLimiter = builder.messagesPerSecond > 0 ? RateLimiter.create(builder.messagesPerSecond) : null;
+    }
+
+    public static class Builder {
+
+        private List<EditSessionsExtractor> editSessionsExtractors = new ArrayList<>();
+        private ChatServer chatServer;
+        private Date since;
+        private Date before;
+        private int chunkSize = DEFAULT_CHUNK_SIZE;
+        private double messagesPerSecond = DEFAULT_MESSAGES_PER_SECOND;
+
+        /**
+         * @param editSessionsExtractor extractor reading the feed of a project (or of all projects), may be added for
+         *                              every project of the filter
+         */
+        public Builder addEditSessionsExtractor(EditSessionsExtractor editSessionsExtractor) {
+            editSessionsExtractors.add(editSessionsExtractor);
+            return this;
+        }
+
+        public Builder chatServer(ChatServer chatServer) {
+            this.chatServer = chatServer;
+            return this;
+        }
+
+        /**
+         * @param since start of the window
+         * @param before end of the window, changes after it are left to the regular polls
+         */
+        public Builder window(Date since, Date before) {
+            this.since = since;
+            this.before = before;
+            return this;
+        }
+
+        public Builder chunkSize(int chunkSize) {
+            if (chunkSize <= 0) {
+                throw new IllegalArgumentException("chunkSize must be positive: " + chunkSize);
+            }
+            this.chunkSize = chunkSize;
+            return this;
+        }
+
+        /**
+         * @param messagesPerSecond maximum rate of the posts, 0 for no limit
+         */
+        public Builder messagesPerSecond(double messagesPerSecond) {
+            this.messagesPerSecond = messagesPerSecond;
+            return this;
+        }
+
+        public BackfillJob build() {
+            return new BackfillJob(this);
+        }
+    }
+
+    /**
+     * @return number of posted sessions
+     * @throws Exception if extraction or posting failed, sessions posted before are not posted again by the next run
+     */
+    public int run() throws Exception {
+        log.info("Backfill of changes between {} and {} started", since, before);
+        long start = System.nanoTime();
+        ExecutorService extractionExecutor = Executors.newSingleThreadExecutor();
+        try {
+            EventProcessorConfiguration eventProcessorConfiguration = EventProcessorConfiguration.instance();
+            for (EditSessionsExtractor editSessionsExtractor : editSessionsExtractors) {
+                final EditSessionsChunks chunks = editSessionsExtractor.getEditChunks(since, before,
+                        eventProcessorConfiguration, chunkSize);
+                totalIssues.addAndGet(chunks.size());
+                Future<EditSessionsChunks.Chunk> nextChunk = chunks.hasNext() ? extractionExecutor.submit(
+                        new NextChunk(chunks)) : null;
+                while (nextChunk != null) {
+                    EditSessionsChunks.Chunk chunk = StreamProviders.getResult(nextChunk);
+                    nextChunk = chunks.hasNext() ? extractionExecutor.submit(new NextChunk(chunks)) : null;
+                    post(chunk.getSessions(), eventProcessorConfiguration);
+                    processedIssues.addAndGet(chunk.getIssueCount());
+                    logProgress(start);
+                }
+            }
+        } finally {
+            extractionExecutor.shutdownNow();
+        }
+        log.info("Backfill finished: posted {} sessions of {} issues in {} s", postedSessions.get(),
+                processedIssues.get(), TimeUnit.NANOSECONDS.toSeconds(System.nanoTime() - start));
+        return postedSessions.get();
+    }
+
+    private void post(List<IssueEditSession> chunkSessions, EventProcessorConfiguration eventProcessorConfiguration) {
+        List<IssueEditSession> sessions = new ArrayList<>(chunkSessions.size());
+        for (IssueEditSession session : chunkSessions) {
+            if (session.getUpdated() != null && !session.getUpdated().after(before)) {
+                sessions.add(session);
+            }
+        }
+        Collections.sort(sessions, CREATED_TIME_COMPARATOR);
+        Map<Issue, Date> issueChangeDates = new HashMap<>();
+        try {
+            for (IssueEditSession session : sessions) {
+                if (rateLimiter != null) {
+                    rateLimiter.acquire();
+                }
+                if (session.isCreationEdit()) {
+                    chatServer.postIssueCreation(session.getIssue());
+                } else {
+                    chatServer.post(session);
+                }
+                issueChangeDates.put(session.getIssue(), session.getUpdated());
+                postedSessions.incrementAndGet();
+            }
+        } finally {
+            eventProcessorConfiguration.saveEventChangeDates(issueChangeDates);
+        }
+    }
+
+    private void logProgress(long start) {
+        int processed = processedIssues.get(), total = totalIssues.get();
+        long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        long etaSeconds = processed == 0 ? -1 : elapsedMillis * (total - processed) / processed / 1000;
+        log.info("Backfill progress: {}/{} issues, {} sessions posted, about {} s left", processed, total,
+                postedSessions.get(), etaSeconds);
+    }
+
+    /**
+     * @return number of issues found in the window so far
+     */
+    public int getTotalIssues() {
+        return totalIssues.get();
+    }
+
+    /**
+     * @return number of issues whose sessions are posted
+     */
+    public int getProcessedIssues() {
+        return processedIssues.get();
+    }
+
+    public int getPostedSessions() {
+        return postedSessions.get();
+    }
+
+    private static class NextChunk implements Callable<EditSessionsChunks.Chunk> {
+        private final EditSessionsChunks chunks;
+
+        private NextChunk(EditSessionsChunks chunks) {
+            this.chunks = chunks;
+        }
+
+        @Override
+        public EditSessionsChunks.Chunk call() throws Exception {
+            return chunks.next();
+        }
+    }
+}
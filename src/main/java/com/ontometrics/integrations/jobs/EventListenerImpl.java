@@ -1,17 +1,29 @@
 package com.ontometrics.integrations.jobs;
 
 import com.ontometrics.integrations.configuration.*;
+import com.ontometrics.integrations.events.Issue;
 import com.ontometrics.integrations.events.IssueEditSession;
+import com.ontometrics.integrations.sources.ActivityStreamEditSessionsExtractor;
+import com.ontometrics.integrations.sources.EditSessionsChunks;
 import com.ontometrics.integrations.sources.EditSessionsExtractor;
+import com.ontometrics.integrations.sources.JsonEditSessionsExtractor;
 import com.ontometrics.integrations.sources.StreamProvider;
 import org.apache.commons.configuration.Configuration;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.Date;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
 import java.util.concurrent.atomic.AtomicInteger;
 
 
@@ -25,14 +37,30 @@ public class EventListenerImpl implements EventListener {
     private static final Comparator<IssueEditSession> CREATED_TIME_COMPARATOR = new Comparator<IssueEditSession>() {
         @Override
         public int compare(IssueEditSession s1, IssueEditSession s2) {
-            return s1.getUpdated().compareTo(s2.getUpdated());
+            return Long.compare(s1.getUpdatedTime(), s2.getUpdatedTime());
         }
     };
 
+    /**
+     * Either {@link #CHANGE_SOURCE_FEED} (feed and XML changes of each issue), {@link #CHANGE_SOURCE_JSON} (feed and
+     * JSON activities of each issue) or {@link #CHANGE_SOURCE_ACTIVITIES} (paged activity stream of all issues)
+     */
+    public static final String CHANGE_SOURCE_KEY = "youtrack-slack.change-source";
+    public static final String CHANGE_SOURCE_FEED = "feed";
+    public static final String CHANGE_SOURCE_JSON = "json";
+    public static final String CHANGE_SOURCE_ACTIVITIES = "activities";
+    public static final String ACTIVITIES_PAGE_SIZE_KEY = "youtrack-slack.activities-page-size";
+
     private ChatServer chatServer;
 
     private EditSessionsExtractor editSessionsExtractor;
 
+    private ExecutorService deliveryExecutor;
+
+    private String shard;
+
+    private int chunkSize;
+
     /**
      * @param feedStreamProvider feed resource provider
      * @param chatServer chat server
@@ -41,12 +69,27 @@ public class EventListenerImpl implements EventListener {
         this(createEditSessionExtractor(feedStreamProvider), chatServer);
     }
 
-    private static EditSessionsExtractor createEditSessionExtractor(StreamProvider feedStreamProvider) {
+    static EditSessionsExtractor createEditSessionExtractor(StreamProvider feedStreamProvider) {
         if(feedStreamProvider == null) {
             throw new IllegalArgumentException("You must provide feedStreamProvider.");
         }
         Configuration configuration = ConfigurationFactory.get();
-        return new EditSessionsExtractor(YouTrackInstanceFactory.createYouTrackInstance(configuration), feedStreamProvider);
+        return createEditSessionExtractor(YouTrackInstanceFactory.createYouTrackInstance(configuration),
+                feedStreamProvider, configuration);
+    }
+
+    static EditSessionsExtractor createEditSessionExtractor(YouTrackInstance youTrackInstance,
+                                                            StreamProvider feedStreamProvider,
+                                                            Configuration configuration) {
+        switch (configuration.getString(CHANGE_SOURCE_KEY, CHANGE_SOURCE_FEED)) {
+            case CHANGE_SOURCE_ACTIVITIES:
+                return new ActivityStreamEditSessionsExtractor(youTrackInstance, feedStreamProvider,
+                        configuration.getInt(ACTIVITIES_PAGE_SIZE_KEY, ActivityStreamEditSessionsExtractor.DEFAULT_PAGE_SIZE));
+            case CHANGE_SOURCE_JSON:
+                return new JsonEditSessionsExtractor(youTrackInstance, feedStreamProvider);
+            default:
+                return new EditSessionsExtractor(youTrackInstance, feedStreamProvider);
+        }
     }
 
     /**
@@ -61,6 +104,77 @@ public class EventListenerImpl implements EventListener {
         this.editSessionsExtractor = editSessionsExtractor;
     }
 
+    /**
+     * Sessions of different issues are posted concurrently, one task of the deliveryExecutor per issue, sessions of
+     * the same issue are still posted in order of their dates.
+     *
+     * @param editSessionsExtractor editSessionsExtractor
+     * @param chatServer chat server, should limit the number of concurrent posts itself (see {@link BoundedChatServer})
+     * @param deliveryExecutor executor running a task per issue
+     */
+    public EventListenerImpl(EditSessionsExtractor editSessionsExtractor, ChatServer chatServer,
+                             ExecutorService deliveryExecutor) {
+        this(editSessionsExtractor, chatServer);
+        this.deliveryExecutor = deliveryExecutor;
+    }
+
+    public EventListenerImpl(Builder builder) {
+        this(builder.editSessionsExtractor, builder.chatServer, builder.deliveryExecutor);
+        this.shard = builder.shard;
+        this.chunkSize = builder.chunkSize;
+    }
+
+    public static class Builder {
+
+        private EditSessionsExtractor editSessionsExtractor;
+        private ChatServer chatServer;
+        private ExecutorService deliveryExecutor;
+        private String shard;
+        private int chunkSize;
+
+        public Builder editSessionsExtractor(EditSessionsExtractor editSessionsExtractor) {
+            this.editSessionsExtractor = editSessionsExtractor;
+            return this;
+        }
+
+        public Builder chatServer(ChatServer chatServer) {
+            this.chatServer = chatServer;
+            return this;
+        }
+
+        /**
+         * @param deliveryExecutor executor running a task per issue, null to post sessions one after another
+         */
+        public Builder deliveryExecutor(ExecutorService deliveryExecutor) {
+            this.deliveryExecutor = deliveryExecutor;
+            return this;
+        }
+
+        /**
+         * @param shard name of the feed shard, its last processed date is kept apart from other shards
+         */
+        public Builder shard(String shard) {
+            this.shard = shard;
+            return this;
+        }
+
+        /**
+         * @param chunkSize number of issues whose sessions are extracted and posted at once, the last processed date
+         *                  is saved after each chunk; 0 to extract and post all sessions at once
+         */
+        public Builder chunkSize(int chunkSize) {
+            if (chunkSize < 0) {
+                throw new IllegalArgumentException("chunkSize must not be negative: " + chunkSize);
+            }
+            this.chunkSize = chunkSize;
+            return this;
+        }
+
+        public EventListenerImpl build() {
+            return new EventListenerImpl(this);
+        }
+    }
+
     /**
      * <p>
      * On wake, the job of this agent is simply to get any edits that have occurred since its last run from
@@ -79,31 +193,138 @@ public class EventListenerImpl implements EventListener {
         //get events
         EventProcessorConfiguration eventProcessorConfiguration = EventProcessorConfiguration.instance();
         Date minDateOfEvents = eventProcessorConfiguration
-                .resolveMinimumAllowedDate(eventProcessorConfiguration.loadLastProcessedDate());
-
-        List<IssueEditSession> editSessions = editSessionsExtractor.getLatestEdits(minDateOfEvents);
-
-        log.info("Found {} edit sessions to post.", editSessions.size());
-        final AtomicInteger processedSessionsCount = new AtomicInteger(0);
-        if (editSessions.size() > 0) {
-            Collections.sort(editSessions, CREATED_TIME_COMPARATOR);
-            log.debug("sessions: {}", editSessions);
-            Date lastProcessedSessionDate = null;
-            for (IssueEditSession session : editSessions) {
-                if (session.isCreationEdit()) {
-                    chatServer.postIssueCreation(session.getIssue());
-                } else {
-                    chatServer.post(session);
-                }
-                lastProcessedSessionDate = session.getUpdated();
-                processedSessionsCount.incrementAndGet();
-            }
+                .resolveMinimumAllowedDate(eventProcessorConfiguration.loadLastProcessedDate(shard));
+
+        if (chunkSize > 0) {
+            return postChunks(editSessionsExtractor.getLatestEditChunks(minDateOfEvents, eventProcessorConfiguration,
+                    chunkSize), eventProcessorConfiguration);
+        }
+        List<IssueEditSession> editSessions = editSessionsExtractor.getLatestEdits(minDateOfEvents, eventProcessorConfiguration);
 
+        log.info("Found {} edit sessions to post{}.", editSessions.size(), shard == null ? "" : " in shard " + shard);
+        AtomicInteger processedSessionsCount = new AtomicInteger(0);
+        Date lastProcessedSessionDate = postSessions(editSessions, eventProcessorConfiguration, processedSessionsCount);
+        if (lastProcessedSessionDate != null) {
             log.debug("setting last processed date to: {}", lastProcessedSessionDate);
-            EventProcessorConfiguration.instance().saveLastProcessedEventDate(lastProcessedSessionDate);
+            eventProcessorConfiguration.saveLastProcessedEventDate(shard, lastProcessedSessionDate);
         }
         return processedSessionsCount.get();
     }
 
+    /**
+     * Posts chunk after chunk, saving the checkpoint of the chunk as the last processed date, so a failure restarts
+     * from the failed chunk
+     */
+    private int postChunks(EditSessionsChunks chunks, EventProcessorConfiguration eventProcessorConfiguration)
+            throws Exception {
+        AtomicInteger processedSessionsCount = new AtomicInteger(0);
+        int chunkCount = 0;
+        while (chunks.hasNext()) {
+            EditSessionsChunks.Chunk chunk = chunks.next();
+            chunkCount++;
+            log.info("Found {} edit sessions to post in chunk {}{}.", chunk.getSessions().size(), chunkCount,
+                    shard == null ? "" : " of shard " + shard);
+            Date lastProcessedSessionDate = postSessions(new ArrayList<>(chunk.getSessions()),
+                    eventProcessorConfiguration, processedSessionsCount);
+            //sessions of the chunk may be newer than the issues of the next chunks, only the last chunk saves them
+            Date checkpoint = chunk.getCheckpoint() != null || chunks.hasNext()
+                    ? chunk.getCheckpoint() : lastProcessedSessionDate;
+            if (checkpoint != null) {
+                log.debug("setting last processed date to: {}", checkpoint);
+                eventProcessorConfiguration.saveLastProcessedEventDate(shard, checkpoint);
+            }
+        }
+        return processedSessionsCount.get();
+    }
+
+    /**
+     * Posts the sessions in the order of their dates and saves the change dates of their issues. If posting failed,
+     * the dates of the sessions posted before the failure are saved, so they are not posted again.
+     *
+     * @return date of the last posted session, null if there are no sessions
+     */
+    private Date postSessions(List<IssueEditSession> editSessions, EventProcessorConfiguration eventProcessorConfiguration,
+                              AtomicInteger processedSessionsCount) throws Exception {
+        if (editSessions.isEmpty()) {
+            return null;
+        }
+        Collections.sort(editSessions, CREATED_TIME_COMPARATOR);
+        log.debug("sessions: {}", editSessions);
+        Map<Issue, Date> issueChangeDates = new ConcurrentHashMap<>();
+        try {
+            if (deliveryExecutor == null) {
+                for (IssueEditSession session : editSessions) {
+                    post(session, issueChangeDates);
+                    processedSessionsCount.incrementAndGet();
+                }
+            } else {
+                postConcurrently(editSessions, issueChangeDates, processedSessionsCount);
+            }
+        } finally {
+            eventProcessorConfiguration.saveEventChangeDates(issueChangeDates);
+        }
+        return editSessions.get(editSessions.size() - 1).getUpdated();
+    }
+
+    private void post(IssueEditSession session, Map<Issue, Date> issueChangeDates) {
+        if (session.isCreationEdit()) {
+            chatServer.postIssueCreation(session.getIssue());
+        } else {
+            chatServer.post(session);
+        }
+        if (session.getUpdated() != null) {
+            issueChangeDates.put(session.getIssue(), session.getUpdated());
+        }
+    }
+
+    /**
+     * Waits until sessions of all issues are posted. If posting of some issue failed, the first failure is thrown after
+     * the other issues are done.
+     */
+    private void postConcurrently(List<IssueEditSession> editSessions, final Map<Issue, Date> issueChangeDates,
+                                  final AtomicInteger processedSessionsCount) throws Exception {
+        Map<Issue, List<IssueEditSession>> issueSessions = new LinkedHashMap<>();
+        for (IssueEditSession session : editSessions) {
+            List<IssueEditSession> sessions = issueSessions.get(session.getIssue());
+            if (sessions == null) {
+                sessions = new ArrayList<>();
+                issueSessions.put(session.getIssue(), sessions);
+            }
+            sessions.add(session);
+        }
+        log.debug("posting sessions of {} issues concurrently", issueSessions.size());
+
+        List<Future<Void>> deliveries = new ArrayList<>(issueSessions.size());
+        for (final List<IssueEditSession> sessions : issueSessions.values()) {
+            deliveries.add(deliveryExecutor.submit(new Callable<Void>() {
+                @Override
+                public Void call() throws Exception {
+                    for (IssueEditSession session : sessions) {
+                        post(session, issueChangeDates);
+                        processedSessionsCount.incrementAndGet();
+                    }
+                    return null;
+                }
+            }));
+        }
+
+        Throwable failure = null;
+        for (Future<Void> delivery : deliveries) {
+            try {
+                delivery.get();
+            } catch (ExecutionException e) {
+                if (failure == null) {
+                    failure = e.getCause();
+                }
+            }
+        }
+        if (failure != null) {
+            if (failure instanceof Exception) {
+                throw (Exception) failure;
+            }
+            throw (Error) failure;
+        }
+    }
+
 
 }
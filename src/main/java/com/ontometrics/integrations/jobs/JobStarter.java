@@ -1,20 +1,50 @@
 package com.ontometrics.integrations.jobs;
 
+import com.ontometrics.integrations.configuration.BoundedChatServer;
+import com.ontometrics.integrations.configuration.ChatServer;
 import com.ontometrics.integrations.configuration.ConfigurationAccessError;
 import com.ontometrics.integrations.configuration.ConfigurationFactory;
 import com.ontometrics.integrations.configuration.EventProcessorConfiguration;
 import com.ontometrics.integrations.configuration.SlackInstance;
-import com.ontometrics.integrations.sources.AuthenticatedHttpStreamProvider;
+import com.ontometrics.integrations.configuration.SlackMessageRenderer;
+import com.ontometrics.integrations.configuration.SlackThreads;
+import com.ontometrics.integrations.configuration.SlackUserDirectory;
+import com.ontometrics.integrations.configuration.YouTrackInstanceFactory;
+import com.ontometrics.integrations.sources.AsyncHttpStreamProvider;
+import com.ontometrics.integrations.sources.BoundedStreamProvider;
+import com.ontometrics.integrations.sources.ChannelMapper;
 import com.ontometrics.integrations.sources.ChannelMapperFactory;
+import com.ontometrics.integrations.sources.EditSessionsExtractor;
+import com.ontometrics.integrations.sources.RecordingStreamProvider;
+import com.ontometrics.integrations.sources.ReplayStreamProvider;
 import com.ontometrics.integrations.sources.StreamProvider;
+import com.ontometrics.integrations.sources.StreamProviders;
+import com.ontometrics.util.Clock;
 import org.apache.commons.configuration.Configuration;
+import org.apache.commons.io.IOUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.text.DateFormat;
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
+import java.util.TimeZone;
 import java.util.Timer;
 import java.util.TimerTask;
+import java.util.TreeSet;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Create and schedule timer which will execute list of {@link EventListener}s
@@ -23,12 +53,26 @@ import java.util.TimerTask;
 public class JobStarter {
     private static Logger logger = LoggerFactory.getLogger(JobStarter.class);
 
-    //TODO move to configuration params
     private static final long EXECUTION_DELAY = 2 * 1000;
     private static final long REPEAT_INTERVAL = 60 * 1000;
+    private static final int DEFAULT_MAX_SLACK_CONNECTIONS = 4;
+    private static final int DEFAULT_CHUNK_SIZE = 50;
+    private static final int DELIVERY_QUEUE_SIZE = 1000;
+    private static final String BACKFILL_DATE_FORMAT = "yyyy-MM-dd'T'HH:mm";
+    private static final long DEFAULT_USERS_REFRESH_MINUTES = 60;
 
     private List<TimerTask> timerTasks;
     private Timer timer;
+    private List<Timer> shardTimers;
+    private Timer backfillTimer;
+    private Timer usersTimer;
+    private SlackUserDirectory userDirectory;
+    private SlackInstance slackInstance;
+    private StreamProvider streamProvider;
+    private Closeable httpStreamProvider;
+    private RecordingStreamProvider recordingStreamProvider;
+    private ExecutorService replayExecutor;
+    private ExecutorService deliveryExecutor;
 
     public JobStarter() {
         initialize();
@@ -39,29 +83,273 @@ public class JobStarter {
      */
     public void scheduleTasks() {
         final Configuration configuration = ConfigurationFactory.get();
-        StreamProvider streamProvider = AuthenticatedHttpStreamProvider.basicAuthenticatedHttpStreamProvider(
-                configuration.getString("PROP.YOUTRACK_USERNAME"), configuration.getString("PROP.YOUTRACK_PASSWORD")
-        );
+        streamProvider = createStreamProvider(configuration);
 
-        scheduleTask(timer, new EventListenerImpl(streamProvider, new SlackInstance.Builder()
-                .channelMapper(ChannelMapperFactory.fromConfiguration(configuration, "youtrack-slack.")).build()));
+        ChannelMapper channelMapper = ChannelMapperFactory.fromConfiguration(configuration, "youtrack-slack.");
+        if (configuration.getBoolean("youtrack-slack.mention-users", false)) {
+            userDirectory = createUserDirectory(configuration);
+        }
+        slackInstance = new SlackInstance.Builder()
+                .baseUrl(configuration.getString("PROP.SLACK_URL", SlackInstance.BASE_URL))
+                .channelMapper(channelMapper)
+                .userDirectory(userDirectory)
+                .threads(configuration.getBoolean("youtrack-slack.thread-replies", false) ? createThreads(configuration) : null)
+                .messageRenderer(new SlackMessageRenderer.Builder()
+                        .newIssueTemplate(configuration.getString("youtrack-slack.new-issue-template",
+                                SlackMessageRenderer.DEFAULT_NEW_ISSUE_TEMPLATE))
+                        .sessionTemplate(configuration.getString("youtrack-slack.session-template",
+                                SlackMessageRenderer.DEFAULT_SESSION_TEMPLATE))
+                        .maxDescriptionLength(configuration.getInt("youtrack-slack.max-description-length",
+                                SlackMessageRenderer.DEFAULT_MAX_DESCRIPTION_LENGTH))
+                        .maxCommentLength(configuration.getInt("youtrack-slack.max-comment-length",
+                                SlackMessageRenderer.DEFAULT_MAX_COMMENT_LENGTH))
+                        .linkIssueReferences(configuration.getBoolean("youtrack-slack.link-issue-references", true))
+                        .issuePrefixes(channelMapper.getMappedPrefixes())
+                        .convertWikiMarkup(configuration.getBoolean("youtrack-slack.convert-wiki-markup", true))
+                        .userDirectory(userDirectory)
+                        .build())
+                .build();
+        ChatServer chatServer = slackInstance;
+
+        if (configuration.getBoolean("youtrack-slack.concurrent-mode", false)) {
+            int maxSlackConnections = configuration.getInt("youtrack-slack.max-slack-connections",
+                    DEFAULT_MAX_SLACK_CONNECTIONS);
+            //a thread per Slack connection, issues wait in the bounded queue and are posted by the polling thread
+            //when it is full
+            ThreadPoolExecutor executor = new ThreadPoolExecutor(maxSlackConnections, maxSlackConnections,
+                    60, TimeUnit.SECONDS, new ArrayBlockingQueue<Runnable>(DELIVERY_QUEUE_SIZE),
+                    new ThreadPoolExecutor.CallerRunsPolicy());
+            executor.allowCoreThreadTimeOut(true);
+            deliveryExecutor = executor;
+            chatServer = new BoundedChatServer(chatServer, maxSlackConnections);
+        }
+
+        boolean feedSource = !EventListenerImpl.CHANGE_SOURCE_ACTIVITIES.equals(
+                configuration.getString(EventListenerImpl.CHANGE_SOURCE_KEY, EventListenerImpl.CHANGE_SOURCE_FEED));
+        if (configuration.getBoolean("youtrack-slack.sharded-polling", false) && feedSource) {
+            scheduleShards(configuration, channelMapper, chatServer);
+        } else {
+            scheduleTask(timer, createEventListener(configuration, EventListenerImpl.createEditSessionExtractor(streamProvider),
+                    chatServer, null), EXECUTION_DELAY, getRepeatInterval(configuration, null));
+        }
+
+        if (configuration.containsKey("youtrack-slack.backfill.since")) {
+            scheduleBackfill(configuration, chatServer);
+        }
+    }
+
+    /**
+     * @return http client of YouTrack, recording the responses to "youtrack-slack.record-to" file if it is set, or
+     * responses recorded before if "youtrack-slack.replay-from" file is set (with "youtrack-slack.replay-time-scale"
+     * multiplier of the recorded response times, 0 by default)
+     */
+    private StreamProvider createStreamProvider(Configuration configuration) {
+        int maxConcurrentRequests = configuration.getInt("youtrack-slack.max-concurrent-requests",
+                AsyncHttpStreamProvider.DEFAULT_MAX_CONNECTIONS);
+        try {
+            String replayFrom = configuration.getString("youtrack-slack.replay-from");
+            if (replayFrom != null) {
+                replayExecutor = Executors.newCachedThreadPool();
+                return StreamProviders.async(new BoundedStreamProvider(new ReplayStreamProvider(new File(replayFrom),
+                        configuration.getDouble("youtrack-slack.replay-time-scale", 0)), maxConcurrentRequests),
+                        replayExecutor);
+            }
+            AsyncHttpStreamProvider asyncHttpStreamProvider = new AsyncHttpStreamProvider.Builder()
+                    .basicAuthentication(configuration.getString("PROP.YOUTRACK_USERNAME"),
+                            configuration.getString("PROP.YOUTRACK_PASSWORD"))
+                    .maxConnections(maxConcurrentRequests)
+                    .connectTimeout(configuration.getInt("youtrack-slack.connect-timeout",
+                            AsyncHttpStreamProvider.DEFAULT_CONNECT_TIMEOUT_MILLIS / 1000) * 1000)
+                    .socketTimeout(configuration.getInt("youtrack-slack.socket-timeout",
+                            AsyncHttpStreamProvider.DEFAULT_SOCKET_TIMEOUT_MILLIS / 1000) * 1000)
+                    .connectionRequestTimeout(configuration.getInt("youtrack-slack.connection-request-timeout",
+                            AsyncHttpStreamProvider.DEFAULT_CONNECTION_REQUEST_TIMEOUT_MILLIS / 1000) * 1000)
+                    .build();
+            httpStreamProvider = asyncHttpStreamProvider;
+            String recordTo = configuration.getString("youtrack-slack.record-to");
+            if (recordTo != null) {
+                return recordingStreamProvider = new RecordingStreamProvider(asyncHttpStreamProvider, new File(recordTo));
+            }
+            return asyncHttpStreamProvider;
+        } catch (IOException e) {
+            throw new ConfigurationAccessError("Failed to open recording of YouTrack responses", e);
+        }
+    }
+
+    /**
+     * Creates directory of Slack users refreshed every "youtrack-slack.users-refresh-interval" minutes with a timer of
+     * its own, logins resolved to Slack users are kept in the database. "youtrack-slack.user-mappings" like
+     * "rob -&gt; rob.williams" map YouTrack logins to Slack users with different names.
+     */
+    private SlackUserDirectory createUserDirectory(Configuration configuration) {
+        SlackUserDirectory.Builder builder = new SlackUserDirectory.Builder()
+                .baseUrl(configuration.getString("PROP.SLACK_URL", SlackInstance.BASE_URL))
+                .store(new SlackUserDirectory.Store() {
+                    @Override
+                    public Map<String, String> load() {
+                        return EventProcessorConfiguration.instance().loadSlackUserIds();
+                    }
+
+                    @Override
+                    public void save(Map<String, String> loginIds) {
+                        EventProcessorConfiguration.instance().saveSlackUserIds(loginIds);
+                    }
+                });
+        for (String mapping : configuration.getStringArray("youtrack-slack.user-mappings")) {
+            int arrow = mapping.indexOf("->");
+            if (arrow < 0) {
+                throw new ConfigurationAccessError("User mapping should be like \"login -> slack user\": " + mapping, null);
+            }
+            builder.addMapping(mapping.substring(0, arrow), mapping.substring(arrow + 2));
+        }
+        final SlackUserDirectory directory = builder.build();
+        long refreshInterval = configuration.getLong("youtrack-slack.users-refresh-interval", DEFAULT_USERS_REFRESH_MINUTES)
+                * 60 * 1000;
+        usersTimer = new Timer("slack-users", true);
+        usersTimer.schedule(new TimerTask() {
+            @Override
+            public void run() {
+                try {
+                    directory.refresh();
+                } catch (Throwable ex) {
+                    logger.error("Failed to refresh Slack users", ex);
+                }
+            }
+        }, 0, refreshInterval);
+        return directory;
+    }
+
+    /**
+     * @return threads of the messages about issues, sessions posted within "youtrack-slack.thread-window" minutes after
+     * the first message about the issue are replies to it; "youtrack-slack.max-threads" threads are kept in the database
+     */
+    private static SlackThreads createThreads(Configuration configuration) {
+        return new SlackThreads.Builder()
+                .windowMillis(configuration.getLong("youtrack-slack.thread-window", SlackThreads.DEFAULT_WINDOW_MINUTES)
+                        * 60 * 1000)
+                .maxThreads(configuration.getInt("youtrack-slack.max-threads", SlackThreads.DEFAULT_MAX_THREADS))
+                .store(new SlackThreads.Store() {
+                    @Override
+                    public Map<String, String> load() {
+                        return EventProcessorConfiguration.instance().loadSlackThreads();
+                    }
+
+                    @Override
+                    public void save(Map<String, String> startedThreads, Collection<String> removedKeys) {
+                        EventProcessorConfiguration.instance().saveSlackThreads(startedThreads, removedKeys);
+                    }
+                })
+                .build();
+    }
+
+    /**
+     * Runs {@link BackfillJob} once with a timer of its own, so the regular polls are not delayed by it.
+     * The window is "youtrack-slack.backfill.since" - "youtrack-slack.backfill.before" (now by default) in UTC,
+     * "youtrack-slack.backfill.projects" limits it to some projects.
+     */
+    private void scheduleBackfill(Configuration configuration, ChatServer chatServer) {
+        DateFormat dateFormat = new SimpleDateFormat(BACKFILL_DATE_FORMAT);
+        dateFormat.setTimeZone(TimeZone.getTimeZone("UTC"));
+        int chunkSize = configuration.getInt("youtrack-slack.chunk-size", DEFAULT_CHUNK_SIZE);
+        BackfillJob.Builder builder = new BackfillJob.Builder().chatServer(chatServer)
+                .chunkSize(chunkSize > 0 ? chunkSize : DEFAULT_CHUNK_SIZE)
+                .messagesPerSecond(configuration.getDouble("youtrack-slack.backfill.messages-per-second",
+                        BackfillJob.DEFAULT_MESSAGES_PER_SECOND));
+        try {
+            String before = configuration.getString("youtrack-slack.backfill.before");
+            builder.window(dateFormat.parse(configuration.getString("youtrack-slack.backfill.since")),
+                    before == null ? Clock.instance().now() : dateFormat.parse(before));
+        } catch (ParseException e) {
+            throw new ConfigurationAccessError("Backfill window should be in format " + BACKFILL_DATE_FORMAT, e);
+        }
+        List<String> projects = Arrays.asList(configuration.getStringArray("youtrack-slack.backfill.projects"));
+        if (projects.isEmpty()) {
+            builder.addEditSessionsExtractor(EventListenerImpl.createEditSessionExtractor(
+                    YouTrackInstanceFactory.createYouTrackInstance(configuration), streamProvider, configuration));
+        }
+        for (String project : projects) {
+            builder.addEditSessionsExtractor(EventListenerImpl.createEditSessionExtractor(
+                    YouTrackInstanceFactory.createYouTrackInstance(configuration, project), streamProvider, configuration));
+        }
+        final BackfillJob backfillJob = builder.build();
+        backfillTimer = new Timer("backfill");
+        backfillTimer.schedule(new TimerTask() {
+            @Override
+            public void run() {
+                try {
+                    backfillJob.run();
+                } catch (Throwable ex) {
+                    logger.error("Backfill failed, it can be restarted without repeating posted sessions", ex);
+                }
+            }
+        }, EXECUTION_DELAY);
+    }
+
+    /**
+     * Every project mapped to a channel gets a shard polling the feed of the project with a timer of its own, other
+     * projects are polled by a shard reading the feed of all projects. All shards share the connections to YouTrack
+     * and Slack, their first runs are spread evenly over the interval so they do not poll at the same time.
+     */
+    private void scheduleShards(Configuration configuration, ChannelMapper channelMapper, ChatServer chatServer) {
+        List<String> projects = new ArrayList<>(new TreeSet<>(channelMapper.getMappedPrefixes()));
+        int shards = projects.size() + 1;
+        for (int i = 0; i < projects.size(); i++) {
+            String project = projects.get(i);
+            long repeatInterval = getRepeatInterval(configuration, project);
+            Timer shardTimer = new Timer("feed-shard-" + project);
+            shardTimers.add(shardTimer);
+            scheduleTask(shardTimer, createEventListener(configuration, EventListenerImpl.createEditSessionExtractor(
+                    YouTrackInstanceFactory.createYouTrackInstance(configuration, project), streamProvider, configuration),
+                    chatServer, project), EXECUTION_DELAY + repeatInterval * (i + 1) / shards, repeatInterval);
+        }
+        //the rest of the projects keep the global last processed date
+        scheduleTask(timer, createEventListener(configuration, EventListenerImpl.createEditSessionExtractor(
+                YouTrackInstanceFactory.createYouTrackInstance(configuration), streamProvider, configuration)
+                .excludeProjects(projects), chatServer, null), EXECUTION_DELAY, getRepeatInterval(configuration, null));
+        logger.info("Scheduled {} feed shards: {} and other projects", shards, projects);
+    }
+
+    private EventListener createEventListener(Configuration configuration, EditSessionsExtractor editSessionsExtractor,
+                                              ChatServer chatServer, String shard) {
+        return new EventListenerImpl.Builder()
+                .editSessionsExtractor(editSessionsExtractor)
+                .chatServer(chatServer)
+                .deliveryExecutor(deliveryExecutor)
+                .shard(shard)
+                .chunkSize(configuration.getInt("youtrack-slack.chunk-size", DEFAULT_CHUNK_SIZE))
+                .build();
+    }
+
+    /**
+     * @param project prefix of the project polled by the shard, null for the feed of all projects
+     * @return "youtrack-slack.poll-interval.${project}" or "youtrack-slack.poll-interval" in milliseconds
+     */
+    private static long getRepeatInterval(Configuration configuration, String project) {
+        long seconds = configuration.getLong("youtrack-slack.poll-interval", REPEAT_INTERVAL / 1000);
+        if (project != null) {
+            seconds = configuration.getLong("youtrack-slack.poll-interval." + project, seconds);
+        }
+        return seconds * 1000;
     }
 
     private void initialize() {
         timerTasks = new ArrayList<>(1);
         timer = new Timer();
+        shardTimers = new ArrayList<>();
     }
 
     /**
      * Schedules a periodic task {@link com.ontometrics.integrations.jobs.EventListener#checkForNewEvents()}
      * @param timer timer
      * @param eventListener event listener
+     * @param delay delay of the first run in milliseconds
+     * @param repeatInterval interval between runs in milliseconds
      */
-    private void scheduleTask(Timer timer, EventListener eventListener) {
+    private void scheduleTask(Timer timer, EventListener eventListener, long delay, long repeatInterval) {
         logger.info("Scheduling EventListener task");
         TimerTask timerTask = new EventTask(eventListener);
         timerTasks.add(timerTask);
-        timer.schedule(timerTask, EXECUTION_DELAY, REPEAT_INTERVAL);
+        timer.schedule(timerTask, delay, repeatInterval);
     }
 
     private static class EventTask extends TimerTask {
@@ -92,6 +380,30 @@ public class JobStarter {
             timerTask.cancel();
         }
         timer.cancel();
+        for (Timer shardTimer : shardTimers) {
+            shardTimer.cancel();
+        }
+        if (backfillTimer != null) {
+            backfillTimer.cancel();
+        }
+        if (usersTimer != null) {
+            usersTimer.cancel();
+        }
+        if (userDirectory != null) {
+            userDirectory.save();
+            userDirectory.close();
+        }
+        IOUtils.closeQuietly(httpStreamProvider);
+        IOUtils.closeQuietly(recordingStreamProvider);
+        if (replayExecutor != null) {
+            replayExecutor.shutdownNow();
+        }
+        if (deliveryExecutor != null) {
+            deliveryExecutor.shutdown();
+        }
+        if (slackInstance != null) {
+            slackInstance.close();
+        }
         EventProcessorConfiguration.instance().dispose();
     }
 }
@@ -0,0 +1,210 @@
+package com.ontometrics.integrations.sources;
+
+import com.ontometrics.integrations.events.*;
+import com.ontometrics.util.StringPool;
+import org.apache.commons.lang.StringUtils;
+
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.util.*;
+
+/**
+ * Combines {@link ActivityStreamParser.Activity activities} into {@link IssueEditSession}s: field changes of one issue
+ * made by the same user at the same time are in one session, creation, comments and attachments get their own sessions.
+ * Sessions are returned in the order of their first activity.
+ */
+class ActivitySessionsCollector {
+
+    private final URL baseUrl;
+    //either IssueEditSession or FieldChanges still collecting changes
+    private final List<Object> sessions = new ArrayList<>();
+    private final Map<String, FieldChanges> fieldChanges = new HashMap<>();
+
+    /**
+     * @param baseUrl issue tracker url, used to build issue links and attachment urls
+     */
+    ActivitySessionsCollector(URL baseUrl) {
+        this.baseUrl = baseUrl;
+    }
+
+    /**
+     * @return issue the activity belongs to
+     * @throws MalformedURLException if issue link cannot be built
+     */
+    Issue issueOf(ActivityStreamParser.Activity activity) throws MalformedURLException {
+        String id = activity.issueId;
+        int separator = id.lastIndexOf('-');
+        return IssueRegistry.instance().intern(new Issue.Builder()
+                .projectPrefix(StringPool.intern(id.substring(0, separator)))
+                .id(Integer.parseInt(id.substring(separator + 1)))
+                .title(activity.issueSummary != null ? id + ": " + activity.issueSummary : id)
+                .description(StringUtils.trim(activity.issueDescription))
+                .link(new URL(baseUrl + "/issue/" + id))
+                .build());
+    }
+
+    /**
+     * @param activity activity to add
+     * @param issue issue the activity belongs to
+     */
+    void add(ActivityStreamParser.Activity activity, Issue issue) {
+        Date updated = new Date(activity.timestamp);
+        String updater = activity.authorLogin;
+        switch (activity.category) {
+            case ActivityStreamParser.ISSUE_CREATED_CATEGORY:
+                sessions.add(new IssueEditSession.Builder()
+                        .issue(IssueRegistry.instance().intern(new Issue.Builder()
+                                .projectPrefix(issue.getPrefix())
+                                .id(issue.getId())
+                                .title(issue.getTitle())
+                                .description(issue.getDescription())
+                                .link(issue.getLink())
+                                .created(updated)
+                                .creator(updater)
+                                .build()))
+                        .updater(updater)
+                        .updated(updated)
+                        .build());
+                break;
+            case ActivityStreamParser.COMMENTS_CATEGORY:
+                for (ActivityStreamParser.Entity added : activity.added) {
+                    if (added.deleted) {
+                        continue;
+                    }
+                    String author = StringPool.intern(added.authorName != null ? added.authorName
+                            : activity.authorName != null ? activity.authorName : updater);
+                    sessions.add(new IssueEditSession.Builder()
+                            .issue(issue)
+                            .updater(author)
+                            .updated(updated)
+                            .comment(new Comment.Builder()
+                                    .id(added.id)
+                                    .author(author)
+                                    .text(added.text)
+                                    .created(added.created != null ? new Date(added.created) : updated)
+                                    .build())
+                            .build());
+                }
+                break;
+            case ActivityStreamParser.ATTACHMENTS_CATEGORY:
+                List<AttachmentEvent> attachments = new ArrayList<>(activity.added.size());
+                for (ActivityStreamParser.Entity added : activity.added) {
+                    attachments.add(new AttachmentEvent.Builder()
+                            .name(added.text)
+                            .url(resolveUrl(added.url))
+                            .author(updater)
+                            .created(added.created != null ? new Date(added.created) : updated)
+                            .build());
+                }
+                if (!attachments.isEmpty()) {
+                    sessions.add(new IssueEditSession.Builder()
+                            .issue(issue)
+                            .updater(updater)
+                            .updated(updated)
+                            .attachments(attachments)
+                            .build());
+                }
+                break;
+            default:
+                String key = activity.issueId + '\n' + updater + '\n' + activity.timestamp;
+                FieldChanges changes = fieldChanges.get(key);
+                if (changes == null) {
+                    changes = new FieldChanges(issue, updater, updated);
+                    fieldChanges.put(key, changes);
+                    sessions.add(changes);
+                }
+                String priorValue = joinValues(activity.removed), currentValue = joinValues(activity.added);
+                if (ActivityStreamParser.RESOLVED_CATEGORY.equals(activity.category)) {
+                    priorValue = formatDate(priorValue);
+                    currentValue = formatDate(currentValue);
+                }
+                changes.edits.add(new IssueEdit.Builder()
+                        .issue(issue)
+                        .field(fieldName(activity))
+                        .priorValue(priorValue)
+                        .currentValue(currentValue)
+                        .build());
+        }
+    }
+
+    /**
+     * @return sessions of all added activities
+     */
+    List<IssueEditSession> getSessions() {
+        List<IssueEditSession> result = new ArrayList<>(sessions.size());
+        for (Object session : sessions) {
+            if (session instanceof FieldChanges) {
+                FieldChanges changes = (FieldChanges) session;
+                result.add(new IssueEditSession.Builder()
+                        .issue(changes.issue)
+                        .updater(changes.updater)
+                        .updated(changes.updated)
+                        .changes(changes.edits)
+                        .build());
+            } else {
+                result.add((IssueEditSession) session);
+            }
+        }
+        return result;
+    }
+
+    private String resolveUrl(String url) {
+        if (url != null && url.startsWith("/")) {
+            return baseUrl + url;
+        }
+        return url;
+    }
+
+    private static String fieldName(ActivityStreamParser.Activity activity) {
+        switch (activity.category) {
+            case ActivityStreamParser.SUMMARY_CATEGORY:
+                return "summary";
+            case ActivityStreamParser.DESCRIPTION_CATEGORY:
+                return "description";
+            case ActivityStreamParser.LINKS_CATEGORY:
+                return "links";
+            case ActivityStreamParser.RESOLVED_CATEGORY:
+                return "resolved";
+            default:
+                return activity.field;
+        }
+    }
+
+    /**
+     * Resolution date is reported as timestamp, it is displayed the same way as in the changes of the feed extractor
+     */
+    private static String formatDate(String timestamp) {
+        return StringUtils.isNumeric(timestamp) && !timestamp.isEmpty()
+                ? new Date(Long.parseLong(timestamp)).toString() : timestamp;
+    }
+
+    private static String joinValues(List<ActivityStreamParser.Entity> values) {
+        if (values.isEmpty()) {
+            return "";
+        }
+        if (values.size() == 1) {
+            return StringUtils.trimToEmpty(values.get(0).text);
+        }
+        StringBuilder b = new StringBuilder();
+        for (ActivityStreamParser.Entity value : values) {
+            if (b.length() > 0) {
+                b.append(", ");
+            }
+            b.append(StringUtils.trimToEmpty(value.text));
+        }
+        return b.toString();
+    }
+
+    private static class FieldChanges {
+        private final Issue issue;
+        private final String updater;
+        private final Date updated;
+        private final List<IssueEdit> edits = new ArrayList<>();
+
+        private FieldChanges(Issue issue, String updater, Date updated) {
+            this.issue = issue;
+            this.updater = updater;
+            this.updated = updated;
+        }
+    }
+}
@@ -0,0 +1,126 @@
+package com.ontometrics.integrations.sources;
+
+import com.ontometrics.integrations.configuration.ActivityStreamIssueTracker;
+import com.ontometrics.integrations.configuration.EventProcessorConfiguration;
+import com.ontometrics.integrations.events.Issue;
+import com.ontometrics.integrations.events.IssueEditSession;
+import org.slf4j.Logger;
+
+import java.io.InputStream;
+import java.net.URL;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.slf4j.LoggerFactory.getLogger;
+
+/**
+ * <p>
+ * {@link EditSessionsExtractor} which retrieves changes of all issues from the activity stream of the
+ * {@link ActivityStreamIssueTracker} with a few paged requests, instead of reading the feed and requesting changes
+ * and attachments of every issue found there.
+ * </p>
+ * <p>
+ * Activities of one issue done by the same user at the same time are combined into single {@link IssueEditSession},
+ * comments and attachments are reported in their own sessions, as {@link EditSessionsExtractor} does.
+ * </p>
+ */
+public class ActivityStreamEditSessionsExtractor extends EditSessionsExtractor {
+
+    public static final int DEFAULT_PAGE_SIZE = 100;
+
+    private Logger log = getLogger(ActivityStreamEditSessionsExtractor.class);
+
+    private final ActivityStreamIssueTracker issueTracker;
+    private final StreamProvider streamProvider;
+    private final int pageSize;
+    private final ActivityStreamParser parser = new ActivityStreamParser();
+
+    public ActivityStreamEditSessionsExtractor(ActivityStreamIssueTracker issueTracker, StreamProvider streamProvider) {
+        this(issueTracker, streamProvider, DEFAULT_PAGE_SIZE);
+    }
+
+    /**
+     * @param issueTracker the system that is used to track issues
+     * @param streamProvider authenticated access to the activity stream
+     * @param pageSize number of activities requested at once
+     */
+    public ActivityStreamEditSessionsExtractor(ActivityStreamIssueTracker issueTracker, StreamProvider streamProvider,
+                                               int pageSize) {
+        super(issueTracker, streamProvider);
+        if (pageSize <= 0) {
+            throw new IllegalArgumentException("Page size must be positive: " + pageSize);
+        }
+        this.issueTracker = issueTracker;
+        this.streamProvider = streamProvider;
+        this.pageSize = pageSize;
+    }
+
+    @Override
+    public List<IssueEditSession> getLatestEdits(Date minDate, EventProcessorConfiguration configuration) throws Exception {
+        log.debug("edits since: {}", minDate);
+        ActivitySessionsCollector collector = new ActivitySessionsCollector(issueTracker.getBaseUrl());
+        Map<String, Date> issueMinDates = new HashMap<>();
+        List<ActivityStreamParser.Activity> page;
+        int skip = 0;
+        do {
+            page = getActivities(minDate, skip);
+            skip += page.size();
+            for (ActivityStreamParser.Activity activity : page) {
+                if (activity.issueId == null || activity.category == null) {
+                    continue;
+                }
+                Issue issue = collector.issueOf(activity);
+                Date issueMinDate = getIssueMinDate(issue, activity.issueId, minDate, configuration, issueMinDates);
+                if (issueMinDate != null && activity.timestamp <= issueMinDate.getTime()) {
+                    log.debug("skipped activity of {} dated: {}", activity.issueId, new Date(activity.timestamp));
+                    continue;
+                }
+                collector.add(activity, issue);
+            }
+        } while (page.size() == pageSize);
+        List<IssueEditSession> sessions = collector.getSessions();
+        log.debug("found {} sessions in {} activities", sessions.size(), skip);
+        return sessions;
+    }
+
+    /**
+     * Activities of one session may be on different pages of the stream, so all sessions are returned as one chunk
+     */
+    @Override
+    public EditSessionsChunks getLatestEditChunks(Date minDate, EventProcessorConfiguration configuration,
+                                                  int chunkSize) throws Exception {
+        return EditSessionsChunks.of(getLatestEdits(minDate, configuration));
+    }
+
+    private List<ActivityStreamParser.Activity> getActivities(Date since, int skip) throws Exception {
+        final URL activitiesUrl = issueTracker.getActivitiesUrl(since, skip, pageSize);
+        log.debug("Going to process url: {}", activitiesUrl);
+        return streamProvider.openResourceStream(activitiesUrl,
+                new InputStreamHandler<List<ActivityStreamParser.Activity>>() {
+            @Override
+            public List<ActivityStreamParser.Activity> handleStream(InputStream is, int responseCode) throws Exception {
+                checkResponseCode(responseCode, activitiesUrl);
+                return parser.parse(is);
+            }
+        });
+    }
+
+    private Date getIssueMinDate(Issue issue, String issueId, Date minDate, EventProcessorConfiguration configuration,
+                                 Map<String, Date> issueMinDates) {
+        if (configuration == null) {
+            return minDate;
+        }
+        if (issueMinDates.containsKey(issueId)) {
+            return issueMinDates.get(issueId);
+        }
+        Date issueMinDate = minDate;
+        Date issueChangeDate = configuration.getEventChangeDate(issue);
+        if (issueChangeDate != null && (minDate == null || issueChangeDate.after(minDate))) {
+            issueMinDate = issueChangeDate;
+        }
+        issueMinDates.put(issueId, issueMinDate);
+        return issueMinDate;
+    }
+}
@@ -0,0 +1,273 @@
+package com.ontometrics.integrations.sources;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.ontometrics.util.StringPool;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * <p>
+ * Parses the list of activity items returned by YouTrack REST API (<code>/api/activities</code> and
+ * <code>/api/issues/{id}/activities</code>) requested with {@link #ACTIVITY_FIELDS}.
+ * </p>
+ * <p>
+ * Response is read token by token with streaming {@link com.fasterxml.jackson.core.JsonParser}, no tree of the
+ * document is built. Unknown fields are skipped.
+ * </p>
+ */
+public class ActivityStreamParser {
+
+    public static final String CUSTOM_FIELD_CATEGORY = "CustomFieldCategory";
+    public static final String SUMMARY_CATEGORY = "SummaryCategory";
+    public static final String DESCRIPTION_CATEGORY = "DescriptionCategory";
+    public static final String COMMENTS_CATEGORY = "CommentsCategory";
+    public static final String ATTACHMENTS_CATEGORY = "AttachmentsCategory";
+    public static final String ISSUE_CREATED_CATEGORY = "IssueCreatedCategory";
+    public static final String LINKS_CATEGORY = "LinksCategory";
+    public static final String RESOLVED_CATEGORY = "IssueResolvedCategory";
+
+    public static final String CATEGORIES = CUSTOM_FIELD_CATEGORY + "," + SUMMARY_CATEGORY + "," + DESCRIPTION_CATEGORY
+            + "," + COMMENTS_CATEGORY + "," + ATTACHMENTS_CATEGORY + "," + ISSUE_CREATED_CATEGORY + "," + LINKS_CATEGORY
+            + "," + RESOLVED_CATEGORY;
+
+    private static final String ENTITY_FIELDS = "id,idReadable,name,presentation,login,fullName,text,url,created,deleted,author(login,fullName)";
+
+    /**
+     * Only the fields rendered in chat messages are requested
+     */
+    public static final String ACTIVITY_FIELDS = "timestamp,category(id),author(login,fullName),field(presentation),"
+            + "target(idReadable,summary,description,issue(idReadable,summary)),"
+            + "added(" + ENTITY_FIELDS + "),removed(" + ENTITY_FIELDS + ")";
+
+    private static final JsonFactory JSON_FACTORY = new JsonFactory();
+
+    /**
+     * Activity item, an atomic change of an issue
+     */
+    public static class Activity {
+        long timestamp;
+        String category;
+        String authorLogin;
+        String authorName;
+        String field;
+        String issueId;
+        String issueSummary;
+        String issueDescription;
+        final List<Entity> added = new ArrayList<>(1);
+        final List<Entity> removed = new ArrayList<>(1);
+
+        public long getTimestamp() {
+            return timestamp;
+        }
+
+        public String getCategory() {
+            return category;
+        }
+
+        public String getIssueId() {
+            return issueId;
+        }
+    }
+
+    /**
+     * Value of the field, comment or attachment added or removed by the {@link Activity}
+     */
+    public static class Entity {
+        String id;
+        String text;
+        String url;
+        Long created;
+        boolean deleted;
+        String authorLogin;
+        String authorName;
+    }
+
+    /**
+     * @param is response stream
+     * @return activity items in the order of response
+     * @throws IOException if response is not a JSON array of activity items
+     */
+    public List<Activity> parse(InputStream is) throws IOException {
+        List<Activity> activities = new ArrayList<>();
+        try (JsonParser parser = JSON_FACTORY.createParser(is)) {
+            expect(parser.nextToken(), JsonToken.START_ARRAY);
+            while (parser.nextToken() == JsonToken.START_OBJECT) {
+                activities.add(parseActivity(parser));
+            }
+        }
+        return activities;
+    }
+
+    private Activity parseActivity(JsonParser parser) throws IOException {
+        Activity activity = new Activity();
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String name = parser.getCurrentName();
+            JsonToken token = parser.nextToken();
+            switch (name) {
+                case "timestamp":
+                    activity.timestamp = parser.getLongValue();
+                    break;
+                case "category":
+                    activity.category = StringPool.intern(readStringField(parser, token, "id"));
+                    break;
+                case "author":
+                    if (token == JsonToken.START_OBJECT) {
+                        Entity author = parseEntity(parser);
+                        activity.authorLogin = author.authorLogin;
+                        activity.authorName = author.authorName;
+                    }
+                    break;
+                case "field":
+                    activity.field = StringPool.intern(readStringField(parser, token, "presentation"));
+                    break;
+                case "target":
+                    if (token == JsonToken.START_OBJECT) {
+                        parseTarget(parser, activity);
+                    }
+                    break;
+                case "added":
+                    parseValues(parser, token, activity.added);
+                    break;
+                case "removed":
+                    parseValues(parser, token, activity.removed);
+                    break;
+                default:
+                    parser.skipChildren();
+            }
+        }
+        return activity;
+    }
+
+    /**
+     * Target is either the issue, or the entity (comment) referencing the issue
+     */
+    private void parseTarget(JsonParser parser, Activity activity) throws IOException {
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String name = parser.getCurrentName();
+            JsonToken token = parser.nextToken();
+            switch (name) {
+                case "idReadable":
+                    activity.issueId = parser.getValueAsString();
+                    break;
+                case "summary":
+                    activity.issueSummary = parser.getValueAsString();
+                    break;
+                case "description":
+                    activity.issueDescription = parser.getValueAsString();
+                    break;
+                case "issue":
+                    if (token == JsonToken.START_OBJECT) {
+                        parseTarget(parser, activity);
+                    }
+                    break;
+                default:
+                    parser.skipChildren();
+            }
+        }
+    }
+
+    private void parseValues(JsonParser parser, JsonToken token, List<Entity> values) throws IOException {
+        switch (token) {
+            case START_ARRAY:
+                while ((token = parser.nextToken()) != JsonToken.END_ARRAY) {
+                    parseValues(parser, token, values);
+                }
+                break;
+            case START_OBJECT:
+                values.add(parseEntity(parser));
+                break;
+            case VALUE_NULL:
+                break;
+            default:
+                Entity value = new Entity();
+                value.text = parser.getValueAsString();
+                values.add(value);
+        }
+    }
+
+    /**
+     * Parses the object which current token is START_OBJECT: value of the field, comment, attachment or user
+     */
+    private Entity parseEntity(JsonParser parser) throws IOException {
+        Entity entity = new Entity();
+        String name = null, presentation = null, text = null, idReadable = null;
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String fieldName = parser.getCurrentName();
+            JsonToken token = parser.nextToken();
+            switch (fieldName) {
+                case "id":
+                    entity.id = parser.getValueAsString();
+                    break;
+                case "idReadable":
+                    idReadable = parser.getValueAsString();
+                    break;
+                case "name":
+                    name = parser.getValueAsString();
+                    break;
+                case "presentation":
+                    presentation = parser.getValueAsString();
+                    break;
+                case "text":
+                    text = parser.getValueAsString();
+                    break;
+                case "login":
+                    entity.authorLogin = StringPool.intern(parser.getValueAsString());
+                    break;
+                case "fullName":
+                    entity.authorName = StringPool.intern(parser.getValueAsString());
+                    break;
+                case "url":
+                    entity.url = parser.getValueAsString();
+                    break;
+                case "created":
+                    entity.created = token == JsonToken.VALUE_NULL ? null : parser.getLongValue();
+                    break;
+                case "deleted":
+                    entity.deleted = token == JsonToken.VALUE_TRUE;
+                    break;
+                case "author":
+                    if (token == JsonToken.START_OBJECT) {
+                        Entity author = parseEntity(parser);
+                        entity.authorLogin = author.authorLogin;
+                        entity.authorName = author.authorName;
+                    }
+                    break;
+                default:
+                    parser.skipChildren();
+            }
+        }
+        //the most human readable representation available
+        entity.text = text != null ? text : presentation != null ? presentation : name != null ? name
+                : idReadable != null ? idReadable : entity.authorName != null ? entity.authorName : entity.authorLogin;
+        return entity;
+    }
+
+    private String readStringField(JsonParser parser, JsonToken token, String fieldName) throws IOException {
+        if (token != JsonToken.START_OBJECT) {
+            parser.skipChildren();
+            return token == JsonToken.VALUE_NULL ? null : parser.getValueAsString();
+        }
+        String value = null;
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String name = parser.getCurrentName();
+            parser.nextToken();
+            if (fieldName.equals(name)) {
+                value = parser.getValueAsString();
+            } else {
+                parser.skipChildren();
+            }
+        }
+        return value;
+    }
+
+    private static void expect(JsonToken actual, JsonToken expected) throws IOException {
+        if (actual != expected) {
+            throw new IOException("Unexpected token " + actual + ", expected " + expected);
+        }
+    }
+}
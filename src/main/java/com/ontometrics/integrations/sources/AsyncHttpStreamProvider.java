@@ -0,0 +1,188 @@
+package com.ontometrics.integrations.sources;
+
+import com.google.common.base.Charsets;
+import com.google.common.io.BaseEncoding;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.SettableFuture;
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.io.input.ClosedInputStream;
+import org.apache.commons.lang.StringUtils;
+import org.apache.http.HttpResponse;
+import org.apache.http.StatusLine;
+import org.apache.http.HttpHeaders;
+import org.apache.http.client.config.RequestConfig;
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.concurrent.FutureCallback;
+import org.apache.http.impl.nio.client.CloseableHttpAsyncClient;
+import org.apache.http.impl.nio.client.HttpAsyncClients;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URL;
+
+/**
+ * <p>
+ * External http resource stream provider backed by non-blocking {@link CloseableHttpAsyncClient}: requests are sent and
+ * responses are received by a couple of I/O threads, so many requests can be in flight without holding a thread for each.
+ * </p>
+ * <p>
+ * Response is buffered and passed to the {@link InputStreamHandler} in the I/O thread, handlers should not block.
+ * </p>
+ * <p>
+ * Requests fail with timeout if the connection is not established, the server does not send any data or no connection
+ * of the pool is freed in time, so a hung response does not block the poll forever.
+ * </p>
+ * AsyncHttpStreamProvider.java
+ */
+public class AsyncHttpStreamProvider implements AsyncStreamProvider, Closeable {
+
+    private static final Logger logger = LoggerFactory.getLogger(AsyncHttpStreamProvider.class);
+
+    public static final int DEFAULT_MAX_CONNECTIONS = 8;
+    public static final int DEFAULT_CONNECT_TIMEOUT_MILLIS = 10 * 1000;
+    public static final int DEFAULT_SOCKET_TIMEOUT_MILLIS = 60 * 1000;
+    public static final int DEFAULT_CONNECTION_REQUEST_TIMEOUT_MILLIS = 5 * 60 * 1000;
+
+    private final CloseableHttpAsyncClient httpClient;
+    private final String authorization;
+
+    public AsyncHttpStreamProvider(Builder builder) {
+        //credentials are sent with every request, saving the round trip for authentication challenge
+        authorization = builder.login == null ? null : "Basic " + BaseEncoding.base64().encode(
+                (builder.login + ":" + StringUtils.defaultString(builder.password)).getBytes(Charsets.UTF_8));
+        httpClient = HttpAsyncClients.custom()
+                .setMaxConnPerRoute(builder.maxConnections)
+                .setMaxConnTotal(builder.maxConnections)
+                .setDefaultRequestConfig(RequestConfig.custom()
+                        .setConnectTimeout(builder.connectTimeoutMillis)
+                        .setSocketTimeout(builder.socketTimeoutMillis)
+                        .setConnectionRequestTimeout(builder.connectionRequestTimeoutMillis)
+                        .build())
+                .build();
+        httpClient.start();
+    }
+
+    public static class Builder {
+
+        private String login;
+        private String password;
+        private int maxConnections = DEFAULT_MAX_CONNECTIONS;
+        private int connectTimeoutMillis = DEFAULT_CONNECT_TIMEOUT_MILLIS;
+        private int socketTimeoutMillis = DEFAULT_SOCKET_TIMEOUT_MILLIS;
+        private int connectionRequestTimeoutMillis = DEFAULT_CONNECTION_REQUEST_TIMEOUT_MILLIS;
+
+        public Builder basicAuthentication(String login, String password) {
+            this.login = login;
+            this.password = password;
+            return this;
+        }
+
+        /**
+         * @param maxConnections maximum number of concurrent requests, others wait for a free connection
+         */
+        public Builder maxConnections(int maxConnections) {
+            if (maxConnections <= 0) {
+                throw new IllegalArgumentException("maxConnections must be positive: " + maxConnections);
+            }
+            this.maxConnections = maxConnections;
+            return this;
+        }
+
+        /**
+         * @param connectTimeoutMillis timeout of establishing the connection, 0 for no timeout
+         * @return this, for chaining
+         */
+        public Builder connectTimeout(int connectTimeoutMillis) {
+            this.connectTimeoutMillis = checkTimeout(connectTimeoutMillis);
+            return this;
+        }
+
+        /**
+         * @param socketTimeoutMillis maximum time without data from the server while waiting for the response,
+         *                            0 for no timeout
+         * @return this, for chaining
+         */
+        public Builder socketTimeout(int socketTimeoutMillis) {
+            this.socketTimeoutMillis = checkTimeout(socketTimeoutMillis);
+            return this;
+        }
+
+        /**
+         * @param connectionRequestTimeoutMillis maximum time the request waits for a free connection, 0 for no timeout
+         * @return this, for chaining
+         */
+        public Builder connectionRequestTimeout(int connectionRequestTimeoutMillis) {
+            this.connectionRequestTimeoutMillis = checkTimeout(connectionRequestTimeoutMillis);
+            return this;
+        }
+
+        private static int checkTimeout(int timeoutMillis) {
+            if (timeoutMillis < 0) {
+                throw new IllegalArgumentException("timeout must not be negative: " + timeoutMillis);
+            }
+            return timeoutMillis;
+        }
+
+        public AsyncHttpStreamProvider build() {
+            return new AsyncHttpStreamProvider(this);
+        }
+    }
+
+    @Override
+    public <RES> ListenableFuture<RES> openResourceStreamAsync(URL resourceUrl,
+                                                               final InputStreamHandler<RES> inputStreamHandler) {
+        final SettableFuture<RES> result = SettableFuture.create();
+        HttpGet request = new HttpGet(resourceUrl.toExternalForm());
+        if (authorization != null) {
+            request.setHeader(HttpHeaders.AUTHORIZATION, authorization);
+        }
+        httpClient.execute(request, new FutureCallback<HttpResponse>() {
+            @Override
+            public void completed(HttpResponse httpResponse) {
+                StatusLine statusLine = httpResponse.getStatusLine();
+                if (StringUtils.isNotBlank(statusLine.getReasonPhrase())) {
+                    logger.debug("Got response with code {} reason: {}", statusLine.getStatusCode(), statusLine.getReasonPhrase());
+                } else {
+                    logger.debug("Got response with code {}", statusLine.getStatusCode());
+                }
+                InputStream is = null;
+                try {
+                    is = httpResponse.getEntity() != null
+                            ? httpResponse.getEntity().getContent() : ClosedInputStream.CLOSED_INPUT_STREAM;
+                    result.set(inputStreamHandler.handleStream(is, statusLine.getStatusCode()));
+                } catch (Exception e) {
+                    result.setException(e);
+                } finally {
+                    IOUtils.closeQuietly(is);
+                }
+            }
+
+            @Override
+            public void failed(Exception ex) {
+                result.setException(ex);
+            }
+
+            @Override
+            public void cancelled() {
+                result.cancel(false);
+            }
+        });
+        return result;
+    }
+
+    /**
+     * Blocks until the response is handled
+     */
+    @Override
+    public <RES> RES openResourceStream(URL resourceUrl, InputStreamHandler<RES> inputStreamHandler) throws Exception {
+        return StreamProviders.getResult(openResourceStreamAsync(resourceUrl, inputStreamHandler));
+    }
+
+    @Override
+    public void close() throws IOException {
+        httpClient.close();
+    }
+}
@@ -0,0 +1,23 @@
+package com.ontometrics.integrations.sources;
+
+import com.google.common.util.concurrent.ListenableFuture;
+
+import java.net.URL;
+
+/**
+ * {@link StreamProvider} which can open resources without blocking the calling thread
+ *
+ * AsyncStreamProvider.java
+ */
+public interface AsyncStreamProvider extends StreamProvider {
+    /**
+     * Requests a resource and provides its {@link java.io.InputStream} in the call to
+     * {@link com.ontometrics.integrations.sources.InputStreamHandler#handleStream(java.io.InputStream, int)} once
+     * the response is received
+     * @param resourceUrl url of the resource to be accessed/processed by inputStreamHandler)
+     * @param inputStreamHandler resource stream handler
+     * @param <RES> class of resource stream handling result
+     * @return future result, failed with the exception thrown by the request or by the handler
+     */
+    <RES> ListenableFuture<RES> openResourceStreamAsync(URL resourceUrl, InputStreamHandler<RES> inputStreamHandler);
+}
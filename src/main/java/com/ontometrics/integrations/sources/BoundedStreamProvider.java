@@ -0,0 +1,35 @@
+package com.ontometrics.integrations.sources;
+
+import java.net.URL;
+import java.util.concurrent.Semaphore;
+
+/**
+ * {@link StreamProvider} which limits the number of resources opened at the same time by the wrapped provider,
+ * callers wait for a free permit
+ *
+ * BoundedStreamProvider.java
+ */
+public class BoundedStreamProvider implements StreamProvider {
+
+    private final StreamProvider streamProvider;
+    private final Semaphore permits;
+
+    /**
+     * @param streamProvider provider which opens resources
+     * @param maxOpenResources maximum number of resources opened at the same time
+     */
+    public BoundedStreamProvider(StreamProvider streamProvider, int maxOpenResources) {
+        this.streamProvider = streamProvider;
+        this.permits = new Semaphore(maxOpenResources, true);
+    }
+
+    @Override
+    public <RES> RES openResourceStream(URL resourceUrl, InputStreamHandler<RES> inputStreamHandler) throws Exception {
+        permits.acquire();
+        try {
+            return streamProvider.openResourceStream(resourceUrl, inputStreamHandler);
+        } finally {
+            permits.release();
+        }
+    }
+}
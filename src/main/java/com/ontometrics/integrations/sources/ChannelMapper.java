@@ -1,30 +1,118 @@
 package com.ontometrics.integrations.sources;
 
 import com.ontometrics.integrations.events.Issue;
+import com.ontometrics.integrations.events.IssueEdit;
+import com.ontometrics.integrations.events.IssueEditSession;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.util.HashMap;
-import java.util.Map;
+import java.util.*;
 
 /**
+ * <p>
+ * Routes issues and sessions to channels by {@link RoutingRule}s, project mappings "PREFIX->channel" are rules
+ * "project=PREFIX -> channel". A session goes to the channels of every matching rule, or to the default channel if no
+ * rule matches. Channels subscribed to the keywords of the session by {@link KeywordIndex} get it as well.
+ * </p>
+ * <p>
+ * Rules are compiled into an index from a fact (project, changed field, field value, updater, tag) to the rules, each
+ * rule is indexed only by the facts of its most selective condition. A session is routed by looking up its facts and
+ * checking the other conditions of the rules found, so the time depends on the facts of the session and the rules
+ * they select, not on the number of rules.
+ * </p>
  * Created by rob on 7/17/14.
  * Copyright (c) ontometrics, 2014 All Rights Reserved
  */
 public class ChannelMapper {
 
+    private static final String TAGS_FIELD = "tags";
+    private static final String TAG_FIELD = "tag";
+
     private final Map<String, String> mappings;
     private final String defaultChannel;
+    private final List<RoutingRule> rules;
+    /**
+     * Rules selected by the fact
+     */
+    private final Map<String, int[]> factRules;
+    /**
+     * Channels of the rules without conditions
+     */
+    private final List<String> alwaysChannels;
+    private final KeywordIndex keywordIndex;
+    private final ThreadLocal<Matches> matches = new ThreadLocal<Matches>() {
+        @Override
+        protected Matches initialValue() {
+            return new Matches(rules.size());
+        }
+    };
     private static final Logger log = LoggerFactory.getLogger(ChannelMapper.class);
 
     public ChannelMapper(Builder builder) {
         mappings = builder.mappings;
         defaultChannel = builder.defaultChannel;
+        keywordIndex = builder.keywordIndex.build();
+        rules = new ArrayList<>(mappings.size() + builder.rules.size());
+        for (Map.Entry<String, String> mapping : mappings.entrySet()) {
+            rules.add(RoutingRule.project(mapping.getKey(), mapping.getValue()));
+        }
+        rules.addAll(builder.rules);
+
+        //number of conditions each fact satisfies, the condition with the least shared facts selects the rule
+        Map<String, Integer> factConditions = new HashMap<>();
+        for (RoutingRule rule : rules) {
+            for (Set<String> facts : rule.getConditions().values()) {
+                for (String fact : facts) {
+                    Integer count = factConditions.get(fact);
+                    factConditions.put(fact, count == null ? 1 : count + 1);
+                }
+            }
+        }
+        Map<String, List<Integer>> index = new HashMap<>();
+        Set<String> always = new LinkedHashSet<>();
+        for (int rule = 0; rule < rules.size(); rule++) {
+            Set<String> selectingFacts = null;
+            int selectedRules = Integer.MAX_VALUE;
+            for (Set<String> facts : rules.get(rule).getConditions().values()) {
+                int count = 0;
+                for (String fact : facts) {
+                    count += factConditions.get(fact);
+                }
+                if (count < selectedRules) {
+                    selectingFacts = facts;
+                    selectedRules = count;
+                }
+            }
+            if (selectingFacts == null) {
+                always.addAll(rules.get(rule).getChannels());
+                continue;
+            }
+            for (String fact : selectingFacts) {
+                List<Integer> factIndex = index.get(fact);
+                if (factIndex == null) {
+                    factIndex = new ArrayList<>();
+                    index.put(fact, factIndex);
+                }
+                factIndex.add(rule);
+            }
+        }
+        factRules = new HashMap<>(index.size() * 2);
+        for (Map.Entry<String, List<Integer>> entry : index.entrySet()) {
+            int[] factIndex = new int[entry.getValue().size()];
+            for (int i = 0; i < factIndex.length; i++) {
+                factIndex[i] = entry.getValue().get(i);
+            }
+            factRules.put(entry.getKey(), factIndex);
+        }
+        alwaysChannels = new ArrayList<>(always);
+        log.info("Compiled {} routing rules selected by {} facts", rules.size(), factRules.size());
     }
 
     public static class Builder {
 
         Map<String, String> mappings = new HashMap<>();
+        private final List<RoutingRule> rules = new ArrayList<>();
+        private final KeywordIndex.Builder keywordIndex = new KeywordIndex.Builder();
         private String defaultChannel;
 
         public Builder defaultChannel(String defaultChannel){
@@ -37,16 +125,201 @@ public class ChannelMapper {
             return this;
         }
 
+        /**
+         * @param rule rule in the format described in {@link RoutingRule}
+         * @return this, for chaining
+         * @throws IllegalArgumentException if the rule can not be parsed
+         */
+        public Builder addRule(String rule){
+            return addRule(RoutingRule.parse(rule));
+        }
+
+        public Builder addRule(RoutingRule rule){
+            rules.add(rule);
+            return this;
+        }
+
+        /**
+         * @param subscription keyword subscription in the format described in {@link KeywordIndex.Builder#subscribe(String)}
+         * @return this, for chaining
+         * @throws IllegalArgumentException if the subscription can not be parsed
+         */
+        public Builder subscribe(String subscription){
+            keywordIndex.subscribe(subscription);
+            return this;
+        }
+
         public ChannelMapper build(){
             return new ChannelMapper(this);
             }
     }
 
 
+    /**
+     * @return first channel of the issue, see {@link #getChannels(Issue)}
+     */
     public String getChannel(final Issue issue){
-        String targetChannel = mappings.get(issue.getPrefix());
-        log.debug("Source: {} Target: {}", issue.getPrefix(), targetChannel);
-        return targetChannel != null  ? targetChannel : defaultChannel;
+        List<String> channels = getChannels(issue);
+        log.debug("Source: {} Target: {}", issue.getPrefix(), channels);
+        return channels.isEmpty() ? null : channels.get(0);
+    }
+
+    /**
+     * @return channels of the new issue, matched by its project and creator, and the channels subscribed to the
+     * keywords of its title and description
+     */
+    public List<String> getChannels(Issue issue) {
+        Matches matches = this.matches.get().reset();
+        addFact(matches, RoutingRule.Dimension.PROJECT, issue.getPrefix());
+        addFact(matches, RoutingRule.Dimension.UPDATER, issue.getCreator());
+        List<String> channels = getChannels(matches);
+        if (!keywordIndex.isEmpty()) {
+            Set<String> subscribed = new LinkedHashSet<>(channels);
+            keywordIndex.addChannels(issue, subscribed);
+            channels = subscribed.size() == channels.size() ? channels : new ArrayList<>(subscribed);
+        }
+        return channels;
+    }
+
+    /**
+     * @return channels of every rule matching the session in the order of the rules (the default channel if none)
+     * followed by the channels subscribed to the keywords of the session
+     */
+    public List<String> getChannels(IssueEditSession session) {
+        Matches matches = this.matches.get().reset();
+        addFact(matches, RoutingRule.Dimension.PROJECT, session.getIssue().getPrefix());
+        addFact(matches, RoutingRule.Dimension.UPDATER, session.getUpdater());
+        if (session.getChanges() != null) {
+            for (IssueEdit change : session.getChanges()) {
+                if (change.getField() == null) {
+                    continue;
+                }
+                addFact(matches, RoutingRule.Dimension.FIELD, change.getField());
+                if (change.getCurrentValue() != null) {
+                    addFact(matches, RoutingRule.Dimension.FIELD,
+                            RoutingRule.fieldValue(change.getField(), change.getCurrentValue()));
+                    if (change.getField().equalsIgnoreCase(TAGS_FIELD) || change.getField().equalsIgnoreCase(TAG_FIELD)) {
+                        for (String tag : change.getCurrentValue().split(",")) {
+                            addFact(matches, RoutingRule.Dimension.TAG, tag);
+                        }
+                    }
+                }
+            }
+        }
+        List<String> channels = getChannels(matches);
+        if (!keywordIndex.isEmpty()) {
+            Set<String> subscribed = new LinkedHashSet<>(channels);
+            keywordIndex.addChannels(session, subscribed);
+            channels = subscribed.size() == channels.size() ? channels : new ArrayList<>(subscribed);
+        }
+        log.debug("Session of {}-{} by {} is routed to {}", session.getIssue().getPrefix(), session.getIssue().getId(),
+                session.getUpdater(), channels);
+        return channels;
+    }
+
+    /**
+     * @return number of rules checked by the last routing of the current thread
+     */
+    int getCheckedRuleCount() {
+        return matches.get().checkedCount;
+    }
+
+    private void addFact(Matches matches, RoutingRule.Dimension dimension, String value) {
+        if (value != null) {
+            matches.facts.add(dimension.key(value));
+        }
+    }
+
+    private List<String> getChannels(Matches matches) {
+        for (String fact : matches.facts) {
+            int[] selected = factRules.get(fact);
+            if (selected != null) {
+                for (int rule : selected) {
+                    if (matches.select(rule) && matchesAll(rules.get(rule), matches.facts)) {
+                        matches.match(rule);
+                    }
+                }
+            }
+        }
+        if (matches.matchedCount == 0) {
+            if (!alwaysChannels.isEmpty()) {
+                return alwaysChannels;
+            }
+            return defaultChannel == null ? Collections.<String>emptyList() : Collections.singletonList(defaultChannel);
+        }
+        Arrays.sort(matches.matched, 0, matches.matchedCount);
+        Set<String> channels = new LinkedHashSet<>(alwaysChannels);
+        for (int i = 0; i < matches.matchedCount; i++) {
+            channels.addAll(rules.get(matches.matched[i]).getChannels());
+        }
+        return new ArrayList<>(channels);
+    }
+
+    /**
+     * @return prefixes of the projects which have their own channel
+     */
+    public Set<String> getMappedPrefixes() {
+        Set<String> prefixes = new LinkedHashSet<>(mappings.keySet());
+        for (RoutingRule rule : rules) {
+            prefixes.addAll(rule.getProjects());
+        }
+        return Collections.unmodifiableSet(prefixes);
+    }
+
+    private static boolean matchesAll(RoutingRule rule, Set<String> facts) {
+        for (Set<String> conditionFacts : rule.getConditions().values()) {
+            if (Collections.disjoint(conditionFacts, facts)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * State of one routing, reused by the thread. Rule stamps are not cleared between the routings: a rule is
+     * already checked only if its stamp is the stamp of the current routing.
+     */
+    private static class Matches {
+        private final Set<String> facts = new HashSet<>();
+        private final int[] ruleStamps;
+        private int[] matched = new int[8];
+        private int matchedCount;
+        private int checkedCount;
+        private int stamp;
+
+        private Matches(int rules) {
+            ruleStamps = new int[rules];
+        }
+
+        private Matches reset() {
+            facts.clear();
+            matchedCount = 0;
+            checkedCount = 0;
+            if (++stamp == 0) {
+                Arrays.fill(ruleStamps, 0);
+                stamp = 1;
+            }
+            return this;
+        }
+
+        /**
+         * @return true if the rule is not checked yet by this routing
+         */
+        private boolean select(int rule) {
+            if (ruleStamps[rule] == stamp) {
+                return false;
+            }
+            ruleStamps[rule] = stamp;
+            checkedCount++;
+            return true;
+        }
+
+        private void match(int rule) {
+            if (matchedCount == matched.length) {
+                matched = Arrays.copyOf(matched, matchedCount * 2);
+            }
+            matched[matchedCount++] = rule;
+        }
     }
 
 }
@@ -12,13 +12,20 @@ public class ChannelMapperFactory {
 
     public static final String CHANNEL_MAPPINGS = "channel-mappings";
     public static final String DEFAULT_CHANNEL = "default-channel";
+    public static final String ROUTING_RULES = "routing-rules";
+    public static final String KEYWORD_SUBSCRIPTIONS = "keyword-subscriptions";
 
     /**
      * "default-slack-channel" specify list of mappings in the format "${youtrack.project.prefix}->${slack.channel.name}"
      * delimited by ";" (or whatever delimiter which as treated as list delimiter by passed configuration instance"
      * For example "ASOC->vixlet;HA->jobspider;DMAN->dminder"
+     * Routing rules (see {@link RoutingRule}) are listed in "routing-rules" property with the same delimiter, e.g.
+     * "field=Priority:Critical,Show-stopper -> alerts;project=HA &amp; field=State:Fixed -> releases,qa"
+     * Keyword subscriptions (see {@link KeywordIndex}) are listed in "keyword-subscriptions" property, e.g.
+     * "outage, rollback -> ops;invoice, billing -> finance"
      * @param configuration configuration
      * @return ChannelMapper instance created from properties "youtrack-to-slack-channels" and "default-slack-channel"
+     * @throws IllegalArgumentException if a routing rule or a keyword subscription can not be parsed
      */
     public static ChannelMapper fromConfiguration(Configuration configuration, String propertyPrefix) {
         String [] mappings = configuration.getStringArray(propertyPrefix + CHANNEL_MAPPINGS);
@@ -30,6 +37,12 @@ public class ChannelMapperFactory {
                 builder.addMapping(keyValue[0], keyValue[1]);
             }
         }
+        for (String rule : configuration.getStringArray(propertyPrefix + ROUTING_RULES)) {
+            builder.addRule(rule);
+        }
+        for (String subscription : configuration.getStringArray(propertyPrefix + KEYWORD_SUBSCRIPTIONS)) {
+            builder.subscribe(subscription);
+        }
 
         return builder.build();
     }
@@ -0,0 +1,112 @@
+package com.ontometrics.integrations.sources;
+
+import com.ontometrics.integrations.events.Issue;
+import com.ontometrics.integrations.events.IssueEditSession;
+
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * <p>
+ * Sessions found since the last processed change, extracted lazily in bounded chunks, so only the sessions of one
+ * chunk are held in memory. Chunks follow the order in which the issues were last published in the feed.
+ * </p>
+ * <p>
+ * Each chunk but the last may carry a checkpoint: events published up to it are covered by this and the previous
+ * chunks and the issues of the next chunks have no unprocessed changes up to it, so it can be saved as the last
+ * processed date once the chunk is posted. It is not after the lower bounds of the changes of the next chunks, so
+ * it moves the date forward only as far as the per-issue change dates allow.
+ * </p>
+ */
+public abstract class EditSessionsChunks {
+
+    /**
+     * @return number of issues in all chunks
+     */
+    public abstract int size();
+
+    /**
+     * @return true if there are more chunks
+     */
+    public abstract boolean hasNext();
+
+    /**
+     * Extracts the sessions of the next chunk
+     *
+     * @return next chunk
+     * @throws Exception if extraction failed
+     */
+    public abstract Chunk next() throws Exception;
+
+    /**
+     * @return single chunk of already extracted sessions
+     */
+    public static EditSessionsChunks of(final List<IssueEditSession> sessions) {
+        return new EditSessionsChunks() {
+            private boolean consumed;
+
+            @Override
+            public int size() {
+                return new Chunk(sessions, null).getIssueCount();
+            }
+
+            @Override
+            public boolean hasNext() {
+                return !consumed;
+            }
+
+            @Override
+            public Chunk next() {
+                consumed = true;
+                return new Chunk(sessions, null);
+            }
+        };
+    }
+
+    public static class Chunk {
+        private final List<IssueEditSession> sessions;
+        private final Date checkpoint;
+        private final int issueCount;
+
+        /**
+         * @param sessions sessions of the chunk
+         * @param checkpoint date covered by this and previous chunks, null for the last chunk or if no date is covered
+         * @param issueCount number of issues in the chunk, including issues without sessions
+         */
+        public Chunk(List<IssueEditSession> sessions, Date checkpoint, int issueCount) {
+            this.sessions = sessions;
+            this.checkpoint = checkpoint;
+            this.issueCount = issueCount;
+        }
+
+        /**
+         * Chunk of the issues of the sessions
+         */
+        public Chunk(List<IssueEditSession> sessions, Date checkpoint) {
+            this(sessions, checkpoint, countIssues(sessions));
+        }
+
+        private static int countIssues(List<IssueEditSession> sessions) {
+            Set<Issue> issues = new HashSet<>();
+            for (IssueEditSession session : sessions) {
+                issues.add(session.getIssue());
+            }
+            return issues.size();
+        }
+
+        public List<IssueEditSession> getSessions() {
+            return Collections.unmodifiableList(sessions);
+        }
+
+        public Date getCheckpoint() {
+            return checkpoint;
+        }
+
+        public int getIssueCount() {
+            return issueCount;
+        }
+    }
+}
@@ -1,8 +1,16 @@
 package com.ontometrics.integrations.sources;
 
+import com.google.common.base.Function;
+import com.google.common.util.concurrent.AsyncFunction;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.ontometrics.integrations.configuration.EventProcessorConfiguration;
 import com.ontometrics.integrations.configuration.IssueTracker;
+import com.ontometrics.integrations.configuration.PagedFeedIssueTracker;
 import com.ontometrics.integrations.events.*;
 import com.ontometrics.util.BadResponseException;
+import com.ontometrics.util.StringPool;
+import com.ontometrics.util.Timestamps;
 import org.apache.commons.io.IOUtils;
 import org.apache.commons.lang.StringUtils;
 import org.apache.http.HttpStatus;
@@ -20,9 +28,8 @@ import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.net.URL;
-import java.text.DateFormat;
-import java.text.SimpleDateFormat;
 import java.util.*;
+import java.util.concurrent.atomic.AtomicLong;
 
 import static org.slf4j.LoggerFactory.getLogger;
 
@@ -38,6 +45,9 @@ import static org.slf4j.LoggerFactory.getLogger;
  * But then the changes are converted into {@link com.ontometrics.integrations.events.IssueEdit} instances because they
  * are part of a session that contains the information about who updated them and when.
  * </p>
+ * <p>
+ * The extractor keeps no parsing state between calls, so one instance can be used by concurrent polls.
+ * </p>
  * User: Rob
  * Date: 8/23/14
  * Time: 10:19 PM
@@ -48,11 +58,24 @@ public class EditSessionsExtractor {
 
     private Logger log = getLogger(EditSessionsExtractor.class);
 
+    private static final int MAX_CATCH_UP_PAGES = 20;
+    private static final int MAX_WINDOW_PAGES = 1000;
+
+    private static final Comparator<PendingIssue> PUBLISH_DATE_COMPARATOR = new Comparator<PendingIssue>() {
+        @Override
+        public int compare(PendingIssue i1, PendingIssue i2) {
+            //unknown publish time is the smallest
+            return Long.compare(i1.publishTime, i2.publishTime);
+        }
+    };
+
     private static final Logger responseContentLogger = getLogger("com.ontometrics.integration.youtrack.response");
 
     private final IssueTracker issueTracker;
-    private XMLEventReader eventReader;
-    private StreamProvider streamProvider;
+    private final StreamProvider streamProvider;
+    private final AsyncStreamProvider asyncStreamProvider;
+    private volatile Set<String> excludedProjects = Collections.emptySet();
+    private final AtomicLong gapsDetected = new AtomicLong();
 
     /**
      * Need to talk to the IssueTracker that has the ticket information, and we will probably
@@ -64,6 +87,19 @@ public class EditSessionsExtractor {
     public EditSessionsExtractor(IssueTracker issueTracker, StreamProvider streamProvider) {
         this.issueTracker = issueTracker;
         this.streamProvider = streamProvider;
+        this.asyncStreamProvider = StreamProviders.async(streamProvider);
+    }
+
+    /**
+     * Events of the excluded projects found in the feed are skipped, they are polled by the shards of their own.
+     * Should be set before the extractor is used.
+     *
+     * @param projects prefixes of the excluded projects
+     * @return this extractor
+     */
+    public EditSessionsExtractor excludeProjects(Collection<String> projects) {
+        this.excludedProjects = Collections.unmodifiableSet(new HashSet<>(projects));
+        return this;
     }
 
     public List<IssueEditSession> getLatestEdits() throws Exception {
@@ -79,31 +115,230 @@ public class EditSessionsExtractor {
      * @throws Exception
      */
     public List<IssueEditSession> getLatestEdits(Date minDate) throws Exception {
+        return getLatestEdits(minDate, null);
+    }
+
+    /**
+     * Same as {@link #getLatestEdits(java.util.Date)}, but changes of each issue are requested only after the
+     * date of the last processed change of this issue (if it is after minDate). Issues which were not published in the
+     * feed after that date are skipped without requesting their changes.
+     *
+     * @param minDate global lower bound of the changes
+     * @param configuration source of the per-issue last processed change dates, may be null
+     * @return all sessions found that occurred after the last edit
+     * @throws Exception
+     */
+    public List<IssueEditSession> getLatestEdits(Date minDate, EventProcessorConfiguration configuration) throws Exception {
         log.debug("edits since: {}", minDate);
         List<IssueEditSession> sessions = new ArrayList<>();
-        List<ProcessEvent> events = getLatestEvents(minDate);
-        Set<Integer> issuesWeHaveGottenChangesFor = new HashSet<>();
-        for (ProcessEvent event : events){
-            if (!issuesWeHaveGottenChangesFor.contains(event.getIssue().getId())) {
-                issuesWeHaveGottenChangesFor.add(event.getIssue().getId());
+        List<ListenableFuture<List<IssueEditSession>>> issueSessions = new ArrayList<>();
+        for (PendingIssue pendingIssue : getPendingIssues(getLatestEvents(minDate), minDate, configuration)) {
+            issueSessions.add(getIssueEditsAsync(pendingIssue.event, pendingIssue.minDate));
+        }
+        //requests of all issues are in flight, wait for them in the order of the feed
+        for (List<IssueEditSession> editSessions : StreamProviders.getResult(Futures.allAsList(issueSessions))) {
+            sessions.addAll(editSessions);
+        }
+        return sessions;
+    }
+
+    /**
+     * Same as {@link #getLatestEdits(java.util.Date, EventProcessorConfiguration)}, but the sessions are extracted
+     * when the chunk is requested, changes of chunkSize issues at once. Issues are taken in the order of their
+     * latest publish date in the feed.
+     *
+     * @param minDate global lower bound of the changes
+     * @param configuration source of the per-issue last processed change dates, may be null
+     * @param chunkSize maximum number of issues in a chunk
+     * @return chunks of the sessions found that occurred after the last edit
+     * @throws Exception if the feed cannot be read
+     */
+    public EditSessionsChunks getLatestEditChunks(Date minDate, EventProcessorConfiguration configuration,
+                                                  final int chunkSize) throws Exception {
+        if (chunkSize <= 0) {
+            throw new IllegalArgumentException("chunkSize must be positive: " + chunkSize);
+        }
+        log.debug("edits since: {} in chunks of {} issues", minDate, chunkSize);
+        return chunks(getPendingIssues(getLatestEvents(minDate), minDate, configuration), chunkSize);
+    }
+
+    /**
+     * Sessions of the issues updated in the time window, for replaying the history. The feed of the window is read
+     * back to its start with as many requests as needed, so the issue tracker has to be a {@link PagedFeedIssueTracker}.
+     * Like {@link #getLatestEditChunks(Date, EventProcessorConfiguration, int)}, changes of each issue are requested
+     * only after the date of its last processed change, so the sessions which were already posted are not repeated.
+     *
+     * @param since start of the window
+     * @param before end of the window; changes of the issues may be after it
+     * @param configuration source of the per-issue last processed change dates, may be null
+     * @param chunkSize maximum number of issues in a chunk
+     * @return chunks of the sessions of the issues updated in the window
+     * @throws Exception if the feed cannot be read
+     */
+    public EditSessionsChunks getEditChunks(Date since, Date before, EventProcessorConfiguration configuration,
+                                            int chunkSize) throws Exception {
+        if (!(issueTracker instanceof PagedFeedIssueTracker)) {
+            throw new UnsupportedOperationException("Feed of the issue tracker cannot be limited to a time window");
+        }
+        if (chunkSize <= 0) {
+            throw new IllegalArgumentException("chunkSize must be positive: " + chunkSize);
+        }
+        LinkedList<ProcessEvent> events = new LinkedList<>();
+        readFeedWindows((PagedFeedIssueTracker) issueTracker, since, before, events, new HashSet<String>(),
+                MAX_WINDOW_PAGES);
+        log.info("Found {} events between {} and {}", events.size(), since, before);
+        return chunks(getPendingIssues(events, since, configuration), chunkSize);
+    }
+
+    private EditSessionsChunks chunks(final List<PendingIssue> pendingIssues, final int chunkSize) {
+        Collections.sort(pendingIssues, PUBLISH_DATE_COMPARATOR);
+        //earliest lower bound of the changes of the issues from the index on, NONE if one of them is unbounded
+        final long[] remainingMinTimes = new long[pendingIssues.size() + 1];
+        remainingMinTimes[pendingIssues.size()] = Long.MAX_VALUE;
+        for (int i = pendingIssues.size() - 1; i >= 0; i--) {
+            remainingMinTimes[i] = Math.min(Timestamps.of(pendingIssues.get(i).minDate), remainingMinTimes[i + 1]);
+        }
+        return new EditSessionsChunks() {
+            private int nextIssue;
+
+            @Override
+            public int size() {
+                return pendingIssues.size();
+            }
+
+            @Override
+            public boolean hasNext() {
+                return nextIssue < pendingIssues.size();
+            }
+
+            @Override
+            public Chunk next() throws Exception {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                int end = Math.min(nextIssue + chunkSize, pendingIssues.size());
+                List<ListenableFuture<List<IssueEditSession>>> issueSessions = new ArrayList<>(end - nextIssue);
+                for (PendingIssue pendingIssue : pendingIssues.subList(nextIssue, end)) {
+                    issueSessions.add(getIssueEditsAsync(pendingIssue.event, pendingIssue.minDate));
+                }
+                List<IssueEditSession> sessions = new ArrayList<>();
+                for (List<IssueEditSession> editSessions : StreamProviders.getResult(Futures.allAsList(issueSessions))) {
+                    sessions.addAll(editSessions);
+                }
+                Date checkpoint = null;
+                if (end < pendingIssues.size()) {
+                    //issues published at the same time as the first one of the next chunk are not covered yet
+                    long lastPublished = pendingIssues.get(end - 1).publishTime;
+                    long nextPublished = pendingIssues.get(end).publishTime;
+                    //issues of the next chunks may have changes older than the publish dates of this chunk, which
+                    //are requested after their own lower bounds, the checkpoint must not skip them
+                    long unprocessed = remainingMinTimes[end];
+                    if (lastPublished != Timestamps.NONE && unprocessed != Timestamps.NONE) {
+                        long covered = lastPublished < nextPublished ? lastPublished : nextPublished - 1;
+                        checkpoint = new Date(Math.min(covered, unprocessed));
+                    }
+                }
+                Chunk chunk = new Chunk(sessions, checkpoint, end - nextIssue);
+                nextIssue = end;
+                return chunk;
+            }
+        };
+    }
+
+    /**
+     * @return first feed event and lower bound of the changes of each issue which may have unprocessed changes,
+     * in the order of the feed
+     */
+    private List<PendingIssue> getPendingIssues(List<ProcessEvent> events, Date minDate,
+                                                EventProcessorConfiguration configuration) {
+        //first event of the issue in the feed and the latest publish date of the issue
+        Map<Issue, PendingIssue> issues = new LinkedHashMap<>();
+        for (ProcessEvent event : events) {
+            PendingIssue pendingIssue = issues.get(event.getIssue());
+            if (pendingIssue == null) {
+                issues.put(event.getIssue(), new PendingIssue(event, minDate, event.getPublishTime()));
+            } else if (event.getPublishTime() > pendingIssue.publishTime) {
+                pendingIssue.publishTime = event.getPublishTime();
+            }
+        }
+        List<PendingIssue> pendingIssues = new ArrayList<>(issues.size());
+        for (PendingIssue pendingIssue : issues.values()){
+            if (configuration != null) {
+                Issue issue = pendingIssue.event.getIssue();
+                Date issueChangeDate = configuration.getEventChangeDate(issue);
+                if (issueChangeDate != null && (minDate == null || issueChangeDate.after(minDate))) {
+                    pendingIssue.minDate = issueChangeDate;
+                    if (pendingIssue.publishTime != Timestamps.NONE
+                            && pendingIssue.publishTime <= issueChangeDate.getTime()) {
+                        log.debug("skipping {}-{}: published {}, changes processed up to {}", issue.getPrefix(),
+                                issue.getId(), pendingIssue.publishTime, issueChangeDate);
+                        continue;
+                    }
+                }
+            }
+            pendingIssues.add(pendingIssue);
+        }
+        return pendingIssues;
+    }
+
+    /**
+     * Requests changes of the issue and then, if there are any, its attachments. With {@link AsyncStreamProvider}
+     * requests of all issues are in flight at the same time, blocking provider makes them one after another in the
+     * calling thread. Changes are requested by {@link #getEditsAsync(ProcessEvent, Date)} with
+     * {@link AsyncStreamProvider} and by {@link #getEdits(ProcessEvent, Date)} otherwise, so subclasses which change
+     * the edits override both.
+     *
+     * @param event the first event of the issue found in the feed
+     * @param minDate lower bound of the changes, may be null
+     * @return future sessions of the issue which should be posted
+     */
+    protected ListenableFuture<List<IssueEditSession>> getIssueEditsAsync(final ProcessEvent event, final Date minDate) {
+        if (!(streamProvider instanceof AsyncStreamProvider)) {
+            try {
                 List<IssueEditSession> editSessions = getEdits(event, minDate);
-                for (IssueEditSession session : editSessions) {
-                    List<AttachmentEvent> attachmentEvents = getAttachmentEvents(event, minDate);
-                    if (!attachmentEvents.isEmpty()) {
-                        sessions.add(new IssueEditSession.Builder()
-                                .updater(attachmentEvents.get(0).getAuthor())
-                                .updated(attachmentEvents.get(0).getCreated())
-                                .issue(event.getIssue())
-                                .attachments(attachmentEvents)
-                                .build());
-                    } else {
-                        if (session.hasChanges()) {
-                            sessions.add(session);
-                        } else {
-                            if (session.isCreationEdit()){
-                                sessions.add(session);
-                            }
-                        }
+                List<AttachmentEvent> attachmentEvents = editSessions.isEmpty()
+                        ? Collections.<AttachmentEvent>emptyList()
+                        : StreamProviders.getResult(getAttachmentEventsAsync(event, minDate));
+                return Futures.immediateFuture(buildIssueEdits(event, editSessions, attachmentEvents));
+            } catch (Exception e) {
+                return Futures.immediateFailedFuture(e);
+            }
+        }
+        return Futures.transform(getEditsAsync(event, minDate),
+                new AsyncFunction<List<IssueEditSession>, List<IssueEditSession>>() {
+            @Override
+            public ListenableFuture<List<IssueEditSession>> apply(final List<IssueEditSession> editSessions) {
+                if (editSessions.isEmpty()) {
+                    return Futures.immediateFuture(Collections.<IssueEditSession>emptyList());
+                }
+                return Futures.transform(getAttachmentEventsAsync(event, minDate),
+                        new Function<List<AttachmentEvent>, List<IssueEditSession>>() {
+                    @Override
+                    public List<IssueEditSession> apply(List<AttachmentEvent> attachmentEvents) {
+                        return buildIssueEdits(event, editSessions, attachmentEvents);
+                    }
+                });
+            }
+        });
+    }
+
+    private List<IssueEditSession> buildIssueEdits(ProcessEvent event, List<IssueEditSession> editSessions,
+                                                   List<AttachmentEvent> attachmentEvents) {
+        List<IssueEditSession> sessions = new ArrayList<>();
+        for (IssueEditSession session : editSessions) {
+            if (!attachmentEvents.isEmpty()) {
+                sessions.add(new IssueEditSession.Builder()
+                        .updater(attachmentEvents.get(0).getAuthor())
+                        .updated(attachmentEvents.get(0).getCreatedTime())
+                        .issue(event.getIssue())
+                        .attachments(attachmentEvents)
+                        .build());
+            } else {
+                if (session.hasChanges()) {
+                    sessions.add(session);
+                } else {
+                    if (session.isCreationEdit()){
+                        sessions.add(session);
                     }
                 }
             }
@@ -111,9 +346,9 @@ public class EditSessionsExtractor {
         return sessions;
     }
 
-    private List<AttachmentEvent> getAttachmentEvents(ProcessEvent event, final Date minDate) throws Exception {
+    private ListenableFuture<List<AttachmentEvent>> getAttachmentEventsAsync(ProcessEvent event, final Date minDate) {
         final URL attachmentsUrl = issueTracker.getAttachmentsUrl(event.getIssue());
-        return streamProvider.openResourceStream(attachmentsUrl,
+        return asyncStreamProvider.openResourceStreamAsync(attachmentsUrl,
                 new InputStreamHandler<List<AttachmentEvent>>() {
             @Override
             public List<AttachmentEvent> handleStream(InputStream is, int responseCode) throws Exception {
@@ -130,9 +365,9 @@ public class EditSessionsExtractor {
                             if (nextEvent.asStartElement().getName().getLocalPart().equals("fileUrl")) {
                                 String url = nextEvent.asStartElement().getAttributeByName(new QName("", "url")).getValue();
                                 String name = nextEvent.asStartElement().getAttributeByName(new QName("", "name")).getValue();
-                                String author = nextEvent.asStartElement().getAttributeByName(new QName("", "authorLogin")).getValue();
-                                Date created = new Date(Long.parseLong(nextEvent.asStartElement().getAttributeByName(new QName("", "created")).getValue()));
-                                if (minDate==null || created.after(minDate)) {
+                                String author = StringPool.intern(nextEvent.asStartElement().getAttributeByName(new QName("", "authorLogin")).getValue());
+                                long created = Long.parseLong(nextEvent.asStartElement().getAttributeByName(new QName("", "created")).getValue());
+                                if (created > Timestamps.of(minDate)) {
                                     attachmentEvents.add(new AttachmentEvent.Builder().created(created).author(author).url(url).name(name).build());
                                 } else {
                                     log.debug("attachment from {} found, before {}", created, minDate);
@@ -146,9 +381,22 @@ public class EditSessionsExtractor {
         });
     }
 
-    public List<IssueEditSession> getEdits(final ProcessEvent e, final Date upToDate) throws Exception {
+    /**
+     * Blocking version of {@link #getEditsAsync(ProcessEvent, Date)}, which is called instead of this method when the
+     * stream provider is {@link AsyncStreamProvider}
+     */
+    public List<IssueEditSession> getEdits(ProcessEvent e, Date upToDate) throws Exception {
+        return StreamProviders.getResult(getEditsAsync(e, upToDate));
+    }
+
+    /**
+     * @param e event of the issue
+     * @param upToDate lower bound of the changes, may be null
+     * @return future sessions with changes of the issue made after upToDate
+     */
+    public ListenableFuture<List<IssueEditSession>> getEditsAsync(final ProcessEvent e, final Date upToDate) {
         final URL issueTrackerChangesUrl = issueTracker.getChangesUrl(e.getIssue());
-        return streamProvider.openResourceStream(issueTrackerChangesUrl,
+        return asyncStreamProvider.openResourceStreamAsync(issueTrackerChangesUrl,
                 new InputStreamHandler<List<IssueEditSession>>() {
             @Override
             public List<IssueEditSession> handleStream(InputStream is, int responseCode) throws Exception {
@@ -161,8 +409,9 @@ public class EditSessionsExtractor {
                 String currentFieldName = "";
                 String oldValue = "", newValue = "";
                 String updaterName = "";
-                Date updated = null;
-                Date created = null;
+                long upTo = Timestamps.of(upToDate);
+                long updated = Timestamps.NONE;
+                long created = Timestamps.NONE;
                 String creator = "";
                 String description = "";
                 List<IssueEditSession> extractedEdits = new ArrayList<>();
@@ -180,13 +429,13 @@ public class EditSessionsExtractor {
                                 case "change":
                                     break;
                                 case "field":
-                                    currentFieldName = nextEvent.asStartElement().getAttributeByName(new QName("", "name")).getValue();
+                                    currentFieldName = StringPool.intern(nextEvent.asStartElement().getAttributeByName(new QName("", "name")).getValue());
                                     //currentChangeType = nextEvent.asStartElement().getAttributes().next().toString();
                                     //log.info("found field named: {}: change type: {}", currentFieldName, currentChangeType);
                                     break;
                                 case "comment":
                                     Comment newComment = extractCommentFromStream(nextEvent.asStartElement());
-                                    if (upToDate == null || newComment.getCreated().after(upToDate)) {
+                                    if (newComment.getCreatedTime() > upTo) {
                                         newComments.add(newComment);
                                     }
                                     break;
@@ -219,16 +468,16 @@ public class EditSessionsExtractor {
                                             case "value":
                                                 switch (currentFieldName) {
                                                     case "updaterName":
-                                                        updaterName = elementText;
+                                                        updaterName = StringPool.intern(elementText);
                                                         break;
                                                     case "updated":
-                                                        updated = new Date(Long.parseLong(elementText));
+                                                        updated = Long.parseLong(elementText);
                                                         break;
                                                     case "created":
-                                                        created = new Date(Long.parseLong(elementText));
+                                                        created = Long.parseLong(elementText);
                                                         break;
                                                     case "creator":
-                                                        creator = elementText;
+                                                        creator = StringPool.intern(elementText);
                                                         break;
                                                     case "description":
                                                         description = elementText;
@@ -259,14 +508,14 @@ public class EditSessionsExtractor {
                                 case "field":
                                     if (newValue.length() > 0) {
                                         //include only non-processed changes
-                                        if (upToDate == null || updated.after(upToDate)) {
+                                        if (updated > upTo) {
                                             if (currentFieldName.equals("resolved")) {
                                                 newValue = new Date(Long.parseLong(newValue)).toString();
                                             }
                                             ProcessEventChange processEventChange = new ProcessEventChange.Builder()
                                                     .updater(updaterName)
-                                                    .updated(updated)
-                                                    .field(StringUtils.trim(currentFieldName))
+                                                    .updated(Timestamps.toDate(updated))
+                                                    .field(StringPool.intern(StringUtils.trim(currentFieldName)))
                                                     .priorValue(StringUtils.trim(oldValue))
                                                     .currentValue(StringUtils.trim(newValue))
                                                     .build();
@@ -280,7 +529,7 @@ public class EditSessionsExtractor {
                                     }
                                     break;
                                 case "change":
-                                    if (upToDate == null || updated.after(upToDate)) {
+                                    if (updated > upTo) {
                                         log.debug("upToDate: {} updated: {}", upToDate, updated);
                                         List<IssueEdit> edits = buildIssueEdits(currentChanges);
 //                                        for (Comment comment : newComments){
@@ -292,7 +541,7 @@ public class EditSessionsExtractor {
 //                                                    .build();
 //                                            extractedEdits.add(session);
 //                                        }
-                                        Issue issue = new Issue.Builder()
+                                        Issue issue = IssueRegistry.instance().intern(new Issue.Builder()
                                                 .projectPrefix(e.getIssue().getPrefix())
                                                 .id(e.getIssue().getId())
                                                 .title(e.getIssue().getTitle())
@@ -300,7 +549,7 @@ public class EditSessionsExtractor {
                                                 .creator(creator)
                                                 .link(e.getIssue().getLink())
                                                 .description(description)
-                                                .build();
+                                                .build());
                                         IssueEditSession session = new IssueEditSession.Builder()
                                                 .updater(updaterName)
                                                 .updated(updated)
@@ -318,8 +567,8 @@ public class EditSessionsExtractor {
 
                     }
                 }
-                if (upToDate == null || created.after(upToDate)) {
-                    Issue newIssue = new Issue.Builder()
+                if (created > upTo) {
+                    Issue newIssue = IssueRegistry.instance().intern(new Issue.Builder()
                             .projectPrefix(e.getIssue().getPrefix())
                             .id(e.getIssue().getId())
                             .created(created)
@@ -327,7 +576,7 @@ public class EditSessionsExtractor {
                             .description(description)
                             .title(e.getIssue().getTitle())
                             .link(e.getIssue().getLink())
-                            .build();
+                            .build());
                     IssueEditSession session = new IssueEditSession.Builder()
                             .updater(updaterName)
                             .updated(updated)
@@ -338,10 +587,10 @@ public class EditSessionsExtractor {
                     extractedEdits.add(session);
                 }
                 for (Comment comment : newComments) {
-                    if (upToDate == null || comment.getCreated().after(upToDate)) {
+                    if (comment.getCreatedTime() > upTo) {
                         IssueEditSession session = new IssueEditSession.Builder()
                                 .updater(comment.getAuthor())
-                                .updated(comment.getCreated())
+                                .updated(comment.getCreatedTime())
                                 .issue(e.getIssue())
                                 .comment(comment)
                                 .build();
@@ -353,7 +602,7 @@ public class EditSessionsExtractor {
         });
     }
 
-    private void checkResponseCode(int responseCode, URL requestUrl) {
+    protected void checkResponseCode(int responseCode, URL requestUrl) {
         if (responseCode != HttpStatus.SC_OK){
             //we got not normal response from server
             throw new BadResponseException(requestUrl, responseCode);
@@ -363,10 +612,10 @@ public class EditSessionsExtractor {
     private Comment extractCommentFromStream(StartElement commentTag) {
         return new Comment.Builder()
                 .id(commentTag.getAttributeByName(new QName("", "id")).getValue())
-                .author(commentTag.getAttributeByName(new QName("", "authorFullName")).getValue())
+                .author(StringPool.intern(commentTag.getAttributeByName(new QName("", "authorFullName")).getValue()))
                 .text(commentTag.getAttributeByName(new QName("", "text")).getValue())
                 .deleted(Boolean.valueOf(commentTag.getAttributeByName(new QName("", "deleted")).getValue()))
-                .created(new Date(Long.parseLong(commentTag.getAttributeByName(new QName("", "created")).getValue())))
+                .created(Long.parseLong(commentTag.getAttributeByName(new QName("", "created")).getValue()))
                 .build();
     }
 
@@ -394,11 +643,88 @@ public class EditSessionsExtractor {
 
     /**
      * Once we have this open, we should make sure that we are not resending events we have already seen.
+     * <p>
+     * The feed has a limited number of items: if even its oldest item is after the minDate, older events may have been
+     * pushed out of it. Such gap is counted ({@link #getGapsDetected()}) and, if the issue tracker supports it
+     * ({@link PagedFeedIssueTracker}), the feeds of earlier time windows are read until the gap is closed.
+     * </p>
      *
      * @return the last event that was returned to the user of this class
      */
     public List<ProcessEvent> getLatestEvents(final Date minDate) throws Exception {
-        final URL feedUrl = issueTracker.getFeedUrl();
+        log.info("Check for events after date {}", minDate);
+        List<ProcessEvent> page = readFeed(issueTracker.getFeedUrl());
+        LinkedList<ProcessEvent> events = new LinkedList<>();
+        Set<String> eventKeys = new HashSet<>();
+        addEvents(page, minDate, events, eventKeys);
+
+        Date oldestPublishDate = getOldestPublishDate(page);
+        if (minDate != null && oldestPublishDate != null && oldestPublishDate.after(minDate)) {
+            gapsDetected.incrementAndGet();
+            log.warn("Feed may have missed events: its oldest item is published {}, events are expected after {}",
+                    oldestPublishDate, minDate);
+            if (issueTracker instanceof PagedFeedIssueTracker) {
+                readFeedWindows((PagedFeedIssueTracker) issueTracker, minDate, oldestPublishDate, events, eventKeys,
+                        MAX_CATCH_UP_PAGES);
+            }
+        }
+        return events;
+    }
+
+    /**
+     * Reads feeds of the windows from minDate to the oldest item read so far, until the oldest item of the window
+     * is not after minDate or the window does not go further back
+     */
+    private void readFeedWindows(PagedFeedIssueTracker pagedFeedIssueTracker, Date minDate, Date before,
+                                 LinkedList<ProcessEvent> events, Set<String> eventKeys, int maxPages) throws Exception {
+        for (int pages = 1; pages <= maxPages; pages++) {
+            List<ProcessEvent> page = readFeed(pagedFeedIssueTracker.getFeedUrl(minDate, before));
+            addEvents(page, minDate, events, eventKeys);
+            Date oldestPublishDate = getOldestPublishDate(page);
+            if (oldestPublishDate == null || !oldestPublishDate.after(minDate) || !oldestPublishDate.before(before)) {
+                log.info("Feed read back to {} with {} more pages", minDate, pages);
+                return;
+            }
+            before = oldestPublishDate;
+        }
+        log.warn("Feed is not read back to {} after {} more pages, events before {} may be missed", minDate, maxPages,
+                before);
+    }
+
+    /**
+     * Adds events of the page published after the minDate, which are not added yet, before earlier added ones
+     */
+    private void addEvents(List<ProcessEvent> page, Date minDate, LinkedList<ProcessEvent> events,
+                           Set<String> eventKeys) {
+        long min = Timestamps.of(minDate);
+        //page is ordered from the newest event to the oldest
+        for (ProcessEvent event : page) {
+            if (excludedProjects.contains(event.getIssue().getPrefix())) {
+                log.debug("skipping event of excluded project: {}", event);
+            } else if (event.getPublishTime() > min) {
+                //we are adding only events with date after deployment date
+                if (eventKeys.add(event.getIssue().getPrefix() + "-" + event.getIssue().getId() + "@"
+                        + event.getPublishTime())) {
+                    events.addFirst(event);
+                }
+            }
+        }
+    }
+
+    private static Date getOldestPublishDate(List<ProcessEvent> page) {
+        long oldest = Timestamps.NONE;
+        for (ProcessEvent event : page) {
+            if (event.getPublishTime() != Timestamps.NONE && (oldest == Timestamps.NONE || event.getPublishTime() < oldest)) {
+                oldest = event.getPublishTime();
+            }
+        }
+        return Timestamps.toDate(oldest);
+    }
+
+    /**
+     * @return all events of the feed in the order of the feed
+     */
+    private List<ProcessEvent> readFeed(final URL feedUrl) throws Exception {
         log.debug("Going to process url: {}", feedUrl);
         return streamProvider.openResourceStream(feedUrl, new InputStreamHandler<List<ProcessEvent>>() {
             @Override
@@ -411,12 +737,10 @@ public class EditSessionsExtractor {
                 if (responseContentLogger.isDebugEnabled()){
                     responseContentLogger.debug("Got response from url: {} \n{}", feedUrl, new String(buf));
                 }
-                log.info("Check for events after date {}", minDate);
-                LinkedList<ProcessEvent> events = new LinkedList<>();
+                List<ProcessEvent> events = new ArrayList<>();
                 try {
                     XMLInputFactory inputFactory = XMLInputFactory.newInstance();
-                    eventReader = inputFactory.createXMLEventReader(bas);
-                    DateFormat dateFormat = createEventDateFormat();
+                    XMLEventReader eventReader = inputFactory.createXMLEventReader(bas);
                     while (eventReader.hasNext()) {
                         XMLEvent nextEvent = eventReader.nextEvent();
                         switch (nextEvent.getEventType()) {
@@ -426,11 +750,7 @@ public class EditSessionsExtractor {
                                 if (elementName.equals("item")) {
                                     //todo: decide if we have to swallow exception thrown by attempt of single event extraction.
                                     //If we swallow it, we have at least report the problem
-                                    ProcessEvent event = extractEventFromStream(dateFormat);
-                                    if (minDate ==null || event.getPublishDate().after(minDate)) {
-                                        //we are adding only events with date after deployment date
-                                        events.addFirst(event);
-                                    }
+                                    events.add(extractEventFromStream(eventReader));
                                 }
                         }
                     }
@@ -442,11 +762,18 @@ public class EditSessionsExtractor {
         });
     }
 
-    private ProcessEvent extractEventFromStream(DateFormat dateFormat) throws Exception {
+    /**
+     * @return number of times the feed did not reach back to the date of the last processed event
+     */
+    public long getGapsDetected() {
+        return gapsDetected.get();
+    }
+
+    private ProcessEvent extractEventFromStream(XMLEventReader eventReader) throws Exception {
         String prefix;
         int issueNumber;
         String currentTitle = "", currentLink = "", currentDescription = "";
-        Date currentPublishDate = null;
+        long currentPublishTime = Timestamps.NONE;
         eventReader.nextEvent();
         StartElement titleTag = eventReader.nextEvent().asStartElement(); // start title tag
         if ("title".equals(titleTag.getName().getLocalPart())){
@@ -457,36 +784,36 @@ public class EditSessionsExtractor {
             eventReader.nextEvent(); eventReader.nextEvent();
             currentDescription = eventReader.getElementText().replace("\n", "").trim();
             eventReader.nextEvent(); eventReader.nextEvent();
-            currentPublishDate = dateFormat.parse(getEventDate(eventReader.getElementText()));
+            currentPublishTime = Timestamps.parseRfc822(eventReader.getElementText());
         }
         String t = currentTitle;
         prefix = t.substring(0, t.indexOf("-"));
         issueNumber = Integer.parseInt(t.substring(t.indexOf("-")+1, t.indexOf(":")));
-        Issue issue = new Issue.Builder().id(issueNumber).projectPrefix(StringUtils.trim(prefix))
+        Issue issue = IssueRegistry.instance().intern(new Issue.Builder().id(issueNumber)
+                .projectPrefix(StringPool.intern(StringUtils.trim(prefix)))
                 .title(StringUtils.trim(currentTitle))
                 .description(StringUtils.trim(currentDescription))
                 .link(new URL(StringUtils.trim(currentLink)))
-                .build();
+                .build());
         ProcessEvent event = new ProcessEvent.Builder()
                 .issue(issue)
-                .published(currentPublishDate)
+                .published(currentPublishTime)
                 .build();
         log.debug("event extracted from stream: {}", event);
         return event;
     }
 
-    private DateFormat createEventDateFormat() {
-        SimpleDateFormat dateFormat = new SimpleDateFormat("EEE, dd MMM yyyy HH:mm:ss", Locale.ENGLISH);
-        dateFormat.setTimeZone(TimeZone.getTimeZone("UTC"));
-        return dateFormat;
-    }
 
-    private String getEventDate(String date) {
-        String UTC = "UT";
-        if (date.contains("UT")) {
-            return date.substring(0, date.indexOf(UTC));
+    private static class PendingIssue {
+        private final ProcessEvent event;
+        private Date minDate;
+        private long publishTime;
+
+        private PendingIssue(ProcessEvent event, Date minDate, long publishTime) {
+            this.event = event;
+            this.minDate = minDate;
+            this.publishTime = publishTime;
         }
-        return date;
     }
 
 }
@@ -0,0 +1,73 @@
+package com.ontometrics.integrations.sources;
+
+import com.google.common.util.concurrent.ListenableFuture;
+import com.ontometrics.integrations.configuration.ActivityStreamIssueTracker;
+import com.ontometrics.integrations.events.IssueEditSession;
+import com.ontometrics.integrations.events.ProcessEvent;
+import org.slf4j.Logger;
+
+import java.io.InputStream;
+import java.net.URL;
+import java.util.Date;
+import java.util.List;
+
+import static org.slf4j.LoggerFactory.getLogger;
+
+/**
+ * <p>
+ * {@link EditSessionsExtractor} which finds touched issues in the feed, like its parent, but reads changes, comments
+ * and attachments of each issue with a single request to the JSON REST API. Only the fields rendered in the
+ * chat are requested ({@link ActivityStreamParser#ACTIVITY_FIELDS}), so responses are much smaller than the
+ * legacy XML changes, and they are parsed with a streaming parser.
+ * </p>
+ */
+public class JsonEditSessionsExtractor extends EditSessionsExtractor {
+
+    private Logger log = getLogger(JsonEditSessionsExtractor.class);
+
+    private final ActivityStreamIssueTracker issueTracker;
+    private final AsyncStreamProvider asyncStreamProvider;
+    private final ActivityStreamParser parser = new ActivityStreamParser();
+
+    /**
+     * @param issueTracker the system that is used to track issues
+     * @param streamProvider authenticated access to the feed and REST API
+     */
+    public JsonEditSessionsExtractor(ActivityStreamIssueTracker issueTracker, StreamProvider streamProvider) {
+        super(issueTracker, streamProvider);
+        this.issueTracker = issueTracker;
+        this.asyncStreamProvider = StreamProviders.async(streamProvider);
+    }
+
+    @Override
+    protected ListenableFuture<List<IssueEditSession>> getIssueEditsAsync(ProcessEvent event, Date minDate) {
+        return getEditsAsync(event, minDate);
+    }
+
+    /**
+     * @return future sessions with changes, comments and attachments of the issue made after upToDate
+     */
+    @Override
+    public ListenableFuture<List<IssueEditSession>> getEditsAsync(final ProcessEvent e, final Date upToDate) {
+        final URL activitiesUrl = issueTracker.getIssueActivitiesUrl(e.getIssue(), upToDate);
+        return asyncStreamProvider.openResourceStreamAsync(activitiesUrl, new InputStreamHandler<List<IssueEditSession>>() {
+            @Override
+            public List<IssueEditSession> handleStream(InputStream is, int responseCode) throws Exception {
+                checkResponseCode(responseCode, activitiesUrl);
+                ActivitySessionsCollector collector = new ActivitySessionsCollector(issueTracker.getBaseUrl());
+                for (ActivityStreamParser.Activity activity : parser.parse(is)) {
+                    if (activity.category == null) {
+                        continue;
+                    }
+                    if (upToDate != null && activity.timestamp <= upToDate.getTime()) {
+                        log.debug("skipped activity dated: {}", new Date(activity.timestamp));
+                        continue;
+                    }
+                    collector.add(activity, e.getIssue());
+                }
+                return collector.getSessions();
+            }
+        });
+    }
+
+}
@@ -0,0 +1,181 @@
+package com.ontometrics.integrations.sources;
+
+import com.ontometrics.integrations.events.Comment;
+import com.ontometrics.integrations.events.Issue;
+import com.ontometrics.integrations.events.IssueEditSession;
+import org.tartarus.snowball.SnowballStemmer;
+import org.tartarus.snowball.ext.englishStemmer;
+
+import java.util.*;
+
+/**
+ * <p>
+ * Inverted index from stemmed keywords to the channels subscribed to them, e.g. subscription
+ * "outage, rollback -&gt; ops" posts sessions mentioning "outages" or "rollbacks" to #ops.
+ * </p>
+ * <p>
+ * Title, description and comment of the session are split into words, every word is stemmed by the english snowball
+ * stemmer and looked up in the index, so matching takes time proportional to the length of the text, not to the
+ * number of subscriptions. Markup inside angle brackets (HTML description of the feed) is skipped.
+ * </p>
+ */
+public class KeywordIndex {
+
+    /**
+     * Stemmers keep state between setCurrent and getCurrent, so every thread has its own
+     */
+    private static final ThreadLocal<Tokenizer> TOKENIZER = new ThreadLocal<Tokenizer>() {
+        @Override
+        protected Tokenizer initialValue() {
+            return new Tokenizer();
+        }
+    };
+
+    private final Map<String, String[]> stemChannels;
+
+    public KeywordIndex(Builder builder) {
+        stemChannels = new HashMap<>(builder.stemChannels.size() * 2);
+        for (Map.Entry<String, Set<String>> entry : builder.stemChannels.entrySet()) {
+            stemChannels.put(entry.getKey(), entry.getValue().toArray(new String[entry.getValue().size()]));
+        }
+    }
+
+    public static class Builder {
+
+        private final Map<String, Set<String>> stemChannels = new HashMap<>();
+
+        /**
+         * @param subscription keywords and channels like "outage, rollback -&gt; ops, oncall"
+         * @return this, for chaining
+         * @throws IllegalArgumentException if the subscription has no keywords or no channels
+         */
+        public Builder subscribe(String subscription) {
+            int arrow = subscription.lastIndexOf("->");
+            if (arrow < 0) {
+                throw new IllegalArgumentException("Channels are not specified in keyword subscription: " + subscription);
+            }
+            List<String> channels = new ArrayList<>();
+            for (String channel : subscription.substring(arrow + 2).split(",")) {
+                if (!channel.trim().isEmpty()) {
+                    channels.add(channel.trim());
+                }
+            }
+            if (channels.isEmpty()) {
+                throw new IllegalArgumentException("Channels are not specified in keyword subscription: " + subscription);
+            }
+            return subscribe(Arrays.asList(subscription.substring(0, arrow).split(",")), channels);
+        }
+
+        /**
+         * @param keywords words, every word of them is stemmed the same way as the text of the sessions
+         * @param channels channels the sessions mentioning any of the keywords are posted to
+         * @return this, for chaining
+         */
+        public Builder subscribe(Collection<String> keywords, Collection<String> channels) {
+            final Set<String> stems = new LinkedHashSet<>();
+            Tokenizer tokenizer = TOKENIZER.get();
+            for (String keyword : keywords) {
+                tokenizer.tokenize(keyword, new TokenHandler() {
+                    @Override
+                    public void token(String stem) {
+                        stems.add(stem);
+                    }
+                });
+            }
+            if (stems.isEmpty()) {
+                throw new IllegalArgumentException("No keywords in subscription of " + channels);
+            }
+            for (String stem : stems) {
+                Set<String> stemSubscribers = stemChannels.get(stem);
+                if (stemSubscribers == null) {
+                    stemSubscribers = new LinkedHashSet<>();
+                    stemChannels.put(stem, stemSubscribers);
+                }
+                stemSubscribers.addAll(channels);
+            }
+            return this;
+        }
+
+        public KeywordIndex build() {
+            return new KeywordIndex(this);
+        }
+    }
+
+    public boolean isEmpty() {
+        return stemChannels.isEmpty();
+    }
+
+    /**
+     * Adds channels subscribed to the words of the title, description and comment of the session
+     * @param session session
+     * @param channels channels the subscribed channels are added to
+     */
+    public void addChannels(IssueEditSession session, Set<String> channels) {
+        addChannels(session.getIssue(), channels);
+        Comment comment = session.getComment();
+        if (comment != null && !comment.isDeleted()) {
+            addChannels(comment.getText(), channels);
+        }
+    }
+
+    /**
+     * Adds channels subscribed to the words of the title and description of the issue
+     * @param issue issue
+     * @param channels channels the subscribed channels are added to
+     */
+    public void addChannels(Issue issue, Set<String> channels) {
+        addChannels(issue.getTitle(), channels);
+        addChannels(issue.getDescription(), channels);
+    }
+
+    private void addChannels(String text, final Set<String> channels) {
+        if (text == null || stemChannels.isEmpty()) {
+            return;
+        }
+        TOKENIZER.get().tokenize(text, new TokenHandler() {
+            @Override
+            public void token(String stem) {
+                String[] subscribers = stemChannels.get(stem);
+                if (subscribers != null) {
+                    Collections.addAll(channels, subscribers);
+                }
+            }
+        });
+    }
+
+    private interface TokenHandler {
+        void token(String stem);
+    }
+
+    private static class Tokenizer {
+        private final SnowballStemmer stemmer = new englishStemmer();
+        private final StringBuilder word = new StringBuilder(32);
+
+        /**
+         * Passes stems of lower-cased words (letters and digits) of the text to the handler, skipping html tags: "&lt;"
+         * followed by a letter, "/" or "!" up to "&gt;"
+         */
+        private void tokenize(CharSequence text, TokenHandler handler) {
+            boolean markup = false;
+            word.setLength(0);
+            for (int i = 0; i <= text.length(); i++) {
+                char c = i < text.length() ? text.charAt(i) : ' ';
+                if (markup) {
+                    markup = c != '>';
+                } else if (Character.isLetterOrDigit(c)) {
+                    word.append(Character.toLowerCase(c));
+                    continue;
+                } else if (c == '<' && i + 1 < text.length()) {
+                    char next = text.charAt(i + 1);
+                    markup = Character.isLetter(next) || next == '/' || next == '!';
+                }
+                if (word.length() > 0) {
+                    stemmer.setCurrent(word.toString());
+                    stemmer.stem();
+                    handler.token(stemmer.getCurrent());
+                    word.setLength(0);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,117 @@
+package com.ontometrics.integrations.sources;
+
+import com.google.common.util.concurrent.ListenableFuture;
+import org.apache.commons.io.IOUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URL;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * <p>
+ * {@link StreamProvider} decorator which records every response of the wrapped provider (url, response code, body
+ * and timing) to a gzipped archive, so a busy day of a live YouTrack can be replayed offline by
+ * {@link ReplayStreamProvider}.
+ * </p>
+ * <p>
+ * Archive is a header followed by records of: time of the request since the start of the recording, response time
+ * (both in milliseconds), url, response code and body. Body is buffered in memory before it is passed to the handler.
+ * </p>
+ */
+public class RecordingStreamProvider implements AsyncStreamProvider, Closeable {
+    private static final Logger log = LoggerFactory.getLogger(RecordingStreamProvider.class);
+
+    static final int MAGIC = 0x59545243; //YTRC
+    static final int VERSION = 1;
+
+    private final AsyncStreamProvider streamProvider;
+    private final DataOutputStream archive;
+    private final long startMillis;
+    private int records;
+
+    /**
+     * @param streamProvider provider which opens resources
+     * @param archive archive file, it is overwritten
+     * @throws IOException if the archive cannot be created
+     */
+    public RecordingStreamProvider(StreamProvider streamProvider, File archive) throws IOException {
+        this(streamProvider, new FileOutputStream(archive));
+        log.info("Recording responses to {}", archive.getAbsolutePath());
+    }
+
+    /**
+     * @param streamProvider provider which opens resources
+     * @param archive stream the archive is written to, closed by {@link #close()}
+     * @throws IOException if the header cannot be written
+     */
+    public RecordingStreamProvider(StreamProvider streamProvider, OutputStream archive) throws IOException {
+        this.streamProvider = StreamProviders.async(streamProvider);
+        this.archive = new DataOutputStream(new BufferedOutputStream(new GZIPOutputStream(archive)));
+        this.archive.writeInt(MAGIC);
+        this.archive.writeInt(VERSION);
+        startMillis = System.currentTimeMillis();
+    }
+
+    @Override
+    public <RES> ListenableFuture<RES> openResourceStreamAsync(URL resourceUrl,
+                                                               InputStreamHandler<RES> inputStreamHandler) {
+        return streamProvider.openResourceStreamAsync(resourceUrl, new RecordingHandler<>(resourceUrl, inputStreamHandler));
+    }
+
+    @Override
+    public <RES> RES openResourceStream(URL resourceUrl, InputStreamHandler<RES> inputStreamHandler) throws Exception {
+        return streamProvider.openResourceStream(resourceUrl, new RecordingHandler<>(resourceUrl, inputStreamHandler));
+    }
+
+    private synchronized void record(long requestMillis, long responseMillis, URL resourceUrl, int responseCode,
+                                     byte[] body) throws IOException {
+        archive.writeLong(requestMillis - startMillis);
+        archive.writeLong(responseMillis - requestMillis);
+        archive.writeUTF(resourceUrl.toExternalForm());
+        archive.writeInt(responseCode);
+        archive.writeInt(body.length);
+        archive.write(body);
+        records++;
+    }
+
+    /**
+     * @return number of the recorded responses
+     */
+    public synchronized int getRecords() {
+        return records;
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        archive.close();
+        log.info("Recorded {} responses", records);
+    }
+
+    private class RecordingHandler<RES> implements InputStreamHandler<RES> {
+        private final URL resourceUrl;
+        private final InputStreamHandler<RES> inputStreamHandler;
+        private final long requestMillis = System.currentTimeMillis();
+
+        private RecordingHandler(URL resourceUrl, InputStreamHandler<RES> inputStreamHandler) {
+            this.resourceUrl = resourceUrl;
+            this.inputStreamHandler = inputStreamHandler;
+        }
+
+        @Override
+        public RES handleStream(InputStream is, int responseCode) throws Exception {
+            byte[] body = IOUtils.toByteArray(is);
+            record(requestMillis, System.currentTimeMillis(), resourceUrl, responseCode, body);
+            return inputStreamHandler.handleStream(new ByteArrayInputStream(body), responseCode);
+        }
+    }
+}
@@ -0,0 +1,158 @@
+package com.ontometrics.integrations.sources;
+
+import org.apache.http.HttpStatus;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * <p>
+ * {@link StreamProvider} serving the responses recorded by {@link RecordingStreamProvider} without network.
+ * </p>
+ * <p>
+ * Responses of an url are served in the recorded order, the last one is repeated when they are exhausted, so
+ * polls of the same feed get what the live instance returned at that time. Resources which were not recorded get
+ * {@link HttpStatus#SC_NOT_FOUND} and an empty body. Each response is delayed by its recorded response time
+ * multiplied by the time scale: 1 for the original timing, 0.5 for twice as fast, 0 for no delay.
+ * </p>
+ */
+public class ReplayStreamProvider implements StreamProvider {
+    private static final Logger log = LoggerFactory.getLogger(ReplayStreamProvider.class);
+
+    private final Map<String, Responses> responses = new HashMap<>();
+    private final double timeScale;
+    private final AtomicInteger misses = new AtomicInteger();
+    private int records;
+
+    /**
+     * @param archive archive written by {@link RecordingStreamProvider}
+     * @param timeScale multiplier of the recorded response times, 0 for no delay
+     * @throws IOException if the archive cannot be read
+     */
+    public ReplayStreamProvider(File archive, double timeScale) throws IOException {
+        this(new FileInputStream(archive), timeScale);
+    }
+
+    /**
+     * @param archive archive stream, it is read and closed by the constructor
+     * @param timeScale multiplier of the recorded response times, 0 for no delay
+     * @throws IOException if the archive cannot be read
+     */
+    public ReplayStreamProvider(InputStream archive, double timeScale) throws IOException {
+        if (timeScale < 0) {
+            throw new IllegalArgumentException("timeScale must not be negative: " + timeScale);
+        }
+        this.timeScale = timeScale;
+        try (DataInputStream input = new DataInputStream(new BufferedInputStream(new GZIPInputStream(archive)))) {
+            if (input.readInt() != RecordingStreamProvider.MAGIC) {
+                throw new IOException("Not a recording of responses");
+            }
+            int version = input.readInt();
+            if (version != RecordingStreamProvider.VERSION) {
+                throw new IOException("Unsupported version of the recording: " + version);
+            }
+            while (readRecord(input)) {
+                records++;
+            }
+        }
+        log.info("Loaded {} recorded responses of {} resources", records, responses.size());
+    }
+
+    private boolean readRecord(DataInputStream input) throws IOException {
+        try {
+            //time of the request is not needed, requests are made by the replaying application
+            input.readLong();
+        } catch (EOFException e) {
+            return false;
+        }
+        Response response = new Response(input.readLong(), input.readUTF(), input.readInt());
+        response.body = new byte[input.readInt()];
+        input.readFully(response.body);
+        Responses urlResponses = responses.get(response.url);
+        if (urlResponses == null) {
+            responses.put(response.url, urlResponses = new Responses());
+        }
+        urlResponses.list.add(response);
+        return true;
+    }
+
+    @Override
+    public <RES> RES openResourceStream(URL resourceUrl, InputStreamHandler<RES> inputStreamHandler) throws Exception {
+        Responses urlResponses = responses.get(resourceUrl.toExternalForm());
+        if (urlResponses == null) {
+            misses.incrementAndGet();
+            log.warn("Response of {} is not recorded", resourceUrl);
+            return inputStreamHandler.handleStream(new ByteArrayInputStream(new byte[0]), HttpStatus.SC_NOT_FOUND);
+        }
+        Response response = urlResponses.next();
+        long delay = (long) (response.responseMillis * timeScale);
+        if (delay > 0) {
+            delay(delay);
+        }
+        return inputStreamHandler.handleStream(new ByteArrayInputStream(response.body), response.responseCode);
+    }
+
+    /**
+     * Waits for the scaled response time of the replayed response
+     * @param millis delay in milliseconds, positive
+     * @throws InterruptedException if the thread is interrupted while waiting
+     */
+    protected void delay(long millis) throws InterruptedException {
+        Thread.sleep(millis);
+    }
+
+    /**
+     * @return number of the loaded responses
+     */
+    public int getRecords() {
+        return records;
+    }
+
+    /**
+     * @return number of requests of the resources which were not recorded
+     */
+    public int getMisses() {
+        return misses.get();
+    }
+
+    private static class Responses {
+        private final List<Response> list = new ArrayList<>();
+        private int next;
+
+        private synchronized Response next() {
+            Response response = list.get(next);
+            if (next < list.size() - 1) {
+                next++;
+            }
+            return response;
+        }
+    }
+
+    private static class Response {
+        private final long responseMillis;
+        private final String url;
+        private final int responseCode;
+        private byte[] body;
+
+        private Response(long responseMillis, String url, int responseCode) {
+            this.responseMillis = responseMillis;
+            this.url = url;
+            this.responseCode = responseCode;
+        }
+    }
+}
@@ -0,0 +1,152 @@
+package com.ontometrics.integrations.sources;
+
+import java.util.*;
+
+/**
+ * <p>
+ * Rule which routes sessions to channels, e.g.
+ * <pre>project=HA,DMAN &amp; field=State:Fixed,Verified &amp; updater=rob -&gt; releases,qa</pre>
+ * Conditions are joined by "&amp;", a condition matches if any of its comma separated values matches:
+ * </p>
+ * <ul>
+ *     <li>project=PREFIX - project of the issue</li>
+ *     <li>field=NAME - the session changed the field, field=NAME:VALUE - the session set the field to the value</li>
+ *     <li>updater=LOGIN - author of the session (creator of a new issue)</li>
+ *     <li>tag=TAG - the session added the tag to the issue</li>
+ * </ul>
+ * <p>
+ * Rule without conditions ("-&gt; firehose") matches every session. Names and values are not case-sensitive.
+ * </p>
+ */
+public class RoutingRule {
+
+    public enum Dimension {
+        PROJECT, FIELD, UPDATER, TAG;
+
+        /**
+         * @return key of the fact "this dimension has the value", which is looked up in the compiled rules
+         */
+        String key(String value) {
+            return name().toLowerCase(Locale.ENGLISH) + ":" + value.trim().toLowerCase(Locale.ENGLISH);
+        }
+    }
+
+    private final String text;
+    private final Map<Dimension, Set<String>> conditions;
+    private final List<String> channels;
+    private final Set<String> projects;
+
+    private RoutingRule(String text, Map<Dimension, Set<String>> conditions, List<String> channels,
+                        Set<String> projects) {
+        this.text = text;
+        this.conditions = conditions;
+        this.channels = channels;
+        this.projects = projects;
+    }
+
+    /**
+     * @param text rule like "project=HA &amp; field=Priority:Critical -&gt; alerts"
+     * @return parsed rule
+     * @throws IllegalArgumentException if the rule can not be parsed
+     */
+    public static RoutingRule parse(String text) {
+        int arrow = text.lastIndexOf("->");
+        if (arrow < 0) {
+            throw new IllegalArgumentException("Channels are not specified in routing rule: " + text);
+        }
+        List<String> channels = new ArrayList<>();
+        for (String channel : text.substring(arrow + 2).split(",")) {
+            if (!channel.trim().isEmpty()) {
+                channels.add(channel.trim());
+            }
+        }
+        if (channels.isEmpty()) {
+            throw new IllegalArgumentException("Channels are not specified in routing rule: " + text);
+        }
+
+        Map<Dimension, Set<String>> conditions = new EnumMap<>(Dimension.class);
+        Set<String> projects = new LinkedHashSet<>();
+        String conditionsText = text.substring(0, arrow).trim();
+        if (!conditionsText.isEmpty()) {
+            for (String condition : conditionsText.split("&")) {
+                int equals = condition.indexOf('=');
+                if (equals < 0) {
+                    throw new IllegalArgumentException("Condition '" + condition.trim() + "' of routing rule " + text
+                            + " is not in format name=value");
+                }
+                Dimension dimension;
+                try {
+                    dimension = Dimension.valueOf(condition.substring(0, equals).trim().toUpperCase(Locale.ENGLISH));
+                } catch (IllegalArgumentException e) {
+                    throw new IllegalArgumentException("Unknown condition '" + condition.trim() + "' in routing rule "
+                            + text + ", expected one of " + Arrays.toString(Dimension.values()));
+                }
+                if (conditions.containsKey(dimension)) {
+                    throw new IllegalArgumentException("Condition on " + dimension + " is repeated in routing rule "
+                            + text + ", list the values in one condition instead");
+                }
+                Set<String> keys = new LinkedHashSet<>();
+                for (String value : condition.substring(equals + 1).split(",")) {
+                    if (!value.trim().isEmpty()) {
+                        if (dimension == Dimension.PROJECT) {
+                            projects.add(value.trim());
+                        }
+                        keys.add(dimension.key(dimension == Dimension.FIELD ? fieldValue(value) : value));
+                    }
+                }
+                if (keys.isEmpty()) {
+                    throw new IllegalArgumentException("No values of condition '" + condition.trim()
+                            + "' in routing rule " + text);
+                }
+                conditions.put(dimension, keys);
+            }
+        }
+        return new RoutingRule(text.trim(), conditions, Collections.unmodifiableList(channels),
+                Collections.unmodifiableSet(projects));
+    }
+
+    /**
+     * @return rule which routes the project to the channel, like the "PREFIX->channel" mappings
+     */
+    public static RoutingRule project(String prefix, String channel) {
+        Map<Dimension, Set<String>> conditions = new EnumMap<>(Dimension.class);
+        conditions.put(Dimension.PROJECT, Collections.singleton(Dimension.PROJECT.key(prefix)));
+        return new RoutingRule("project=" + prefix + " -> " + channel, conditions, Collections.singletonList(channel),
+                Collections.singleton(prefix));
+    }
+
+    /**
+     * "State:Fixed" is the fact "State=Fixed", which is the key of field changes to the value
+     */
+    private static String fieldValue(String value) {
+        int colon = value.indexOf(':');
+        return colon < 0 ? value : fieldValue(value.substring(0, colon), value.substring(colon + 1));
+    }
+
+    static String fieldValue(String field, String value) {
+        return field.trim() + "=" + value.trim();
+    }
+
+    /**
+     * @return fact keys of each condition, the rule matches if every condition has one of its facts
+     */
+    Map<Dimension, Set<String>> getConditions() {
+        return conditions;
+    }
+
+    public List<String> getChannels() {
+        return channels;
+    }
+
+    /**
+     * @return projects the rule is limited to, empty if the rule matches any project
+     */
+    public Set<String> getProjects() {
+        return projects;
+    }
+
+    @Override
+    public String toString() {
+        return text;
+    }
+}
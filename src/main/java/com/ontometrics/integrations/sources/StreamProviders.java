@@ -0,0 +1,84 @@
+package com.ontometrics.integrations.sources;
+
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.ListeningExecutorService;
+import com.google.common.util.concurrent.MoreExecutors;
+
+import java.net.URL;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+/**
+ * Utility methods for {@link StreamProvider}s
+ */
+public final class StreamProviders {
+
+    private StreamProviders() {}
+
+    /**
+     * @param streamProvider stream provider
+     * @return streamProvider itself if it is {@link AsyncStreamProvider}, otherwise provider which opens resources
+     * with streamProvider in the calling thread and returns completed futures
+     */
+    public static AsyncStreamProvider async(StreamProvider streamProvider) {
+        if (streamProvider instanceof AsyncStreamProvider) {
+            return (AsyncStreamProvider) streamProvider;
+        }
+        return async(streamProvider, MoreExecutors.sameThreadExecutor());
+    }
+
+    /**
+     * @param streamProvider blocking stream provider
+     * @param executorService executor which opens resources with streamProvider
+     * @return provider which opens resources in the executorService
+     */
+    public static AsyncStreamProvider async(StreamProvider streamProvider, ExecutorService executorService) {
+        return new ExecutorAsyncStreamProvider(streamProvider, MoreExecutors.listeningDecorator(executorService));
+    }
+
+    /**
+     * Waits for the result of the future
+     * @param future future
+     * @param <RES> class of the result
+     * @return result of the future
+     * @throws Exception the exception the future failed with
+     */
+    public static <RES> RES getResult(Future<RES> future) throws Exception {
+        try {
+            return future.get();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof Exception) {
+                throw (Exception) e.getCause();
+            }
+            throw e;
+        }
+    }
+
+    private static class ExecutorAsyncStreamProvider implements AsyncStreamProvider {
+        private final StreamProvider streamProvider;
+        private final ListeningExecutorService executorService;
+
+        private ExecutorAsyncStreamProvider(StreamProvider streamProvider, ListeningExecutorService executorService) {
+            this.streamProvider = streamProvider;
+            this.executorService = executorService;
+        }
+
+        @Override
+        public <RES> ListenableFuture<RES> openResourceStreamAsync(final URL resourceUrl,
+                                                                   final InputStreamHandler<RES> inputStreamHandler) {
+            return executorService.submit(new Callable<RES>() {
+                @Override
+                public RES call() throws Exception {
+                    return streamProvider.openResourceStream(resourceUrl, inputStreamHandler);
+                }
+            });
+        }
+
+        @Override
+        public <RES> RES openResourceStream(URL resourceUrl, InputStreamHandler<RES> inputStreamHandler) throws Exception {
+            return streamProvider.openResourceStream(resourceUrl, inputStreamHandler);
+        }
+    }
+}
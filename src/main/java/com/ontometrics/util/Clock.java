@@ -0,0 +1,46 @@
+package com.ontometrics.util;
+
+import java.util.Date;
+
+/**
+ * Source of the current time of the application. Everything which depends on "now" (history window, default
+ * backfill window, {@link DateBuilder}) reads it from {@link #instance()}, so tests can run simulated time.
+ */
+public abstract class Clock {
+
+    private static final Clock SYSTEM = new Clock() {
+        @Override
+        public long currentTimeMillis() {
+            return System.currentTimeMillis();
+        }
+    };
+
+    private static volatile Clock instance = SYSTEM;
+
+    /**
+     * @return clock of the application, system clock by default
+     */
+    public static Clock instance() {
+        return instance;
+    }
+
+    /**
+     * @param clock clock of the application, null for the system clock
+     */
+    public static void setInstance(Clock clock) {
+        instance = clock == null ? SYSTEM : clock;
+    }
+
+    public static Clock system() {
+        return SYSTEM;
+    }
+
+    /**
+     * @return current time in milliseconds since the epoch
+     */
+    public abstract long currentTimeMillis();
+
+    public Date now() {
+        return new Date(currentTimeMillis());
+    }
+}
@@ -1,7 +1,5 @@
 package com.ontometrics.util;
 
-import com.ontometrics.integrations.events.IssueEdit;
-
 import java.util.Calendar;
 import java.util.Date;
 import java.util.TimeZone;
@@ -11,7 +9,14 @@ import java.util.TimeZone;
  */
 public class DateBuilder {
 
-    private Calendar calendar = Calendar.getInstance(TimeZone.getTimeZone("UTC"));
+    private final Calendar calendar = Calendar.getInstance(TimeZone.getTimeZone("UTC"));
+
+    /**
+     * Starts from the current time of the {@link Clock}
+     */
+    public DateBuilder() {
+        calendar.setTimeInMillis(Clock.instance().currentTimeMillis());
+    }
 
     /**
      * Provides means of starting from a given date, then changing some subset
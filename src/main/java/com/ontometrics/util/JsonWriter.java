@@ -0,0 +1,190 @@
+package com.ontometrics.util;
+
+import java.io.IOException;
+
+/**
+ * <p>
+ * Minimal streaming JSON writer: values are written (and escaped) straight to the output, no tree of the document is
+ * built. Long string values may be written in parts with {@link #beginString()}, {@link #stringPart(CharSequence, int, int)}
+ * and {@link #endString()}.
+ * </p>
+ * <p>
+ * Instance can be reused for the next document after {@link #reset(Appendable)}. Writer does not validate the
+ * document structure, caller is responsible for pairing begin/end calls.
+ * </p>
+ */
+public class JsonWriter {
+
+    private static final int MAX_DEPTH = 32;
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    private Appendable out;
+    /**
+     * Whether the next value on the given depth is the first one inside its object/array (no comma needed)
+     */
+    private final boolean[] first = new boolean[MAX_DEPTH];
+    private int depth;
+    /**
+     * True when name has been written and value is expected
+     */
+    private boolean afterName;
+
+    public JsonWriter(Appendable out) {
+        reset(out);
+    }
+
+    /**
+     * Prepares writer for the new document
+     * @param out output of the new document
+     * @return this, for chaining
+     */
+    public JsonWriter reset(Appendable out) {
+        this.out = out;
+        depth = 0;
+        first[0] = true;
+        afterName = false;
+        return this;
+    }
+
+    public JsonWriter beginObject() throws IOException {
+        beforeValue();
+        out.append('{');
+        push();
+        return this;
+    }
+
+    public JsonWriter endObject() throws IOException {
+        depth--;
+        out.append('}');
+        return this;
+    }
+
+    public JsonWriter beginArray() throws IOException {
+        beforeValue();
+        out.append('[');
+        push();
+        return this;
+    }
+
+    public JsonWriter endArray() throws IOException {
+        depth--;
+        out.append(']');
+        return this;
+    }
+
+    public JsonWriter name(String name) throws IOException {
+        beforeValue();
+        writeQuoted(name);
+        out.append(':');
+        afterName = true;
+        return this;
+    }
+
+    /**
+     * @param value value, null is written as JSON null
+     * @return this, for chaining
+     */
+    public JsonWriter value(CharSequence value) throws IOException {
+        if (value == null) {
+            return nullValue();
+        }
+        beforeValue();
+        writeQuoted(value);
+        return this;
+    }
+
+    public JsonWriter value(boolean value) throws IOException {
+        beforeValue();
+        out.append(value ? "true" : "false");
+        return this;
+    }
+
+    public JsonWriter value(long value) throws IOException {
+        beforeValue();
+        out.append(Long.toString(value));
+        return this;
+    }
+
+    public JsonWriter nullValue() throws IOException {
+        beforeValue();
+        out.append("null");
+        return this;
+    }
+
+    /**
+     * Starts the string value, which content is written by {@link #stringPart(CharSequence, int, int)}
+     * @return this, for chaining
+     */
+    public JsonWriter beginString() throws IOException {
+        beforeValue();
+        out.append('"');
+        return this;
+    }
+
+    public JsonWriter stringPart(CharSequence value) throws IOException {
+        return value == null ? this : stringPart(value, 0, value.length());
+    }
+
+    public JsonWriter stringPart(CharSequence value, int start, int end) throws IOException {
+        for (int i = start; i < end; i++) {
+            writeEscaped(value.charAt(i));
+        }
+        return this;
+    }
+
+    public JsonWriter endString() throws IOException {
+        out.append('"');
+        return this;
+    }
+
+    private void push() {
+        if (++depth >= MAX_DEPTH) {
+            throw new IllegalStateException("JSON document is nested deeper than " + MAX_DEPTH);
+        }
+        first[depth] = true;
+    }
+
+    private void beforeValue() throws IOException {
+        if (afterName) {
+            afterName = false;
+            return;
+        }
+        if (!first[depth]) {
+            out.append(',');
+        }
+        first[depth] = false;
+    }
+
+    private void writeQuoted(CharSequence value) throws IOException {
+        out.append('"');
+        stringPart(value, 0, value.length());
+        out.append('"');
+    }
+
+    private void writeEscaped(char c) throws IOException {
+        switch (c) {
+            case '"':
+                out.append("\\\"");
+                break;
+            case '\\':
+                out.append("\\\\");
+                break;
+            case '\n':
+                out.append("\\n");
+                break;
+            case '\r':
+                out.append("\\r");
+                break;
+            case '\t':
+                out.append("\\t");
+                break;
+            default:
+                if (c < 0x20 || c == 0x2028 || c == 0x2029) {
+                    out.append("\\u").append(HEX[(c >> 12) & 0xF]).append(HEX[(c >> 8) & 0xF])
+                            .append(HEX[(c >> 4) & 0xF]).append(HEX[c & 0xF]);
+                } else {
+                    out.append(c);
+                }
+        }
+    }
+}
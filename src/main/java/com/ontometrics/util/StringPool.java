@@ -0,0 +1,25 @@
+package com.ontometrics.util;
+
+import com.google.common.collect.Interner;
+import com.google.common.collect.Interners;
+
+/**
+ * Canonical instances of the strings that repeat a lot across parsed feeds and change histories: field names
+ * ("State", "Assignee", ...), user logins/names and project prefixes.
+ * <p>
+ * Strings are held weakly, so values that are no longer referenced by any event are garbage collected.
+ */
+public class StringPool {
+
+    private static final Interner<String> INTERNER = Interners.newWeakInterner();
+
+    private StringPool() {}
+
+    /**
+     * @param value string to be interned, may be null
+     * @return canonical instance equal to value, or null if value is null
+     */
+    public static String intern(String value) {
+        return value == null ? null : INTERNER.intern(value);
+    }
+}
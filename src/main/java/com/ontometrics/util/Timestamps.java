@@ -0,0 +1,277 @@
+package com.ontometrics.util;
+
+import java.text.ParseException;
+import java.util.Date;
+
+/**
+ * <p>
+ * Timestamps carried as epoch milliseconds: conversion from and to {@link Date}, a parser of RFC 822 dates of the
+ * feed and a formatter of UTC date-times. Methods keep no state and do not allocate, so they are thread-safe and do not
+ * show up in allocation profiles like {@link java.text.SimpleDateFormat} created for every date.
+ * </p>
+ */
+public final class Timestamps {
+
+    /**
+     * Missing timestamp, it is before every other timestamp, so it also works as "no lower bound"
+     */
+    public static final long NONE = Long.MIN_VALUE;
+
+    private static final long MILLIS_PER_DAY = 24L * 60 * 60 * 1000;
+    private static final String MONTHS = "janfebmaraprmayjunjulaugsepoctnovdec";
+
+    private Timestamps() {}
+
+    /**
+     * @return milliseconds of the date, {@link #NONE} for null
+     */
+    public static long of(Date date) {
+        return date == null ? NONE : date.getTime();
+    }
+
+    /**
+     * @return date of the timestamp, null for {@link #NONE}
+     */
+    public static Date toDate(long timestamp) {
+        return timestamp == NONE ? null : new Date(timestamp);
+    }
+
+    /**
+     * Parses RFC 822 date like "Thu, 28 Aug 2014 16:03:02 UT": day of the week is optional, year may have 2 digits,
+     * seconds are optional, zone is UT, UTC, GMT, Z, a North American zone (EST, PDT...), a military letter (read as
+     * UTC, see RFC 2822) or an offset like +0300. Date without zone is in UTC.
+     *
+     * @param text date
+     * @return epoch milliseconds
+     * @throws ParseException if the text is not RFC 822 date
+     */
+    public static long parseRfc822(CharSequence text) throws ParseException {
+        int length = text.length();
+        int i = skipSpaces(text, 0);
+        if (i < length && Character.isLetter(text.charAt(i))) {
+            //day of the week
+            i = skipSpaces(text, skipLetters(text, i));
+            if (i < length && text.charAt(i) == ',') {
+                i = skipSpaces(text, i + 1);
+            }
+        }
+
+        int end = skipDigits(text, i);
+        if (end == i || end - i > 2) {
+            throw new ParseException("Day expected: " + text, i);
+        }
+        int day = parseInt(text, i, end);
+        i = skipSpaces(text, end);
+
+        int month = -1;
+        if (i + 3 <= length) {
+            for (int m = 0; m < 12 && month < 0; m++) {
+                if (equalsIgnoreCase(text, i, MONTHS, m * 3, 3)) {
+                    month = m + 1;
+                }
+            }
+        }
+        if (month < 0) {
+            throw new ParseException("Month expected: " + text, i);
+        }
+        i = skipSpaces(text, skipLetters(text, i));
+
+        end = skipDigits(text, i);
+        if (end - i != 2 && end - i != 4) {
+            throw new ParseException("Year expected: " + text, i);
+        }
+        int year = parseInt(text, i, end);
+        if (end - i == 2) {
+            year += year < 50 ? 2000 : 1900;
+        }
+        i = skipSpaces(text, end);
+
+        end = skipDigits(text, i);
+        if (end == i || end - i > 2 || end >= length || text.charAt(end) != ':') {
+            throw new ParseException("Hours expected: " + text, i);
+        }
+        int hours = parseInt(text, i, end);
+        i = end + 1;
+        end = skipDigits(text, i);
+        if (end - i != 2) {
+            throw new ParseException("Minutes expected: " + text, i);
+        }
+        int minutes = parseInt(text, i, end);
+        int seconds = 0;
+        i = end;
+        if (i < length && text.charAt(i) == ':') {
+            end = skipDigits(text, i + 1);
+            if (end - i != 3) {
+                throw new ParseException("Seconds expected: " + text, i + 1);
+            }
+            seconds = parseInt(text, i + 1, end);
+            i = end;
+        }
+        if (day < 1 || day > daysInMonth(year, month) || hours > 23 || minutes > 59 || seconds > 60) {
+            throw new ParseException("Invalid date: " + text, 0);
+        }
+        i = skipSpaces(text, i);
+
+        int offsetMinutes = 0;
+        if (i < length) {
+            char sign = text.charAt(i);
+            if (sign == '+' || sign == '-') {
+                end = skipDigits(text, i + 1);
+                if (end - i != 5) {
+                    throw new ParseException("Zone offset expected: " + text, i);
+                }
+                offsetMinutes = parseInt(text, i + 1, i + 3) * 60 + parseInt(text, i + 3, end);
+                if (sign == '-') {
+                    offsetMinutes = -offsetMinutes;
+                }
+                i = end;
+            } else {
+                end = skipLetters(text, i);
+                offsetMinutes = getZoneOffsetMinutes(text, i, end);
+                i = end;
+            }
+            if (skipSpaces(text, i) != length) {
+                throw new ParseException("Unexpected text after zone: " + text, i);
+            }
+        }
+
+        long days = daysFromCivil(year, month, day);
+        return ((days * 24 + hours) * 60 + minutes - offsetMinutes) * 60000L + seconds * 1000L;
+    }
+
+    /**
+     * Appends UTC date-time of the timestamp in format "yyyy-MM-dd HH:mm:ss"
+     *
+     * @return builder
+     */
+    public static StringBuilder appendDateTime(StringBuilder builder, long timestamp) {
+        long days = timestamp / MILLIS_PER_DAY;
+        long millisOfDay = timestamp % MILLIS_PER_DAY;
+        if (millisOfDay < 0) {
+            millisOfDay += MILLIS_PER_DAY;
+            days--;
+        }
+        //civil from days, http://howardhinnant.github.io/date_algorithms.html
+        long z = days + 719468;
+        long era = (z >= 0 ? z : z - 146096) / 146097;
+        long dayOfEra = z - era * 146097;
+        long yearOfEra = (dayOfEra - dayOfEra / 1460 + dayOfEra / 36524 - dayOfEra / 146096) / 365;
+        long dayOfYear = dayOfEra - (365 * yearOfEra + yearOfEra / 4 - yearOfEra / 100);
+        long mp = (5 * dayOfYear + 2) / 153;
+        int day = (int) (dayOfYear - (153 * mp + 2) / 5 + 1);
+        int month = (int) (mp < 10 ? mp + 3 : mp - 9);
+        long year = yearOfEra + era * 400 + (month <= 2 ? 1 : 0);
+
+        int secondOfDay = (int) (millisOfDay / 1000);
+        builder.append(year).append('-');
+        appendTwoDigits(builder, month).append('-');
+        appendTwoDigits(builder, day).append(' ');
+        appendTwoDigits(builder, secondOfDay / 3600).append(':');
+        appendTwoDigits(builder, secondOfDay / 60 % 60).append(':');
+        return appendTwoDigits(builder, secondOfDay % 60);
+    }
+
+    private static StringBuilder appendTwoDigits(StringBuilder builder, int value) {
+        return builder.append((char) ('0' + value / 10)).append((char) ('0' + value % 10));
+    }
+
+    /**
+     * Days since 1970-01-01 of the date of proleptic Gregorian calendar, http://howardhinnant.github.io/date_algorithms.html
+     */
+    private static long daysFromCivil(int year, int month, int day) {
+        long y = month <= 2 ? year - 1 : year;
+        long era = (y >= 0 ? y : y - 399) / 400;
+        long yearOfEra = y - era * 400;
+        long dayOfYear = (153 * (month > 2 ? month - 3 : month + 9) + 2) / 5 + day - 1;
+        long dayOfEra = yearOfEra * 365 + yearOfEra / 4 - yearOfEra / 100 + dayOfYear;
+        return era * 146097 + dayOfEra - 719468;
+    }
+
+    private static int daysInMonth(int year, int month) {
+        switch (month) {
+            case 2:
+                return (year % 4 == 0 && year % 100 != 0) || year % 400 == 0 ? 29 : 28;
+            case 4:
+            case 6:
+            case 9:
+            case 11:
+                return 30;
+            default:
+                return 31;
+        }
+    }
+
+    private static int getZoneOffsetMinutes(CharSequence text, int start, int end) throws ParseException {
+        int length = end - start;
+        if (length == 1) {
+            //military zones are read as UTC, their signs were reversed in RFC 822
+            return 0;
+        }
+        if (length == 2 && equalsIgnoreCase(text, start, "UT", 0, 2)
+                || length == 3 && (equalsIgnoreCase(text, start, "UTC", 0, 3) || equalsIgnoreCase(text, start, "GMT", 0, 3))) {
+            return 0;
+        }
+        if (length == 3 && (text.charAt(start + 2) == 'T' || text.charAt(start + 2) == 't')) {
+            boolean daylight = text.charAt(start + 1) == 'D' || text.charAt(start + 1) == 'd';
+            if (daylight || text.charAt(start + 1) == 'S' || text.charAt(start + 1) == 's') {
+                int hours;
+                switch (Character.toUpperCase(text.charAt(start))) {
+                    case 'E':
+                        hours = -5;
+                        break;
+                    case 'C':
+                        hours = -6;
+                        break;
+                    case 'M':
+                        hours = -7;
+                        break;
+                    case 'P':
+                        hours = -8;
+                        break;
+                    default:
+                        throw new ParseException("Unknown zone: " + text, start);
+                }
+                return (daylight ? hours + 1 : hours) * 60;
+            }
+        }
+        throw new ParseException("Unknown zone: " + text, start);
+    }
+
+    private static boolean equalsIgnoreCase(CharSequence text, int start, String expected, int expectedStart, int length) {
+        for (int i = 0; i < length; i++) {
+            if (Character.toLowerCase(text.charAt(start + i)) != Character.toLowerCase(expected.charAt(expectedStart + i))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static int parseInt(CharSequence text, int start, int end) {
+        int value = 0;
+        for (int i = start; i < end; i++) {
+            value = value * 10 + text.charAt(i) - '0';
+        }
+        return value;
+    }
+
+    private static int skipSpaces(CharSequence text, int i) {
+        while (i < text.length() && Character.isWhitespace(text.charAt(i))) {
+            i++;
+        }
+        return i;
+    }
+
+    private static int skipLetters(CharSequence text, int i) {
+        while (i < text.length() && Character.isLetter(text.charAt(i))) {
+            i++;
+        }
+        return i;
+    }
+
+    private static int skipDigits(CharSequence text, int i) {
+        while (i < text.length() && text.charAt(i) >= '0' && text.charAt(i) <= '9') {
+            i++;
+        }
+        return i;
+    }
+}
@@ -5,6 +5,7 @@ import com.ontometrics.integrations.events.IssueEditSession;
 import org.junit.Assert;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 
 /**
@@ -35,6 +36,11 @@ public class CheckDuplicateMessagesChatServer implements ChatServer {
 
     }
 
+    @Override
+    public List<String> getUsers() {
+        return Collections.emptyList();
+    }
+
     public List<Issue> getCreatedIssues() {
         return createdIssues;
     }
@@ -0,0 +1,97 @@
+package com.ontometrics.integrations.configuration;
+
+import ontometrics.test.util.Benchmark;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+import org.slf4j.Logger;
+
+import java.util.Arrays;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.lessThan;
+import static org.slf4j.LoggerFactory.getLogger;
+
+/**
+ * Rendering of a long comment compared to escaping it, the best time of {@link #ROUNDS} rounds is taken
+ */
+@Category(Benchmark.class)
+public class CommentRenderingBenchmarkTest {
+
+    private static final String BASE_URL = "http://ontometrics.com:8085/issue/";
+    private static final int COMMENT_LENGTH = 100000;
+    private static final int ROUNDS = 200;
+
+    private static final Rendering ESCAPING = new Rendering() {
+        @Override
+        public void render(StringBuilder builder, CharSequence comment) {
+            MessageTemplate.appendEscaped(builder, comment);
+        }
+    };
+
+    private static final WikiMarkupConverter.TextAppender ESCAPED_TEXT = new WikiMarkupConverter.TextAppender() {
+        @Override
+        public void append(StringBuilder builder, CharSequence text, int start, int end) {
+            MessageTemplate.appendEscaped(builder, text, start, end);
+        }
+    };
+
+    private Logger log = getLogger(CommentRenderingBenchmarkTest.class);
+
+    private interface Rendering {
+        void render(StringBuilder builder, CharSequence comment);
+    }
+
+    @Test
+    public void benchmarkLinkingAgainstEscaping() {
+        final IssueLinkifier linkifier = new IssueLinkifier(Arrays.asList("HA", "ASOC", "DMAN", "AP", "AIA"));
+        assertNotMuchSlowerThanEscaping("linked", comment(
+                "The scraper of HA-683 fails with error code 999, see AHA-1 and http://linkedin.com/jobs?id=1; "),
+                new Rendering() {
+                    @Override
+                    public void render(StringBuilder builder, CharSequence comment) {
+                        linkifier.appendLinked(builder, comment, 0, comment.length(), BASE_URL);
+                    }
+                });
+    }
+
+    @Test
+    public void benchmarkWikiMarkupConversionAgainstEscaping() {
+        assertNotMuchSlowerThanEscaping("converted", comment(
+                "== Crash ==\nThe scraper of ''LinkedIn'' fails with '''error 999''', see [http://linkedin.com/jobs details]:\n"
+                        + "{code}\nat Scraper.fetch(Scraper.java:42)\n{code}\n# restart {{scraper}}\n# check logs\n"),
+                new Rendering() {
+                    @Override
+                    public void render(StringBuilder builder, CharSequence comment) {
+                        WikiMarkupConverter.convert(builder, comment, 0, comment.length(), ESCAPED_TEXT);
+                    }
+                });
+    }
+
+    private void assertNotMuchSlowerThanEscaping(String rendered, CharSequence comment, Rendering rendering) {
+        StringBuilder builder = new StringBuilder(comment.length() * 2);
+        long escapingNanos = Long.MAX_VALUE, renderingNanos = Long.MAX_VALUE;
+        for (int round = 0; round < ROUNDS; round++) {
+            escapingNanos = Math.min(escapingNanos, measure(builder, comment, ESCAPING));
+            renderingNanos = Math.min(renderingNanos, measure(builder, comment, rendering));
+        }
+        log.info("{} chars escaped in {} us, {} in {} us", comment.length(), escapingNanos / 1000, rendered,
+                renderingNanos / 1000);
+
+        assertThat(renderingNanos, lessThan(escapingNanos * 5));
+    }
+
+    private static long measure(StringBuilder builder, CharSequence comment, Rendering rendering) {
+        builder.setLength(0);
+        long start = System.nanoTime();
+        rendering.render(builder, comment);
+        return System.nanoTime() - start;
+    }
+
+    private static CharSequence comment(String paragraph) {
+        StringBuilder comment = new StringBuilder(COMMENT_LENGTH + paragraph.length());
+        while (comment.length() < COMMENT_LENGTH) {
+            comment.append(paragraph);
+        }
+        return comment;
+    }
+}
@@ -3,6 +3,9 @@ package com.ontometrics.integrations.configuration;
 import com.ontometrics.integrations.events.Issue;
 import com.ontometrics.integrations.events.IssueEditSession;
 
+import java.util.Collections;
+import java.util.List;
+
 /**
  * ChatServer with no operations
  *
@@ -18,4 +21,9 @@ public class EmptyChatServer implements ChatServer {
     public void post(IssueEditSession issueEditSession) {
 
     }
+
+    @Override
+    public List<String> getUsers() {
+        return Collections.emptyList();
+    }
 }
@@ -2,8 +2,11 @@ package com.ontometrics.integrations.configuration;
 
 import com.ontometrics.integrations.events.Issue;
 import com.ontometrics.integrations.events.ProcessEvent;
+import com.ontometrics.util.Clock;
+import ontometrics.test.util.SimulatedClock;
 import org.apache.commons.configuration.ConfigurationException;
 import org.apache.commons.lang.time.DateUtils;
+import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
 
@@ -11,6 +14,7 @@ import java.net.MalformedURLException;
 import java.net.URL;
 import java.util.Calendar;
 import java.util.Date;
+import java.util.concurrent.TimeUnit;
 
 import static org.hamcrest.CoreMatchers.is;
 import static org.hamcrest.CoreMatchers.notNullValue;
@@ -23,11 +27,23 @@ import static org.hamcrest.MatcherAssert.assertThat;
  */
 public class EventProcessorConfigurationTest {
     private EventProcessorConfiguration configuration;
+    private Object issueHistoryWindowProperty;
 
     @Before
     public void setUp() throws ConfigurationException {
         this.configuration = EventProcessorConfiguration.instance();
         configuration.clear();
+        configuration.setIssueHistoryWindowInMinutes(null);
+        issueHistoryWindowProperty = ConfigurationFactory.get()
+                .getProperty(EventProcessorConfiguration.PROP_ISSUE_HISTORY_WINDOW);
+    }
+
+    @After
+    public void tearDown() {
+        Clock.setInstance(null);
+        configuration.setIssueHistoryWindowInMinutes(null);
+        ConfigurationFactory.get().setProperty(EventProcessorConfiguration.PROP_ISSUE_HISTORY_WINDOW,
+                issueHistoryWindowProperty);
     }
 
     /**
@@ -75,6 +91,34 @@ public class EventProcessorConfigurationTest {
 
     }
 
+    /**
+     * Verifies that stored event change date does not depend on the title/description of the issue
+     */
+    @Test
+    public void testThatEventChangeDateIsFoundAfterIssueTitleChanged() throws MalformedURLException {
+        Date changeDate = new Date(1404927516756L);
+        Issue issue = new Issue.Builder().projectPrefix("ASOC").id(150)
+                .title("ASOC-150: Original title").description("Original description")
+                .build();
+        configuration.saveEventChangeDate(new ProcessEvent.Builder().issue(issue).published(new Date()).build(), changeDate);
+
+        Issue renamedIssue = new Issue.Builder().projectPrefix("ASOC").id(150)
+                .title("ASOC-150: Renamed").description("Description has been edited")
+                .build();
+        configuration.reload();
+        assertThat(configuration.getEventChangeDate(new ProcessEvent.Builder().issue(renamedIssue).build()), is(changeDate));
+
+        Issue otherProjectIssue = new Issue.Builder().projectPrefix("HA").id(150).build();
+        assertThat(configuration.getEventChangeDate(new ProcessEvent.Builder().issue(otherProjectIssue).build()), nullValue());
+    }
+
+    @Test
+    public void testThatIssueKeyPacksPrefixIdAndIssueNumber() {
+        long key = EventProcessorConfiguration.issueKey(3, 683);
+        assertThat(EventProcessorConfiguration.prefixIdOf(key), is(3));
+        assertThat(EventProcessorConfiguration.issueNumberOf(key), is(683));
+        assertThat(EventProcessorConfiguration.issueKey(3, 683) < EventProcessorConfiguration.issueKey(4, 1), is(true));
+    }
 
     /**
      * Verifies that last processed date is stored if it is after current one or current one is not defined
@@ -104,6 +148,23 @@ public class EventProcessorConfigurationTest {
     }
 
 
+    @Test
+    public void testThatShardsKeepTheirOwnLastProcessedDates() throws ConfigurationException {
+        Date globalDate = new Date(10000);
+        Date shardDate = new Date(5000);
+
+        configuration.saveLastProcessedEventDate(globalDate);
+        //shard which has not been polled yet starts from the global date
+        assertThat(configuration.loadLastProcessedDate("ASOC"), is(globalDate));
+
+        configuration.saveLastProcessedEventDate("ASOC", shardDate);
+        configuration.saveLastProcessedEventDate("HA", new Date(30000));
+        configuration.reload();
+        assertThat(configuration.loadLastProcessedDate("ASOC"), is(shardDate));
+        assertThat(configuration.loadLastProcessedDate("HA"), is(new Date(30000)));
+        assertThat(configuration.loadLastProcessedDate(), is(globalDate));
+    }
+
     @Test
     public void testThatMinimumAllowedDateCorrectlyResolved(){
         EventProcessorConfiguration configuration = EventProcessorConfiguration.instance();
@@ -119,6 +180,18 @@ public class EventProcessorConfigurationTest {
         assertDatesAreAlmostEqual(configuration.resolveMinimumAllowedDate(null), tenMinutesBefore, 10);
     }
 
+    @Test
+    public void testThatHistoryWindowFollowsTheClock() {
+        SimulatedClock clock = new SimulatedClock(1409237824878L);
+        Clock.setInstance(clock);
+        configuration.setIssueHistoryWindowInMinutes(10);
+        assertThat(configuration.resolveMinimumAllowedDate(null), is(new Date(1409237824878L - 10 * 60 * 1000)));
+
+        clock.advance(TimeUnit.DAYS.toMillis(7));
+        assertThat(configuration.oldestDateInThePast(),
+                is(new Date(1409237824878L + TimeUnit.DAYS.toMillis(7) - 10 * 60 * 1000)));
+    }
+
     private void assertDatesAreAlmostEqual(Date date1, Date date2, int maxDiff) {
         if (Math.abs(date1.getTime() - date2.getTime()) > maxDiff) {
             assertThat("Dates are not equals", date1, is(date2));
@@ -0,0 +1,70 @@
+package com.ontometrics.integrations.configuration;
+
+import com.ontometrics.integrations.events.Comment;
+import com.ontometrics.integrations.events.Issue;
+import com.ontometrics.integrations.events.IssueEditSession;
+import org.junit.Test;
+
+import java.net.URL;
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.hamcrest.CoreMatchers.containsString;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+public class IssueLinkifierTest {
+
+    private static final String BASE_URL = "http://ontometrics.com:8085/issue/";
+
+    @Test
+    public void testThatReferencesOfKnownProjectsAreLinked() {
+        IssueLinkifier linkifier = new IssueLinkifier(Arrays.asList("HA", "HAB", "DMAN"));
+
+        assertThat(link(linkifier, "HA-12 duplicates HAB-3, (DMAN-7) and {XY-1}, not HAX-1 or DMAN-7b"),
+                is("<" + BASE_URL + "HA-12|HA-12> duplicates <" + BASE_URL + "HAB-3|HAB-3>, (<" + BASE_URL
+                        + "DMAN-7|DMAN-7>) and [XY-1], not HAX-1 or DMAN-7b"));
+    }
+
+    @Test
+    public void testThatUrlsAndWordPartsAreNotLinked() {
+        IssueLinkifier linkifier = new IssueLinkifier(Collections.singletonList("HA"));
+
+        assertThat(link(linkifier, "see " + BASE_URL + "HA-1, CHA-2, HA-, HA-x, AHA-3"),
+                is("see " + BASE_URL + "HA-1, CHA-2, HA-, HA-x, AHA-3"));
+        assertThat(link(linkifier, "HA-1."), is("<" + BASE_URL + "HA-1|HA-1>."));
+    }
+
+    @Test
+    public void testThatAddedPrefixIsLinked() {
+        IssueLinkifier linkifier = new IssueLinkifier(Collections.<String>emptyList());
+        assertThat(link(linkifier, "AP-5"), is("AP-5"));
+
+        linkifier.addPrefix("AP");
+        linkifier.addPrefix("A P");
+        assertThat(link(linkifier, "AP-5"), is("<" + BASE_URL + "AP-5|AP-5>"));
+        assertThat(linkifier.getPrefixes(), is((Object) Collections.singleton("AP")));
+    }
+
+    @Test
+    public void testThatCommentReferencesArePostedAsLinks() throws Exception {
+        SlackInstance slackInstance = new SlackInstance.Builder()
+                .channelMapper(new com.ontometrics.integrations.sources.ChannelMapper.Builder().defaultChannel("process").build())
+                .messageRenderer(new SlackMessageRenderer.Builder().issuePrefixes(Collections.singleton("ASOC")).build())
+                .build();
+        Issue issue = new Issue.Builder().projectPrefix("HA").id(7).title("HA-7: Crash")
+                .link(new URL(BASE_URL + "HA-7")).build();
+        IssueEditSession session = new IssueEditSession.Builder()
+                .issue(issue)
+                .updater("Noura")
+                .comment(new Comment.Builder().author("Noura").text("same as ASOC-408 and HA-6").build())
+                .build();
+
+        assertThat(slackInstance.buildSessionPayload("process", session), containsString("\"text\":\"same as <"
+                + BASE_URL + "ASOC-408|ASOC-408> and <" + BASE_URL + "HA-6|HA-6>\""));
+    }
+
+    private static String link(IssueLinkifier linkifier, String text) {
+        return linkifier.appendLinked(new StringBuilder(), text, 0, text.length(), BASE_URL).toString();
+    }
+}
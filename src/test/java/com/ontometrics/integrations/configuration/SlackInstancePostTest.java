@@ -0,0 +1,169 @@
+package com.ontometrics.integrations.configuration;
+
+import com.ontometrics.integrations.events.IssueEditSession;
+import com.ontometrics.integrations.events.TestDataFactory;
+import com.ontometrics.integrations.sources.ChannelMapper;
+import com.ontometrics.util.BadResponseException;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import org.apache.commons.io.IOUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.slf4j.Logger;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.hamcrest.CoreMatchers.*;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.junit.Assert.fail;
+import static org.slf4j.LoggerFactory.getLogger;
+
+/**
+ * Posts messages with {@link com.ontometrics.integrations.configuration.SlackInstance} to the local stub of Slack server
+ */
+public class SlackInstancePostTest {
+
+    private Logger log = getLogger(SlackInstancePostTest.class);
+
+    private HttpServer server;
+    private final List<String> requestBodies = new CopyOnWriteArrayList<>();
+    private final List<String> authorizationHeaders = new CopyOnWriteArrayList<>();
+    private SlackInstance slackInstance;
+    private volatile int responseCode = 200;
+    private volatile String responseText = "{\"ok\":true}";
+    private volatile String rejectedChannel;
+
+    @Before
+    public void setUp() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.createContext("/api/chat.postMessage", new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                String body = IOUtils.toString(exchange.getRequestBody(), "UTF-8");
+                requestBodies.add(body);
+                authorizationHeaders.add(exchange.getRequestHeaders().getFirst("Authorization"));
+                boolean rejected = rejectedChannel != null
+                        && body.startsWith("{\"channel\":\"#" + rejectedChannel + "\"");
+                byte[] response = (rejected ? "{\"ok\":false,\"error\":\"channel_not_found\"}" : responseText)
+                        .getBytes("UTF-8");
+                exchange.getResponseHeaders().add("Content-Type", "application/json");
+                if (responseCode == 429) {
+                    exchange.getResponseHeaders().add("Retry-After", "30");
+                }
+                exchange.sendResponseHeaders(rejected ? 404 : responseCode, response.length);
+                exchange.getResponseBody().write(response);
+                exchange.close();
+            }
+        });
+        server.start();
+        slackInstance = new SlackInstance.Builder()
+                .channelMapper(new ChannelMapper.Builder().defaultChannel("process").build())
+                .baseUrl("http://localhost:" + server.getAddress().getPort())
+                .authToken("test-token")
+                .build();
+    }
+
+    @After
+    public void tearDown() {
+        slackInstance.close();
+        server.stop(0);
+    }
+
+    @Test
+    public void testThatMessageIsPostedAsJsonWithAuthorizationHeader() throws Exception {
+        IssueEditSession session = TestDataFactory.build();
+        slackInstance.post(session);
+
+        assertThat(requestBodies.size(), is(1));
+        assertThat(authorizationHeaders.get(0), is("Bearer test-token"));
+        assertThat(requestBodies.get(0), startsWith("{\"channel\":\"#process\",\"text\":\"*Noura* updated"));
+        assertThat(requestBodies.get(0), not(containsString("test-token")));
+    }
+
+    @Test
+    public void testThatSessionIsPostedToEveryRoutedChannel() throws Exception {
+        routeToAlertsAndVixlet();
+        slackInstance.post(TestDataFactory.build());
+
+        assertThat(requestBodies.size(), is(2));
+        assertThat(requestBodies.get(0), startsWith("{\"channel\":\"#alerts\""));
+        assertThat(requestBodies.get(1), startsWith("{\"channel\":\"#vixlet\""));
+    }
+
+    @Test
+    public void testThatRejectingChannelDoesNotFailSessionPostedToOtherChannels() throws Exception {
+        routeToAlertsAndVixlet();
+        rejectedChannel = "alerts";
+        slackInstance.post(TestDataFactory.build());
+
+        //session is not failed, so the next poll does not post it to #vixlet again
+        assertThat(requestBodies.size(), is(2));
+        assertThat(requestBodies.get(1), startsWith("{\"channel\":\"#vixlet\""));
+    }
+
+    @Test
+    public void testThatSessionRejectedByEveryChannelFails() throws Exception {
+        routeToAlertsAndVixlet();
+        responseCode = 429;
+        try {
+            slackInstance.post(TestDataFactory.build());
+            fail("post rejected by every channel should fail");
+        } catch (BadResponseException e) {
+            assertThat(e.getMessage(), containsString("to alerts"));
+        }
+        assertThat(requestBodies.size(), is(2));
+    }
+
+    @Test
+    public void testThatRateLimitedPostFails() throws Exception {
+        responseCode = 429;
+        responseText = "{\"ok\":false,\"error\":\"rate_limited\"}";
+        try {
+            slackInstance.post(TestDataFactory.build());
+            fail("rate limited post should fail");
+        } catch (BadResponseException e) {
+            assertThat(e.getResponseCode(), is(429));
+            assertThat(e.getMessage(), containsString("retry after 30 s"));
+        }
+    }
+
+    @Test
+    public void testThatNotOkResponseFails() throws Exception {
+        responseText = "{\"ok\":false,\"error\":\"channel_not_found\"}";
+        try {
+            slackInstance.post(TestDataFactory.build());
+            fail("post which is not ok should fail");
+        } catch (BadResponseException e) {
+            assertThat(e.getMessage(), containsString("channel_not_found"));
+        }
+    }
+
+    private void routeToAlertsAndVixlet() {
+        slackInstance.close();
+        slackInstance = new SlackInstance.Builder()
+                .channelMapper(new ChannelMapper.Builder().defaultChannel("process")
+                        .addRule("field=Priority:Critical -> alerts, vixlet").build())
+                .baseUrl("http://localhost:" + server.getAddress().getPort())
+                .authToken("test-token")
+                .build();
+    }
+
+    @Test
+    public void testThatManyMessagesArePostedWithSharedClient() throws Exception {
+        IssueEditSession session = TestDataFactory.build();
+        int messages = 20;
+        long start = System.nanoTime();
+        for (int i = 0; i < messages; i++) {
+            slackInstance.post(session);
+        }
+        long elapsedMillis = (System.nanoTime() - start) / 1000000;
+        log.info("posted {} messages in {} ms", messages, elapsedMillis);
+
+        assertThat(requestBodies.size(), is(messages));
+    }
+}
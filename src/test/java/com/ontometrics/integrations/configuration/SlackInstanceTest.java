@@ -129,4 +129,54 @@ public class SlackInstanceTest {
         assertThat(slackInstance.buildSessionMessage(session), containsString("*Noura* updated"));
     }
 
-}
\ No newline at end of file
+    @Test
+    public void testThatCustomTemplateIsUsedAndValuesAreEscaped() throws MalformedURLException {
+        SlackInstance customSlackInstance = new SlackInstance.Builder()
+                .channelMapper(new ChannelMapper.Builder().defaultChannel("process").build())
+                .messageRenderer(new SlackMessageRenderer.Builder().newIssueTemplate("{issueLink} ({title}) by {creator}").build())
+                .build();
+        Issue issue = new Issue.Builder().projectPrefix("HA").id(7).creator("Rob")
+                .title("HA-7: Fix {braces}").link(new URL("http://ontometrics.com:8085/issue/HA-7")).build();
+
+        assertThat(customSlackInstance.buildNewIssueMessage(issue),
+                is("<http://ontometrics.com:8085/issue/HA-7|HA-7> (Fix [braces]) by Rob"));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testThatUnknownPlaceholderIsRejected() {
+        new SlackMessageRenderer.Builder().newIssueTemplate("{unknown}").build();
+    }
+
+    @Test
+    public void testThatLongDescriptionIsTruncatedWithLinkToIssue() throws MalformedURLException {
+        SlackInstance limitedSlackInstance = new SlackInstance.Builder()
+                .channelMapper(new ChannelMapper.Builder().defaultChannel("process").build())
+                .messageRenderer(new SlackMessageRenderer.Builder().newIssueTemplate("{description}").maxDescriptionLength(10).build())
+                .build();
+        Issue issue = new Issue.Builder().projectPrefix("HA").id(7).title("HA-7: Long one")
+                .description("0123456789 and much more").link(new URL("http://ontometrics.com:8085/issue/HA-7")).build();
+
+        assertThat(limitedSlackInstance.buildNewIssueMessage(issue),
+                is("0123456789\u2026 <http://ontometrics.com:8085/issue/HA-7|see more>"));
+    }
+
+    @Test
+    public void testThatSessionDetailsAreWrittenAsAttachments() throws MalformedURLException {
+        String attachments = slackInstance.buildSessionPayload("vixlet", TestDataFactory.build());
+
+        assertThat(attachments, containsString("\"fields\":[{\"title\":\"State\",\"value\":\"Assigned -> Fixed\",\"short\":true}"));
+        assertThat(attachments, containsString("\"fallback\":\"*Noura* updated"));
+    }
+
+    @Test
+    public void testThatSessionWithoutDetailsHasNoAttachments() throws MalformedURLException {
+        IssueEditSession session = new IssueEditSession.Builder()
+                .issue(TestDataFactory.build().getIssue())
+                .updater("Noura")
+                .updated(new Date())
+                .build();
+
+        assertThat(slackInstance.buildSessionPayload("vixlet", session), not(containsString("attachments")));
+    }
+
+}
@@ -0,0 +1,140 @@
+package com.ontometrics.integrations.configuration;
+
+import com.ontometrics.integrations.events.Issue;
+import com.ontometrics.integrations.events.IssueEditSession;
+import com.ontometrics.integrations.events.TestDataFactory;
+import com.ontometrics.integrations.sources.ChannelMapper;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import org.apache.commons.io.IOUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.hamcrest.CoreMatchers.*;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+/**
+ * Posts sessions of the issue as replies to the first message about it to the local stub of Slack server
+ */
+public class SlackThreadsTest {
+
+    private static final long MINUTE = 60 * 1000;
+
+    private HttpServer server;
+    private final List<String> requestBodies = new CopyOnWriteArrayList<>();
+    private final AtomicInteger messages = new AtomicInteger();
+    private final Map<String, String> stored = new HashMap<>();
+    private final AtomicInteger saves = new AtomicInteger();
+    private final SlackThreads.Store store = new SlackThreads.Store() {
+        @Override
+        public Map<String, String> load() {
+            return new HashMap<>(stored);
+        }
+
+        @Override
+        public void save(Map<String, String> startedThreads, Collection<String> removedKeys) {
+            saves.incrementAndGet();
+            stored.putAll(startedThreads);
+            stored.keySet().removeAll(removedKeys);
+        }
+    };
+
+    @Before
+    public void setUp() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.createContext("/api/chat.postMessage", new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                requestBodies.add(IOUtils.toString(exchange.getRequestBody(), "UTF-8"));
+                byte[] response = ("{\"ok\":true,\"channel\":\"C1\",\"ts\":\"1503435956.00000"
+                        + messages.incrementAndGet() + "\",\"message\":{\"text\":\"posted\"}}").getBytes("UTF-8");
+                exchange.getResponseHeaders().add("Content-Type", "application/json");
+                exchange.sendResponseHeaders(200, response.length);
+                exchange.getResponseBody().write(response);
+                exchange.close();
+            }
+        });
+        server.start();
+    }
+
+    @After
+    public void tearDown() {
+        server.stop(0);
+    }
+
+    @Test
+    public void testThatLaterSessionsAreRepliesToFirstMessage() throws Exception {
+        SlackInstance slackInstance = new SlackInstance.Builder()
+                .channelMapper(new ChannelMapper.Builder().defaultChannel("process").build())
+                .baseUrl("http://localhost:" + server.getAddress().getPort())
+                .authToken("test-token")
+                .threads(new SlackThreads.Builder().store(store).build())
+                .build();
+        IssueEditSession session = TestDataFactory.build();
+        for (int i = 0; i < 5; i++) {
+            slackInstance.post(session);
+        }
+
+        assertThat(requestBodies.size(), is(5));
+        assertThat(requestBodies.get(0), not(containsString("thread_ts")));
+        for (String reply : requestBodies.subList(1, 5)) {
+            assertThat(reply, startsWith("{\"channel\":\"#process\",\"thread_ts\":\"1503435956.000001\",\"text\":"));
+        }
+        assertThat(stored.size(), is(1));
+    }
+
+    @Test
+    public void testThatSessionAfterWindowStartsNewThread() {
+        SlackThreads threads = new SlackThreads.Builder().windowMillis(10 * MINUTE).build();
+        Issue issue = issue(1);
+        threads.startThread("process", issue, "1.1", 0);
+
+        assertThat(threads.getThread("process", issue, 10 * MINUTE), is("1.1"));
+        assertThat(threads.getThread("process", issue, 11 * MINUTE), is(nullValue()));
+        assertThat(threads.getThread("qa", issue, MINUTE), is(nullValue()));
+    }
+
+    @Test
+    public void testThatOldestThreadsAreForgottenAndRestIsRestored() {
+        SlackThreads threads = new SlackThreads.Builder().maxThreads(2).store(store).build();
+        threads.startThread("process", issue(1), "1.1", 0);
+        threads.startThread("process", issue(2), "1.2", MINUTE);
+        threads.startThread("process", issue(3), "1.3", 2 * MINUTE);
+
+        assertThat(threads.size(), is(2));
+        assertThat(saves.get(), is(3));
+        assertThat(threads.getThread("process", issue(1), 2 * MINUTE), is(nullValue()));
+
+        SlackThreads restored = new SlackThreads.Builder().maxThreads(2).store(store).build();
+        restored.startThread("process", issue(4), "1.4", 3 * MINUTE);
+        assertThat(restored.getThread("process", issue(2), 3 * MINUTE), is(nullValue()));
+        assertThat(restored.getThread("process", issue(3), 3 * MINUTE), is("1.3"));
+        assertThat(stored.size(), is(2));
+    }
+
+    @Test
+    public void testThatTsIsReadFromResponse() throws Exception {
+        assertThat(SlackInstance.readTs("{\"ok\":true,\"message\":{\"ts\":\"2.0\"},\"ts\":\"1.0\"}"), is("1.0"));
+        assertThat(SlackInstance.readTs("{\"ok\":true}"), is(nullValue()));
+    }
+
+    @Test(expected = IOException.class)
+    public void testThatFailedResponseIsRejected() throws Exception {
+        SlackInstance.readTs("{\"ok\":false,\"error\":\"channel_not_found\"}");
+    }
+
+    private static Issue issue(int id) {
+        return new Issue.Builder().projectPrefix("HA").id(id).title("HA-" + id + ": Crash").build();
+    }
+}
@@ -0,0 +1,158 @@
+package com.ontometrics.integrations.configuration;
+
+import com.ontometrics.integrations.events.Issue;
+import com.ontometrics.integrations.events.IssueEdit;
+import com.ontometrics.integrations.events.IssueEditSession;
+import com.ontometrics.integrations.sources.ChannelMapper;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.URL;
+import java.util.*;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.hamcrest.CoreMatchers.*;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+/**
+ * Lists users of the local stub of Slack server with {@link SlackUserDirectory}
+ */
+public class SlackUserDirectoryTest {
+
+    private static final String FIRST_PAGE = "{\"ok\":true,\"members\":["
+            + "{\"id\":\"U01\",\"name\":\"noura\",\"deleted\":false,\"profile\":{\"real_name\":\"Noura Hassan\","
+            + "\"display_name\":\"\",\"email\":\"nhassan@ontometrics.com\"}},"
+            + "{\"id\":\"U02\",\"name\":\"rob.williams\",\"is_bot\":false,\"profile\":{\"real_name\":\"Rob Williams\"}},"
+            + "{\"id\":\"U03\",\"name\":\"gone\",\"deleted\":true,\"profile\":{\"real_name\":\"Gone\"}}],"
+            + "\"response_metadata\":{\"next_cursor\":\"page2\"}}";
+    private static final String SECOND_PAGE = "{\"ok\":true,\"members\":["
+            + "{\"id\":\"U04\",\"name\":\"anna\",\"profile\":{\"real_name\":null,\"display_name\":\"Ann\"}},"
+            + "{\"id\":\"B01\",\"name\":\"youtrack\",\"is_bot\":true}],"
+            + "\"response_metadata\":{\"next_cursor\":\"\"}}";
+
+    private HttpServer server;
+    private final List<String> requests = new CopyOnWriteArrayList<>();
+    private final Map<String, String> stored = new HashMap<>();
+    private final SlackUserDirectory.Store store = new SlackUserDirectory.Store() {
+        @Override
+        public Map<String, String> load() {
+            return new HashMap<>(stored);
+        }
+
+        @Override
+        public void save(Map<String, String> loginIds) {
+            stored.clear();
+            stored.putAll(loginIds);
+        }
+    };
+
+    @Before
+    public void setUp() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.createContext("/api/users.list", new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                String query = exchange.getRequestURI().getQuery();
+                requests.add(query);
+                byte[] response = (query.contains("cursor=page2") ? SECOND_PAGE : FIRST_PAGE).getBytes("UTF-8");
+                exchange.getResponseHeaders().add("Content-Type", "application/json");
+                exchange.sendResponseHeaders(200, response.length);
+                exchange.getResponseBody().write(response);
+                exchange.close();
+            }
+        });
+        server.start();
+    }
+
+    @After
+    public void tearDown() {
+        server.stop(0);
+    }
+
+    @Test
+    public void testThatAllPagesAreListed() {
+        SlackUserDirectory directory = directory().build();
+
+        assertThat(directory.refresh(), is(true));
+        assertThat(requests, is(Arrays.asList("limit=2", "limit=2&cursor=page2")));
+        assertThat(directory.getUserNames(), is(Arrays.asList("noura", "rob.williams", "anna")));
+    }
+
+    @Test
+    public void testThatUsersAreResolvedByNamesAndEmail() {
+        SlackUserDirectory directory = directory().addMapping("robw", "Rob.Williams").build();
+        directory.refresh();
+
+        assertThat(directory.getUserId("Noura Hassan"), is("U01"));
+        assertThat(directory.getUserId("nhassan"), is("U01"));
+        assertThat(directory.getUserId("ann"), is("U04"));
+        assertThat(directory.getUserId("robw"), is("U02"));
+        assertThat(directory.getUserId("gone"), is(nullValue()));
+        assertThat(directory.getUserId("youtrack"), is(nullValue()));
+    }
+
+    @Test
+    public void testThatResolvedLoginsAreRestoredBeforeRefresh() {
+        SlackUserDirectory directory = directory().build();
+        directory.refresh();
+        directory.getUserId("nhassan");
+        directory.save();
+
+        SlackUserDirectory restarted = directory().build();
+        assertThat(restarted.getUserId("nhassan"), is("U01"));
+        assertThat(restarted.getUserId("anna"), is(nullValue()));
+    }
+
+    @Test
+    public void testThatFailedListingKeepsDirectory() {
+        SlackUserDirectory directory = directory().build();
+        directory.refresh();
+        server.removeContext("/api/users.list");
+
+        assertThat(directory.refresh(), is(false));
+        assertThat(directory.getUserId("anna"), is("U04"));
+    }
+
+    @Test
+    public void testThatUsersAreMentionedWithoutRequests() throws Exception {
+        SlackUserDirectory directory = directory().build();
+        directory.refresh();
+        requests.clear();
+        SlackInstance slackInstance = new SlackInstance.Builder()
+                .channelMapper(new ChannelMapper.Builder().defaultChannel("process").build())
+                .messageRenderer(new SlackMessageRenderer.Builder().userDirectory(directory).build())
+                .userDirectory(directory)
+                .build();
+        Issue issue = new Issue.Builder().projectPrefix("HA").id(7).title("HA-7: Crash")
+                .link(new URL("http://ontometrics.com:8085/issue/HA-7")).build();
+        IssueEditSession session = new IssueEditSession.Builder()
+                .issue(issue)
+                .updater("nhassan")
+                .changes(Collections.singletonList(new IssueEdit.Builder().issue(issue).field("Assignee")
+                        .priorValue("Unknown Person").currentValue("Rob Williams").build()))
+                .build();
+
+        String payload = "";
+        for (int i = 0; i < 100; i++) {
+            payload = slackInstance.buildSessionPayload("process", session);
+        }
+        assertThat(payload, containsString("\"text\":\"*<@U01>* updated"));
+        assertThat(payload, containsString("\"value\":\"Unknown Person -> <@U02>\""));
+        assertThat(slackInstance.getUsers(), hasItem("anna"));
+        assertThat(requests, is(Collections.<String>emptyList()));
+    }
+
+    private SlackUserDirectory.Builder directory() {
+        return new SlackUserDirectory.Builder()
+                .baseUrl("http://localhost:" + server.getAddress().getPort())
+                .authToken("test-token")
+                .pageSize(2)
+                .store(store);
+    }
+}
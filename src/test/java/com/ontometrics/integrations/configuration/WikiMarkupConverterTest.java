@@ -0,0 +1,70 @@
+package com.ontometrics.integrations.configuration;
+
+import com.ontometrics.integrations.events.Comment;
+import com.ontometrics.integrations.events.Issue;
+import com.ontometrics.integrations.events.IssueEditSession;
+import org.junit.Test;
+
+import java.net.URL;
+
+import static org.hamcrest.CoreMatchers.containsString;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+public class WikiMarkupConverterTest {
+
+    private static final WikiMarkupConverter.TextAppender ESCAPED = new WikiMarkupConverter.TextAppender() {
+        @Override
+        public void append(StringBuilder builder, CharSequence text, int start, int end) {
+            MessageTemplate.appendEscaped(builder, text, start, end);
+        }
+    };
+
+    @Test
+    public void testThatInlineMarkupIsConverted() {
+        assertThat(convert("'''Fails''' on ''every'' call of {{login()}} in {monospace}Auth{monospace}, see [http://ya.ru logs]"),
+                is("*Fails* on _every_ call of `login()` in `Auth`, see <http://ya.ru|logs>"));
+        assertThat(convert("[http://ya.ru] and [not a link] {x}"), is("<http://ya.ru> and [not a link] [x]"));
+    }
+
+    @Test
+    public void testThatLineMarkupIsConverted() {
+        assertThat(convert("== Steps ==\n# open\n# click\n* works\n=not heading"),
+                is("*Steps*\n1. open\n2. click\n\u2022 works\n=not heading"));
+        assertThat(convert("{quote}\nfirst\nsecond\n{quote}\nafter"), is("> first\n> second\nafter"));
+    }
+
+    @Test
+    public void testThatCodeIsCopiedAsIs() {
+        assertThat(convert("run:{code lang=java}\nif (a) { '''b'''; }\n{code}done"),
+                is("run:\n```if (a) { '''b'''; }\n```done"));
+        assertThat(convert("{noformat}\n{{x}}\n{noformat}"), is("```{{x}}\n```"));
+    }
+
+    @Test
+    public void testThatBlocksOpenAtTheEndAreClosed() {
+        assertThat(convert("{code}\nint a"), is("```int a\n```"));
+        assertThat(convert("see {{main("), is("see `main(`"));
+    }
+
+    @Test
+    public void testThatCommentMarkupIsPosted() throws Exception {
+        SlackInstance slackInstance = new SlackInstance.Builder()
+                .channelMapper(new com.ontometrics.integrations.sources.ChannelMapper.Builder().defaultChannel("process").build())
+                .build();
+        Issue issue = new Issue.Builder().projectPrefix("HA").id(7).title("HA-7: Crash")
+                .link(new URL("http://ontometrics.com:8085/issue/HA-7")).build();
+        IssueEditSession session = new IssueEditSession.Builder()
+                .issue(issue)
+                .updater("Noura")
+                .comment(new Comment.Builder().author("Noura").text("'''fixed''' in {{Auth}}, see HA-6").build())
+                .build();
+
+        assertThat(slackInstance.buildSessionPayload("process", session), containsString("\"text\":\"*fixed* in `Auth`, "
+                + "see <http://ontometrics.com:8085/issue/HA-6|HA-6>\""));
+    }
+
+    private static String convert(String text) {
+        return WikiMarkupConverter.convert(new StringBuilder(), text, 0, text.length(), ESCAPED).toString();
+    }
+}
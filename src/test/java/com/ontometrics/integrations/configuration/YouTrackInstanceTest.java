@@ -6,8 +6,12 @@ import org.junit.Test;
 
 import java.net.MalformedURLException;
 import java.net.URL;
+import java.util.Date;
 
 import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.endsWith;
+import static org.hamcrest.Matchers.startsWith;
 import static org.junit.Assert.*;
 
 public class YouTrackInstanceTest {
@@ -29,6 +33,21 @@ public class YouTrackInstanceTest {
         assertThat(youTrackInstance.getFeedUrl(), is(new URL("http://ontometrics.com:8085/_rss/issues")));
     }
 
+    @Test
+    public void testGetProjectFeedUrl() throws Exception {
+        youTrackInstance = new YouTrackInstance.Builder().baseUrl("http://ontometrics.com:8085").project("ASOC").build();
+
+        assertThat(youTrackInstance.getFeedUrl(), is(new URL("http://ontometrics.com:8085/_rss/issues?q=project%3A+ASOC")));
+    }
+
+    @Test
+    public void testGetFeedWindowUrl() throws Exception {
+        youTrackInstance = new YouTrackInstance.Builder().baseUrl("http://ontometrics.com:8085").project("ASOC").build();
+
+        assertThat(youTrackInstance.getFeedUrl(new Date(0), new Date(3600000)), is(new URL("http://ontometrics.com:8085"
+                + "/_rss/issues?q=project%3A+ASOC+updated%3A+1970-01-01T00%3A00%3A00+..+1970-01-01T01%3A00%3A00")));
+    }
+
     @Test
     public void testGetChangesUrl() throws Exception {
         assertThat(youTrackInstance.getChangesUrl(new Issue.Builder().projectPrefix("ASOC").id(505).build()),
@@ -41,6 +60,15 @@ public class YouTrackInstanceTest {
                 is(new URL("http://ontometrics.com:8085/rest/issue/ASOC-480/attachment")));
     }
 
+    @Test
+    public void testGetActivitiesUrl() throws Exception {
+        String url = youTrackInstance.getActivitiesUrl(new Date(1000L), 200, 100).toString();
+
+        assertThat(url, startsWith("http://ontometrics.com:8085/api/activities?categories="));
+        assertThat(url, containsString("&$skip=200&$top=100"));
+        assertThat(url, endsWith("&start=1001"));
+    }
+
     @Test
     public void testThatNoPortWorks() throws MalformedURLException {
         youTrackInstance = new YouTrackInstance.Builder().baseUrl("http://ontometrics.com").build();
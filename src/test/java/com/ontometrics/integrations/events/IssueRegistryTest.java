@@ -0,0 +1,31 @@
+package com.ontometrics.integrations.events;
+
+import org.junit.Test;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+public class IssueRegistryTest {
+
+    @Test
+    public void testThatIssuesWithSameContentShareOneInstance() {
+        IssueRegistry registry = new IssueRegistry();
+        Issue first = registry.intern(new Issue.Builder().projectPrefix("ASOC").id(408).title("ASOC-408: Follow").build());
+        Issue second = registry.intern(new Issue.Builder().projectPrefix("ASOC").id(408).title("ASOC-408: Follow").build());
+
+        assertThat(second, sameInstance(first));
+    }
+
+    @Test
+    public void testThatChangedIssueReplacesRegisteredOne() {
+        IssueRegistry registry = new IssueRegistry();
+        Issue original = registry.intern(new Issue.Builder().projectPrefix("ASOC").id(408).title("ASOC-408: Follow").build());
+        Issue renamed = new Issue.Builder().projectPrefix("ASOC").id(408).title("ASOC-408: Unfollow").build();
+
+        assertThat(registry.intern(renamed), sameInstance(renamed));
+        assertThat(registry.intern(new Issue.Builder().projectPrefix("ASOC").id(408).title("ASOC-408: Unfollow").build()),
+                sameInstance(renamed));
+        assertThat(original.getTitle(), is("ASOC-408: Follow"));
+    }
+}
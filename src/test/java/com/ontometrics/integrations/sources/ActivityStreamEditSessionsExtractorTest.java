@@ -0,0 +1,130 @@
+package com.ontometrics.integrations.sources;
+
+import com.ontometrics.integrations.configuration.ActivityStreamIssueTracker;
+import com.ontometrics.integrations.configuration.EventProcessorConfiguration;
+import com.ontometrics.integrations.events.Issue;
+import com.ontometrics.integrations.events.IssueEditSession;
+import ontometrics.test.util.TestUtil;
+import ontometrics.test.util.UrlStreamProvider;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+
+public class ActivityStreamEditSessionsExtractorTest {
+
+    private ActivityStreamTracker issueTracker;
+    private ActivityStreamEditSessionsExtractor editsExtractor;
+
+    @Before
+    public void setUp() throws Exception {
+        EventProcessorConfiguration.instance().clear();
+        issueTracker = new ActivityStreamTracker();
+        editsExtractor = new ActivityStreamEditSessionsExtractor(issueTracker, UrlStreamProvider.instance(), 3);
+    }
+
+    @Test
+    public void testThatAllPagesAreRequestedOnce() throws Exception {
+        editsExtractor.getLatestEdits(new Date(0), EventProcessorConfiguration.instance());
+
+        assertThat(issueTracker.requestedSkips, contains(0, 3));
+    }
+
+    @Test
+    public void testThatActivitiesAreConvertedToEditSessions() throws Exception {
+        List<IssueEditSession> sessions = editsExtractor.getLatestEdits(new Date(0), EventProcessorConfiguration.instance());
+
+        assertThat(sessions, hasSize(4));
+
+        IssueEditSession creation = sessions.get(0);
+        assertThat(creation.isCreationEdit(), is(true));
+        assertThat(creation.getIssue().getPrefix(), is("ASOC"));
+        assertThat(creation.getIssue().getId(), is(148));
+        assertThat(creation.getIssue().getTitle(), is("ASOC-148: Extract alternate email addresses"));
+        assertThat(creation.getIssue().getDescription(), is("Parse profile pages"));
+        assertThat(creation.getIssue().getCreator(), is("tim"));
+        assertThat(creation.getIssue().getLink().toString(), is("http://youtrack.example.com/issue/ASOC-148"));
+
+        IssueEditSession comment = sessions.get(2);
+        assertThat(comment.getIssue().getTitle(), is("ASOC-28: User searches"));
+        assertThat(comment.getComment().getText(), is("Looks good"));
+        assertThat(comment.getComment().getAuthor(), is("Rob Williams"));
+
+        IssueEditSession attachment = sessions.get(3);
+        assertThat(attachment.getAttachments(), hasSize(1));
+        assertThat(attachment.getAttachments().get(0).getName(), is("screenshot.png"));
+        assertThat(attachment.getAttachments().get(0).getFileUrl(), is("http://youtrack.example.com/api/files/5-2?sign=abc"));
+
+        //changes of the same user at the same time are in one session
+        IssueEditSession fieldChanges = sessions.get(1);
+        assertThat(fieldChanges.getUpdater(), is("noura"));
+        assertThat(fieldChanges.hasChanges(), is(true));
+        assertThat(fieldChanges.getChanges(), hasSize(2));
+        assertThat(fieldChanges.getChanges().get(0).getField(), is("State"));
+        assertThat(fieldChanges.getChanges().get(0).getPriorValue(), is("Open"));
+        assertThat(fieldChanges.getChanges().get(0).getCurrentValue(), is("In Progress"));
+        assertThat(fieldChanges.getChanges().get(1).getField(), is("Assignee"));
+        assertThat(fieldChanges.getChanges().get(1).getCurrentValue(), is("Noura Hassan"));
+    }
+
+    @Test
+    public void testThatProcessedActivitiesOfIssueAreSkipped() throws Exception {
+        EventProcessorConfiguration configuration = EventProcessorConfiguration.instance();
+        Issue issue = new Issue.Builder().projectPrefix("ASOC").id(148).build();
+        configuration.saveEventChangeDates(Collections.singletonMap(issue, new Date(1409583600000L)));
+
+        List<IssueEditSession> sessions = editsExtractor.getLatestEdits(new Date(0), configuration);
+
+        assertThat(sessions, hasSize(2));
+        for (IssueEditSession session : sessions) {
+            assertThat(session.getIssue().getId(), is(28));
+        }
+    }
+
+    private static class ActivityStreamTracker implements ActivityStreamIssueTracker {
+        private final List<Integer> requestedSkips = new ArrayList<>();
+
+        @Override
+        public URL getActivitiesUrl(Date since, int skip, int top) {
+            requestedSkips.add(skip);
+            return TestUtil.getFileAsURL("/feeds/activities-page-" + (skip / top + 1) + ".json");
+        }
+
+        @Override
+        public URL getIssueActivitiesUrl(Issue issue, Date since) {
+            return null;
+        }
+
+        @Override
+        public URL getBaseUrl() {
+            try {
+                return new URL("http://youtrack.example.com");
+            } catch (MalformedURLException e) {
+                throw new RuntimeException(e);
+            }
+        }
+
+        @Override
+        public URL getFeedUrl() {
+            return null;
+        }
+
+        @Override
+        public URL getChangesUrl(Issue issue) {
+            return null;
+        }
+
+        @Override
+        public URL getAttachmentsUrl(Issue issue) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,130 @@
+package com.ontometrics.integrations.sources;
+
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import org.apache.commons.io.IOUtils;
+import org.apache.http.HttpStatus;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.InetSocketAddress;
+import java.net.SocketTimeoutException;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+
+/**
+ * Requests resources of the local stub server with {@link AsyncHttpStreamProvider}
+ */
+public class AsyncHttpStreamProviderTest {
+
+    private static final String AUTHORIZATION = "Basic dXNlcjpwd2Q="; //user:pwd
+
+    private final CountDownLatch hungResponses = new CountDownLatch(1);
+    private HttpServer server;
+    private AsyncHttpStreamProvider streamProvider;
+
+    @Before
+    public void setUp() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 64);
+        server.setExecutor(Executors.newCachedThreadPool());
+        server.createContext("/issue", new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                if (!AUTHORIZATION.equals(exchange.getRequestHeaders().getFirst("Authorization"))) {
+                    exchange.sendResponseHeaders(HttpStatus.SC_UNAUTHORIZED, -1);
+                    exchange.close();
+                    return;
+                }
+                byte[] response = exchange.getRequestURI().getPath().getBytes("UTF-8");
+                exchange.sendResponseHeaders(HttpStatus.SC_OK, response.length);
+                exchange.getResponseBody().write(response);
+                exchange.close();
+            }
+        });
+        server.createContext("/hung", new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                try {
+                    hungResponses.await(10, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                exchange.close();
+            }
+        });
+        server.start();
+        streamProvider = new AsyncHttpStreamProvider.Builder()
+                .basicAuthentication("user", "pwd")
+                .maxConnections(4)
+                .socketTimeout(500)
+                .build();
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        hungResponses.countDown();
+        streamProvider.close();
+        server.stop(0);
+    }
+
+    @Test
+    public void testThatConcurrentRequestsAreHandled() throws Exception {
+        List<ListenableFuture<String>> responses = new ArrayList<>();
+        int requests = 20;
+        for (int i = 0; i < requests; i++) {
+            responses.add(streamProvider.openResourceStreamAsync(url("/issue/ASOC-" + i), new BodyHandler()));
+        }
+
+        List<String> bodies = Futures.allAsList(responses).get();
+
+        assertThat(bodies, hasSize(requests));
+        for (int i = 0; i < requests; i++) {
+            assertThat(bodies.get(i), is("/issue/ASOC-" + i + " " + HttpStatus.SC_OK));
+        }
+    }
+
+    @Test
+    public void testThatResponseCodeIsPassedToHandler() throws Exception {
+        assertThat(streamProvider.openResourceStream(url("/missing"), new BodyHandler()),
+                endsWith(" " + HttpStatus.SC_NOT_FOUND));
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testThatHandlerExceptionIsThrown() throws Exception {
+        streamProvider.openResourceStream(url("/issue/ASOC-1"), new InputStreamHandler<Object>() {
+            @Override
+            public Object handleStream(InputStream is, int responseCode) throws Exception {
+                throw new IllegalStateException();
+            }
+        });
+    }
+
+    @Test(expected = SocketTimeoutException.class)
+    public void testThatHungResponseTimesOut() throws Exception {
+        streamProvider.openResourceStream(url("/hung"), new BodyHandler());
+    }
+
+    private URL url(String path) throws IOException {
+        return new URL("http://localhost:" + server.getAddress().getPort() + path);
+    }
+
+    private static class BodyHandler implements InputStreamHandler<String> {
+        @Override
+        public String handleStream(InputStream is, int responseCode) throws Exception {
+            return IOUtils.toString(is, "UTF-8") + " " + responseCode;
+        }
+    }
+}
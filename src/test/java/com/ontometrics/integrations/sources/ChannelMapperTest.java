@@ -0,0 +1,106 @@
+package com.ontometrics.integrations.sources;
+
+import com.ontometrics.integrations.events.Issue;
+import com.ontometrics.integrations.events.IssueEdit;
+import com.ontometrics.integrations.events.IssueEditSession;
+import com.ontometrics.integrations.events.TestDataFactory;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+public class ChannelMapperTest {
+
+    @Test
+    public void testThatSessionIsRoutedToChannelsOfAllMatchingRules() throws Exception {
+        //session of ASOC by Noura: State -> Fixed, Priority -> Critical
+        IssueEditSession session = TestDataFactory.build();
+        ChannelMapper mapper = new ChannelMapper.Builder()
+                .defaultChannel("process")
+                .addMapping("ASOC", "vixlet")
+                .addRule("field=priority:critical,show-stopper -> alerts")
+                .addRule("project=ASOC,HA & field=State:Fixed -> releases, qa")
+                .addRule("project=HA & field=State:Fixed -> jobspider-releases")
+                .addRule("updater=rob -> rob")
+                .addRule("field=Assignee -> assignments")
+                .build();
+
+        assertThat(mapper.getChannels(session), is(Arrays.asList("vixlet", "alerts", "releases", "qa")));
+        assertThat(mapper.getChannel(session.getIssue()), is("vixlet"));
+        assertThat(mapper.getChannels(issue("DMAN", "rob")), is(Collections.singletonList("rob")));
+        assertThat(mapper.getChannels(issue("DMAN", "noura")), is(Collections.singletonList("process")));
+    }
+
+    @Test
+    public void testThatEveryConditionOfRuleMustMatch() throws Exception {
+        IssueEditSession session = TestDataFactory.build();
+        ChannelMapper mapper = new ChannelMapper.Builder()
+                .defaultChannel("process")
+                .addRule("project=ASOC & updater=rob -> rob")
+                .addRule("project=HA & field=State -> jobspider")
+                .build();
+
+        assertThat(mapper.getChannels(session), is(Collections.singletonList("process")));
+    }
+
+    @Test
+    public void testThatTagsAndCatchAllRulesAreRouted() throws Exception {
+        Issue issue = issue("HA", "rob");
+        IssueEditSession tagged = new IssueEditSession.Builder()
+                .issue(issue)
+                .updater("rob")
+                .changes(Collections.singletonList(new IssueEdit.Builder().issue(issue).field("Tags")
+                        .priorValue("").currentValue("regression, customer").build()))
+                .build();
+        ChannelMapper mapper = new ChannelMapper.Builder()
+                .defaultChannel("process")
+                .addRule("tag=Customer -> support")
+                .addRule("-> firehose")
+                .build();
+
+        assertThat(mapper.getChannels(tagged), is(Arrays.asList("firehose", "support")));
+        assertThat(mapper.getChannels(issue), is(Collections.singletonList("firehose")));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testThatUnknownConditionIsRejected() {
+        new ChannelMapper.Builder().addRule("priority=Critical -> alerts");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testThatRuleWithoutChannelsIsRejected() {
+        new ChannelMapper.Builder().addRule("project=HA");
+    }
+
+    /**
+     * Only the rules selected by the facts of the session are checked, so routing does not depend on the number of
+     * rules which do not match the session
+     */
+    @Test
+    public void testThatOnlyRulesSelectedBySessionAreChecked() throws Exception {
+        IssueEditSession session = TestDataFactory.build();
+
+        assertThat(checkedRules(session, 10), is(1));
+        assertThat(checkedRules(session, 10000), is(1));
+    }
+
+    private int checkedRules(IssueEditSession session, int rules) {
+        ChannelMapper.Builder builder = new ChannelMapper.Builder().defaultChannel("process")
+                .addRule("project=ASOC & field=State:Fixed -> releases");
+        for (int i = 1; i < rules; i++) {
+            builder.addRule("project=P" + i + " & field=State:S" + i + ",Priority & updater=user" + i
+                    + " -> channel" + i);
+        }
+        ChannelMapper mapper = builder.build();
+
+        assertThat(mapper.getChannels(session), is(Collections.singletonList("releases")));
+        return mapper.getCheckedRuleCount();
+    }
+
+    private static Issue issue(String prefix, String creator) {
+        return new Issue.Builder().projectPrefix(prefix).creator(creator).build();
+    }
+}
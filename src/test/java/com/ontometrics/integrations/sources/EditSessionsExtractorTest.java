@@ -1,11 +1,15 @@
 package com.ontometrics.integrations.sources;
 
 import com.google.common.collect.ImmutableList;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
 import com.ontometrics.integrations.configuration.EventProcessorConfiguration;
 import com.ontometrics.integrations.configuration.IssueTracker;
+import com.ontometrics.integrations.configuration.PagedFeedIssueTracker;
 import com.ontometrics.integrations.configuration.SimpleMockIssueTracker;
 import com.ontometrics.integrations.events.*;
 import com.ontometrics.util.DateBuilder;
+import ontometrics.test.util.TestUtil;
 import ontometrics.test.util.UrlStreamProvider;
 import org.hamcrest.Matchers;
 import org.hamcrest.number.OrderingComparison;
@@ -24,6 +28,11 @@ import java.net.URL;
 import java.text.DateFormat;
 import java.text.SimpleDateFormat;
 import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import static java.util.Calendar.AUGUST;
 import static java.util.Calendar.JULY;
@@ -403,6 +412,216 @@ public class EditSessionsExtractorTest {
         assertSecondAttachment(attachments.get(1));
     }
 
+    @Test
+    public void testThatConcurrentRequestsProduceSameSessionsInFeedOrder() throws Exception {
+        mockYouTrackInstance = new SimpleMockIssueTracker.Builder()
+                .feed("/feeds/issue-feed-with-comments.xml")
+                .changes("/feeds/issue-changes-with-comments.xml")
+                .attachments("/feeds/issue-attachments.xml")
+                .build();
+        ExecutorService executorService = Executors.newFixedThreadPool(4);
+        try {
+            List<IssueEditSession> expected = new EditSessionsExtractor(mockYouTrackInstance, URL_STREAM_PROVIDER)
+                    .getLatestEdits();
+            List<IssueEditSession> edits = new EditSessionsExtractor(mockYouTrackInstance,
+                    StreamProviders.async(URL_STREAM_PROVIDER, executorService)).getLatestEdits();
+
+            assertThat(edits, not(empty()));
+            assertThat(edits, equalTo(expected));
+        } finally {
+            executorService.shutdown();
+        }
+    }
+
+    @Test
+    /**
+     * One extractor instance is shared by many overlapping polls of two different feeds, each poll should get
+     * exactly the events and sessions of a poll running alone
+     */
+    public void testThatSharedExtractorSupportsOverlappingPolls() throws Exception {
+        final EditSessionsExtractor rssExtractor = editsExtractor;
+        final EditSessionsExtractor commentsExtractor = new EditSessionsExtractor(new SimpleMockIssueTracker.Builder()
+                .feed("/feeds/issue-feed-with-comments.xml")
+                .changes("/feeds/issue-changes-with-comments.xml")
+                .attachments("/feeds/issue-attachments.xml")
+                .build(), URL_STREAM_PROVIDER);
+        final List<String> expectedRssEvents = eventKeys(rssExtractor.getLatestEvents());
+        final List<String> expectedCommentsEvents = eventKeys(commentsExtractor.getLatestEvents());
+        final List<IssueEditSession> expectedRssEdits = rssExtractor.getLatestEdits();
+        final List<IssueEditSession> expectedCommentsEdits = commentsExtractor.getLatestEdits();
+
+        int polls = 64;
+        ExecutorService executorService = Executors.newFixedThreadPool(16);
+        final CountDownLatch start = new CountDownLatch(1);
+        try {
+            List<Future<Boolean>> results = new ArrayList<>(polls);
+            for (int i = 0; i < polls; i++) {
+                final boolean rss = i % 2 == 0;
+                final boolean edits = i % 4 < 2;
+                results.add(executorService.submit(new Callable<Boolean>() {
+                    @Override
+                    public Boolean call() throws Exception {
+                        start.await();
+                        EditSessionsExtractor extractor = rss ? rssExtractor : commentsExtractor;
+                        if (edits) {
+                            return extractor.getLatestEdits().equals(rss ? expectedRssEdits : expectedCommentsEdits);
+                        }
+                        return eventKeys(extractor.getLatestEvents())
+                                .equals(rss ? expectedRssEvents : expectedCommentsEvents);
+                    }
+                }));
+            }
+            start.countDown();
+            for (Future<Boolean> result : results) {
+                assertThat(result.get(), is(true));
+            }
+        } finally {
+            executorService.shutdown();
+        }
+    }
+
+    private static List<String> eventKeys(List<ProcessEvent> events) {
+        List<String> keys = new ArrayList<>(events.size());
+        for (ProcessEvent event : events) {
+            keys.add(event.getKey());
+        }
+        return keys;
+    }
+
+    @Test
+    public void testThatEventsOfExcludedProjectsAreSkipped() throws Exception {
+        List<ProcessEvent> allEvents = editsExtractor.getLatestEvents();
+        String excludedProject = allEvents.get(0).getIssue().getPrefix();
+
+        List<ProcessEvent> events = editsExtractor.excludeProjects(Collections.singleton(excludedProject))
+                .getLatestEvents();
+
+        assertThat(events, not(empty()));
+        assertThat(events.size(), lessThan(allEvents.size()));
+        for (ProcessEvent event : events) {
+            assertThat(event.getIssue().getPrefix(), not(excludedProject));
+        }
+    }
+
+    @Test
+    public void testThatFeedGapIsClosedWithEarlierWindows() throws Exception {
+        MockPagedFeedIssueTracker issueTracker = new MockPagedFeedIssueTracker(new SimpleMockIssueTracker.Builder()
+                .feed("/feeds/issue-feed-with-comments.xml"), "/feeds/issues-feed-rss-2.xml");
+        EditSessionsExtractor extractor = new EditSessionsExtractor(issueTracker, URL_STREAM_PROVIDER);
+        Date latestPageOldestDate = extractor.getLatestEvents().get(0).getPublishDate();
+        Date minDate = new DateBuilder().year(2014).month(AUGUST).day(20).build();
+
+        List<ProcessEvent> events = extractor.getLatestEvents(minDate);
+
+        assertThat(extractor.getGapsDetected(), is(1L));
+        assertThat(issueTracker.windows, is(Collections.singletonList(Arrays.asList(minDate, latestPageOldestDate))));
+        assertThat(events.size(), greaterThan(50));
+        assertThat(events.get(0).getPublishDate(), lessThan(latestPageOldestDate));
+        for (ProcessEvent event : events) {
+            assertThat(event.getPublishDate(), greaterThan(minDate));
+        }
+    }
+
+    @Test
+    public void testThatNoGapIsDetectedWhenFeedReachesMinDate() throws Exception {
+        MockPagedFeedIssueTracker issueTracker = new MockPagedFeedIssueTracker(new SimpleMockIssueTracker.Builder()
+                .feed("/feeds/issue-feed-with-comments.xml"), "/feeds/issues-feed-rss-2.xml");
+        EditSessionsExtractor extractor = new EditSessionsExtractor(issueTracker, URL_STREAM_PROVIDER);
+
+        List<ProcessEvent> events = extractor.getLatestEvents(new DateBuilder().year(2014).month(AUGUST).day(27).build());
+
+        assertThat(events, not(empty()));
+        assertThat(extractor.getGapsDetected(), is(0L));
+        assertThat(issueTracker.windows, empty());
+    }
+
+    @Test
+    public void testThatChunksContainAllLatestEdits() throws Exception {
+        List<IssueEditSession> expected = editsExtractor.getLatestEdits();
+        int chunkSize = 7;
+
+        Date minDate = new DateBuilder().year(2013).build();
+        EditSessionsChunks chunks = editsExtractor.getLatestEditChunks(minDate, null, chunkSize);
+        List<IssueEditSession> sessions = new ArrayList<>();
+        List<Date> checkpoints = new ArrayList<>();
+        while (chunks.hasNext()) {
+            EditSessionsChunks.Chunk chunk = chunks.next();
+            Set<Issue> chunkIssues = new HashSet<>();
+            for (IssueEditSession session : chunk.getSessions()) {
+                chunkIssues.add(session.getIssue());
+            }
+            assertThat(chunkIssues.size(), lessThanOrEqualTo(chunkSize));
+            sessions.addAll(chunk.getSessions());
+            checkpoints.add(chunk.getCheckpoint());
+        }
+
+        assertThat(sessions, hasSize(expected.size()));
+        assertThat(new HashSet<>(sessions), equalTo(new HashSet<>(expected)));
+        assertThat(checkpoints.size(), greaterThan(1));
+        assertThat(checkpoints.get(checkpoints.size() - 1), nullValue());
+        List<Date> intermediate = checkpoints.subList(0, checkpoints.size() - 1);
+        assertThat(intermediate, everyItem(notNullValue(Date.class)));
+        List<Date> sorted = new ArrayList<>(intermediate);
+        Collections.sort(sorted);
+        assertThat(intermediate, equalTo(sorted));
+    }
+
+    /**
+     * Issue edited before and after the last publish date of the first chunk is in the second chunk, which fails:
+     * the next poll starting from the checkpoint of the first chunk still finds its earlier change
+     */
+    @Test
+    public void testThatFailedChunkDoesNotSkipEarlierChangesOfItsIssues() throws Exception {
+        final long checkpoint = new DateBuilder().year(2014).month(AUGUST).day(20).build().getTime();
+        final Issue postedIssue = new Issue.Builder().projectPrefix("HA").id(1).build();
+        final Issue failedIssue = new Issue.Builder().projectPrefix("HA").id(2).build();
+        final List<IssueEditSession> changes = Arrays.asList(session(postedIssue, checkpoint),
+                session(failedIssue, checkpoint - 10), session(failedIssue, checkpoint + 10));
+        EditSessionsExtractor extractor = new EditSessionsExtractor(mockYouTrackInstance, URL_STREAM_PROVIDER) {
+            @Override
+            public List<ProcessEvent> getLatestEvents(Date minDate) {
+                List<ProcessEvent> events = new ArrayList<>();
+                for (IssueEditSession change : changes) {
+                    if (change.getUpdated().after(minDate)) {
+                        events.add(new ProcessEvent.Builder().issue(change.getIssue()).published(change.getUpdated())
+                                .build());
+                    }
+                }
+                return events;
+            }
+
+            @Override
+            protected ListenableFuture<List<IssueEditSession>> getIssueEditsAsync(ProcessEvent event, Date minDate) {
+                List<IssueEditSession> sessions = new ArrayList<>();
+                for (IssueEditSession change : changes) {
+                    if (change.getIssue().equals(event.getIssue()) && change.getUpdated().after(minDate)) {
+                        sessions.add(change);
+                    }
+                }
+                return Futures.immediateFuture(sessions);
+            }
+        };
+        EventProcessorConfiguration configuration = EventProcessorConfiguration.instance();
+
+        EditSessionsChunks chunks = extractor.getLatestEditChunks(new Date(checkpoint - 100), configuration, 1);
+        EditSessionsChunks.Chunk posted = chunks.next();
+        assertThat(posted.getSessions(), is(Collections.singletonList(changes.get(0))));
+        configuration.saveEventChangeDates(Collections.singletonMap(postedIssue, new Date(checkpoint)));
+        //the second chunk fails, the next poll starts from the checkpoint of the first one
+        assertThat(posted.getCheckpoint(), lessThan(changes.get(1).getUpdated()));
+
+        EditSessionsChunks retried = extractor.getLatestEditChunks(posted.getCheckpoint(), configuration, 1);
+        List<IssueEditSession> sessions = new ArrayList<>();
+        while (retried.hasNext()) {
+            sessions.addAll(retried.next().getSessions());
+        }
+        assertThat(sessions, is(changes.subList(1, 3)));
+    }
+
+    private static IssueEditSession session(Issue issue, long updated) {
+        return new IssueEditSession.Builder().issue(issue).updater("rob").updated(new Date(updated)).build();
+    }
+
     @Test
     public void testExtractsLinksToOtherIssues() throws Exception {
         mockYouTrackInstance = new SimpleMockIssueTracker.Builder()
@@ -452,4 +671,20 @@ public class EditSessionsExtractorTest {
             throw new RuntimeException(e);
         }
     }
-}
\ No newline at end of file
+
+    private static class MockPagedFeedIssueTracker extends SimpleMockIssueTracker implements PagedFeedIssueTracker {
+        private final String earlierFeed;
+        private final List<List<Date>> windows = new ArrayList<>();
+
+        MockPagedFeedIssueTracker(SimpleMockIssueTracker.Builder builder, String earlierFeed) {
+            super(builder);
+            this.earlierFeed = earlierFeed;
+        }
+
+        @Override
+        public URL getFeedUrl(Date since, Date before) {
+            windows.add(Arrays.asList(since, before));
+            return TestUtil.getFileAsURL(earlierFeed);
+        }
+    }
+}
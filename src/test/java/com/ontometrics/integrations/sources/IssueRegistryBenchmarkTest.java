@@ -0,0 +1,86 @@
+package com.ontometrics.integrations.sources;
+
+import com.ontometrics.integrations.configuration.EventProcessorConfiguration;
+import com.ontometrics.integrations.configuration.SimpleMockIssueTracker;
+import com.ontometrics.integrations.events.IssueEdit;
+import com.ontometrics.integrations.events.IssueEditSession;
+import ontometrics.test.util.Benchmark;
+import ontometrics.test.util.UrlStreamProvider;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+import org.slf4j.Logger;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.lessThan;
+import static org.slf4j.LoggerFactory.getLogger;
+
+/**
+ * Parses the feed fixtures repeatedly and keeps all the sessions, as the poll keeps them until they are posted.
+ * Without {@link com.ontometrics.integrations.events.IssueRegistry} and {@link com.ontometrics.util.StringPool}
+ * every parsed issue, updater and field name is a new instance, so the number of references held by the sessions is
+ * the number of instances retained without them; with them only the distinct instances are retained.
+ */
+@Category(Benchmark.class)
+public class IssueRegistryBenchmarkTest {
+    private static final Logger log = getLogger(IssueRegistryBenchmarkTest.class);
+
+    private static final int ROUNDS = 100;
+
+    private EditSessionsExtractor editsExtractor;
+
+    @Before
+    public void setUp() throws Exception {
+        EventProcessorConfiguration.instance().clear();
+        editsExtractor = new EditSessionsExtractor(new SimpleMockIssueTracker.Builder()
+                .feed("/feeds/issues-feed-rss.xml")
+                .changes("/feeds/issue-changes.xml")
+                .attachments("/feeds/empty-attachments.xml")
+                .build(), UrlStreamProvider.instance());
+    }
+
+    @Test
+    public void benchmarkRetainedIssuesAndStrings() throws Exception {
+        com.sun.management.ThreadMXBean threadBean =
+                (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long threadId = Thread.currentThread().getId();
+        List<IssueEditSession> retained = new ArrayList<>();
+        long allocatedBefore = threadBean.getThreadAllocatedBytes(threadId);
+        for (int i = 0; i < ROUNDS; i++) {
+            retained.addAll(editsExtractor.getLatestEdits());
+        }
+        long allocatedPerRound = (threadBean.getThreadAllocatedBytes(threadId) - allocatedBefore) / ROUNDS;
+
+        Set<Object> issues = identitySet();
+        Set<Object> strings = identitySet();
+        int stringReferences = 0;
+        for (IssueEditSession session : retained) {
+            issues.add(session.getIssue());
+            if (session.getUpdater() != null) {
+                strings.add(session.getUpdater());
+                stringReferences++;
+            }
+            for (IssueEdit edit : session.getChanges()) {
+                strings.add(edit.getField());
+                stringReferences++;
+            }
+        }
+        log.info("{} sessions of {} rounds ({} KB allocated per round) retain {} issues instead of {}, "
+                        + "{} updater and field name strings instead of {}", retained.size(), ROUNDS,
+                allocatedPerRound / 1024, issues.size(), retained.size(), strings.size(), stringReferences);
+
+        assertThat(issues.size(), lessThan(retained.size()));
+        assertThat(strings.size(), lessThan(stringReferences));
+    }
+
+    private static Set<Object> identitySet() {
+        return Collections.newSetFromMap(new IdentityHashMap<Object, Boolean>());
+    }
+}
@@ -0,0 +1,160 @@
+package com.ontometrics.integrations.sources;
+
+import com.ontometrics.integrations.configuration.ActivityStreamIssueTracker;
+import com.ontometrics.integrations.configuration.EventProcessorConfiguration;
+import com.ontometrics.integrations.configuration.SimpleMockIssueTracker;
+import com.ontometrics.integrations.events.*;
+import ontometrics.test.util.Benchmark;
+import ontometrics.test.util.TestUtil;
+import ontometrics.test.util.UrlStreamProvider;
+import org.apache.commons.io.IOUtils;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+import org.slf4j.Logger;
+
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.util.*;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+import static org.slf4j.LoggerFactory.getLogger;
+
+public class JsonEditSessionsExtractorTest {
+    private static final Logger log = getLogger(JsonEditSessionsExtractorTest.class);
+
+    private static final String XML_CHANGES = "/feeds/issue-changes-with-comments.xml";
+    private static final String JSON_ACTIVITIES = "/feeds/issue-activities-with-comments.json";
+
+    private EditSessionsExtractor xmlExtractor;
+    private JsonEditSessionsExtractor jsonExtractor;
+    private ProcessEvent event;
+
+    @Before
+    public void setUp() throws Exception {
+        EventProcessorConfiguration.instance().clear();
+        MockActivityIssueTracker issueTracker = new MockActivityIssueTracker(new SimpleMockIssueTracker.Builder()
+                .feed("/feeds/issue-feed-with-comments.xml")
+                .changes(XML_CHANGES)
+                .attachments("/feeds/empty-attachments.xml"));
+        xmlExtractor = new EditSessionsExtractor(issueTracker, UrlStreamProvider.instance());
+        jsonExtractor = new JsonEditSessionsExtractor(issueTracker, UrlStreamProvider.instance());
+        event = new ProcessEvent.Builder()
+                .issue(new Issue.Builder().projectPrefix("HA").id(668)
+                        .title("HA-668: New instance request: backend application server")
+                        .link(new URL("http://youtrack.example.com/issue/HA-668"))
+                        .build())
+                .published(new Date())
+                .build();
+    }
+
+    @Test
+    public void testThatJsonActivitiesProduceSameCommentsAndChangesAsXml() throws Exception {
+        List<IssueEditSession> xmlSessions = xmlExtractor.getEdits(event, null);
+        List<IssueEditSession> jsonSessions = jsonExtractor.getEdits(event, null);
+
+        assertThat(commentTexts(jsonSessions), equalTo(commentTexts(xmlSessions)));
+        assertThat(changes(jsonSessions), equalTo(changes(xmlSessions)));
+    }
+
+    @Test
+    public void testThatCreationSessionIsExtracted() throws Exception {
+        List<IssueEditSession> sessions = jsonExtractor.getEdits(event, null);
+
+        IssueEditSession creation = sessions.get(0);
+        assertThat(creation.isCreationEdit(), is(true));
+        assertThat(creation.getIssue().getCreator(), is("nikolay.chorniy@gmail.com"));
+        assertThat(creation.getIssue().getTitle(), is(event.getIssue().getTitle()));
+    }
+
+    @Test
+    public void testThatChangesBeforeDateAreSkipped() throws Exception {
+        Date upToDate = new Date(1409000000000L);
+        List<IssueEditSession> sessions = jsonExtractor.getEdits(event, upToDate);
+
+        assertThat(sessions, not(empty()));
+        for (IssueEditSession session : sessions) {
+            assertThat(session.getUpdated(), greaterThan(upToDate));
+        }
+    }
+
+    @Test
+    public void testThatJsonActivitiesAreSmallerThanXmlChanges() throws Exception {
+        assertThat(fileSize(JSON_ACTIVITIES), lessThan(fileSize(XML_CHANGES)));
+    }
+
+    @Test
+    @Category(Benchmark.class)
+    public void benchmarkJsonAgainstXml() throws Exception {
+        int iterations = 200;
+        //warm up both paths before measuring
+        for (int i = 0; i < iterations; i++) {
+            xmlExtractor.getEdits(event, null);
+            jsonExtractor.getEdits(event, null);
+        }
+        long start = System.nanoTime();
+        for (int i = 0; i < iterations; i++) {
+            xmlExtractor.getEdits(event, null);
+        }
+        long xmlNanos = (System.nanoTime() - start) / iterations;
+        start = System.nanoTime();
+        for (int i = 0; i < iterations; i++) {
+            jsonExtractor.getEdits(event, null);
+        }
+        long jsonNanos = (System.nanoTime() - start) / iterations;
+        log.info("XML changes: {} bytes, {} us per parse; JSON activities: {} bytes, {} us per parse",
+                fileSize(XML_CHANGES), xmlNanos / 1000, fileSize(JSON_ACTIVITIES), jsonNanos / 1000);
+    }
+
+    private static int fileSize(String path) throws Exception {
+        return IOUtils.toByteArray(TestUtil.getFileAsURL(path)).length;
+    }
+
+    private static Set<String> commentTexts(List<IssueEditSession> sessions) {
+        Set<String> texts = new TreeSet<>();
+        for (IssueEditSession session : sessions) {
+            if (session.getComment() != null) {
+                texts.add(session.getComment().getAuthor() + ": " + session.getComment().getText());
+            }
+        }
+        return texts;
+    }
+
+    private static Set<String> changes(List<IssueEditSession> sessions) {
+        Set<String> changes = new TreeSet<>();
+        for (IssueEditSession session : sessions) {
+            for (IssueEdit edit : session.getChanges()) {
+                changes.add(session.getUpdater() + " " + session.getUpdated().getTime() + " " + edit.getField()
+                        + ": " + edit.getPriorValue() + " -> " + edit.getCurrentValue());
+            }
+        }
+        return changes;
+    }
+
+    private static class MockActivityIssueTracker extends SimpleMockIssueTracker implements ActivityStreamIssueTracker {
+
+        MockActivityIssueTracker(SimpleMockIssueTracker.Builder builder) {
+            super(builder);
+        }
+
+        @Override
+        public URL getActivitiesUrl(Date since, int skip, int top) {
+            return null;
+        }
+
+        @Override
+        public URL getIssueActivitiesUrl(Issue issue, Date since) {
+            return TestUtil.getFileAsURL(JSON_ACTIVITIES);
+        }
+
+        @Override
+        public URL getBaseUrl() {
+            try {
+                return new URL("http://youtrack.example.com");
+            } catch (MalformedURLException e) {
+                throw new RuntimeException(e);
+            }
+        }
+    }
+}
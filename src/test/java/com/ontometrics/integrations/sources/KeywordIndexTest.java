@@ -0,0 +1,126 @@
+package com.ontometrics.integrations.sources;
+
+import com.ontometrics.integrations.events.Comment;
+import com.ontometrics.integrations.events.Issue;
+import com.ontometrics.integrations.events.IssueEditSession;
+import com.ontometrics.integrations.events.TestDataFactory;
+import ontometrics.test.util.Benchmark;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+import org.slf4j.Logger;
+
+import java.util.*;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.empty;
+import static org.hamcrest.Matchers.lessThan;
+import static org.slf4j.LoggerFactory.getLogger;
+
+public class KeywordIndexTest {
+
+    private Logger log = getLogger(KeywordIndexTest.class);
+
+    @Test
+    public void testThatStemmedWordsOfCommentAreMatched() {
+        KeywordIndex index = new KeywordIndex.Builder()
+                .subscribe("outage, rollback -> ops, oncall")
+                .subscribe("invoice -> finance")
+                .build();
+
+        assertThat(channels(index, "Deploy", "Two outages after the deploy, rollbacks are ready"),
+                is(set("ops", "oncall")));
+        assertThat(channels(index, "Invoices are not sent", null), is(set("finance")));
+        assertThat(channels(index, "Deploy", "nothing to see"), is(empty()));
+    }
+
+    @Test
+    public void testThatMarkupIsNotMatched() {
+        KeywordIndex index = new KeywordIndex.Builder().subscribe("table -> furniture").build();
+        Issue issue = new Issue.Builder().projectPrefix("HA").title("HA-1: Layout")
+                .description("<table><tr><td>Reporter</td></tr></table>").build();
+        Set<String> channels = new LinkedHashSet<>();
+        index.addChannels(issue, channels);
+
+        assertThat(channels, is(empty()));
+    }
+
+    @Test
+    public void testThatWordsAfterLessThanSignAreMatched() {
+        KeywordIndex index = new KeywordIndex.Builder().subscribe("outage -> ops").build();
+
+        assertThat(channels(index, "Latency", "latency < 5s during outage"), is(set("ops")));
+        assertThat(channels(index, "Latency", "latency <5s during outage"), is(set("ops")));
+        assertThat(channels(index, "Latency", "latency <b>during</b> outage <"), is(set("ops")));
+        assertThat(channels(index, "Latency", "<!-- outage --> <p class='outage'>"), is(empty()));
+    }
+
+    @Test
+    public void testThatSubscribersAreAddedToRoutedChannels() throws Exception {
+        ChannelMapper mapper = new ChannelMapper.Builder()
+                .defaultChannel("process")
+                .addMapping("ASOC", "vixlet")
+                .subscribe("toggling -> ux")
+                .build();
+
+        //title of the session is "ASOC-408: Need to toggle follow button"
+        assertThat(mapper.getChannels(TestDataFactory.build()), is(Arrays.asList("vixlet", "ux")));
+        assertThat(mapper.getChannels(new Issue.Builder().projectPrefix("HA").title("HA-2: Toggles").build()),
+                is(Arrays.asList("process", "ux")));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testThatSubscriptionWithoutKeywordsIsRejected() {
+        new KeywordIndex.Builder().subscribe(" , -> ops");
+    }
+
+    /**
+     * Matching time does not grow with the number of subscriptions
+     */
+    @Test
+    @Category(Benchmark.class)
+    public void testThatMatchingTimeDoesNotDependOnSubscriptionCount() {
+        String text = "The scraper of job details fails with error code 999 on every request to the job page, "
+                + "all leads of the subscription are lost until the scraper is restarted";
+        long fewNanos = measureMatching(text, 10);
+        long manyNanos = measureMatching(text, 10000);
+        log.info("matching with 10 subscriptions: {} ns, with 10000 subscriptions: {} ns", fewNanos, manyNanos);
+
+        assertThat(manyNanos, lessThan(fewNanos * 10));
+    }
+
+    private long measureMatching(String text, int subscriptions) {
+        KeywordIndex.Builder builder = new KeywordIndex.Builder().subscribe("scrapers -> scrapers");
+        for (int i = 1; i < subscriptions; i++) {
+            builder.subscribe("keyword" + i + "a, keyword" + i + "b -> channel" + i);
+        }
+        KeywordIndex index = builder.build();
+        int matchings = 5000;
+        long best = Long.MAX_VALUE;
+        for (int round = 0; round < 5; round++) {
+            long start = System.nanoTime();
+            for (int i = 0; i < matchings; i++) {
+                if (channels(index, "HA-683: LinkedIn scraper", text).size() != 1) {
+                    throw new AssertionError("text is expected in one channel");
+                }
+            }
+            best = Math.min(best, (System.nanoTime() - start) / matchings);
+        }
+        return best;
+    }
+
+    private static Set<String> channels(KeywordIndex index, String title, String comment) {
+        Issue issue = new Issue.Builder().projectPrefix("HA").title(title).build();
+        IssueEditSession session = new IssueEditSession.Builder()
+                .issue(issue)
+                .comment(comment == null ? null : new Comment.Builder().text(comment).build())
+                .build();
+        Set<String> channels = new LinkedHashSet<>();
+        index.addChannels(session, channels);
+        return channels;
+    }
+
+    private static Set<String> set(String... channels) {
+        return new LinkedHashSet<>(Arrays.asList(channels));
+    }
+}
@@ -0,0 +1,123 @@
+package com.ontometrics.integrations.sources;
+
+import com.ontometrics.integrations.configuration.IssueTracker;
+import com.ontometrics.integrations.configuration.SimpleMockIssueTracker;
+import com.ontometrics.integrations.events.IssueEditSession;
+import ontometrics.test.util.TestUtil;
+import ontometrics.test.util.UrlStreamProvider;
+import org.apache.commons.io.IOUtils;
+import org.apache.http.HttpStatus;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.net.URL;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+
+/**
+ * Records responses with {@link RecordingStreamProvider} and replays them with {@link ReplayStreamProvider}
+ */
+public class RecordingStreamProviderTest {
+
+    private static final URL FEED_URL = TestUtil.getFileAsURL("/feeds/issue-feed-with-comments.xml");
+
+    @Test
+    public void testThatReplayedEditsAreSameAsRecorded() throws Exception {
+        IssueTracker issueTracker = new SimpleMockIssueTracker.Builder()
+                .feed("/feeds/issue-feed-with-comments.xml")
+                .changes("/feeds/issue-changes-with-comments.xml")
+                .attachments("/feeds/issue-attachments.xml")
+                .build();
+        ByteArrayOutputStream archive = new ByteArrayOutputStream();
+        RecordingStreamProvider recordingStreamProvider = new RecordingStreamProvider(UrlStreamProvider.instance(), archive);
+        List<IssueEditSession> recorded = new EditSessionsExtractor(issueTracker, recordingStreamProvider).getLatestEdits();
+        recordingStreamProvider.close();
+
+        ReplayStreamProvider replayStreamProvider = new ReplayStreamProvider(
+                new ByteArrayInputStream(archive.toByteArray()), 0);
+        List<IssueEditSession> replayed = new EditSessionsExtractor(issueTracker, replayStreamProvider).getLatestEdits();
+
+        assertThat(recorded, not(empty()));
+        assertThat(replayStreamProvider.getRecords(), is(recordingStreamProvider.getRecords()));
+        assertThat(replayStreamProvider.getMisses(), is(0));
+        assertThat(replayed.toString(), is(recorded.toString()));
+    }
+
+    @Test
+    public void testThatResponsesOfUrlAreReplayedInRecordedOrder() throws Exception {
+        final AtomicInteger requests = new AtomicInteger();
+        ByteArrayOutputStream archive = new ByteArrayOutputStream();
+        RecordingStreamProvider recordingStreamProvider = new RecordingStreamProvider(new StreamProvider() {
+            @Override
+            public <RES> RES openResourceStream(URL resourceUrl, InputStreamHandler<RES> inputStreamHandler) throws Exception {
+                int request = requests.incrementAndGet();
+                return inputStreamHandler.handleStream(new ByteArrayInputStream(("poll " + request).getBytes("UTF-8")),
+                        request == 1 ? HttpStatus.SC_SERVICE_UNAVAILABLE : HttpStatus.SC_OK);
+            }
+        }, archive);
+        for (int i = 0; i < 3; i++) {
+            recordingStreamProvider.openResourceStream(FEED_URL, new BodyHandler());
+        }
+        recordingStreamProvider.close();
+
+        ReplayStreamProvider replayStreamProvider = new ReplayStreamProvider(
+                new ByteArrayInputStream(archive.toByteArray()), 0);
+
+        assertThat(replayStreamProvider.openResourceStream(FEED_URL, new BodyHandler()),
+                is("poll 1 " + HttpStatus.SC_SERVICE_UNAVAILABLE));
+        assertThat(replayStreamProvider.openResourceStream(FEED_URL, new BodyHandler()), is("poll 2 " + HttpStatus.SC_OK));
+        assertThat(replayStreamProvider.openResourceStream(FEED_URL, new BodyHandler()), is("poll 3 " + HttpStatus.SC_OK));
+        //the last response is repeated
+        assertThat(replayStreamProvider.openResourceStream(FEED_URL, new BodyHandler()), is("poll 3 " + HttpStatus.SC_OK));
+        assertThat(replayStreamProvider.openResourceStream(new URL("http://localhost/missing"), new BodyHandler()),
+                is(" " + HttpStatus.SC_NOT_FOUND));
+        assertThat(replayStreamProvider.getMisses(), is(1));
+    }
+
+    @Test
+    public void testThatRecordedResponseTimeIsScaled() throws Exception {
+        ByteArrayOutputStream archive = new ByteArrayOutputStream();
+        RecordingStreamProvider recordingStreamProvider = new RecordingStreamProvider(new StreamProvider() {
+            @Override
+            public <RES> RES openResourceStream(URL resourceUrl, InputStreamHandler<RES> inputStreamHandler) throws Exception {
+                Thread.sleep(200);
+                return UrlStreamProvider.instance().openResourceStream(resourceUrl, inputStreamHandler);
+            }
+        }, archive);
+        recordingStreamProvider.openResourceStream(FEED_URL, new BodyHandler());
+        recordingStreamProvider.close();
+
+        long recordedDelay = replayDelay(archive.toByteArray(), 1);
+        assertThat(recordedDelay, greaterThanOrEqualTo(200L));
+        assertThat(replayDelay(archive.toByteArray(), 0.25), is((long) (recordedDelay * 0.25)));
+        assertThat(replayDelay(archive.toByteArray(), 0), is(0L));
+    }
+
+    /**
+     * @return delay requested by the replay of the recorded feed response, 0 if the response is not delayed
+     */
+    private static long replayDelay(byte[] archive, double timeScale) throws Exception {
+        final AtomicLong delay = new AtomicLong();
+        ReplayStreamProvider replayStreamProvider = new ReplayStreamProvider(new ByteArrayInputStream(archive), timeScale) {
+            @Override
+            protected void delay(long millis) {
+                delay.set(millis);
+            }
+        };
+        replayStreamProvider.openResourceStream(FEED_URL, new BodyHandler());
+        return delay.get();
+    }
+
+    private static class BodyHandler implements InputStreamHandler<String> {
+        @Override
+        public String handleStream(InputStream is, int responseCode) throws Exception {
+            return IOUtils.toString(is, "UTF-8") + " " + responseCode;
+        }
+    }
+}
@@ -0,0 +1,36 @@
+package com.ontometrics.util;
+
+import org.junit.Test;
+
+import java.io.IOException;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+public class JsonWriterTest {
+
+    @Test
+    public void testThatDocumentIsWrittenAndEscaped() throws IOException {
+        StringBuilder out = new StringBuilder();
+        new JsonWriter(out).beginObject()
+                .name("text").value("say \"hi\"\n\\")
+                .name("list").beginArray().value(1).value(true).nullValue().beginObject().endObject().endArray()
+                .name("parts").beginString().stringPart("abc", 1, 3).stringPart("\t").endString()
+                .endObject();
+
+        assertThat(out.toString(), is("{\"text\":\"say \\\"hi\\\"\\n\\\\\",\"list\":[1,true,null,{}],\"parts\":\"bc\\t\"}"));
+    }
+
+    @Test
+    public void testThatWriterCanBeReused() throws IOException {
+        StringBuilder first = new StringBuilder();
+        JsonWriter writer = new JsonWriter(first);
+        writer.beginArray().value("a").endArray();
+
+        StringBuilder second = new StringBuilder();
+        writer.reset(second).beginArray().value("b").endArray();
+
+        assertThat(first.toString(), is("[\"a\"]"));
+        assertThat(second.toString(), is("[\"b\"]"));
+    }
+}
@@ -0,0 +1,60 @@
+package com.ontometrics.util;
+
+import org.junit.Test;
+
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.Locale;
+import java.util.TimeZone;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+public class TimestampsTest {
+
+    @Test
+    public void testThatFeedDateIsParsedLikeDateFormat() throws Exception {
+        SimpleDateFormat dateFormat = new SimpleDateFormat("EEE, dd MMM yyyy HH:mm:ss", Locale.ENGLISH);
+        dateFormat.setTimeZone(TimeZone.getTimeZone("UTC"));
+
+        assertThat(Timestamps.parseRfc822("Thu, 28 Aug 2014 16:03:02 UT"),
+                is(dateFormat.parse("Thu, 28 Aug 2014 16:03:02").getTime()));
+        assertThat(Timestamps.parseRfc822("29 Feb 2016 23:59:59 GMT"),
+                is(dateFormat.parse("Mon, 29 Feb 2016 23:59:59").getTime()));
+    }
+
+    @Test
+    public void testThatZonesAndShortFormsAreParsed() throws Exception {
+        long expected = Timestamps.parseRfc822("Thu, 28 Aug 2014 16:03:00 UTC");
+
+        assertThat(Timestamps.parseRfc822("Thu, 28 Aug 2014 19:03:00 +0300"), is(expected));
+        assertThat(Timestamps.parseRfc822("Thu, 28 Aug 2014 09:03:00 PDT"), is(expected));
+        assertThat(Timestamps.parseRfc822("Thu, 28 Aug 2014 11:03:00 EST"), is(expected));
+        assertThat(Timestamps.parseRfc822("28 aug 14 16:03 Z"), is(expected));
+        assertThat(Timestamps.parseRfc822("28 Aug 2014 16:03"), is(expected));
+    }
+
+    @Test(expected = ParseException.class)
+    public void testThatInvalidDayIsRejected() throws Exception {
+        Timestamps.parseRfc822("Fri, 31 Jun 2014 16:03:02 UT");
+    }
+
+    @Test(expected = ParseException.class)
+    public void testThatUnknownZoneIsRejected() throws Exception {
+        Timestamps.parseRfc822("Thu, 28 Aug 2014 16:03:02 MSK");
+    }
+
+    @Test
+    public void testThatDateTimeIsAppendedInUtc() throws Exception {
+        assertThat(Timestamps.appendDateTime(new StringBuilder("@"), 0).toString(), is("@1970-01-01 00:00:00"));
+        assertThat(Timestamps.appendDateTime(new StringBuilder(), -1).toString(), is("1969-12-31 23:59:59"));
+        assertThat(Timestamps.appendDateTime(new StringBuilder(),
+                Timestamps.parseRfc822("Tue, 29 Feb 2000 08:05:09 UT")).toString(), is("2000-02-29 08:05:09"));
+    }
+
+    @Test
+    public void testThatMissingTimestampIsNullDate() {
+        assertThat(Timestamps.toDate(Timestamps.of(null)) == null, is(true));
+        assertThat(Timestamps.of(Timestamps.toDate(42)), is(42L));
+    }
+}
@@ -7,6 +7,8 @@ import com.ontometrics.integrations.sources.ChannelMapperFactory;
 import org.apache.commons.configuration.PropertiesConfiguration;
 import org.junit.Test;
 
+import java.util.Arrays;
+
 import static org.hamcrest.CoreMatchers.*;
 import static org.hamcrest.MatcherAssert.assertThat;
 
@@ -46,6 +48,20 @@ public class ChannelMapperFactoryTest {
         assertThat(mapper.getChannel(issue("nothing")), is("process"));
     }
 
+    @Test
+    public void testThatRoutingRulesAreReadFromConfiguration() {
+        PropertiesConfiguration configuration = new PropertiesConfiguration();
+        configuration.setListDelimiter(';');
+        configuration.setProperty(ChannelMapperFactory.CHANNEL_MAPPINGS, "ABC->xyz");
+        configuration.setProperty(ChannelMapperFactory.DEFAULT_CHANNEL, "apple");
+        configuration.setProperty(ChannelMapperFactory.ROUTING_RULES, "project=ABC,DEF -> alerts, qa;updater=rob -> rob");
+
+        ChannelMapper mapper = ChannelMapperFactory.fromConfiguration(configuration, "");
+        assertThat(mapper.getChannels(issue("ABC")), is(Arrays.asList("xyz", "alerts", "qa")));
+        assertThat(mapper.getChannel(issue("DEF")), is("alerts"));
+        assertThat(mapper.getChannel(new Issue.Builder().projectPrefix("GHI").creator("rob").build()), is("rob"));
+        assertThat(mapper.getMappedPrefixes(), hasItems("ABC", "DEF"));
+    }
 
     private static Issue issue(String prefix) {
         return new Issue.Builder().projectPrefix(prefix).build();
@@ -0,0 +1,109 @@
+package ontometrics.jobs;
+
+import com.ontometrics.integrations.configuration.EmptyChatServer;
+import com.ontometrics.integrations.configuration.EventProcessorConfiguration;
+import com.ontometrics.integrations.configuration.PagedFeedIssueTracker;
+import com.ontometrics.integrations.configuration.SimpleMockIssueTracker;
+import com.ontometrics.integrations.events.Issue;
+import com.ontometrics.integrations.events.IssueEditSession;
+import com.ontometrics.integrations.jobs.BackfillJob;
+import com.ontometrics.integrations.sources.EditSessionsExtractor;
+import ontometrics.test.util.TestUtil;
+import ontometrics.test.util.UrlStreamProvider;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.net.URL;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.TimeZone;
+
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.assertThat;
+
+/**
+ * Tests {@link BackfillJob} replaying the sessions of a time window
+ */
+public class BackfillJobTest {
+
+    private Date since;
+    private Date before;
+
+    @Before
+    public void setUp() throws Exception {
+        EventProcessorConfiguration.instance().clear();
+        TestUtil.setIssueHistoryWindowSettingToCoverAllIssues();
+        SimpleDateFormat dateFormat = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm");
+        dateFormat.setTimeZone(TimeZone.getTimeZone("UTC"));
+        since = dateFormat.parse("2014-08-20T00:00");
+        before = dateFormat.parse("2014-08-28T00:00");
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        EventProcessorConfiguration.instance().clear();
+        EventProcessorConfiguration.instance().setIssueHistoryWindowInMinutes(null);
+    }
+
+    @Test
+    public void testThatSessionsOfTheWindowArePostedOnce() throws Exception {
+        List<IssueEditSession> posted = new ArrayList<>();
+        BackfillJob backfillJob = createBackfillJob(posted);
+
+        int postedCount = backfillJob.run();
+
+        assertThat(postedCount, greaterThan(0));
+        assertThat(posted, hasSize(postedCount));
+        for (IssueEditSession session : posted) {
+            assertThat(session.getUpdated(), greaterThan(since));
+            assertThat(session.getUpdated(), lessThanOrEqualTo(before));
+        }
+        assertThat(backfillJob.getTotalIssues(), greaterThan(0));
+        assertThat(backfillJob.getProcessedIssues(), is(backfillJob.getTotalIssues()));
+        //backfill does not move the last processed date of the regular polls
+        assertThat(EventProcessorConfiguration.instance().loadLastProcessedDate(), nullValue());
+
+        posted.clear();
+        assertThat(createBackfillJob(posted).run(), is(0));
+        assertThat(posted, empty());
+    }
+
+    private BackfillJob createBackfillJob(final List<IssueEditSession> posted) {
+        return new BackfillJob.Builder()
+                .addEditSessionsExtractor(new EditSessionsExtractor(new MockPagedFeedIssueTracker(),
+                        UrlStreamProvider.instance()))
+                .chatServer(new EmptyChatServer() {
+                    @Override
+                    public void postIssueCreation(Issue issue) {
+                        throw new IllegalStateException("Issues of the window are not created in it: " + issue);
+                    }
+
+                    @Override
+                    public void post(IssueEditSession issueEditSession) {
+                        posted.add(issueEditSession);
+                    }
+                })
+                .window(since, before)
+                .chunkSize(7)
+                .messagesPerSecond(0)
+                .build();
+    }
+
+    private static class MockPagedFeedIssueTracker extends SimpleMockIssueTracker implements PagedFeedIssueTracker {
+
+        MockPagedFeedIssueTracker() {
+            super(new SimpleMockIssueTracker.Builder()
+                    .feed("/feeds/issue-feed-with-comments.xml")
+                    .changes("/feeds/issue-changes-with-comments.xml")
+                    .attachments("/feeds/empty-attachments.xml"));
+        }
+
+        @Override
+        public URL getFeedUrl(Date since, Date before) {
+            return TestUtil.getFileAsURL("/feeds/issue-feed-with-comments.xml");
+        }
+    }
+}
@@ -0,0 +1,138 @@
+package ontometrics.jobs;
+
+import com.ontometrics.integrations.configuration.EmptyChatServer;
+import com.ontometrics.integrations.configuration.EventProcessorConfiguration;
+import com.ontometrics.integrations.events.Issue;
+import com.ontometrics.integrations.events.IssueEditSession;
+import com.ontometrics.integrations.jobs.EventListenerImpl;
+import com.ontometrics.integrations.sources.EditSessionsChunks;
+import com.ontometrics.integrations.sources.EditSessionsExtractor;
+import ontometrics.test.util.TestUtil;
+import ontometrics.test.util.UrlStreamProvider;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.net.URL;
+import java.util.*;
+
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+
+/**
+ * Tests {@link EventListenerImpl} posting sessions chunk after chunk
+ */
+public class ChunkedDeliveryTest {
+
+    private static final Date CHECKPOINT_1 = new Date(EventListenerImplTest.T1.getTime() + 10);
+    private static final Date CHECKPOINT_2 = new Date(EventListenerImplTest.T2.getTime() + 10);
+
+
+    @Before
+    public void setUp() throws Exception {
+        EventProcessorConfiguration.instance().clear();
+        TestUtil.setIssueHistoryWindowSettingToCoverAllIssues();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        EventProcessorConfiguration.instance().clear();
+        EventProcessorConfiguration.instance().setIssueHistoryWindowInMinutes(null);
+    }
+
+    @Test
+    public void testThatLastProcessedDateIsSavedAfterEachChunk() throws Exception {
+        final List<Date> savedDates = new ArrayList<>();
+        EventListenerImpl eventListener = new EventListenerImpl.Builder()
+                .editSessionsExtractor(new ChunksExtractor())
+                .chatServer(new EmptyChatServer() {
+                    @Override
+                    public void post(IssueEditSession issueEditSession) {
+                        savedDates.add(EventProcessorConfiguration.instance().loadLastProcessedDate());
+                    }
+                })
+                .chunkSize(2)
+                .build();
+
+        assertThat(eventListener.checkForNewEvents(), is(3));
+
+        //date before the first chunk is posted, then checkpoints of the first and the second chunks
+        assertThat(savedDates, is(Arrays.asList(null, CHECKPOINT_1, CHECKPOINT_2)));
+        //the last chunk saves the date of its last session
+        assertThat(EventProcessorConfiguration.instance().loadLastProcessedDate(), is(EventListenerImplTest.T3));
+    }
+
+    @Test
+    public void testThatFailedChunkDoesNotLosePostedChunks() throws Exception {
+        EventListenerImpl eventListener = new EventListenerImpl.Builder()
+                .editSessionsExtractor(new ChunksExtractor())
+                .chatServer(new EmptyChatServer() {
+                    @Override
+                    public void post(IssueEditSession issueEditSession) {
+                        if (issueEditSession.getUpdated().equals(EventListenerImplTest.T2)) {
+                            throw new IllegalStateException("Slack is not available");
+                        }
+                    }
+                })
+                .chunkSize(2)
+                .build();
+
+        try {
+            eventListener.checkForNewEvents();
+            fail("failure of the second chunk should be thrown");
+        } catch (IllegalStateException e) {
+            assertThat(e.getMessage(), is("Slack is not available"));
+        }
+
+        assertThat(EventProcessorConfiguration.instance().loadLastProcessedDate(), is(CHECKPOINT_1));
+        assertThat(EventProcessorConfiguration.instance().getEventChangeDate(issue(1)), is(EventListenerImplTest.T1));
+    }
+
+    private static Issue issue(int id) throws Exception {
+        return new Issue.Builder().projectPrefix("CHUNK").id(id)
+                .link(new URL("http://youtrack.example.com/issue/CHUNK-" + id)).build();
+    }
+
+    /**
+     * Three chunks of one session each: T1, T2 and T3
+     */
+    private static class ChunksExtractor extends EditSessionsExtractor {
+
+        ChunksExtractor() {
+            super(null, UrlStreamProvider.instance());
+        }
+
+        @Override
+        public EditSessionsChunks getLatestEditChunks(Date minDate, EventProcessorConfiguration configuration,
+                                                      int chunkSize) throws Exception {
+            final List<EditSessionsChunks.Chunk> chunks = Arrays.asList(
+                    new EditSessionsChunks.Chunk(sessions(1, EventListenerImplTest.T1), CHECKPOINT_1),
+                    new EditSessionsChunks.Chunk(sessions(2, EventListenerImplTest.T2), CHECKPOINT_2),
+                    new EditSessionsChunks.Chunk(sessions(3, EventListenerImplTest.T3), null));
+            return new EditSessionsChunks() {
+                private final Iterator<Chunk> iterator = chunks.iterator();
+
+                @Override
+                public int size() {
+                    return chunks.size();
+                }
+
+                @Override
+                public boolean hasNext() {
+                    return iterator.hasNext();
+                }
+
+                @Override
+                public Chunk next() {
+                    return iterator.next();
+                }
+            };
+        }
+
+        private static List<IssueEditSession> sessions(int issueId, Date updated) throws Exception {
+            return Collections.singletonList(new IssueEditSession.Builder()
+                    .issue(issue(issueId)).updater("rob").updated(updated).build());
+        }
+    }
+}
@@ -0,0 +1,252 @@
+package ontometrics.jobs;
+
+import com.ontometrics.integrations.configuration.BoundedChatServer;
+import com.ontometrics.integrations.configuration.ChatServer;
+import com.ontometrics.integrations.configuration.EventProcessorConfiguration;
+import com.ontometrics.integrations.events.Issue;
+import com.ontometrics.integrations.events.IssueEditSession;
+import com.ontometrics.integrations.events.ProcessEvent;
+import com.ontometrics.integrations.jobs.EventListenerImpl;
+import com.ontometrics.integrations.sources.BoundedStreamProvider;
+import com.ontometrics.integrations.sources.EditSessionsExtractor;
+import com.ontometrics.integrations.sources.InputStreamHandler;
+import com.ontometrics.integrations.sources.StreamProvider;
+import com.ontometrics.integrations.sources.StreamProviders;
+import ontometrics.test.util.Benchmark;
+import ontometrics.test.util.TestUtil;
+import ontometrics.test.util.UrlStreamProvider;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+import org.slf4j.Logger;
+
+import java.net.URL;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+import static org.slf4j.LoggerFactory.getLogger;
+
+/**
+ * Tests {@link EventListenerImpl} posting sessions of different issues concurrently
+ */
+public class ConcurrentDeliveryTest {
+    private static final Logger log = getLogger(ConcurrentDeliveryTest.class);
+
+    private static final int BURST_ISSUES = 1000;
+    private static final long LATENCY_MILLIS = 1;
+
+    private ExecutorService executor;
+
+    @Before
+    public void setUp() throws Exception {
+        EventProcessorConfiguration.instance().clear();
+        TestUtil.setIssueHistoryWindowSettingToCoverAllIssues();
+        executor = Executors.newCachedThreadPool();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        executor.shutdownNow();
+        EventProcessorConfiguration.instance().clear();
+        EventProcessorConfiguration.instance().setIssueHistoryWindowInMinutes(null);
+    }
+
+    @Test
+    public void testThatSessionsOfOneIssueArePostedInOrder() throws Exception {
+        final List<IssueEditSession> sessions = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            sessions.add(session(issue(i % 4), new Date(EventListenerImplTest.T1.getTime() + i)));
+        }
+        final Map<Issue, List<Date>> postedDates = new ConcurrentHashMap<>();
+        ChatServer chatServer = new MockChatServer() {
+            @Override
+            public void post(IssueEditSession session) {
+                super.post(session);
+                postedDates.get(session.getIssue()).add(session.getUpdated());
+            }
+        };
+        for (int i = 0; i < 4; i++) {
+            postedDates.put(issue(i), new CopyOnWriteArrayList<Date>());
+        }
+
+        int processed = new EventListenerImpl(new FixedSessionsExtractor(sessions), chatServer, executor)
+                .checkForNewEvents();
+
+        assertThat(processed, is(sessions.size()));
+        for (List<Date> dates : postedDates.values()) {
+            assertThat(dates, hasSize(5));
+            List<Date> sorted = new ArrayList<>(dates);
+            Collections.sort(sorted);
+            assertThat(dates, equalTo(sorted));
+        }
+        assertThat(EventProcessorConfiguration.instance().loadLastProcessedDate(),
+                is(sessions.get(sessions.size() - 1).getUpdated()));
+    }
+
+    @Test
+    public void testThatDatesOfPostedIssuesAreSavedWhenPostingFails() throws Exception {
+        assertThatDatesOfPostedIssuesAreSavedWhenPostingFails(executor);
+    }
+
+    @Test
+    public void testThatDatesOfPostedIssuesAreSavedWhenSequentialPostingFails() throws Exception {
+        assertThatDatesOfPostedIssuesAreSavedWhenPostingFails(null);
+    }
+
+    /**
+     * @param executor executor of concurrent delivery, null for sequential delivery
+     */
+    private void assertThatDatesOfPostedIssuesAreSavedWhenPostingFails(ExecutorService executor) throws Exception {
+        final Issue failingIssue = issue(1);
+        List<IssueEditSession> sessions = Arrays.asList(session(issue(0), EventListenerImplTest.T1),
+                session(failingIssue, EventListenerImplTest.T2));
+        ChatServer chatServer = new MockChatServer() {
+            @Override
+            public void post(IssueEditSession session) {
+                if (session.getIssue().equals(failingIssue)) {
+                    throw new IllegalStateException("Slack is not available");
+                }
+                super.post(session);
+            }
+        };
+
+        try {
+            EventListenerImpl eventListener = executor == null
+                    ? new EventListenerImpl(new FixedSessionsExtractor(sessions), chatServer)
+                    : new EventListenerImpl(new FixedSessionsExtractor(sessions), chatServer, executor);
+            eventListener.checkForNewEvents();
+            fail("failure of the issue should be thrown");
+        } catch (IllegalStateException e) {
+            assertThat(e.getMessage(), is("Slack is not available"));
+        }
+
+        EventProcessorConfiguration configuration = EventProcessorConfiguration.instance();
+        assertThat(configuration.getEventChangeDate(issue(0)), is(EventListenerImplTest.T1));
+        assertThat(configuration.getEventChangeDate(failingIssue), nullValue());
+        assertThat(configuration.loadLastProcessedDate(), nullValue());
+    }
+
+    /**
+     * Burst of {@link #BURST_ISSUES} touched issues, each YouTrack request and Slack message takes
+     * {@link #LATENCY_MILLIS}: sequential loop against a thread per issue with bounded connections
+     */
+    @Test
+    @Category(Benchmark.class)
+    public void benchmarkBurstAgainstSequentialLoop() throws Exception {
+        StreamProvider youTrack = new LatencyStreamProvider();
+
+        MockChatServer sequentialChat = new MockChatServer();
+        long start = System.nanoTime();
+        int sequentialCount = new EventListenerImpl(new BurstExtractor(youTrack), sequentialChat).checkForNewEvents();
+        long sequentialMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+        EventProcessorConfiguration.instance().clear();
+        MockChatServer concurrentChat = new MockChatServer();
+        start = System.nanoTime();
+        int concurrentCount = new EventListenerImpl(
+                new BurstExtractor(StreamProviders.async(new BoundedStreamProvider(youTrack, 16), executor)),
+                new BoundedChatServer(concurrentChat, 8), executor).checkForNewEvents();
+        long concurrentMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+        log.info("{} issues: sequential {} ms, concurrent {} ms", BURST_ISSUES, sequentialMillis, concurrentMillis);
+        assertThat(sequentialCount, is(BURST_ISSUES));
+        assertThat(concurrentCount, is(BURST_ISSUES));
+        assertThat(concurrentChat.posted.get(), is(sequentialChat.posted.get()));
+        assertThat(concurrentMillis, lessThan(sequentialMillis));
+    }
+
+    private static Issue issue(int id) throws Exception {
+        return new Issue.Builder().projectPrefix("BURST").id(id)
+                .link(new URL("http://youtrack.example.com/issue/BURST-" + id)).build();
+    }
+
+    private static IssueEditSession session(Issue issue, Date updated) {
+        return new IssueEditSession.Builder().issue(issue).updater("rob").updated(updated).build();
+    }
+
+    private static class MockChatServer implements ChatServer {
+        private final AtomicInteger posted = new AtomicInteger();
+
+        @Override
+        public void postIssueCreation(Issue issue) {
+            posted.incrementAndGet();
+            sleep();
+        }
+
+        @Override
+        public void post(IssueEditSession issueEditSession) {
+            posted.incrementAndGet();
+            sleep();
+        }
+
+        @Override
+        public List<String> getUsers() {
+            return Collections.emptyList();
+        }
+    }
+
+    private static class LatencyStreamProvider implements StreamProvider {
+        private final StreamProvider streamProvider = UrlStreamProvider.instance();
+
+        @Override
+        public <RES> RES openResourceStream(URL resourceUrl, InputStreamHandler<RES> inputStreamHandler) throws Exception {
+            sleep();
+            return streamProvider.openResourceStream(resourceUrl, inputStreamHandler);
+        }
+    }
+
+    private static void sleep() {
+        try {
+            Thread.sleep(LATENCY_MILLIS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Every issue of the burst has the same single change
+     */
+    private static class BurstExtractor extends EditSessionsExtractor {
+
+        BurstExtractor(StreamProvider streamProvider) {
+            super(new EventListenerImplTest.MockIssueTracker("/feeds/issues-feed-rss.xml", null) {
+                @Override
+                public URL getChangesUrl(Issue issue) {
+                    return TestUtil.getFileAsURL("/feeds/issue-changes-t1.xml");
+                }
+            }, streamProvider);
+        }
+
+        @Override
+        public List<ProcessEvent> getLatestEvents(Date minDate) throws Exception {
+            List<ProcessEvent> events = new ArrayList<>(BURST_ISSUES);
+            for (int i = 0; i < BURST_ISSUES; i++) {
+                events.add(new ProcessEvent.Builder().issue(issue(i)).published(EventListenerImplTest.T4).build());
+            }
+            return events;
+        }
+    }
+
+    private static class FixedSessionsExtractor extends EditSessionsExtractor {
+        private final List<IssueEditSession> sessions;
+
+        FixedSessionsExtractor(List<IssueEditSession> sessions) {
+            super(null, UrlStreamProvider.instance());
+            this.sessions = sessions;
+        }
+
+        @Override
+        public List<IssueEditSession> getLatestEdits(Date minDate, EventProcessorConfiguration configuration) {
+            return new ArrayList<>(sessions);
+        }
+    }
+}
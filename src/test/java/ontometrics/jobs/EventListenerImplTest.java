@@ -542,6 +542,46 @@ public class EventListenerImplTest {
 
 
 
+    @Test
+    /**
+     * Tests that changes are not requested for the issue which has not been published in the feed after
+     * the date of its last processed change, and that the last processed change date is used as lower bound
+     * of the changes for other issues
+     */
+    public void testThatIssueChangeDatesAreUsedToSkipAndLimitChangeRequests() throws Exception {
+        clearData();
+        EventProcessorConfiguration.instance().saveLastProcessedEventDate(new Date(0));
+        TestUtil.setIssueHistoryWindowSettingToCoverAllIssues();
+
+        final Issue issue1 = new Issue.Builder().projectPrefix("ISSUE").id(1).build();
+        final Issue issue2 = new Issue.Builder().projectPrefix("ISSUE").id(2).build();
+        final Issue issue3 = new Issue.Builder().projectPrefix("ISSUE").id(3).build();
+        EventProcessorConfiguration.instance().saveEventChangeDates(ImmutableMap.of(issue1, T3, issue2, T1));
+
+        final Map<Issue, Date> requestedChanges = new HashMap<>();
+        EditSessionsExtractor editSessionsExtractor = new EditSessionsExtractor(null, UrlStreamProvider.instance()) {
+            @Override
+            public List<ProcessEvent> getLatestEvents(Date minDate) throws Exception {
+                return ImmutableList.<ProcessEvent>builder()
+                        .add(new ProcessEvent.Builder().issue(issue1).published(T2).build())
+                        .add(new ProcessEvent.Builder().issue(issue2).published(T2).build())
+                        .add(new ProcessEvent.Builder().issue(issue3).published(T2).build())
+                        .build();
+            }
+
+            @Override
+            public List<IssueEditSession> getEdits(ProcessEvent e, Date upToDate) throws Exception {
+                requestedChanges.put(e.getIssue(), upToDate);
+                return Collections.emptyList();
+            }
+        };
+        new EventListenerImpl(editSessionsExtractor, new EmptyChatServer()).checkForNewEvents();
+
+        assertThat(requestedChanges.containsKey(issue1), is(false));
+        assertThat(requestedChanges.get(issue2), is(T1));
+        assertThat(requestedChanges.get(issue3), is(not(T1)));
+    }
+
     private void clearData() throws ConfigurationException {
         EventProcessorConfiguration.instance().clear();
     }
@@ -0,0 +1,90 @@
+package ontometrics.jobs;
+
+import com.ontometrics.integrations.configuration.ConfigurationFactory;
+import com.ontometrics.integrations.configuration.EventProcessorConfiguration;
+import com.ontometrics.integrations.jobs.JobStarter;
+import ontometrics.test.util.Benchmark;
+import ontometrics.test.util.YouTrackSlackSimulator;
+import org.apache.commons.configuration.Configuration;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+import org.slf4j.Logger;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.assertThat;
+import static org.slf4j.LoggerFactory.getLogger;
+
+/**
+ * Runs {@link JobStarter} end-to-end over HTTP against {@link YouTrackSlackSimulator}
+ */
+@Category(Benchmark.class)
+public class JobStarterLoadTest {
+    private static final Logger log = getLogger(JobStarterLoadTest.class);
+
+    private static final long RUN_MILLIS = 6000;
+
+    private final Map<String, Object> savedProperties = new HashMap<>();
+    private YouTrackSlackSimulator simulator;
+
+    @Before
+    public void setUp() throws Exception {
+        EventProcessorConfiguration.instance().clear();
+        simulator = new YouTrackSlackSimulator.Builder()
+                .projects("HA", "DMAN")
+                .issuesPerProject(100)
+                .changesPerSecond(20)
+                .backlog(60)
+                .youTrackLatencyMillis(5)
+                .slackLatencyMillis(5)
+                .slackMessagesPerSecond(50)
+                .build();
+        setProperty("PROP.YOUTRACK_URL", simulator.getBaseUrl());
+        setProperty("PROP.SLACK_URL", simulator.getBaseUrl());
+        setProperty("youtrack-slack.poll-interval", 1);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        simulator.close();
+        Configuration configuration = ConfigurationFactory.get();
+        for (Map.Entry<String, Object> property : savedProperties.entrySet()) {
+            if (property.getValue() == null) {
+                configuration.clearProperty(property.getKey());
+            } else {
+                configuration.setProperty(property.getKey(), property.getValue());
+            }
+        }
+        EventProcessorConfiguration.instance().clear();
+    }
+
+    @Test
+    public void testThatChangesArePolledAndPostedOverHttp() throws Exception {
+        JobStarter jobStarter = new JobStarter();
+        try {
+            jobStarter.scheduleTasks();
+            Thread.sleep(RUN_MILLIS);
+        } finally {
+            jobStarter.dispose();
+            //dispose closes the database of the application
+            EventProcessorConfiguration.instance().reload();
+        }
+
+        log.info("{} feed requests, {} changes requests, {} messages posted, {} rate limited",
+                simulator.getFeedRequests(), simulator.getChangesRequests(), simulator.getPostedMessages(),
+                simulator.getRateLimitedMessages());
+        assertThat(simulator.getFeedRequests(), greaterThan(1));
+        assertThat(simulator.getChangesRequests(), greaterThan(0));
+        assertThat(simulator.getPostedMessages(), greaterThan(0));
+    }
+
+    private void setProperty(String key, Object value) {
+        Configuration configuration = ConfigurationFactory.get();
+        savedProperties.put(key, configuration.getProperty(key));
+        configuration.setProperty(key, value);
+    }
+}
@@ -0,0 +1,90 @@
+package ontometrics.jobs;
+
+import com.ontometrics.integrations.configuration.ConfigurationFactory;
+import com.ontometrics.integrations.configuration.EventProcessorConfiguration;
+import com.ontometrics.integrations.configuration.SlackInstance;
+import com.ontometrics.integrations.configuration.YouTrackInstance;
+import com.ontometrics.integrations.jobs.EventListenerImpl;
+import com.ontometrics.integrations.sources.AsyncHttpStreamProvider;
+import com.ontometrics.integrations.sources.ChannelMapperFactory;
+import com.ontometrics.integrations.sources.EditSessionsExtractor;
+import com.ontometrics.util.Clock;
+import ontometrics.test.util.Benchmark;
+import ontometrics.test.util.SimulatedClock;
+import ontometrics.test.util.SoakHarness;
+import ontometrics.test.util.YouTrackSlackSimulator;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.assertThat;
+
+/**
+ * Polls {@link YouTrackSlackSimulator} for hours of simulated time ("soak.hours" system property, 2 by default)
+ * and checks that resources used by the application do not grow with the number of polls
+ */
+@Category(Benchmark.class)
+public class SoakTest {
+
+    private SimulatedClock clock;
+    private YouTrackSlackSimulator simulator;
+    private AsyncHttpStreamProvider streamProvider;
+
+    @Before
+    public void setUp() throws Exception {
+        EventProcessorConfiguration.instance().clear();
+        clock = new SimulatedClock(System.currentTimeMillis());
+        Clock.setInstance(clock);
+        simulator = new YouTrackSlackSimulator.Builder()
+                .projects("HA", "DMAN")
+                .issuesPerProject(20)
+                .changesPerSecond(1.0 / 120)
+                .backlog(0)
+                .build();
+        streamProvider = new AsyncHttpStreamProvider.Builder().build();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        streamProvider.close();
+        simulator.close();
+        Clock.setInstance(null);
+        EventProcessorConfiguration.instance().clear();
+    }
+
+    @Test
+    public void testThatResourcesDoNotGrowWithPolls() throws Exception {
+        EventListenerImpl eventListener = new EventListenerImpl.Builder()
+                .editSessionsExtractor(new EditSessionsExtractor(
+                        new YouTrackInstance.Builder().baseUrl(simulator.getBaseUrl()).build(), streamProvider))
+                .chatServer(new SlackInstance.Builder()
+                        .baseUrl(simulator.getBaseUrl())
+                        .authToken("soak")
+                        .channelMapper(ChannelMapperFactory.fromConfiguration(ConfigurationFactory.get(), "youtrack-slack."))
+                        .build())
+                .build();
+
+        List<SoakHarness.Sample> samples = new SoakHarness.Builder()
+                .eventListener(eventListener)
+                .clock(clock)
+                .duration(Long.getLong("soak.hours", 2), TimeUnit.HOURS)
+                .pollInterval(1, TimeUnit.MINUTES)
+                .sampleInterval(1, TimeUnit.HOURS)
+                .build()
+                .run();
+
+        SoakHarness.Sample first = samples.get(1), last = samples.get(samples.size() - 1);
+        assertThat(last.getProcessed(), greaterThan(first.getProcessed()));
+        assertThat(simulator.getPostedMessages(), greaterThan(0));
+        //watermark follows the simulated time
+        assertThat(EventProcessorConfiguration.instance().loadLastProcessedDate().getTime(),
+                greaterThan(clock.currentTimeMillis() - TimeUnit.MINUTES.toMillis(10)));
+        assertThat(last.getThreads(), lessThanOrEqualTo(first.getThreads() + 4));
+        assertThat(last.getOpenFiles(), lessThanOrEqualTo(first.getOpenFiles() + 16));
+    }
+}
@@ -0,0 +1,7 @@
+package ontometrics.test.util;
+
+/**
+ * JUnit category of the benchmarks, load and soak tests which are not run by default, "mvn test -Pbenchmarks" runs them
+ */
+public interface Benchmark {
+}
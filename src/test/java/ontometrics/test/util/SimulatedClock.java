@@ -0,0 +1,30 @@
+package ontometrics.test.util;
+
+import com.ontometrics.util.Clock;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * {@link Clock} which is moved forward by the test
+ */
+public class SimulatedClock extends Clock {
+
+    private final AtomicLong millis;
+
+    public SimulatedClock(long startMillis) {
+        millis = new AtomicLong(startMillis);
+    }
+
+    @Override
+    public long currentTimeMillis() {
+        return millis.get();
+    }
+
+    /**
+     * @param millis time to move the clock forward by
+     * @return new current time
+     */
+    public long advance(long millis) {
+        return this.millis.addAndGet(millis);
+    }
+}
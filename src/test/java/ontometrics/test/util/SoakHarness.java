@@ -0,0 +1,205 @@
+package ontometrics.test.util;
+
+import com.ontometrics.integrations.configuration.ConfigurationFactory;
+import com.ontometrics.integrations.jobs.EventListener;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.lang.management.ManagementFactory;
+import java.lang.management.OperatingSystemMXBean;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * <p>
+ * Runs an {@link EventListener} for simulated days in minutes: the {@link SimulatedClock} is moved forward by the poll
+ * interval before every poll, instead of waiting for it.
+ * </p>
+ * <p>
+ * Heap used after gc, number of threads, open file descriptors and size of the MapDB files are sampled every sample
+ * interval of the simulated time, so slow leaks show up as growing samples.
+ * </p>
+ */
+public class SoakHarness {
+    private static final Logger log = LoggerFactory.getLogger(SoakHarness.class);
+
+    private final EventListener eventListener;
+    private final SimulatedClock clock;
+    private final long durationMillis;
+    private final long pollIntervalMillis;
+    private final long sampleIntervalMillis;
+    private final File dataDir;
+
+    public SoakHarness(Builder builder) {
+        eventListener = builder.eventListener;
+        clock = builder.clock;
+        durationMillis = builder.durationMillis;
+        pollIntervalMillis = builder.pollIntervalMillis;
+        sampleIntervalMillis = builder.sampleIntervalMillis;
+        dataDir = new File(ConfigurationFactory.get().getString("PROP.APP_DATA_DIR", "."));
+    }
+
+    public static class Builder {
+
+        private EventListener eventListener;
+        private SimulatedClock clock;
+        private long durationMillis = TimeUnit.DAYS.toMillis(1);
+        private long pollIntervalMillis = TimeUnit.MINUTES.toMillis(1);
+        private long sampleIntervalMillis = TimeUnit.HOURS.toMillis(1);
+
+        public Builder eventListener(EventListener eventListener) {
+            this.eventListener = eventListener;
+            return this;
+        }
+
+        /**
+         * @param clock clock of the application, see {@link com.ontometrics.util.Clock#setInstance}
+         */
+        public Builder clock(SimulatedClock clock) {
+            this.clock = clock;
+            return this;
+        }
+
+        public Builder duration(long duration, TimeUnit unit) {
+            this.durationMillis = unit.toMillis(duration);
+            return this;
+        }
+
+        public Builder pollInterval(long pollInterval, TimeUnit unit) {
+            this.pollIntervalMillis = unit.toMillis(pollInterval);
+            return this;
+        }
+
+        public Builder sampleInterval(long sampleInterval, TimeUnit unit) {
+            this.sampleIntervalMillis = unit.toMillis(sampleInterval);
+            return this;
+        }
+
+        public SoakHarness build() {
+            return new SoakHarness(this);
+        }
+    }
+
+    /**
+     * @return samples taken before the first poll and after every sample interval
+     * @throws Exception if a poll failed
+     */
+    public List<Sample> run() throws Exception {
+        List<Sample> samples = new ArrayList<>();
+        long start = clock.currentTimeMillis();
+        long wallStart = System.nanoTime();
+        int polls = 0, processed = 0;
+        samples.add(sample(0, 0));
+        long nextSample = start + sampleIntervalMillis;
+        while (clock.currentTimeMillis() - start < durationMillis) {
+            clock.advance(pollIntervalMillis);
+            processed += eventListener.checkForNewEvents();
+            polls++;
+            if (clock.currentTimeMillis() >= nextSample) {
+                samples.add(sample(polls, processed));
+                nextSample += sampleIntervalMillis;
+            }
+        }
+        log.info("Simulated {} h with {} polls in {} s", TimeUnit.MILLISECONDS.toHours(durationMillis), polls,
+                TimeUnit.NANOSECONDS.toSeconds(System.nanoTime() - wallStart));
+        return samples;
+    }
+
+    private Sample sample(int polls, int processed) {
+        System.gc();
+        Runtime runtime = Runtime.getRuntime();
+        Sample sample = new Sample(clock.now(), polls, processed, runtime.totalMemory() - runtime.freeMemory(),
+                ManagementFactory.getThreadMXBean().getThreadCount(), getOpenFiles(), getDatabaseBytes());
+        log.info("{}", sample);
+        return sample;
+    }
+
+    /**
+     * @return number of open file descriptors, -1 if it is not known on this platform
+     */
+    private static long getOpenFiles() {
+        OperatingSystemMXBean operatingSystem = ManagementFactory.getOperatingSystemMXBean();
+        if (operatingSystem instanceof com.sun.management.UnixOperatingSystemMXBean) {
+            return ((com.sun.management.UnixOperatingSystemMXBean) operatingSystem).getOpenFileDescriptorCount();
+        }
+        return -1;
+    }
+
+    private long getDatabaseBytes() {
+        long bytes = 0;
+        File[] files = dataDir.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                if (file.getName().startsWith("app_db")) {
+                    bytes += file.length();
+                }
+            }
+        }
+        return bytes;
+    }
+
+    public static class Sample {
+        private final Date time;
+        private final int polls;
+        private final int processed;
+        private final long heapBytes;
+        private final int threads;
+        private final long openFiles;
+        private final long databaseBytes;
+
+        private Sample(Date time, int polls, int processed, long heapBytes, int threads, long openFiles,
+                       long databaseBytes) {
+            this.time = time;
+            this.polls = polls;
+            this.processed = processed;
+            this.heapBytes = heapBytes;
+            this.threads = threads;
+            this.openFiles = openFiles;
+            this.databaseBytes = databaseBytes;
+        }
+
+        public Date getTime() {
+            return time;
+        }
+
+        public int getPolls() {
+            return polls;
+        }
+
+        /**
+         * @return number of events processed by the polls so far
+         */
+        public int getProcessed() {
+            return processed;
+        }
+
+        public long getHeapBytes() {
+            return heapBytes;
+        }
+
+        public int getThreads() {
+            return threads;
+        }
+
+        /**
+         * @return number of open file descriptors, -1 if it is not known
+         */
+        public long getOpenFiles() {
+            return openFiles;
+        }
+
+        public long getDatabaseBytes() {
+            return databaseBytes;
+        }
+
+        @Override
+        public String toString() {
+            return "Sample{time=" + time + ", polls=" + polls + ", processed=" + processed + ", heap="
+                    + heapBytes / 1024 + " KB, threads=" + threads + ", openFiles=" + openFiles + ", database="
+                    + databaseBytes / 1024 + " KB}";
+        }
+    }
+}
@@ -0,0 +1,393 @@
+package ontometrics.test.util;
+
+import com.google.common.util.concurrent.RateLimiter;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import com.ontometrics.util.Clock;
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.lang.StringEscapeUtils;
+import org.apache.http.HttpStatus;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.TimeZone;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * <p>
+ * Local YouTrack and Slack for load testing the whole application over HTTP: serves synthetic
+ * "/_rss/issues", "/rest/issue/X/changes" and "/rest/issue/X/attachment" responses shaped like the
+ * src/test/resources/feeds fixtures, and a fake "/api/chat.postMessage" with latency and rate limit.
+ * </p>
+ * <p>
+ * Issues of every project change at the configured rate of the {@link Clock}: change n happens at
+ * start + n / changesPerSecond and touches issue n % issuesPerProject of project n % projects, the backlog of changes
+ * happened before the start.
+ * Feed lists the latest touched issues, optionally of a "project: X" with "updated: since .. before" window.
+ * Slack answers 429 with Retry-After when posts exceed the rate limit.
+ * </p>
+ * <p>
+ * Point "PROP.YOUTRACK_URL" and "PROP.SLACK_URL" to {@link #getBaseUrl()}; {@link #main(String[])} runs it
+ * standalone for the deployed WAR.
+ * </p>
+ */
+public class YouTrackSlackSimulator implements Closeable {
+    private static final Logger log = LoggerFactory.getLogger(YouTrackSlackSimulator.class);
+
+    private static final Pattern CHANGES_PATH = Pattern.compile("/rest/issue/([A-Z]+)-(\\d+)/(changes|attachment)");
+    private static final Pattern PROJECT_QUERY = Pattern.compile("project:\\s*([A-Z]+)");
+    private static final Pattern UPDATED_QUERY = Pattern.compile("updated:\\s*(\\S+)\\s*\\.\\.\\s*(\\S+)");
+    private static final String XSI = "xmlns:xsi=\"http://www.w3.org/2001/XMLSchema-instance\"";
+    private static final String[] STATES = {"Open", "In Progress", "Fixed", "Verified"};
+
+    private final List<String> projects;
+    private final int issuesPerProject;
+    private final int feedSize;
+    private final int maxChangesPerIssue;
+    private final double changesPerSecond;
+    private final long startMillis;
+    private final long youTrackLatencyMillis;
+    private final long slackLatencyMillis;
+    private final RateLimiter slackRateLimiter;
+
+    private final HttpServer server;
+    private final ExecutorService executor;
+
+    private final AtomicInteger feedRequests = new AtomicInteger();
+    private final AtomicInteger changesRequests = new AtomicInteger();
+    private final AtomicInteger postedMessages = new AtomicInteger();
+    private final AtomicInteger rateLimitedMessages = new AtomicInteger();
+
+    public YouTrackSlackSimulator(Builder builder) throws IOException {
+        projects = new ArrayList<>(builder.projects);
+        issuesPerProject = builder.issuesPerProject;
+        feedSize = builder.feedSize;
+        maxChangesPerIssue = builder.maxChangesPerIssue;
+        changesPerSecond = builder.changesPerSecond;
+        startMillis = Clock.instance().currentTimeMillis() - (long) (builder.backlog * 1000 / changesPerSecond);
+        youTrackLatencyMillis = builder.youTrackLatencyMillis;
+        slackLatencyMillis = builder.slackLatencyMillis;
+        slackRateLimiter = builder.slackMessagesPerSecond > 0 ? RateLimiter.create(builder.slackMessagesPerSecond) : null;
+
+        executor = Executors.newCachedThreadPool();
+        server = HttpServer.create(new InetSocketAddress("localhost", builder.port), 256);
+        server.setExecutor(executor);
+        server.createContext("/_rss/issues", new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                feedRequests.incrementAndGet();
+                sleep(youTrackLatencyMillis);
+                respond(exchange, HttpStatus.SC_OK, "application/rss+xml", feed(exchange.getRequestURI().getRawQuery()));
+            }
+        });
+        server.createContext("/rest/issue", new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                Matcher matcher = CHANGES_PATH.matcher(exchange.getRequestURI().getPath());
+                if (!matcher.matches()) {
+                    respond(exchange, HttpStatus.SC_NOT_FOUND, "text/plain", "");
+                    return;
+                }
+                sleep(youTrackLatencyMillis);
+                if ("attachment".equals(matcher.group(3))) {
+                    respond(exchange, HttpStatus.SC_OK, "application/xml", "<fileUrls>\n</fileUrls>");
+                } else {
+                    changesRequests.incrementAndGet();
+                    respond(exchange, HttpStatus.SC_OK, "application/xml",
+                            changes(matcher.group(1), Integer.parseInt(matcher.group(2))));
+                }
+            }
+        });
+        server.createContext("/api/chat.postMessage", new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                IOUtils.toString(exchange.getRequestBody(), "UTF-8");
+                sleep(slackLatencyMillis);
+                if (slackRateLimiter != null && !slackRateLimiter.tryAcquire()) {
+                    rateLimitedMessages.incrementAndGet();
+                    exchange.getResponseHeaders().set("Retry-After", "1");
+                    respond(exchange, 429, "application/json", "{\"ok\":false,\"error\":\"rate_limited\"}");
+                } else {
+                    postedMessages.incrementAndGet();
+                    respond(exchange, HttpStatus.SC_OK, "application/json", "{\"ok\":true}");
+                }
+            }
+        });
+        server.start();
+        log.info("Simulator started at {} with {} issues changing {} times a second", getBaseUrl(),
+                projects.size() * issuesPerProject, changesPerSecond);
+    }
+
+    public static class Builder {
+
+        private List<String> projects = Arrays.asList("HA", "DMAN");
+        private int issuesPerProject = 100;
+        private int feedSize = 50;
+        private int maxChangesPerIssue = 10;
+        private double changesPerSecond = 10;
+        private int backlog = 100;
+        private long youTrackLatencyMillis;
+        private long slackLatencyMillis;
+        private double slackMessagesPerSecond;
+        private int port;
+
+        public Builder projects(String... projects) {
+            this.projects = Arrays.asList(projects);
+            return this;
+        }
+
+        public Builder issuesPerProject(int issuesPerProject) {
+            this.issuesPerProject = issuesPerProject;
+            return this;
+        }
+
+        /**
+         * @param feedSize maximum number of items in the feed, 50 like YouTrack by default
+         */
+        public Builder feedSize(int feedSize) {
+            this.feedSize = feedSize;
+            return this;
+        }
+
+        /**
+         * @param maxChangesPerIssue maximum number of the latest changes returned for an issue
+         */
+        public Builder maxChangesPerIssue(int maxChangesPerIssue) {
+            this.maxChangesPerIssue = maxChangesPerIssue;
+            return this;
+        }
+
+        public Builder changesPerSecond(double changesPerSecond) {
+            this.changesPerSecond = changesPerSecond;
+            return this;
+        }
+
+        /**
+         * @param backlog number of changes made before the start
+         */
+        public Builder backlog(int backlog) {
+            this.backlog = backlog;
+            return this;
+        }
+
+        public Builder youTrackLatencyMillis(long youTrackLatencyMillis) {
+            this.youTrackLatencyMillis = youTrackLatencyMillis;
+            return this;
+        }
+
+        public Builder slackLatencyMillis(long slackLatencyMillis) {
+            this.slackLatencyMillis = slackLatencyMillis;
+            return this;
+        }
+
+        /**
+         * @param slackMessagesPerSecond posts over this rate are answered with 429, 0 for no limit
+         */
+        public Builder slackMessagesPerSecond(double slackMessagesPerSecond) {
+            this.slackMessagesPerSecond = slackMessagesPerSecond;
+            return this;
+        }
+
+        /**
+         * @param port port of the server, any free port by default
+         */
+        public Builder port(int port) {
+            this.port = port;
+            return this;
+        }
+
+        public YouTrackSlackSimulator build() throws IOException {
+            return new YouTrackSlackSimulator(this);
+        }
+    }
+
+    private String feed(String rawQuery) throws IOException {
+        String query = rawQuery == null ? "" : URLDecoder.decode(rawQuery, "UTF-8");
+        Matcher projectMatcher = PROJECT_QUERY.matcher(query);
+        String project = projectMatcher.find() ? projectMatcher.group(1) : null;
+        long since = startMillis, before = Clock.instance().currentTimeMillis();
+        Matcher updatedMatcher = UPDATED_QUERY.matcher(query);
+        if (updatedMatcher.find()) {
+            SimpleDateFormat queryDateFormat = utcDateFormat("yyyy-MM-dd'T'HH:mm:ss");
+            try {
+                since = Math.max(since, queryDateFormat.parse(updatedMatcher.group(1)).getTime());
+                before = Math.min(before, queryDateFormat.parse(updatedMatcher.group(2)).getTime());
+            } catch (ParseException e) {
+                throw new IOException(e);
+            }
+        }
+
+        SimpleDateFormat pubDateFormat = utcDateFormat("EEE, dd MMM yyyy HH:mm:ss");
+        StringBuilder feed = new StringBuilder("<?xml version='1.0' encoding='utf-8'?>\n<channel>\n")
+                .append("<title>YouTrack</title>\n<link>").append(getBaseUrl()).append("/_rss/issues</link>\n");
+        Set<String> listedIssues = new HashSet<>();
+        //the latest change of every issue, newest first
+        for (long change = getChange(before); change >= 0 && listedIssues.size() < feedSize
+                && getChangeMillis(change) > since; change--) {
+            String prefix = projects.get((int) (change % projects.size()));
+            int id = getIssueId(change);
+            if ((project != null && !project.equals(prefix)) || !listedIssues.add(prefix + "-" + id)) {
+                continue;
+            }
+            feed.append("<item>\n<title>").append(prefix).append('-').append(id).append(": ")
+                    .append(summary(prefix, id)).append("</title>\n<link>").append(getBaseUrl())
+                    .append("/issue/").append(prefix).append('-').append(id).append("</link>\n")
+                    .append("<description><![CDATA[<div class=\"wiki text\">Synthetic issue</div>]]></description>\n")
+                    .append("<pubDate>").append(pubDateFormat.format(new Date(getChangeMillis(change))))
+                    .append(" UT</pubDate>\n</item>\n");
+        }
+        return feed.append("</channel>\n").toString();
+    }
+
+    private String changes(String prefix, int id) {
+        int projectIndex = projects.indexOf(prefix);
+        List<Long> changes = new ArrayList<>();
+        if (projectIndex >= 0 && id < issuesPerProject) {
+            //changes of the issue are every (projects * issues)-th change
+            long step = (long) projects.size() * issuesPerProject;
+            long first = projectIndex + (long) projects.size() * id;
+            for (long change = getChange(Clock.instance().currentTimeMillis()); change >= first
+                    && changes.size() < maxChangesPerIssue; change--) {
+                if ((change - first) % step == 0) {
+                    changes.add(0, change);
+                }
+            }
+        }
+        StringBuilder xml = new StringBuilder("<?xml version=\"1.0\" encoding=\"UTF-8\" standalone=\"yes\"?>\n<changes>\n")
+                .append("<issue id=\"").append(prefix).append('-').append(id).append("\">\n");
+        field(xml, "SingleField", "projectShortName", prefix);
+        field(xml, "SingleField", "numberInProject", String.valueOf(id));
+        field(xml, "SingleField", "summary", summary(prefix, id));
+        field(xml, "SingleField", "created", String.valueOf(startMillis - 1000));
+        if (!changes.isEmpty()) {
+            field(xml, "SingleField", "updated", String.valueOf(getChangeMillis(changes.get(changes.size() - 1))));
+        }
+        field(xml, "SingleField", "reporterName", "rob");
+        xml.append("</issue>\n");
+        for (long change : changes) {
+            xml.append("<change>\n");
+            field(xml, "SingleField", "updaterName", "rob");
+            field(xml, "SingleField", "updated", String.valueOf(getChangeMillis(change)));
+            xml.append("<field ").append(XSI).append(" xsi:type=\"ChangeField\" name=\"State\">\n<oldValue>")
+                    .append(STATES[(int) (change % STATES.length)]).append("</oldValue>\n<newValue>")
+                    .append(STATES[(int) ((change + 1) % STATES.length)]).append("</newValue>\n</field>\n")
+                    .append("</change>\n");
+        }
+        return xml.append("</changes>\n").toString();
+    }
+
+    private static void field(StringBuilder xml, String type, String name, String value) {
+        xml.append("<field ").append(XSI).append(" xsi:type=\"").append(type).append("\" name=\"").append(name)
+                .append("\">\n<value>").append(StringEscapeUtils.escapeXml(value)).append("</value>\n</field>\n");
+    }
+
+    private static String summary(String prefix, int id) {
+        return "Synthetic issue " + id + " of " + prefix;
+    }
+
+    /**
+     * @return number of the last change made before or at the time, -1 if there is none
+     */
+    private long getChange(long millis) {
+        return (long) Math.floor((millis - startMillis) * changesPerSecond / 1000);
+    }
+
+    private long getChangeMillis(long change) {
+        return startMillis + (long) (change * 1000 / changesPerSecond);
+    }
+
+    private int getIssueId(long change) {
+        return (int) ((change / projects.size()) % issuesPerProject);
+    }
+
+    private static SimpleDateFormat utcDateFormat(String pattern) {
+        SimpleDateFormat dateFormat = new SimpleDateFormat(pattern, Locale.ENGLISH);
+        dateFormat.setTimeZone(TimeZone.getTimeZone("UTC"));
+        return dateFormat;
+    }
+
+    private static void respond(HttpExchange exchange, int status, String contentType, String body) throws IOException {
+        byte[] response = body.getBytes("UTF-8");
+        exchange.getResponseHeaders().set("Content-Type", contentType + "; charset=utf-8");
+        exchange.sendResponseHeaders(status, response.length == 0 ? -1 : response.length);
+        OutputStream os = exchange.getResponseBody();
+        try {
+            os.write(response);
+        } finally {
+            os.close();
+            exchange.close();
+        }
+    }
+
+    private static void sleep(long millis) {
+        if (millis <= 0) {
+            return;
+        }
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    public String getBaseUrl() {
+        return "http://localhost:" + server.getAddress().getPort();
+    }
+
+    public int getFeedRequests() {
+        return feedRequests.get();
+    }
+
+    public int getChangesRequests() {
+        return changesRequests.get();
+    }
+
+    public int getPostedMessages() {
+        return postedMessages.get();
+    }
+
+    public int getRateLimitedMessages() {
+        return rateLimitedMessages.get();
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        executor.shutdownNow();
+        log.info("Simulator stopped: {} feed requests, {} changes requests, {} messages posted, {} rate limited",
+                feedRequests.get(), changesRequests.get(), postedMessages.get(), rateLimitedMessages.get());
+    }
+
+    /**
+     * Runs the simulator until the process is stopped: [port] [changes per second] [slack messages per second]
+     */
+    public static void main(String[] args) throws Exception {
+        Builder builder = new Builder().port(args.length > 0 ? Integer.parseInt(args[0]) : 8085);
+        if (args.length > 1) {
+            builder.changesPerSecond(Double.parseDouble(args[1]));
+        }
+        if (args.length > 2) {
+            builder.slackMessagesPerSecond(Double.parseDouble(args[2]));
+        }
+        builder.build();
+    }
+}